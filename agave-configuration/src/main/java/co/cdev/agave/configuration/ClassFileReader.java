@@ -0,0 +1,243 @@
+package co.cdev.agave.configuration;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * Reads just enough of a class file to tell whether any of its methods are annotated with an
+ * annotation, without loading the class. The constant pool is read first, and a class whose pool
+ * does not mention the annotation's descriptor is passed over without its methods being read.
+ */
+final class ClassFileReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS = utf8("RuntimeVisibleAnnotations");
+
+    private final String className;
+    private final String superclassName;
+    private final boolean annotated;
+
+    /**
+     * Recreates what was read from a class file, such as from a scan index.
+     */
+    ClassFileReader(String className, String superclassName, boolean annotated) {
+        this.className = className;
+        this.superclassName = superclassName;
+        this.annotated = annotated;
+    }
+
+    /**
+     * @param classFile the contents of a class file
+     * @param annotationDescriptor the descriptor of a runtime visible annotation, such as
+     *        {@code Lco/cdev/agave/Route;}
+     * @throws IOException if the bytes are not a class file
+     */
+    static ClassFileReader read(byte[] classFile, String annotationDescriptor) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(classFile));
+
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+
+        data.readUnsignedShort();
+        data.readUnsignedShort();
+
+        byte[] annotationBytes = utf8(annotationDescriptor);
+        int constantCount = data.readUnsignedShort();
+        byte[][] utf8Constants = new byte[constantCount][];
+        int[] classNameIndices = new int[constantCount];
+        int annotationIndex = -1;
+
+        for (int i = 1; i < constantCount; i++) {
+            int tag = data.readUnsignedByte();
+
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    byte[] bytes = new byte[data.readUnsignedShort()];
+                    data.readFully(bytes);
+                    utf8Constants[i] = bytes;
+                    if (annotationIndex < 0 && Arrays.equals(bytes, annotationBytes)) {
+                        annotationIndex = i;
+                    }
+                    break;
+                case CONSTANT_CLASS:
+                    classNameIndices[i] = data.readUnsignedShort();
+                    break;
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    data.skipBytes(2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    data.skipBytes(3);
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELD_REF:
+                case CONSTANT_METHOD_REF:
+                case CONSTANT_INTERFACE_METHOD_REF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    data.skipBytes(4);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    data.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        data.readUnsignedShort();
+        String className = getClassName(utf8Constants, classNameIndices, data.readUnsignedShort());
+        String superclassName = getClassName(utf8Constants, classNameIndices, data.readUnsignedShort());
+
+        if (annotationIndex < 0) {
+            return new ClassFileReader(className, superclassName, false);
+        }
+
+        data.skipBytes(data.readUnsignedShort() * 2);
+
+        int fieldCount = data.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            data.skipBytes(6);
+            skipAttributes(data);
+        }
+
+        int methodCount = data.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++) {
+            data.skipBytes(6);
+
+            int attributeCount = data.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++) {
+                byte[] attributeName = utf8Constants[data.readUnsignedShort()];
+                int length = data.readInt();
+
+                if (Arrays.equals(attributeName, RUNTIME_VISIBLE_ANNOTATIONS)) {
+                    int annotationCount = data.readUnsignedShort();
+                    for (int k = 0; k < annotationCount; k++) {
+                        if (readAnnotation(data) == annotationIndex) {
+                            return new ClassFileReader(className, superclassName, true);
+                        }
+                    }
+                } else {
+                    data.skipBytes(length);
+                }
+            }
+        }
+
+        return new ClassFileReader(className, superclassName, false);
+    }
+
+    /**
+     * @return the binary name of the class, such as {@code co.cdev.agave.Route}
+     */
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the binary name of the superclass, or null for {@code java.lang.Object}
+     */
+    String getSuperclassName() {
+        return superclassName;
+    }
+
+    /**
+     * @return true if any method declared by the class is annotated with the annotation
+     */
+    boolean isAnnotated() {
+        return annotated;
+    }
+
+    private static String getClassName(byte[][] utf8Constants, int[] classNameIndices, int classIndex)
+            throws IOException {
+        if (classIndex == 0) {
+            return null;
+        }
+
+        return new String(utf8Constants[classNameIndices[classIndex]], "UTF-8").replace('/', '.');
+    }
+
+    private static void skipAttributes(DataInputStream data) throws IOException {
+        int attributeCount = data.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            data.skipBytes(2);
+            data.skipBytes(data.readInt());
+        }
+    }
+
+    /**
+     * Reads an annotation, skipping its element values.
+     *
+     * @return the constant pool index of the annotation's type descriptor
+     */
+    private static int readAnnotation(DataInputStream data) throws IOException {
+        int typeIndex = data.readUnsignedShort();
+        int pairCount = data.readUnsignedShort();
+
+        for (int i = 0; i < pairCount; i++) {
+            data.skipBytes(2);
+            skipElementValue(data);
+        }
+
+        return typeIndex;
+    }
+
+    private static void skipElementValue(DataInputStream data) throws IOException {
+        int tag = data.readUnsignedByte();
+
+        switch (tag) {
+            case 'e':
+                data.skipBytes(4);
+                break;
+            case '@':
+                readAnnotation(data);
+                break;
+            case '[':
+                int valueCount = data.readUnsignedShort();
+                for (int i = 0; i < valueCount; i++) {
+                    skipElementValue(data);
+                }
+                break;
+            default:
+                data.skipBytes(2);
+                break;
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        try {
+            return text.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -7,6 +7,7 @@ import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Set;
 
+import co.cdev.agave.HttpMethod;
 import co.cdev.agave.URIPattern;
 
 public interface Config extends Iterable<HandlerDescriptor>, Serializable {
@@ -18,6 +19,47 @@ public interface Config extends Iterable<HandlerDescriptor>, Serializable {
     public Set<HandlerDescriptor> getCandidatesFor(String uriPatternString);
     
     public Set<HandlerDescriptor> getCandidatesFor(URIPattern uriPattern);
+    
+    /**
+     * @return the descriptors that were declared with a URI pattern and HTTP method, in order of
+     *         specificity
+     */
+    public Set<HandlerDescriptor> getCandidatesFor(URIPattern uriPattern, HttpMethod httpMethod);
+    
+    /**
+     * @return the descriptors of the handler methods of a class, in order of specificity
+     */
+    public Set<HandlerDescriptor> getHandlerDescriptorsFor(Class<?> handlerClass);
+    
+    /**
+     * @return the descriptors of the handler methods that take part in a workflow, in order of
+     *         specificity
+     */
+    public Set<HandlerDescriptor> getWorkflowHandlerDescriptors(String workflowName);
+    
+    /**
+     * Like {@link #getCandidatesFor(URIPattern)}, but returns an unmodifiable view rather than a
+     * copy, which should not be kept past a change to the config.
+     */
+    public Set<HandlerDescriptor> viewCandidatesFor(URIPattern uriPattern);
+    
+    /**
+     * Like {@link #getCandidatesFor(URIPattern, HttpMethod)}, but returns an unmodifiable view
+     * rather than a copy, which should not be kept past a change to the config.
+     */
+    public Set<HandlerDescriptor> viewCandidatesFor(URIPattern uriPattern, HttpMethod httpMethod);
+    
+    /**
+     * Like {@link #getHandlerDescriptorsFor(Class)}, but returns an unmodifiable view rather than a
+     * copy, which should not be kept past a change to the config.
+     */
+    public Set<HandlerDescriptor> viewHandlerDescriptorsFor(Class<?> handlerClass);
+    
+    /**
+     * Like {@link #getWorkflowHandlerDescriptors(String)}, but returns an unmodifiable view rather
+     * than a copy, which should not be kept past a change to the config.
+     */
+    public Set<HandlerDescriptor> viewWorkflowHandlerDescriptors(String workflowName);
 
     public int size();
     
@@ -0,0 +1,274 @@
+package co.cdev.agave.configuration;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the binary format of configuration files. A file is laid out as
+ *
+ * <pre>
+ * header       int magic ("AGCF"), short version
+ * string table int count, then for each string an int length and that many bytes of UTF-8
+ * descriptors  int count, then one record per descriptor
+ * </pre>
+ *
+ * <p>
+ * Every class name, method name, URI pattern and other string in a record is an int index into
+ * the string table, or -1 for null, so each string is stored once however many descriptors share
+ * it. The records are written in the order of the configuration, which is the order of
+ * specificity in which requests are matched, and a record's position is kept as its rank. Reading
+ * a file therefore needs neither reflection nor comparisons of URI patterns, and the classes of a
+ * descriptor are not loaded until it is used.
+ * </p>
+ */
+final class ConfigFile {
+
+    static final int MAGIC = 0x41474346;
+    static final short VERSION = 1;
+
+    private static final int NULL_INDEX = -1;
+
+    private static final int INITIATES_WORKFLOW = 1;
+    private static final int COMPLETES_WORKFLOW = 2;
+    private static final int STREAMS_PARTS = 4;
+
+    private ConfigFile() {
+    }
+
+    /**
+     * @return true if the buffer starts with the header of this format, without moving its position
+     */
+    static boolean isConfigFile(ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.getInt(buffer.position()) == MAGIC;
+    }
+
+    /**
+     * Writes descriptors in the order in which they are iterated.
+     */
+    static void write(Collection<HandlerDescriptor> handlerDescriptors, OutputStream out) throws IOException {
+        StringTable strings = new StringTable();
+        List<int[]> records = new ArrayList<int[]>(handlerDescriptors.size());
+
+        for (HandlerDescriptor handlerDescriptor : handlerDescriptors) {
+            records.add(toRecord(handlerDescriptor, strings));
+        }
+
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeShort(VERSION);
+
+        dataOut.writeInt(strings.strings.size());
+        for (String string : strings.strings) {
+            byte[] bytes = string.getBytes("UTF-8");
+            dataOut.writeInt(bytes.length);
+            dataOut.write(bytes);
+        }
+
+        dataOut.writeInt(records.size());
+        for (int[] record : records) {
+            for (int value : record) {
+                dataOut.writeInt(value);
+            }
+        }
+
+        dataOut.flush();
+    }
+
+    /**
+     * Reads the descriptors from the position of a buffer.
+     *
+     * @param classLoader the class loader that the classes of the descriptors are loaded with once
+     *        they are used
+     * @return the descriptors, in the order in which they were written
+     */
+    static List<HandlerDescriptor> read(ByteBuffer buffer, ClassLoader classLoader) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an Agave configuration file");
+            }
+
+            short version = buffer.getShort();
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported configuration file version " + version);
+            }
+
+            String[] strings = new String[buffer.getInt()];
+
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, "UTF-8");
+            }
+
+            int count = buffer.getInt();
+            List<HandlerDescriptor> handlerDescriptors = new ArrayList<HandlerDescriptor>(count);
+            Object source = new Object();
+
+            for (int rank = 0; rank < count; rank++) {
+                handlerDescriptors.add(readRecord(buffer, strings, classLoader, source, rank));
+            }
+
+            return handlerDescriptors;
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("The configuration file is truncated");
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            throw new IOException("The configuration file refers to a missing string");
+        } catch (NegativeArraySizeException ex) {
+            throw new IOException("The configuration file is corrupt");
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("The configuration file is corrupt: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * A record holds the handler class, the method name, the number of method parameter classes
+     * followed by each of them, the URI pattern, the HTTP method, the flags, the workflow name, the
+     * form class, and the number of params followed by the param class, element class, name and
+     * converter class of each. Stored descriptors are written from their class names, so writing
+     * them does not load their classes.
+     */
+    private static int[] toRecord(HandlerDescriptor handlerDescriptor, StringTable strings) {
+        int flags = (handlerDescriptor.initiatesWorkflow() ? INITIATES_WORKFLOW : 0)
+                | (handlerDescriptor.completesWorkflow() ? COMPLETES_WORKFLOW : 0)
+                | (handlerDescriptor.streamsParts() ? STREAMS_PARTS : 0);
+
+        if (handlerDescriptor instanceof StoredHandlerDescriptor) {
+            StoredHandlerDescriptor storedHandlerDescriptor = (StoredHandlerDescriptor) handlerDescriptor;
+
+            return toRecord(strings,
+                            storedHandlerDescriptor.getHandlerClassName(),
+                            storedHandlerDescriptor.getHandlerMethodName(),
+                            storedHandlerDescriptor.getParameterClassNames(),
+                            storedHandlerDescriptor.getURIPatternString(),
+                            storedHandlerDescriptor.getHttpMethod().name(),
+                            flags,
+                            storedHandlerDescriptor.getWorkflowName(),
+                            storedHandlerDescriptor.getFormClassName(),
+                            storedHandlerDescriptor.getParamNames());
+        }
+
+        Class<?>[] parameterClasses = handlerDescriptor.getHandlerMethod().getParameterTypes();
+        String[] parameterClassNames = new String[parameterClasses.length];
+
+        for (int i = 0; i < parameterClasses.length; i++) {
+            parameterClassNames[i] = getName(parameterClasses[i]);
+        }
+
+        List<ParamDescriptor> paramDescriptors = handlerDescriptor.getParamDescriptors();
+        String[] paramNames = new String[paramDescriptors.size() * 4];
+        int i = 0;
+
+        for (ParamDescriptor paramDescriptor : paramDescriptors) {
+            paramNames[i++] = getName(paramDescriptor.getParamClass());
+            paramNames[i++] = getName(paramDescriptor.getElementClass());
+            paramNames[i++] = paramDescriptor.getName();
+            paramNames[i++] = getName(paramDescriptor.getConverterClass());
+        }
+
+        return toRecord(strings,
+                        getName(handlerDescriptor.getHandlerClass()),
+                        handlerDescriptor.getHandlerMethod().getName(),
+                        parameterClassNames,
+                        handlerDescriptor.getURIPattern().toString(),
+                        handlerDescriptor.getHttpMethod().name(),
+                        flags,
+                        handlerDescriptor.getWorkflowName(),
+                        getName(handlerDescriptor.getFormClass()),
+                        paramNames);
+    }
+
+    private static int[] toRecord(StringTable strings, String handlerClassName, String handlerMethodName,
+                                  String[] parameterClassNames, String uriPattern, String httpMethod, int flags,
+                                  String workflowName, String formClassName, String[] paramNames) {
+        int[] record = new int[9 + parameterClassNames.length + paramNames.length];
+        int i = 0;
+
+        record[i++] = strings.indexOf(handlerClassName);
+        record[i++] = strings.indexOf(handlerMethodName);
+        record[i++] = parameterClassNames.length;
+
+        for (String parameterClassName : parameterClassNames) {
+            record[i++] = strings.indexOf(parameterClassName);
+        }
+
+        record[i++] = strings.indexOf(uriPattern);
+        record[i++] = strings.indexOf(httpMethod);
+        record[i++] = flags;
+        record[i++] = strings.indexOf(workflowName);
+        record[i++] = strings.indexOf(formClassName);
+        record[i++] = paramNames.length / 4;
+
+        for (String paramName : paramNames) {
+            record[i++] = strings.indexOf(paramName);
+        }
+
+        return record;
+    }
+
+    private static String getName(Class<?> type) {
+        return type == null ? null : type.getName();
+    }
+
+    private static HandlerDescriptor readRecord(ByteBuffer buffer, String[] strings, ClassLoader classLoader,
+                                                Object source, int rank) {
+        String handlerClassName = string(strings, buffer.getInt());
+        String handlerMethodName = string(strings, buffer.getInt());
+        String[] parameterClassNames = new String[buffer.getInt()];
+
+        for (int i = 0; i < parameterClassNames.length; i++) {
+            parameterClassNames[i] = string(strings, buffer.getInt());
+        }
+
+        String uriPattern = string(strings, buffer.getInt());
+        String httpMethod = string(strings, buffer.getInt());
+        int flags = buffer.getInt();
+        String workflowName = string(strings, buffer.getInt());
+        String formClassName = string(strings, buffer.getInt());
+        String[] paramNames = new String[buffer.getInt() * 4];
+
+        for (int i = 0; i < paramNames.length; i++) {
+            paramNames[i] = string(strings, buffer.getInt());
+        }
+
+        return new StoredHandlerDescriptor(classLoader, source, rank, handlerClassName, handlerMethodName,
+                parameterClassNames, uriPattern, httpMethod, (flags & INITIATES_WORKFLOW) != 0,
+                (flags & COMPLETES_WORKFLOW) != 0, workflowName, formClassName, paramNames,
+                (flags & STREAMS_PARTS) != 0);
+    }
+
+    private static String string(String[] strings, int index) {
+        return index == NULL_INDEX ? null : strings[index];
+    }
+
+    private static class StringTable {
+
+        private final List<String> strings = new ArrayList<String>();
+        private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+        int indexOf(String string) {
+            if (string == null) {
+                return NULL_INDEX;
+            }
+
+            Integer index = indices.get(string);
+
+            if (index == null) {
+                index = strings.size();
+                strings.add(string);
+                indices.put(string, index);
+            }
+
+            return index;
+        }
+    }
+
+}
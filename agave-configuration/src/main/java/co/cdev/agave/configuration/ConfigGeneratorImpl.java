@@ -1,42 +1,139 @@
 package co.cdev.agave.configuration;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import co.cdev.agave.CompletesWorkflow;
 import co.cdev.agave.HttpMethod;
 import co.cdev.agave.InitiatesWorkflow;
+import co.cdev.agave.MultipartStream;
 import co.cdev.agave.Param;
 import co.cdev.agave.Route;
+import co.cdev.agave.StreamsParts;
 import co.cdev.agave.URIPattern;
 import co.cdev.agave.URIPatternImpl;
 import co.cdev.agave.conversion.Converters;
 import co.cdev.agave.conversion.NoopConverter;
 import co.cdev.agave.conversion.StringConverter;
-import co.cdev.agave.util.ClassUtils;
 
+/**
+ * Generates a configuration from the handler methods of the classes in directories and jar files.
+ * The class files are read as bytes to find the classes with {@code @Route} methods, or whose
+ * superclasses have them, and only those classes are loaded. Classes are neither loaded nor
+ * initialized to be inspected, which keeps startup fast for applications with many classes.
+ *
+ * <p>
+ * The class files are read and parsed by a pool of threads, in batches of a directory tree and one
+ * jar file at a time. The results are merged in the order of the roots and, within a directory, in
+ * the order of the file names, so the configuration and any duplicate descriptors that are reported
+ * do not depend on the scheduling of the threads. A class that is found in more than one root is
+ * taken from the first, as a class loader would.
+ * </p>
+ *
+ * <p>
+ * The scan can be narrowed to included packages and their subpackages, and excluded packages and
+ * their subpackages are skipped. Directories of packages that cannot contain an included class are
+ * not walked at all.
+ * </p>
+ */
 public class ConfigGeneratorImpl implements ConfigGenerator {
 
     private static Logger LOGGER = Logger.getLogger(ConfigGeneratorImpl.class.getName()); 
     
+    private static final String ROUTE_DESCRIPTOR = "L" + Route.class.getName().replace('.', '/') + ";";
+    
+    private static final int CLASS_FILES_PER_TASK = 64;
+    
     private final ClassLoader classLoader;
-    private final File rootDir;
+    private final List<File> roots;
     private final FileFilter classFilter;
+    private final Collection<String> includedPackages;
+    private final Collection<String> excludedPackages;
+    private final int threads;
+    private final File indexFile;
     
     public ConfigGeneratorImpl(File rootDir) {
         this(ConfigGenerator.class.getClassLoader(), rootDir);
     }
     
     public ConfigGeneratorImpl(ClassLoader classLoader, File rootDir) {
+        this(classLoader, rootDir, Collections.<String>emptyList(), Collections.<String>emptyList());
+    }
+    
+    /**
+     * @param includedPackages the packages whose classes are scanned along with those of their
+     *        subpackages, or an empty collection to scan every package
+     * @param excludedPackages the packages whose classes, and those of their subpackages, are not
+     *        scanned
+     */
+    public ConfigGeneratorImpl(ClassLoader classLoader, File rootDir, Collection<String> includedPackages,
+                               Collection<String> excludedPackages) {
+        this(classLoader, Collections.singletonList(rootDir), includedPackages, excludedPackages,
+                Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * @param roots the class directories and jar files to scan, in the order that a class loader
+     *        would search them
+     * @param includedPackages the packages whose classes are scanned along with those of their
+     *        subpackages, or an empty collection to scan every package
+     * @param excludedPackages the packages whose classes, and those of their subpackages, are not
+     *        scanned
+     * @param threads the number of threads that read class files, where 1 reads them on the
+     *        calling thread
+     */
+    public ConfigGeneratorImpl(ClassLoader classLoader, List<File> roots, Collection<String> includedPackages,
+                               Collection<String> excludedPackages, int threads) {
+        this(classLoader, roots, includedPackages, excludedPackages, threads, null);
+    }
+    
+    /**
+     * @param indexFile the file in which what each scan found is kept, so that the next scan only
+     *        reads the class files and jar files that have changed since, or null to always read
+     *        every file
+     */
+    public ConfigGeneratorImpl(ClassLoader classLoader, List<File> roots, Collection<String> includedPackages,
+                               Collection<String> excludedPackages, int threads, File indexFile) {
         this.classLoader = classLoader;
-        this.rootDir = rootDir;
+        this.roots = new ArrayList<File>(roots);
+        this.includedPackages = new ArrayList<String>(includedPackages);
+        this.excludedPackages = new ArrayList<String>(excludedPackages);
+        this.threads = Math.max(threads, 1);
+        this.indexFile = indexFile;
         this.classFilter = new FileFilter() {
             @Override
             public boolean accept(File file) {
@@ -45,25 +142,613 @@ public class ConfigGeneratorImpl implements ConfigGenerator {
         };
     }
     
+    /**
+     * Generates the configuration. When there is an index, the handler descriptors of classes
+     * whose files, and whose superclasses' files, are unchanged are taken from it without loading
+     * the classes, unless a class that a descriptor refers to, such as its form class or the class
+     * or converter of a param, has changed. Other handler classes are loaded from their class
+     * files by a class loader of their own, since the class loader of the application may already
+     * have loaded an older version of them, and the index is rewritten if anything changed.
+     */
     public Config generateConfig() throws IOException, ClassNotFoundException {
         Config config = new ConfigImpl();
         
-        if (rootDir != null && rootDir.isDirectory() && rootDir.canRead()) {
-            populateConfig(rootDir, config);
+        ScanIndex index = null;
+        ScanIndex updatedIndex = null;
+        
+        if (indexFile != null) {
+            index = ScanIndex.read(indexFile, classLoader, includedPackages, excludedPackages);
+            updatedIndex = new ScanIndex(includedPackages, excludedPackages, System.currentTimeMillis());
+        }
+        
+        Set<String> changedClassNames = new HashSet<String>();
+        Map<String, File> sources = new HashMap<String, File>();
+        Map<String, ClassFileReader> classFiles = scanRoots(index, updatedIndex, changedClassNames, sources);
+        Map<String, ClassFileReader> superclassFiles = new HashMap<String, ClassFileReader>();
+        List<String> candidateClassNames = new ArrayList<String>();
+        
+        for (ClassFileReader classFile : classFiles.values()) {
+            if (hasRoutes(classFile, classFiles, superclassFiles)) {
+                List<HandlerDescriptor> indexedHandlerDescriptors = index == null 
+                        ? null : index.getHandlerDescriptors(classFile.getClassName());
+                
+                if (indexedHandlerDescriptors != null && !isChanged(classFile, classFiles, changedClassNames)
+                        && !refersToChangedClasses(indexedHandlerDescriptors, classFiles, changedClassNames)) {
+                    for (HandlerDescriptor handlerDescriptor : indexedHandlerDescriptors) {
+                        try {
+                            config.addHandlerDescriptor(handlerDescriptor);
+                        } catch (DuplicateDescriptorException e) {
+                            LOGGER.severe("Duplicate descriptor method: " + handlerDescriptor);
+                        }
+                    }
+                } else {
+                    candidateClassNames.add(classFile.getClassName());
+                }
+            }
+        }
+        
+        if (index == null) {
+            for (String candidateClassName : candidateClassNames) {
+                inspectCandidateClass(Class.forName(candidateClassName, false, classLoader), config);
+            }
+        } else if (!candidateClassNames.isEmpty()) {
+            inspectChangedClasses(candidateClassNames, classFiles, changedClassNames, sources, config);
+        }
+        
+        if (updatedIndex != null && !updatedIndex.hasSameEntries(index)) {
+            for (HandlerDescriptor handlerDescriptor : config) {
+                updatedIndex.addHandlerDescriptor(handlerDescriptor instanceof StoredHandlerDescriptor
+                        ? ((StoredHandlerDescriptor) handlerDescriptor).getHandlerClassName()
+                        : handlerDescriptor.getHandlerClass().getName(), handlerDescriptor);
+            }
+            
+            try {
+                updatedIndex.write(indexFile);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write the scan index " + indexFile, e);
+            }
         }
         
         return config;
     }
     
-    private void populateConfig(File node, Config config) throws IOException, ClassNotFoundException {
-        if (node.isDirectory() && node.canRead()) {
-            for (File child : node.listFiles()) {
-                populateConfig(child, config);
+    /**
+     * Inspects handler classes that are not taken from the index through a class loader that
+     * loads them, and every changed class, from the files that were scanned. The descriptors are
+     * then stored and read back, so that the configuration refers to the classes by name and
+     * loads them through the class loader of the application once they are used.
+     */
+    private void inspectChangedClasses(List<String> candidateClassNames, Map<String, ClassFileReader> classFiles,
+                                       Set<String> changedClassNames, Map<String, File> sources,
+                                       Config config) throws IOException, ClassNotFoundException {
+        Set<String> scannedClassNames = new HashSet<String>(candidateClassNames);
+        
+        for (ClassFileReader classFile : classFiles.values()) {
+            if (isChanged(classFile, classFiles, changedClassNames)) {
+                scannedClassNames.add(classFile.getClassName());
+            }
+        }
+        
+        ClassLoader scanningClassLoader = new ScanningClassLoader(classLoader, scannedClassNames, sources);
+        Config scannedConfig = new ConfigImpl();
+        
+        for (String candidateClassName : candidateClassNames) {
+            Class<?> candidateClass;
+            
+            try {
+                candidateClass = Class.forName(candidateClassName, false, scanningClassLoader);
+            } catch (LinkageError e) {
+                // such as a class whose package-private superclass was loaded by the application
+                candidateClass = Class.forName(candidateClassName, false, classLoader);
+            }
+            
+            inspectCandidateClass(candidateClass, scannedConfig);
+        }
+        
+        List<HandlerDescriptor> scannedHandlerDescriptors = new ArrayList<HandlerDescriptor>();
+        
+        for (HandlerDescriptor handlerDescriptor : scannedConfig) {
+            scannedHandlerDescriptors.add(handlerDescriptor);
+        }
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConfigFile.write(scannedHandlerDescriptors, out);
+        
+        for (HandlerDescriptor handlerDescriptor : ConfigFile.read(ByteBuffer.wrap(out.toByteArray()), classLoader)) {
+            try {
+                config.addHandlerDescriptor(handlerDescriptor);
+            } catch (DuplicateDescriptorException e) {
+                LOGGER.severe("Duplicate descriptor method: " + handlerDescriptor);
+            }
+        }
+    }
+    
+    /**
+     * Reads the class files of every root that are not in the index or have changed, spreading
+     * the work, including checking the files against the index, over the threads.
+     * 
+     * @param index what the last scan found, or null if there is no index
+     * @param updatedIndex receives what this scan found, or null if there is no index
+     * @param changedClassNames receives the names of the classes in files that changed, were added
+     *        or were removed since the last scan
+     * @param sources receives the class file or jar file that each class was taken from, when
+     *        there is an index
+     * @return the class files by class name, in the order in which they were found
+     */
+    private Map<String, ClassFileReader> scanRoots(ScanIndex index, ScanIndex updatedIndex,
+                                                   Set<String> changedClassNames,
+                                                   Map<String, File> sources) throws IOException {
+        List<File> files = new ArrayList<File>();
+        
+        for (File root : roots) {
+            if (root == null || !root.canRead()) {
+                continue;
+            }
+            
+            if (root.isDirectory()) {
+                listClassFiles(root, "", files, index, updatedIndex);
+            } else if (root.isFile() && root.getName().endsWith(".jar")) {
+                files.add(root);
+            }
+        }
+        
+        List<Callable<List<ScanIndex.Entry>>> tasks = new ArrayList<Callable<List<ScanIndex.Entry>>>();
+        List<File> batch = new ArrayList<File>();
+        
+        for (File file : files) {
+            if (classFilter.accept(file)) {
+                batch.add(file);
+                
+                if (batch.size() == CLASS_FILES_PER_TASK) {
+                    tasks.add(new ReadClassFiles(batch, index));
+                    batch = new ArrayList<File>();
+                }
+            } else {
+                if (!batch.isEmpty()) {
+                    tasks.add(new ReadClassFiles(batch, index));
+                    batch = new ArrayList<File>();
+                }
+                
+                tasks.add(new ReadJarFile(file, index));
+            }
+        }
+        
+        if (!batch.isEmpty()) {
+            tasks.add(new ReadClassFiles(batch, index));
+        }
+        
+        List<ScanIndex.Entry> entries = new ArrayList<ScanIndex.Entry>(files.size());
+        
+        for (List<ScanIndex.Entry> result : runTasks(tasks)) {
+            entries.addAll(result);
+        }
+        
+        Map<String, ClassFileReader> classFiles = new LinkedHashMap<String, ClassFileReader>();
+        
+        for (int i = 0; i < entries.size(); i++) {
+            merge(entries.get(i).getClassFiles(), classFiles, updatedIndex == null ? null : files.get(i), sources);
+        }
+        
+        if (updatedIndex != null) {
+            for (int i = 0; i < entries.size(); i++) {
+                String path = files.get(i).getAbsolutePath();
+                ScanIndex.Entry indexedEntry = index.getEntry(path);
+                
+                updatedIndex.putEntry(path, entries.get(i));
+                
+                if (indexedEntry == null || indexedEntry.getClassFiles() != entries.get(i).getClassFiles()) {
+                    addClassNames(entries.get(i), changedClassNames);
+                    addClassNames(indexedEntry, changedClassNames);
+                }
+            }
+            
+            for (String path : index.getPaths()) {
+                if (updatedIndex.getEntry(path) == null) {
+                    addClassNames(index.getEntry(path), changedClassNames);
+                }
+            }
+        }
+        
+        return classFiles;
+    }
+    
+    private List<List<ScanIndex.Entry>> runTasks(List<Callable<List<ScanIndex.Entry>>> tasks) throws IOException {
+        List<List<ScanIndex.Entry>> results = new ArrayList<List<ScanIndex.Entry>>(tasks.size());
+        
+        if (threads == 1 || tasks.size() < 2) {
+            for (Callable<List<ScanIndex.Entry>> task : tasks) {
+                results.add(call(task));
+            }
+            
+            return results;
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Config Scanner");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        
+        try {
+            for (Future<List<ScanIndex.Entry>> result : executor.invokeAll(tasks)) {
+                results.add(getResult(result));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning for handlers");
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        return results;
+    }
+    
+    private static void merge(List<ClassFileReader> found, Map<String, ClassFileReader> classFiles, File source,
+                              Map<String, File> sources) {
+        for (ClassFileReader classFile : found) {
+            if (!classFiles.containsKey(classFile.getClassName())) {
+                classFiles.put(classFile.getClassName(), classFile);
+                
+                if (source != null) {
+                    sources.put(classFile.getClassName(), source);
+                }
+            }
+        }
+    }
+    
+    private static void addClassNames(ScanIndex.Entry entry, Set<String> classNames) {
+        if (entry != null) {
+            for (ClassFileReader classFile : entry.getClassFiles()) {
+                classNames.add(classFile.getClassName());
             }
-        } else if (node.isFile() && node.canRead() && classFilter.accept(node)) {
-            String className = ClassUtils.getClassNameForClassFile(node, rootDir);
-            Class<?> candidateClass = Class.forName(className, true, classLoader);
-            inspectCandidateClass(candidateClass, config);
+        }
+    }
+    
+    /**
+     * @return true if the class, or any of its superclasses, is one of the changed classes
+     */
+    private static boolean isChanged(ClassFileReader classFile, Map<String, ClassFileReader> classFiles,
+                                     Set<String> changedClassNames) {
+        while (classFile != null) {
+            if (changedClassNames.contains(classFile.getClassName())) {
+                return true;
+            }
+            
+            String superclassName = classFile.getSuperclassName();
+            
+            if (superclassName == null) {
+                return false;
+            }
+            
+            if (changedClassNames.contains(superclassName)) {
+                return true;
+            }
+            
+            classFile = classFiles.get(superclassName);
+        }
+        
+        return false;
+    }
+    
+    /**
+     * @return true if a class that one of the indexed descriptors refers to, or any of its
+     *         superclasses, is one of the changed classes
+     */
+    private static boolean refersToChangedClasses(List<HandlerDescriptor> indexedHandlerDescriptors,
+                                                  Map<String, ClassFileReader> classFiles,
+                                                  Set<String> changedClassNames) {
+        for (HandlerDescriptor handlerDescriptor : indexedHandlerDescriptors) {
+            for (String className : ((StoredHandlerDescriptor) handlerDescriptor).getReferencedClassNames()) {
+                if (changedClassNames.contains(className)
+                        || isChanged(classFiles.get(className), classFiles, changedClassNames)) {
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+    private static <T> T call(Callable<T> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    private static <T> T getResult(Future<T> result) throws IOException, InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            
+            throw new IllegalStateException(cause);
+        }
+    }
+    
+    /**
+     * Lists the class files of the included packages under a directory, sorted by name within each
+     * directory. A directory that the index shows to be unchanged is not listed again.
+     */
+    private void listClassFiles(File directory, String packageName, List<File> files, ScanIndex index,
+                                ScanIndex updatedIndex) {
+        ScanIndex.Directory listing = null;
+        
+        if (updatedIndex != null) {
+            String path = directory.getAbsolutePath();
+            ScanIndex.Directory indexedListing = index.getDirectory(path);
+            
+            if (indexedListing != null && index.isUnchanged(directory, indexedListing.getLastModified())) {
+                listing = indexedListing;
+            } else {
+                listing = listDirectory(directory);
+            }
+            
+            if (listing != null) {
+                updatedIndex.putDirectory(path, listing);
+            }
+        } else {
+            listing = listDirectory(directory);
+        }
+        
+        if (listing == null) {
+            return;
+        }
+        
+        boolean packageIncluded = isIncluded(packageName);
+        
+        for (String name : listing.getNames()) {
+            if (name.endsWith("/")) {
+                String directoryName = name.substring(0, name.length() - 1);
+                String childPackageName = packageName.length() == 0 ? directoryName : packageName + "." + directoryName;
+                
+                if (mayContainIncludedPackages(childPackageName)) {
+                    listClassFiles(new File(directory, directoryName), childPackageName, files, index, updatedIndex);
+                }
+            } else if (packageIncluded) {
+                files.add(new File(directory, name));
+            }
+        }
+    }
+    
+    /**
+     * @return the class files and subdirectories of a directory, or null if it cannot be listed
+     */
+    private ScanIndex.Directory listDirectory(File directory) {
+        // read before listing, so that a change made while listing shows up in the next scan
+        long lastModified = directory.lastModified();
+        File[] children = directory.listFiles();
+        
+        if (children == null) {
+            return null;
+        }
+        
+        Arrays.sort(children);
+        
+        List<String> names = new ArrayList<String>(children.length);
+        
+        // Class files are told apart by name alone, since asking the file system about each of
+        // them costs more than reading the directory
+        for (File child : children) {
+            if (classFilter.accept(child)) {
+                names.add(child.getName());
+            } else if (child.isDirectory()) {
+                names.add(child.getName() + "/");
+            }
+        }
+        
+        return new ScanIndex.Directory(lastModified, names);
+    }
+    
+    /**
+     * Reads class files, reusing what the index holds for those whose modification time, or else
+     * contents, are unchanged.
+     */
+    private class ReadClassFiles implements Callable<List<ScanIndex.Entry>> {
+        
+        private final List<File> files;
+        private final ScanIndex index;
+        
+        ReadClassFiles(List<File> files, ScanIndex index) {
+            this.files = files;
+            this.index = index;
+        }
+        
+        @Override
+        public List<ScanIndex.Entry> call() throws IOException {
+            List<ScanIndex.Entry> entries = new ArrayList<ScanIndex.Entry>(files.size());
+            
+            for (File file : files) {
+                ScanIndex.Entry indexedEntry = index == null ? null : index.getEntry(file.getAbsolutePath());
+                
+                if (indexedEntry != null && index.isUnchanged(file, indexedEntry.getLastModified())) {
+                    entries.add(indexedEntry);
+                    continue;
+                }
+                
+                long lastModified = file.lastModified();
+                byte[] contents = readFully(new FileInputStream(file));
+                byte[] hash = index == null ? null : ScanIndex.hash(contents);
+                
+                List<ClassFileReader> classFiles = indexedEntry != null && Arrays.equals(indexedEntry.getHash(), hash)
+                        ? indexedEntry.getClassFiles()
+                        : Collections.singletonList(ClassFileReader.read(contents, ROUTE_DESCRIPTOR));
+                
+                entries.add(new ScanIndex.Entry(lastModified, hash, classFiles));
+            }
+            
+            return entries;
+        }
+    }
+    
+    /**
+     * Reads the class files of a jar file, unless the index holds them and the jar file's
+     * modification time, or else contents, are unchanged.
+     */
+    private class ReadJarFile implements Callable<List<ScanIndex.Entry>> {
+        
+        private final File file;
+        private final ScanIndex index;
+        
+        ReadJarFile(File file, ScanIndex index) {
+            this.file = file;
+            this.index = index;
+        }
+        
+        @Override
+        public List<ScanIndex.Entry> call() throws IOException {
+            ScanIndex.Entry indexedEntry = index == null ? null : index.getEntry(file.getAbsolutePath());
+            
+            if (indexedEntry != null && index.isUnchanged(file, indexedEntry.getLastModified())) {
+                return Collections.singletonList(indexedEntry);
+            }
+            
+            long lastModified = file.lastModified();
+            byte[] hash = index == null ? null : ScanIndex.hash(new FileInputStream(file));
+            
+            if (indexedEntry != null && Arrays.equals(indexedEntry.getHash(), hash)) {
+                return Collections.singletonList(new ScanIndex.Entry(lastModified, hash, indexedEntry.getClassFiles()));
+            }
+            
+            List<ClassFileReader> classFiles = new ArrayList<ClassFileReader>();
+            ZipFile zipFile = new ZipFile(file);
+            
+            try {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    
+                    if (entry.isDirectory() || !name.endsWith(".class")) {
+                        continue;
+                    }
+                    
+                    int slash = name.lastIndexOf('/');
+                    String packageName = slash < 0 ? "" : name.substring(0, slash).replace('/', '.');
+                    
+                    if (isIncluded(packageName)) {
+                        classFiles.add(ClassFileReader.read(readFully(zipFile.getInputStream(entry)), ROUTE_DESCRIPTOR));
+                    }
+                }
+            } finally {
+                zipFile.close();
+            }
+            
+            return Collections.singletonList(new ScanIndex.Entry(lastModified, hash, classFiles));
+        }
+    }
+    
+    /**
+     * Determines whether a class or any of its superclasses declares a {@code @Route} method.
+     * Superclasses that were not scanned are read through the class loader.
+     */
+    private boolean hasRoutes(ClassFileReader classFile, Map<String, ClassFileReader> classFiles,
+                              Map<String, ClassFileReader> superclassFiles) throws IOException {
+        while (classFile != null) {
+            if (classFile.isAnnotated()) {
+                return true;
+            }
+            
+            String superclassName = classFile.getSuperclassName();
+            
+            if (superclassName == null || superclassName.startsWith("java.")) {
+                return false;
+            }
+            
+            classFile = classFiles.get(superclassName);
+            
+            if (classFile == null) {
+                if (!superclassFiles.containsKey(superclassName)) {
+                    InputStream in = classLoader.getResourceAsStream(superclassName.replace('.', '/') + ".class");
+                    superclassFiles.put(superclassName, in == null ? null : ClassFileReader.read(readFully(in), ROUTE_DESCRIPTOR));
+                }
+                
+                classFile = superclassFiles.get(superclassName);
+            }
+        }
+        
+        return false;
+    }
+    
+    private boolean isIncluded(String packageName) {
+        for (String excludedPackage : excludedPackages) {
+            if (isWithin(packageName, excludedPackage)) {
+                return false;
+            }
+        }
+        
+        if (includedPackages.isEmpty()) {
+            return true;
+        }
+        
+        for (String includedPackage : includedPackages) {
+            if (isWithin(packageName, includedPackage)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private boolean mayContainIncludedPackages(String packageName) {
+        if (isIncluded(packageName)) {
+            return true;
+        }
+        
+        for (String excludedPackage : excludedPackages) {
+            if (isWithin(packageName, excludedPackage)) {
+                return false;
+            }
+        }
+        
+        for (String includedPackage : includedPackages) {
+            if (isWithin(includedPackage, packageName)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * @return true if a package is another package or one of its subpackages
+     */
+    private static boolean isWithin(String packageName, String otherPackageName) {
+        return packageName.equals(otherPackageName) 
+                || (packageName.startsWith(otherPackageName) && packageName.length() > otherPackageName.length()
+                    && packageName.charAt(otherPackageName.length()) == '.');
+    }
+    
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            byte[] buffer = new byte[4096];
+            int count;
+            
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            
+            return out.toByteArray();
+        } finally {
+            in.close();
         }
     }
     
@@ -128,6 +813,7 @@ public class ConfigGeneratorImpl implements ConfigGenerator {
                                 Param param = (Param) parameterAnnotations[i][j];
                                 
                                 Class<?> paramClass = candidateMethod.getParameterTypes()[i]; 
+                                Class<?> elementClass = getElementClass(paramClass, candidateMethod.getGenericParameterTypes()[i]);
                                 String paramName = param.value(); 
                                 if (paramName == null || paramName.equals("")) {
                                     paramName = param.name();
@@ -136,7 +822,8 @@ public class ConfigGeneratorImpl implements ConfigGenerator {
                                 Class<? extends StringConverter<?>> converterClass = param.converter();
                                 
                                 if (converterClass == null || converterClass.equals(NoopConverter.class)) {
-                                    converterClass = Converters.getMostAppropriateConverterClassFor(paramClass);
+                                    converterClass = Converters.getMostAppropriateConverterClassFor(
+                                            elementClass != null ? elementClass : paramClass);
                                     
                                     if (converterClass == null) {
                                         converterClass = NoopConverter.class;
@@ -147,13 +834,21 @@ public class ConfigGeneratorImpl implements ConfigGenerator {
                                     paramDescriptors = new ArrayList<ParamDescriptor>();
                                 }
                                 
-                                paramDescriptors.add(new ParamDescriptorImpl(paramClass, paramName, converterClass));
+                                paramDescriptors.add(new ParamDescriptorImpl(paramClass, elementClass, paramName, converterClass));
                             }
                         }
                     }
                 }
                 
-                if (paramDescriptors.isEmpty() && candidateMethod.getParameterTypes().length == 2) {
+                boolean streamsParts = candidateMethod.isAnnotationPresent(StreamsParts.class);
+                
+                if (streamsParts) {
+                    if (candidateMethod.getParameterTypes().length != 2
+                            || !MultipartStream.class.equals(candidateMethod.getParameterTypes()[1])) {
+                        LOGGER.severe("Expected a RoutingContext and a MultipartStream parameter to " + candidateMethod);
+                        continue;
+                    }
+                } else if (paramDescriptors.isEmpty() && candidateMethod.getParameterTypes().length == 2) {
                     formClass = candidateMethod.getParameterTypes()[1];
                 }
                 
@@ -166,7 +861,8 @@ public class ConfigGeneratorImpl implements ConfigGenerator {
                                                                           completesWorkflow,
                                                                           workflowName,
                                                                           formClass,
-                                                                          paramDescriptors));
+                                                                          paramDescriptors,
+                                                                          streamsParts));
                 } catch (DuplicateDescriptorException e) {
                     LOGGER.severe("Duplicate descriptor method: " + candidateMethod);
                     continue;
@@ -177,4 +873,48 @@ public class ConfigGeneratorImpl implements ConfigGenerator {
         }
     }
     
+    /**
+     * Determines the class of the elements of a param that is bound to every value of a request
+     * parameter, which is an array, or a {@code Collection} whose element type is a class. The
+     * collection may be declared as any type that an {@code ArrayList}, {@code LinkedHashSet} or
+     * {@code TreeSet} can be assigned to, such as {@code List}, {@code Set} or
+     * {@code SortedSet}, or as a concrete collection class with a public no-arg constructor.
+     * 
+     * @return the element class, or null if the param is bound to a single value
+     */
+    private Class<?> getElementClass(Class<?> paramClass, Type genericParamType) {
+        if (paramClass.isArray()) {
+            return paramClass.getComponentType();
+        }
+        
+        if (Collection.class.isAssignableFrom(paramClass) && isInstantiableCollection(paramClass)
+                && genericParamType instanceof ParameterizedType) {
+            Type[] typeArguments = ((ParameterizedType) genericParamType).getActualTypeArguments();
+            
+            if (typeArguments.length == 1 && typeArguments[0] instanceof Class) {
+                return (Class<?>) typeArguments[0];
+            }
+        }
+        
+        return null;
+    }
+    
+    private boolean isInstantiableCollection(Class<?> collectionClass) {
+        if (collectionClass.isAssignableFrom(ArrayList.class) 
+                || collectionClass.isAssignableFrom(LinkedHashSet.class)
+                || collectionClass.isAssignableFrom(TreeSet.class)) {
+            return true;
+        }
+        
+        if (collectionClass.isInterface() || Modifier.isAbstract(collectionClass.getModifiers())) {
+            return false;
+        }
+        
+        try {
+            return Modifier.isPublic(collectionClass.getConstructor().getModifiers());
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+    
 }
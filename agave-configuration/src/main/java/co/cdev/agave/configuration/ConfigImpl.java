@@ -2,45 +2,93 @@ package co.cdev.agave.configuration;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import co.cdev.agave.HttpMethod;
 import co.cdev.agave.URIPattern;
 import co.cdev.agave.URIPatternImpl;
 
+/**
+ * A config that keeps its descriptors in order of specificity, along with hash indexes of them by
+ * URI pattern, by URI pattern and HTTP method, by handler class and by workflow name. Adding a
+ * descriptor only compares it with the descriptors that share its URI pattern and HTTP method,
+ * which are the only ones it can be equal to, and each lookup is a single hash lookup. A lookup
+ * returns a copy of the descriptors it found, which callers may change and which does not follow
+ * later changes to the config; copying an index, which is already sorted, takes linear time. The
+ * view methods return an unmodifiable view of an index instead, which allocates nothing, for
+ * callers that only read the descriptors before the config changes again.
+ * Descriptors read from a configuration file are indexed by the name of their handler class, so
+ * indexing them does not load any classes.
+ */
 public class ConfigImpl implements Config {
 
     private static final long serialVersionUID = 1L;
 
     private final SortedSet<HandlerDescriptor> handlerDescriptors;
     
+    private transient Map<String, IndexEntry> uriPatternIndex;
+    private transient Map<String, IndexEntry> routeIndex;
+    private transient Map<String, IndexEntry> handlerClassIndex;
+    private transient Map<String, IndexEntry> workflowIndex;
+    
     public ConfigImpl() {
         handlerDescriptors = new TreeSet<HandlerDescriptor>();
+        createIndexes();
     }
     
     @Override
     public void addHandlerDescriptor(HandlerDescriptor handlerDescriptor) throws DuplicateDescriptorException {
-        for (HandlerDescriptor existingHandlerDescriptor : handlerDescriptors) {
-            if (existingHandlerDescriptor.equals(handlerDescriptor)) {
-                throw new DuplicateDescriptorException(existingHandlerDescriptor, handlerDescriptor);
+        SortedSet<HandlerDescriptor> route = routeIndex.get(routeKey(handlerDescriptor));
+        
+        if (route != null) {
+            for (HandlerDescriptor existingHandlerDescriptor : route) {
+                if (existingHandlerDescriptor.equals(handlerDescriptor)) {
+                    throw new DuplicateDescriptorException(existingHandlerDescriptor, handlerDescriptor);
+                }
             }
         }
-        handlerDescriptors.add(handlerDescriptor);
+        
+        if (handlerDescriptors.add(handlerDescriptor)) {
+            index(handlerDescriptor);
+        }
     }
     
     @Override
     public void removeHandlerDescriptor(HandlerDescriptor handlerDescriptor) {
-        handlerDescriptors.remove(handlerDescriptor);
+        SortedSet<HandlerDescriptor> route = routeIndex.get(routeKey(handlerDescriptor));
+        
+        if (route == null) {
+            return;
+        }
+        
+        // The descriptor that is removed is the one that sorts the same, which may not be equal
+        
+        for (HandlerDescriptor existingHandlerDescriptor : route) {
+            if (existingHandlerDescriptor.compareTo(handlerDescriptor) == 0) {
+                handlerDescriptors.remove(existingHandlerDescriptor);
+                unindex(existingHandlerDescriptor);
+                return;
+            }
+        }
     }
 
     @Override
@@ -55,51 +103,262 @@ public class ConfigImpl implements Config {
     
     @Override
     public Set<HandlerDescriptor> getCandidatesFor(URIPattern uriPattern) {
-        Set<HandlerDescriptor> candidates = new TreeSet<HandlerDescriptor>();
+        return uriPattern == null ? new TreeSet<HandlerDescriptor>() : lookup(uriPatternIndex, uriPatternKey(uriPattern));
+    }
+    
+    @Override
+    public Set<HandlerDescriptor> getCandidatesFor(URIPattern uriPattern, HttpMethod httpMethod) {
+        return uriPattern == null || httpMethod == null
+                ? new TreeSet<HandlerDescriptor>()
+                : lookup(routeIndex, routeKey(uriPattern, httpMethod));
+    }
+    
+    @Override
+    public Set<HandlerDescriptor> getHandlerDescriptorsFor(Class<?> handlerClass) {
+        return handlerClass == null ? new TreeSet<HandlerDescriptor>() : lookup(handlerClassIndex, handlerClass.getName());
+    }
+    
+    @Override
+    public Set<HandlerDescriptor> getWorkflowHandlerDescriptors(String workflowName) {
+        return workflowName == null ? new TreeSet<HandlerDescriptor>() : lookup(workflowIndex, workflowName);
+    }
+    
+    private static Set<HandlerDescriptor> lookup(Map<String, IndexEntry> index, String key) {
+        IndexEntry handlerDescriptors = index.get(key);
+        return handlerDescriptors == null
+                ? new TreeSet<HandlerDescriptor>()
+                : new TreeSet<HandlerDescriptor>(handlerDescriptors);
+    }
+    
+    @Override
+    public Set<HandlerDescriptor> viewCandidatesFor(URIPattern uriPattern) {
+        return uriPattern == null ? Collections.<HandlerDescriptor>emptySet() : view(uriPatternIndex, uriPatternKey(uriPattern));
+    }
+    
+    @Override
+    public Set<HandlerDescriptor> viewCandidatesFor(URIPattern uriPattern, HttpMethod httpMethod) {
+        return uriPattern == null || httpMethod == null
+                ? Collections.<HandlerDescriptor>emptySet()
+                : view(routeIndex, routeKey(uriPattern, httpMethod));
+    }
+    
+    @Override
+    public Set<HandlerDescriptor> viewHandlerDescriptorsFor(Class<?> handlerClass) {
+        return handlerClass == null ? Collections.<HandlerDescriptor>emptySet() : view(handlerClassIndex, handlerClass.getName());
+    }
+    
+    @Override
+    public Set<HandlerDescriptor> viewWorkflowHandlerDescriptors(String workflowName) {
+        return workflowName == null ? Collections.<HandlerDescriptor>emptySet() : view(workflowIndex, workflowName);
+    }
+    
+    private static Set<HandlerDescriptor> view(Map<String, IndexEntry> index, String key) {
+        IndexEntry handlerDescriptors = index.get(key);
+        return handlerDescriptors == null ? Collections.<HandlerDescriptor>emptySet() : handlerDescriptors.view;
+    }
+    
+    private void createIndexes() {
+        uriPatternIndex = new HashMap<String, IndexEntry>();
+        routeIndex = new HashMap<String, IndexEntry>();
+        handlerClassIndex = new HashMap<String, IndexEntry>();
+        workflowIndex = new HashMap<String, IndexEntry>();
+    }
+    
+    private void index(HandlerDescriptor handlerDescriptor) {
+        add(uriPatternIndex, uriPatternKey(handlerDescriptor.getURIPattern()), handlerDescriptor);
+        add(routeIndex, routeKey(handlerDescriptor), handlerDescriptor);
+        add(handlerClassIndex, handlerClassName(handlerDescriptor), handlerDescriptor);
         
-        if (uriPattern != null) {
-            for (HandlerDescriptor handlerDescriptor : handlerDescriptors) {
-                if (handlerDescriptor.getURIPattern().equals(uriPattern)) {
-                    candidates.add(handlerDescriptor);
-                }
+        if (handlerDescriptor.getWorkflowName() != null) {
+            add(workflowIndex, handlerDescriptor.getWorkflowName(), handlerDescriptor);
+        }
+    }
+    
+    private void unindex(HandlerDescriptor handlerDescriptor) {
+        remove(uriPatternIndex, uriPatternKey(handlerDescriptor.getURIPattern()), handlerDescriptor);
+        remove(routeIndex, routeKey(handlerDescriptor), handlerDescriptor);
+        remove(handlerClassIndex, handlerClassName(handlerDescriptor), handlerDescriptor);
+        
+        if (handlerDescriptor.getWorkflowName() != null) {
+            remove(workflowIndex, handlerDescriptor.getWorkflowName(), handlerDescriptor);
+        }
+    }
+    
+    private static void add(Map<String, IndexEntry> index, String key,
+                            HandlerDescriptor handlerDescriptor) {
+        IndexEntry handlerDescriptors = index.get(key);
+        
+        if (handlerDescriptors == null) {
+            handlerDescriptors = new IndexEntry();
+            index.put(key, handlerDescriptors);
+        }
+        
+        handlerDescriptors.add(handlerDescriptor);
+    }
+    
+    private static void remove(Map<String, IndexEntry> index, String key,
+                               HandlerDescriptor handlerDescriptor) {
+        IndexEntry handlerDescriptors = index.get(key);
+        
+        if (handlerDescriptors != null) {
+            handlerDescriptors.remove(handlerDescriptor);
+            
+            if (handlerDescriptors.isEmpty()) {
+                index.remove(key);
             }
         }
+    }
+    
+    /**
+     * URI patterns are equal regardless of case, so they are indexed by their case folded form,
+     * which is folded the same way that {@link String#equalsIgnoreCase(String)} compares.
+     */
+    private static String uriPatternKey(URIPattern uriPattern) {
+        char[] chars = uriPattern.toString().toCharArray();
+        
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
         
-        return candidates;
+        return new String(chars);
     }
     
+    private static String routeKey(URIPattern uriPattern, HttpMethod httpMethod) {
+        return httpMethod.name() + ' ' + uriPatternKey(uriPattern);
+    }
+    
+    private static String routeKey(HandlerDescriptor handlerDescriptor) {
+        return routeKey(handlerDescriptor.getURIPattern(), handlerDescriptor.getHttpMethod());
+    }
+    
+    private static String handlerClassName(HandlerDescriptor handlerDescriptor) {
+        if (handlerDescriptor instanceof StoredHandlerDescriptor) {
+            return ((StoredHandlerDescriptor) handlerDescriptor).getHandlerClassName();
+        }
+        
+        return handlerDescriptor.getHandlerClass().getName();
+    }
+    
+    /**
+     * Writes the config to a temporary file next to the config file and then renames it over the
+     * config file, so a reader that polls the file never sees it partly written.
+     */
     @Override
     public void writeToFile(File configFile) throws IOException {
         if (configFile == null) {
             throw new NullPointerException("Config file can not be null");
         }
-        writeToOutputStream(new FileOutputStream(configFile));
+        
+        File temporaryFile = new File(configFile.getAbsoluteFile().getParentFile(), configFile.getName() + ".tmp");
+        boolean written = false;
+        
+        try {
+            writeToOutputStream(new FileOutputStream(temporaryFile));
+            written = true;
+        } finally {
+            if (!written) {
+                temporaryFile.delete();
+            }
+        }
+        
+        if (!temporaryFile.renameTo(configFile)) {
+            configFile.delete();
+            
+            if (!temporaryFile.renameTo(configFile)) {
+                temporaryFile.delete();
+                throw new IOException("Unable to replace the config file " + configFile);
+            }
+        }
     }
 
+    /**
+     * Writes the config in the binary format, with the descriptors in their order of specificity.
+     */
     @Override
     public void writeToOutputStream(OutputStream out) throws IOException {
         if (out == null) {
             throw new NullPointerException("Output stream can not be null");
         }
         
-        ObjectOutputStream objectOut = new ObjectOutputStream(new BufferedOutputStream(out));
-        objectOut.writeObject(handlerDescriptors);
-        objectOut.flush();
-        objectOut.close();
+        OutputStream bufferedOut = new BufferedOutputStream(out);
+        
+        try {
+            ConfigFile.write(handlerDescriptors, bufferedOut);
+        } finally {
+            bufferedOut.close();
+        }
     }
     
+    /**
+     * Reads a config file by mapping it into memory. Files written by Java serialization, which
+     * earlier versions used, are rejected rather than deserialized, and must be generated again.
+     */
     public void readFromFile(File configFile) throws IOException, ClassNotFoundException {
+        RandomAccessFile file = new RandomAccessFile(configFile, "r");
+        
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            
+            if (ConfigFile.isConfigFile(buffer)) {
+                setHandlerDescriptors(ConfigFile.read(buffer, getClassLoader()));
+                return;
+            }
+        } finally {
+            file.close();
+        }
+        
         readFromInputStream(new FileInputStream(configFile));
     }
     
     public void readFromInputStream(InputStream in) throws IOException, ClassNotFoundException {
-        ObjectInputStream objectIn = new ObjectInputStream(new BufferedInputStream(in));
-        
-        @SuppressWarnings("unchecked")
-        Set<HandlerDescriptor> handlerDescriptors = (Set<HandlerDescriptor>) objectIn.readObject();
+        BufferedInputStream bufferedIn = new BufferedInputStream(in);
+        bufferedIn.mark(4);
+        DataInputStream dataIn = new DataInputStream(bufferedIn);
+        int magic = dataIn.readInt();
+        bufferedIn.reset();
         
+        if (magic == ConfigFile.MAGIC) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            
+            while ((count = bufferedIn.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            
+            setHandlerDescriptors(ConfigFile.read(ByteBuffer.wrap(out.toByteArray()), getClassLoader()));
+        } else {
+            throw new IOException("The config is not in the binary config format; configs written by Java "
+                    + "serialization are no longer read, so it must be generated again");
+        }
+    }
+    
+    private void setHandlerDescriptors(Collection<HandlerDescriptor> handlerDescriptors) {
         this.handlerDescriptors.clear();
         this.handlerDescriptors.addAll(handlerDescriptors);
+        reindex();
+    }
+    
+    private void reindex() {
+        createIndexes();
+        
+        for (HandlerDescriptor handlerDescriptor : handlerDescriptors) {
+            index(handlerDescriptor);
+        }
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        reindex();
+    }
+    
+    /**
+     * @return the class loader that the classes of descriptors read from files are loaded with
+     */
+    private ClassLoader getClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : ConfigImpl.class.getClassLoader();
     }
     
     @Override
@@ -131,4 +390,16 @@ public class ConfigImpl implements Config {
         return s.toString();
     }
     
+    /**
+     * The descriptors of an index that share a key, in order of specificity, along with an
+     * unmodifiable view of them that is handed out without being copied.
+     */
+    private static final class IndexEntry extends TreeSet<HandlerDescriptor> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        final Set<HandlerDescriptor> view = Collections.unmodifiableSet(this);
+        
+    }
+    
 }
@@ -0,0 +1,204 @@
+package co.cdev.agave.configuration;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionContext;
+
+import co.cdev.agave.Dirtyable;
+
+/**
+ * Fronts an {@code HttpSession} for the duration of a single request. Attributes that are read
+ * are remembered, and attributes that are set to a new value or removed are written through to
+ * the underlying session at once, so they are seen by concurrent requests and by
+ * {@code HttpSessionBindingListener}s just as they would be without this facade. Only setting an
+ * attribute to the same instance it was read as is held back until {@link #flush()} is called,
+ * and it is then skipped unless the instance is {@link Dirtyable} and dirty. An attribute that
+ * was only read is also written by {@code flush()} if it is {@code Dirtyable} and dirty. This
+ * keeps replicating containers from serializing and shipping attributes that did not change.
+ */
+@SuppressWarnings("deprecation")
+public class DirtyTrackingSession implements HttpSession {
+
+    private final HttpSession session;
+    private final Map<String, Object> readAttributes = new HashMap<String, Object>();
+    private final Set<String> pendingAttributeNames = new LinkedHashSet<String>();
+    private int pendingAvoidedWrites;
+    private long avoidedWriteCount;
+    private boolean invalidated;
+
+    public DirtyTrackingSession(HttpSession session) {
+        this.session = session;
+    }
+
+    public HttpSession getSession() {
+        return session;
+    }
+
+    /**
+     * Writes the attributes that were read and have changed since to the underlying session. This
+     * can be called more than once per request.
+     *
+     * @return the number of writes that were avoided since the last flush
+     */
+    public int flush() {
+        if (invalidated) {
+            pendingAttributeNames.clear();
+            pendingAvoidedWrites = 0;
+            return 0;
+        }
+
+        int avoidedWrites = pendingAvoidedWrites;
+
+        for (Map.Entry<String, Object> readAttribute : readAttributes.entrySet()) {
+            Object value = readAttribute.getValue();
+
+            if (isDirty(value)) {
+                session.setAttribute(readAttribute.getKey(), value);
+                markClean(value);
+            } else if (pendingAttributeNames.contains(readAttribute.getKey())) {
+                avoidedWrites++;
+            }
+        }
+
+        pendingAttributeNames.clear();
+        pendingAvoidedWrites = 0;
+        avoidedWriteCount += avoidedWrites;
+
+        return avoidedWrites;
+    }
+
+    /**
+     * @return the total number of writes that were avoided over the life of this session facade
+     */
+    public long getAvoidedWriteCount() {
+        return avoidedWriteCount;
+    }
+
+    private boolean isDirty(Object value) {
+        return value instanceof Dirtyable && ((Dirtyable) value).isDirty();
+    }
+
+    private void markClean(Object value) {
+        if (value instanceof Dirtyable) {
+            ((Dirtyable) value).markClean();
+        }
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        if (readAttributes.containsKey(name)) {
+            return readAttributes.get(name);
+        }
+
+        Object value = session.getAttribute(name);
+        readAttributes.put(name, value);
+        return value;
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            removeAttribute(name);
+        } else if (readAttributes.containsKey(name) && readAttributes.get(name) == value) {
+            pendingAttributeNames.add(name);
+        } else {
+            session.setAttribute(name, value);
+            markClean(value);
+            readAttributes.put(name, value);
+            pendingAttributeNames.remove(name);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        if (readAttributes.containsKey(name) && readAttributes.get(name) == null) {
+            pendingAvoidedWrites++;
+        } else {
+            session.removeAttribute(name);
+            readAttributes.put(name, null);
+            pendingAttributeNames.remove(name);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Enumeration<String> getAttributeNames() {
+        return session.getAttributeNames();
+    }
+
+    @Override
+    public void invalidate() {
+        invalidated = true;
+        pendingAttributeNames.clear();
+        readAttributes.clear();
+        session.invalidate();
+    }
+
+    @Override
+    public long getCreationTime() {
+        return session.getCreationTime();
+    }
+
+    @Override
+    public String getId() {
+        return session.getId();
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        return session.getLastAccessedTime();
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return session.getServletContext();
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        session.setMaxInactiveInterval(interval);
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return session.getMaxInactiveInterval();
+    }
+
+    @Override
+    public HttpSessionContext getSessionContext() {
+        return session.getSessionContext();
+    }
+
+    @Override
+    public Object getValue(String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public String[] getValueNames() {
+        return Collections.list(getAttributeNames()).toArray(new String[0]);
+    }
+
+    @Override
+    public void putValue(String name, Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeValue(String name) {
+        removeAttribute(name);
+    }
+
+    @Override
+    public boolean isNew() {
+        return session.isNew();
+    }
+
+}
@@ -18,6 +18,7 @@ public interface HandlerDescriptor extends Comparable<HandlerDescriptor>, Serial
     public boolean initiatesWorkflow();
     public boolean completesWorkflow();
     public String getWorkflowName();
+    public boolean streamsParts();
 
     @Override
     public boolean equals(Object that);
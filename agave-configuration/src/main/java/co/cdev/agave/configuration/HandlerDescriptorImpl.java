@@ -58,6 +58,7 @@ public class HandlerDescriptorImpl implements HandlerDescriptor {
     private final String                workflowName;
     private final Class<?>              formClass;
     private final List<ParamDescriptor> paramDescriptors;
+    private final boolean               streamsParts;
     
     public HandlerDescriptorImpl(Class<?>              handlerClass,
                                  Method                handlerMethod,
@@ -68,6 +69,24 @@ public class HandlerDescriptorImpl implements HandlerDescriptor {
                                  String                workflowName,
                                  Class<?>              formClass,
                                  List<ParamDescriptor> paramDescriptors) {
+        this(handlerClass, handlerMethod, uriPattern, httpMethod, initiatesWorkflow, completesWorkflow, workflowName,
+                formClass, paramDescriptors, false);
+    }
+    
+    /**
+     * @param streamsParts whether the handler reads the parts of multipart requests as a
+     *        {@code MultipartStream}
+     */
+    public HandlerDescriptorImpl(Class<?>              handlerClass,
+                                 Method                handlerMethod,
+                                 URIPattern            uriPattern,
+                                 HttpMethod            httpMethod,
+                                 boolean               initiatesWorkflow,
+                                 boolean               completesWorkflow,
+                                 String                workflowName,
+                                 Class<?>              formClass,
+                                 List<ParamDescriptor> paramDescriptors,
+                                 boolean               streamsParts) {
         this.handlerClass = handlerClass;
         this.handlerMethod = handlerMethod;
         this.uriPattern = uriPattern;
@@ -77,6 +96,7 @@ public class HandlerDescriptorImpl implements HandlerDescriptor {
         this.workflowName = workflowName;
         this.formClass = formClass;
         this.paramDescriptors = paramDescriptors;
+        this.streamsParts = streamsParts;
     }
 
     public URIPattern getURIPattern() {
@@ -115,6 +135,10 @@ public class HandlerDescriptorImpl implements HandlerDescriptor {
         return workflowName;
     }
 
+    public boolean streamsParts() {
+        return streamsParts;
+    }
+
     /**
      * Establishes a basis of comparison between two handler descriptors. This is leveraged when
      * choosing an appropriate handler to field a request.
@@ -180,12 +204,17 @@ public class HandlerDescriptorImpl implements HandlerDescriptor {
     
     @Override
     public int hashCode() {
+        return hashCode(uriPattern, httpMethod);
+    }
+
+    /**
+     * Hashes only the URI pattern and HTTP method, which equal descriptors always share, so that a
+     * {@link StoredHandlerDescriptor} can be hashed the same way without loading its classes.
+     */
+    static int hashCode(URIPattern uriPattern, HttpMethod httpMethod) {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((handlerClass == null) ? 0 : handlerClass.getCanonicalName().hashCode());
-        result = prime * result + ((handlerMethod == null) ? 0 : handlerMethod.hashCode());
-        result = prime * result + ((httpMethod == null) ? 0 : httpMethod.hashCode());
-        result = prime * result + ((paramDescriptors == null) ? 0 : paramDescriptors.hashCode());
+        result = prime * result + ((httpMethod == null) ? 0 : httpMethod.name().hashCode());
         result = prime * result + ((uriPattern == null) ? 0 : uriPattern.hashCode());
         return result;
     }
@@ -196,6 +225,8 @@ public class HandlerDescriptorImpl implements HandlerDescriptor {
             return true;
         if (obj == null)
             return false;
+        if (obj instanceof StoredHandlerDescriptor)
+            return obj.equals(this);
         HandlerDescriptorImpl other = (HandlerDescriptorImpl) obj;
         if (handlerClass == null) {
             if (other.handlerClass != null)
@@ -227,7 +258,8 @@ public class HandlerDescriptorImpl implements HandlerDescriptor {
         return "HandlerDescriptorImpl [handlerClass=" + handlerClass + ", handlerMethod=" + handlerMethod
                 + ", uriPattern=" + uriPattern + ", httpMethod=" + httpMethod + ", initiatesWorkflow="
                 + initiatesWorkflow + ", completesWorkflow=" + completesWorkflow + ", workflowName=" + workflowName
-                + ", formClass=" + formClass + ", paramDescriptors=" + paramDescriptors + "]";
+                + ", formClass=" + formClass + ", paramDescriptors=" + paramDescriptors + ", streamsParts=" + streamsParts
+                + "]";
     }
     
     // Serialization
@@ -254,6 +286,7 @@ public class HandlerDescriptorImpl implements HandlerDescriptor {
         private final String                workflowName;
         private final Class<?>              formClass;
         private final List<ParamDescriptor> paramDescriptors;
+        private final boolean               streamsParts;
         
         SerializationProxy(HandlerDescriptorImpl handlerDescriptor) {
             handlerClass = handlerDescriptor.getHandlerClass();
@@ -266,6 +299,7 @@ public class HandlerDescriptorImpl implements HandlerDescriptor {
             workflowName = handlerDescriptor.getWorkflowName();
             formClass = handlerDescriptor.getFormClass();
             paramDescriptors = handlerDescriptor.getParamDescriptors();
+            streamsParts = handlerDescriptor.streamsParts();
         }
         
         private Object readResolve() {
@@ -285,7 +319,8 @@ public class HandlerDescriptorImpl implements HandlerDescriptor {
                                                                             completesWorkflow,
                                                                             workflowName,
                                                                             formClass,
-                                                                            paramDescriptors);
+                                                                            paramDescriptors,
+                                                                            streamsParts);
             
             return handlerDescriptor;
         }
@@ -8,8 +8,22 @@ public interface ParamDescriptor extends Serializable {
     
     public Class<?> getParamClass();
 
+    /**
+     * @return the class of the elements of an array or {@code Collection} param, which is
+     *         bound to all of the values of a request parameter, or null if the param is bound to a
+     *         single value
+     */
+    public Class<?> getElementClass();
+
     public String getName();
 
     public Class<? extends StringConverter<?>> getConverterClass();
+
+    /**
+     * @return the shared converter for the param, or for each of its elements if it has an element
+     *         class, which is resolved when the descriptor is created, or null if the param is not
+     *         converted
+     */
+    public StringConverter<?> getConverter();
     
 }
@@ -4,6 +4,8 @@ import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
 
+import co.cdev.agave.conversion.ConverterRegistry;
+import co.cdev.agave.conversion.ParamConverter;
 import co.cdev.agave.conversion.StringConverter;
 
 public class ParamDescriptorImpl implements ParamDescriptor {
@@ -11,19 +13,40 @@ public class ParamDescriptorImpl implements ParamDescriptor {
     private static final long serialVersionUID = 1L;
     
     private final Class<?> paramClass;
+    private final Class<?> elementClass;
     private final String name;
     private final Class<? extends StringConverter<?>> converterClass;
+    private final transient StringConverter<?> converter;
     
     public ParamDescriptorImpl(Class<?> parameterClass, String name, Class<? extends StringConverter<?>> converterClass) {
+        this(parameterClass, null, name, converterClass);
+    }
+    
+    /**
+     * @param elementClass the class of the elements of a multi-valued param; the component type is
+     *        used for arrays if this is null
+     */
+    public ParamDescriptorImpl(Class<?> parameterClass, Class<?> elementClass, String name, 
+                               Class<? extends StringConverter<?>> converterClass) {
+        if (elementClass == null && parameterClass != null && parameterClass.isArray()) {
+            elementClass = parameterClass.getComponentType();
+        }
+        
         this.paramClass = parameterClass;
+        this.elementClass = elementClass;
         this.name = name;
         this.converterClass = converterClass;
+        this.converter = resolveConverter(elementClass != null ? elementClass : parameterClass, converterClass);
     }
 
     public Class<? extends StringConverter<?>> getConverterClass() {
         return converterClass;
     }
 
+    public StringConverter<?> getConverter() {
+        return converter;
+    }
+
     public String getName() {
         return name;
     }
@@ -32,11 +55,16 @@ public class ParamDescriptorImpl implements ParamDescriptor {
         return paramClass;
     }
     
+    public Class<?> getElementClass() {
+        return elementClass;
+    }
+    
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((converterClass == null) ? 0 : converterClass.hashCode());
+        result = prime * result + ((elementClass == null) ? 0 : elementClass.hashCode());
         result = prime * result + ((name == null) ? 0 : name.hashCode());
         result = prime * result + ((paramClass == null) ? 0 : paramClass.hashCode());
         return result;
@@ -54,6 +82,11 @@ public class ParamDescriptorImpl implements ParamDescriptor {
                 return false;
         } else if (!converterClass.equals(other.converterClass))
             return false;
+        if (elementClass == null) {
+            if (other.elementClass != null)
+                return false;
+        } else if (!elementClass.equals(other.elementClass))
+            return false;
         if (name == null) {
             if (other.name != null)
                 return false;
@@ -72,6 +105,9 @@ public class ParamDescriptorImpl implements ParamDescriptor {
         StringBuilder representation = new StringBuilder();
         representation.append("[");
         representation.append("paramClass:").append(paramClass.getName());
+        if (elementClass != null) {
+            representation.append(",").append("elementClass:").append(elementClass.getName());
+        }
         representation.append(",").append("name:").append(name);
         if (converterClass != null) {
             representation.append(",").append("converter:").append(converterClass.getName());
@@ -80,6 +116,18 @@ public class ParamDescriptorImpl implements ParamDescriptor {
         return representation.toString();
     }
     
+    private static StringConverter<?> resolveConverter(Class<?> paramClass,
+                                                       Class<? extends StringConverter<?>> converterClass) {
+        ConverterRegistry registry = ConverterRegistry.getInstance();
+
+        if (converterClass != null) {
+            return registry.getConverter(converterClass);
+        }
+
+        ParamConverter<?, ?> converter = paramClass == null ? null : registry.getConverterFor(paramClass);
+        return converter instanceof StringConverter ? (StringConverter<?>) converter : null;
+    }
+    
     // Serialization
     
     private Object writeReplace() {
@@ -97,15 +145,17 @@ public class ParamDescriptorImpl implements ParamDescriptor {
         private final Class<?> paramClass;
         private final String name;
         private final Class<? extends StringConverter<?>> converter;
+        private final Class<?> elementClass;
         
         SerializationProxy(ParamDescriptorImpl paramDescriptor) {
             paramClass = paramDescriptor.getParamClass();
             name = paramDescriptor.getName();
             converter = paramDescriptor.getConverterClass();
+            elementClass = paramDescriptor.getElementClass();
         }
         
         private Object readResolve() {
-            return new ParamDescriptorImpl(paramClass, name, converter);
+            return new ParamDescriptorImpl(paramClass, elementClass, name, converter);
         }
     }
     
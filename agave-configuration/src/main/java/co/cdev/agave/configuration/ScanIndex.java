@@ -0,0 +1,397 @@
+package co.cdev.agave.configuration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers what a scan found in each class file and jar file, so that a later scan only has to
+ * read the files that have changed. Each file is recorded with its modification time, a SHA-256
+ * hash of its contents and the classes that were read from it, and each directory with its
+ * modification time and the names of its class files and subdirectories. The handler descriptors
+ * that the scan produced are kept alongside, in the binary format of configuration files, so the
+ * handler classes of unchanged files need not be loaded either.
+ *
+ * <p>
+ * A file whose modification time is unchanged is trusted without being read, and a directory whose
+ * modification time is unchanged is not listed again, so an unchanged tree costs a single call to
+ * the file system for each file. A file whose modification time differs is hashed, and is only
+ * read again if its contents changed. Since file systems record modification times with a coarse
+ * granularity, a file or directory that was modified shortly before the scan that recorded it
+ * started could have been modified again without its time changing, so it is never trusted on its
+ * modification time alone. An index that was written for other included or excluded packages, or
+ * by another version, is ignored.
+ * </p>
+ */
+final class ScanIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(ScanIndex.class.getName());
+
+    static final int MAGIC = 0x41475349;
+    static final short VERSION = 2;
+
+    /**
+     * The coarsest granularity with which a file system records modification times, in
+     * milliseconds.
+     */
+    static final long TIMESTAMP_GRANULARITY = 2000;
+
+    private final List<String> includedPackages;
+    private final List<String> excludedPackages;
+    private long scanStarted;
+    private final Map<String, Directory> directories = new LinkedHashMap<String, Directory>();
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+    private final List<HandlerDescriptor> handlerDescriptors = new ArrayList<HandlerDescriptor>();
+    private final Map<String, List<HandlerDescriptor>> classHandlerDescriptors = new HashMap<String, List<HandlerDescriptor>>();
+
+    /**
+     * @param scanStarted the time at which the scan that fills the index started
+     */
+    ScanIndex(Collection<String> includedPackages, Collection<String> excludedPackages, long scanStarted) {
+        this.includedPackages = new ArrayList<String>(includedPackages);
+        this.excludedPackages = new ArrayList<String>(excludedPackages);
+        this.scanStarted = scanStarted;
+    }
+
+    /**
+     * What was listed in a directory.
+     */
+    static final class Directory {
+
+        private final long lastModified;
+        private final List<String> names;
+
+        /**
+         * @param names the names of the class files and subdirectories, sorted, where those of
+         *        subdirectories end with a slash
+         */
+        Directory(long lastModified, List<String> names) {
+            this.lastModified = lastModified;
+            this.names = names;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        List<String> getNames() {
+            return names;
+        }
+    }
+
+    /**
+     * What was read from a class file or a jar file.
+     */
+    static final class Entry {
+
+        private final long lastModified;
+        private final byte[] hash;
+        private final List<ClassFileReader> classFiles;
+
+        Entry(long lastModified, byte[] hash, List<ClassFileReader> classFiles) {
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.classFiles = classFiles;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        byte[] getHash() {
+            return hash;
+        }
+
+        List<ClassFileReader> getClassFiles() {
+            return classFiles;
+        }
+    }
+
+    /**
+     * Reads an index, or creates an empty one if the file does not exist or cannot be used.
+     *
+     * @param classLoader the class loader that the classes of the stored descriptors are loaded with
+     */
+    static ScanIndex read(File indexFile, ClassLoader classLoader, Collection<String> includedPackages,
+                          Collection<String> excludedPackages) {
+        ScanIndex index = new ScanIndex(includedPackages, excludedPackages, 0);
+
+        if (!indexFile.isFile()) {
+            return index;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 65536));
+
+            try {
+                if (in.readInt() != MAGIC || in.readShort() != VERSION
+                        || !index.includedPackages.equals(readStrings(in))
+                        || !index.excludedPackages.equals(readStrings(in))) {
+                    return index;
+                }
+
+                index.scanStarted = in.readLong();
+
+                int directoryCount = in.readInt();
+
+                for (int i = 0; i < directoryCount; i++) {
+                    String path = in.readUTF();
+                    long lastModified = in.readLong();
+                    index.directories.put(path, new Directory(lastModified, readStrings(in)));
+                }
+
+                int entryCount = in.readInt();
+
+                for (int i = 0; i < entryCount; i++) {
+                    String path = in.readUTF();
+                    long lastModified = in.readLong();
+                    byte[] hash = new byte[in.readUnsignedShort()];
+                    in.readFully(hash);
+
+                    int classCount = in.readInt();
+                    List<ClassFileReader> classFiles = new ArrayList<ClassFileReader>(classCount);
+
+                    for (int j = 0; j < classCount; j++) {
+                        String className = in.readUTF();
+                        String superclassName = in.readBoolean() ? in.readUTF() : null;
+                        classFiles.add(new ClassFileReader(className, superclassName, in.readBoolean()));
+                    }
+
+                    index.entries.put(path, new Entry(lastModified, hash, classFiles));
+                }
+
+                byte[] config = new byte[in.readInt()];
+                in.readFully(config);
+
+                for (HandlerDescriptor handlerDescriptor : ConfigFile.read(ByteBuffer.wrap(config), classLoader)) {
+                    index.addHandlerDescriptor(((StoredHandlerDescriptor) handlerDescriptor).getHandlerClassName(),
+                            handlerDescriptor);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (EOFException ex) {
+            LOGGER.warning("Ignoring the truncated scan index " + indexFile);
+            return new ScanIndex(includedPackages, excludedPackages, 0);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Ignoring the unreadable scan index " + indexFile, ex);
+            return new ScanIndex(includedPackages, excludedPackages, 0);
+        }
+
+        return index;
+    }
+
+    /**
+     * Writes the index to a temporary file that then replaces the index file, so a scan that is
+     * interrupted never leaves a partial index behind.
+     */
+    void write(File indexFile) throws IOException {
+        File directory = indexFile.getAbsoluteFile().getParentFile();
+
+        if (directory != null && !directory.isDirectory()) {
+            directory.mkdirs();
+        }
+
+        File temporaryFile = new File(directory, indexFile.getName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 65536));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            writeStrings(out, includedPackages);
+            writeStrings(out, excludedPackages);
+            out.writeLong(scanStarted);
+
+            out.writeInt(directories.size());
+
+            for (Map.Entry<String, Directory> listing : directories.entrySet()) {
+                out.writeUTF(listing.getKey());
+                out.writeLong(listing.getValue().lastModified);
+                writeStrings(out, listing.getValue().names);
+            }
+
+            out.writeInt(entries.size());
+
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().lastModified);
+                out.writeShort(entry.getValue().hash.length);
+                out.write(entry.getValue().hash);
+                out.writeInt(entry.getValue().classFiles.size());
+
+                for (ClassFileReader classFile : entry.getValue().classFiles) {
+                    out.writeUTF(classFile.getClassName());
+                    out.writeBoolean(classFile.getSuperclassName() != null);
+                    if (classFile.getSuperclassName() != null) {
+                        out.writeUTF(classFile.getSuperclassName());
+                    }
+                    out.writeBoolean(classFile.isAnnotated());
+                }
+            }
+
+            ByteArrayOutputStream config = new ByteArrayOutputStream();
+            ConfigFile.write(handlerDescriptors, config);
+            out.writeInt(config.size());
+            config.writeTo(out);
+        } finally {
+            out.close();
+        }
+
+        if (!temporaryFile.renameTo(indexFile)) {
+            indexFile.delete();
+
+            if (!temporaryFile.renameTo(indexFile)) {
+                temporaryFile.delete();
+                throw new IOException("Unable to replace the scan index " + indexFile);
+            }
+        }
+    }
+
+    /**
+     * @return true if a file or directory still has the modification time that was recorded for
+     *         it, and that time is far enough ahead of the scan that recorded it for any later
+     *         modification to have changed it
+     */
+    boolean isUnchanged(File file, long lastModified) {
+        return lastModified + TIMESTAMP_GRANULARITY <= scanStarted && file.lastModified() == lastModified;
+    }
+
+    Directory getDirectory(String path) {
+        return directories.get(path);
+    }
+
+    void putDirectory(String path, Directory directory) {
+        directories.put(path, directory);
+    }
+
+    Entry getEntry(String path) {
+        return entries.get(path);
+    }
+
+    void putEntry(String path, Entry entry) {
+        entries.put(path, entry);
+    }
+
+    Collection<String> getPaths() {
+        return entries.keySet();
+    }
+
+    /**
+     * @return true if this index holds the very entries of another index, so that it need not be
+     *         written again
+     */
+    boolean hasSameEntries(ScanIndex index) {
+        if (index == null || entries.size() != index.entries.size()
+                || directories.size() != index.directories.size()) {
+            return false;
+        }
+
+        for (Map.Entry<String, Directory> directory : directories.entrySet()) {
+            if (index.directories.get(directory.getKey()) != directory.getValue()) {
+                return false;
+            }
+        }
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (index.entries.get(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the descriptors that were found for the handler methods of a class, or null if the
+     *         class was not recorded as a handler
+     */
+    List<HandlerDescriptor> getHandlerDescriptors(String className) {
+        return classHandlerDescriptors.get(className);
+    }
+
+    /**
+     * Adds a descriptor, which must be added in the order of the configuration so that stored
+     * descriptors are ranked by their specificity.
+     */
+    void addHandlerDescriptor(String className, HandlerDescriptor handlerDescriptor) {
+        List<HandlerDescriptor> handlerDescriptorsOfClass = classHandlerDescriptors.get(className);
+
+        if (handlerDescriptorsOfClass == null) {
+            handlerDescriptorsOfClass = new ArrayList<HandlerDescriptor>(4);
+            classHandlerDescriptors.put(className, handlerDescriptorsOfClass);
+        }
+
+        handlerDescriptorsOfClass.add(handlerDescriptor);
+        handlerDescriptors.add(handlerDescriptor);
+    }
+
+    /**
+     * @return the SHA-256 hash of a stream's contents; the stream is closed
+     */
+    static byte[] hash(InputStream in) throws IOException {
+        try {
+            MessageDigest digest = newDigest();
+            byte[] buffer = new byte[8192];
+            int count;
+
+            while ((count = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+
+            return digest.digest();
+        } finally {
+            in.close();
+        }
+    }
+
+    static byte[] hash(byte[] contents) {
+        return newDigest().digest(contents);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> strings = new ArrayList<String>(count);
+
+        for (int i = 0; i < count; i++) {
+            strings.add(in.readUTF());
+        }
+
+        return strings;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+}
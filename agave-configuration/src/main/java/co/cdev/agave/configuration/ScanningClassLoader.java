@@ -0,0 +1,105 @@
+package co.cdev.agave.configuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Loads a set of classes from the class files and jar files that a scan read them from, rather
+ * than asking its parent for them, so that classes which have changed since the parent loaded them
+ * are inspected as they are now. Every other class is loaded by the parent. The loader is thrown
+ * away after the scan, and it keeps no files open.
+ */
+final class ScanningClassLoader extends ClassLoader {
+
+    private final Set<String> classNames;
+    private final Map<String, File> sources;
+
+    /**
+     * @param classNames the classes to load from their sources
+     * @param sources the class file, or the jar file, that each scanned class was read from
+     */
+    ScanningClassLoader(ClassLoader parent, Set<String> classNames, Map<String, File> sources) {
+        super(parent);
+        this.classNames = classNames;
+        this.sources = sources;
+    }
+
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!classNames.contains(name) || !sources.containsKey(name)) {
+            return super.loadClass(name, resolve);
+        }
+
+        Class<?> loadedClass = findLoadedClass(name);
+
+        if (loadedClass == null) {
+            loadedClass = findClass(name);
+        }
+
+        if (resolve) {
+            resolveClass(loadedClass);
+        }
+
+        return loadedClass;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        File source = sources.get(name);
+
+        if (source == null) {
+            throw new ClassNotFoundException(name);
+        }
+
+        try {
+            byte[] contents = read(source, name.replace('.', '/') + ".class");
+            return defineClass(name, contents, 0, contents.length);
+        } catch (IOException ex) {
+            throw new ClassNotFoundException(name, ex);
+        }
+    }
+
+    private static byte[] read(File source, String entryName) throws IOException {
+        if (!source.getName().endsWith(".jar")) {
+            return readFully(new FileInputStream(source));
+        }
+
+        ZipFile zipFile = new ZipFile(source);
+
+        try {
+            ZipEntry entry = zipFile.getEntry(entryName);
+
+            if (entry == null) {
+                throw new IOException(entryName + " is no longer in " + source);
+            }
+
+            return readFully(zipFile.getInputStream(entry));
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            byte[] buffer = new byte[4096];
+            int count;
+
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+}
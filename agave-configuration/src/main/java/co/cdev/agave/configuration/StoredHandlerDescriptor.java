@@ -0,0 +1,373 @@
+package co.cdev.agave.configuration;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import co.cdev.agave.HttpMethod;
+import co.cdev.agave.URIPattern;
+import co.cdev.agave.URIPatternImpl;
+import co.cdev.agave.conversion.StringConverter;
+
+/**
+ * A descriptor read from a configuration file, which holds the names of its classes and loads
+ * them the first time that the handler class, the handler method, the form class or the params are
+ * asked for. Descriptors that were read from the same file are ordered by their position in it, so
+ * they can be sorted without loading anything, and other descriptors are told apart by their URI
+ * patterns and HTTP methods before any classes are loaded.
+ *
+ * <p>
+ * A stored descriptor is equal to a {@link HandlerDescriptorImpl} that describes the same handler
+ * method, and it is written to object streams as one. Equality, hash codes and the string form are
+ * worked out from the stored class and method names, so they never load a class and work even
+ * once a class has been removed.
+ * </p>
+ */
+final class StoredHandlerDescriptor implements HandlerDescriptor {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(StoredHandlerDescriptor.class.getName());
+
+    private static final Map<String, Class<?>> PRIMITIVE_CLASSES = new HashMap<String, Class<?>>();
+
+    static {
+        for (Class<?> primitiveClass : new Class<?>[] {boolean.class, byte.class, char.class, short.class,
+                int.class, long.class, float.class, double.class, void.class}) {
+            PRIMITIVE_CLASSES.put(primitiveClass.getName(), primitiveClass);
+        }
+    }
+
+    private final transient ClassLoader classLoader;
+    private final transient Object source;
+    private final int rank;
+    private final String handlerClassName;
+    private final String handlerMethodName;
+    private final String[] parameterClassNames;
+    private final String uriPatternString;
+    private final HttpMethod httpMethod;
+    private final boolean initiatesWorkflow;
+    private final boolean completesWorkflow;
+    private final String workflowName;
+    private final String formClassName;
+    private final String[] paramNames;
+    private final boolean streamsParts;
+
+    private URIPattern uriPattern;
+    private volatile HandlerDescriptorImpl resolved;
+
+    /**
+     * @param source an object shared by every descriptor read from the same file
+     * @param rank the position of the descriptor in its file
+     * @param paramNames the param class, element class, name and converter class of each param
+     */
+    StoredHandlerDescriptor(ClassLoader classLoader, Object source, int rank, String handlerClassName,
+                            String handlerMethodName, String[] parameterClassNames, String uriPattern,
+                            String httpMethod, boolean initiatesWorkflow, boolean completesWorkflow,
+                            String workflowName, String formClassName, String[] paramNames, boolean streamsParts) {
+        this.classLoader = classLoader;
+        this.source = source;
+        this.rank = rank;
+        this.handlerClassName = handlerClassName;
+        this.handlerMethodName = handlerMethodName;
+        this.parameterClassNames = parameterClassNames;
+        this.uriPatternString = uriPattern;
+        this.httpMethod = HttpMethod.valueOf(httpMethod);
+        this.initiatesWorkflow = initiatesWorkflow;
+        this.completesWorkflow = completesWorkflow;
+        this.workflowName = workflowName;
+        this.formClassName = formClassName;
+        this.paramNames = paramNames;
+        this.streamsParts = streamsParts;
+    }
+
+    public Class<?> getHandlerClass() {
+        return resolve().getHandlerClass();
+    }
+
+    public Method getHandlerMethod() {
+        return resolve().getHandlerMethod();
+    }
+
+    public synchronized URIPattern getURIPattern() {
+        if (uriPattern == null) {
+            uriPattern = new URIPatternImpl(uriPatternString);
+        }
+
+        return uriPattern;
+    }
+
+    public HttpMethod getHttpMethod() {
+        return httpMethod;
+    }
+
+    public Class<?> getFormClass() {
+        return resolve().getFormClass();
+    }
+
+    public List<ParamDescriptor> getParamDescriptors() {
+        return resolve().getParamDescriptors();
+    }
+
+    public boolean initiatesWorkflow() {
+        return initiatesWorkflow;
+    }
+
+    public boolean completesWorkflow() {
+        return completesWorkflow;
+    }
+
+    public String getWorkflowName() {
+        return workflowName;
+    }
+
+    public boolean streamsParts() {
+        return streamsParts;
+    }
+
+    String getHandlerClassName() {
+        return handlerClassName;
+    }
+
+    String getHandlerMethodName() {
+        return handlerMethodName;
+    }
+
+    String[] getParameterClassNames() {
+        return parameterClassNames;
+    }
+
+    String getURIPatternString() {
+        return uriPatternString;
+    }
+
+    String getFormClassName() {
+        return formClassName;
+    }
+
+    String[] getParamNames() {
+        return paramNames;
+    }
+
+    /**
+     * @return the names of the classes that the descriptor refers to besides its handler class,
+     *         which are its method's parameter classes, its form class and the param, element and
+     *         converter classes of its params
+     */
+    List<String> getReferencedClassNames() {
+        List<String> classNames = new ArrayList<String>(Arrays.asList(parameterClassNames));
+
+        if (formClassName != null) {
+            classNames.add(formClassName);
+        }
+
+        for (int i = 0; i < paramNames.length; i += 4) {
+            classNames.add(paramNames[i]);
+            if (paramNames[i + 1] != null) {
+                classNames.add(paramNames[i + 1]);
+            }
+            classNames.add(paramNames[i + 3]);
+        }
+
+        return classNames;
+    }
+
+    @Override
+    public int compareTo(HandlerDescriptor that) {
+        if (that instanceof StoredHandlerDescriptor && ((StoredHandlerDescriptor) that).source == source) {
+            int thatRank = ((StoredHandlerDescriptor) that).rank;
+            return rank < thatRank ? -1 : (rank == thatRank ? 0 : 1);
+        }
+
+        int result = getURIPattern().compareTo(that.getURIPattern());
+        if (result != 0) {
+            return result;
+        }
+
+        result = httpMethod.ordinal() - that.getHttpMethod().ordinal();
+        if (result != 0) {
+            return result;
+        }
+
+        return resolve().compareTo(that);
+    }
+
+    @Override
+    public int hashCode() {
+        return HandlerDescriptorImpl.hashCode(getURIPattern(), httpMethod);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj instanceof StoredHandlerDescriptor) {
+            StoredHandlerDescriptor other = (StoredHandlerDescriptor) obj;
+
+            if (other.source == source) {
+                return other.rank == rank;
+            }
+
+            return other.httpMethod == httpMethod
+                    && other.getURIPattern().equals(getURIPattern())
+                    && other.handlerClassName.equals(handlerClassName)
+                    && other.handlerMethodName.equals(handlerMethodName)
+                    && Arrays.equals(other.parameterClassNames, parameterClassNames)
+                    && Arrays.equals(other.paramNames, paramNames);
+        }
+
+        if (obj instanceof HandlerDescriptorImpl) {
+            HandlerDescriptorImpl other = (HandlerDescriptorImpl) obj;
+
+            return other.getHttpMethod() == httpMethod
+                    && getURIPattern().equals(other.getURIPattern())
+                    && other.getHandlerClass() != null
+                    && other.getHandlerClass().getName().equals(handlerClassName)
+                    && other.getHandlerMethod() != null
+                    && other.getHandlerMethod().getName().equals(handlerMethodName)
+                    && Arrays.equals(getNames(other.getHandlerMethod().getParameterTypes()), parameterClassNames)
+                    && Arrays.equals(getParamNames(other.getParamDescriptors()), paramNames);
+        }
+
+        return false;
+    }
+
+    private static String[] getNames(Class<?>[] classes) {
+        String[] names = new String[classes.length];
+
+        for (int i = 0; i < classes.length; i++) {
+            names[i] = classes[i].getName();
+        }
+
+        return names;
+    }
+
+    private static String[] getParamNames(List<ParamDescriptor> paramDescriptors) {
+        String[] names = new String[paramDescriptors.size() * 4];
+        int i = 0;
+
+        for (ParamDescriptor paramDescriptor : paramDescriptors) {
+            names[i++] = getName(paramDescriptor.getParamClass());
+            names[i++] = getName(paramDescriptor.getElementClass());
+            names[i++] = paramDescriptor.getName();
+            names[i++] = getName(paramDescriptor.getConverterClass());
+        }
+
+        return names;
+    }
+
+    private static String getName(Class<?> type) {
+        return type == null ? null : type.getName();
+    }
+
+    @Override
+    public String toString() {
+        return "StoredHandlerDescriptor [handlerClass=" + handlerClassName + ", handlerMethod=" + handlerMethodName
+                + "(" + join(parameterClassNames) + "), uriPattern=" + uriPatternString + ", httpMethod=" + httpMethod
+                + ", initiatesWorkflow=" + initiatesWorkflow + ", completesWorkflow=" + completesWorkflow
+                + ", workflowName=" + workflowName + ", formClass=" + formClassName + ", params=["
+                + join(paramNames) + "], streamsParts=" + streamsParts + "]";
+    }
+
+    private static String join(String[] names) {
+        StringBuilder joined = new StringBuilder();
+
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                joined.append(", ");
+            }
+            joined.append(names[i]);
+        }
+
+        return joined.toString();
+    }
+
+    /**
+     * @return a descriptor with the same handler method whose classes have been loaded
+     * @throws IllegalStateException if a class can no longer be found
+     */
+    HandlerDescriptorImpl resolve() {
+        HandlerDescriptorImpl handlerDescriptor = resolved;
+
+        if (handlerDescriptor == null) {
+            synchronized (this) {
+                handlerDescriptor = resolved;
+
+                if (handlerDescriptor == null) {
+                    handlerDescriptor = resolved = load();
+                }
+            }
+        }
+
+        return handlerDescriptor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private HandlerDescriptorImpl load() {
+        try {
+            Class<?> handlerClass = loadClass(handlerClassName);
+            Class<?>[] parameterClasses = new Class<?>[parameterClassNames.length];
+
+            for (int i = 0; i < parameterClasses.length; i++) {
+                parameterClasses[i] = loadClass(parameterClassNames[i]);
+            }
+
+            Method handlerMethod = null;
+
+            try {
+                handlerMethod = handlerClass.getMethod(handlerMethodName, parameterClasses);
+            } catch (NoSuchMethodException e) {
+                LOGGER.severe("Unable to find handler method named " + handlerMethodName);
+            }
+
+            List<ParamDescriptor> paramDescriptors = Collections.emptyList();
+
+            if (paramNames.length > 0) {
+                paramDescriptors = new ArrayList<ParamDescriptor>(paramNames.length / 4);
+
+                for (int i = 0; i < paramNames.length; i += 4) {
+                    paramDescriptors.add(new ParamDescriptorImpl(loadClass(paramNames[i]),
+                            loadClass(paramNames[i + 1]),
+                            paramNames[i + 2],
+                            (Class<? extends StringConverter<?>>) loadClass(paramNames[i + 3])));
+                }
+            }
+
+            return new HandlerDescriptorImpl(handlerClass,
+                                             handlerMethod,
+                                             getURIPattern(),
+                                             httpMethod,
+                                             initiatesWorkflow,
+                                             completesWorkflow,
+                                             workflowName,
+                                             loadClass(formClassName),
+                                             paramDescriptors,
+                                             streamsParts);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Unable to load a class of the handler " + handlerClassName + "."
+                    + handlerMethodName + " from the configuration file", e);
+        }
+    }
+
+    private Class<?> loadClass(String className) throws ClassNotFoundException {
+        if (className == null) {
+            return null;
+        }
+
+        Class<?> primitiveClass = PRIMITIVE_CLASSES.get(className);
+        return primitiveClass != null ? primitiveClass : Class.forName(className, false, classLoader);
+    }
+
+    // Serialization
+
+    private Object writeReplace() {
+        return resolve();
+    }
+
+}
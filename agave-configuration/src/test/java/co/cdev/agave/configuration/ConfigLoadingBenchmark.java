@@ -0,0 +1,130 @@
+package co.cdev.agave.configuration;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import co.cdev.agave.HttpMethod;
+import co.cdev.agave.URIPatternImpl;
+import co.cdev.agave.conversion.IntegerConverter;
+import co.cdev.agave.conversion.NoopConverter;
+import co.cdev.agave.sample.SampleHandler;
+
+/**
+ * Measures how long it takes to load a configuration file written by Java serialization, as
+ * earlier versions did, and one written in the binary format. The configuration has a number of
+ * descriptors with distinct URI patterns that share the handler methods of the sample handler. This
+ * is not run as part of the test suite; run its main method with the module's test classpath
+ * instead, optionally passing the number of descriptors, which defaults to 2000.
+ */
+public class ConfigLoadingBenchmark {
+
+    private static final int RUNS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int descriptorCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        SortedSet<HandlerDescriptor> handlerDescriptors = createHandlerDescriptors(descriptorCount);
+
+        File serializedFile = File.createTempFile("serialized", ".conf");
+        File binaryFile = File.createTempFile("binary", ".conf");
+
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(serializedFile)));
+            out.writeObject(handlerDescriptors);
+            out.close();
+
+            Config config = new ConfigImpl();
+            for (HandlerDescriptor handlerDescriptor : handlerDescriptors) {
+                config.addHandlerDescriptor(handlerDescriptor);
+            }
+            config.writeToFile(binaryFile);
+
+            for (int i = 0; i < RUNS; i++) {
+                loadSerialized(serializedFile);
+                loadBinary(binaryFile, false);
+            }
+
+            double serialized = Double.MAX_VALUE;
+            double binary = Double.MAX_VALUE;
+            double binaryResolved = Double.MAX_VALUE;
+
+            for (int i = 0; i < RUNS; i++) {
+                serialized = Math.min(serialized, loadSerialized(serializedFile));
+                binary = Math.min(binary, loadBinary(binaryFile, false));
+                binaryResolved = Math.min(binaryResolved, loadBinary(binaryFile, true));
+            }
+
+            System.out.printf("%d descriptors%n", descriptorCount);
+            System.out.printf("%-20s %8d bytes %8.2f ms%n", "serialized", serializedFile.length(), serialized * 1000);
+            System.out.printf("%-20s %8d bytes %8.2f ms%n", "binary", binaryFile.length(), binary * 1000);
+            System.out.printf("%-20s %8d bytes %8.2f ms%n", "binary, resolved", binaryFile.length(), binaryResolved * 1000);
+        } finally {
+            serializedFile.delete();
+            binaryFile.delete();
+        }
+    }
+
+    /**
+     * @return the number of seconds that loading took
+     */
+    private static double loadSerialized(File configFile) throws Exception {
+        long started = System.nanoTime();
+        ObjectInputStream in = new ObjectInputStream(new FileInputStream(configFile));
+        in.readObject();
+        in.close();
+        return (System.nanoTime() - started) / 1e9;
+    }
+
+    /**
+     * @param resolve whether to load the classes of every descriptor, as serving requests to every
+     *        handler eventually would
+     * @return the number of seconds that loading took
+     */
+    private static double loadBinary(File configFile, boolean resolve) throws Exception {
+        long started = System.nanoTime();
+        Config config = new ConfigImpl();
+        config.readFromFile(configFile);
+
+        if (resolve) {
+            for (HandlerDescriptor handlerDescriptor : config) {
+                handlerDescriptor.getParamDescriptors();
+            }
+        }
+
+        return (System.nanoTime() - started) / 1e9;
+    }
+
+    private static SortedSet<HandlerDescriptor> createHandlerDescriptors(int count) throws Exception {
+        SortedSet<HandlerDescriptor> handlerDescriptors = new TreeSet<HandlerDescriptor>();
+        List<ParamDescriptor> paramDescriptors = new ArrayList<ParamDescriptor>();
+        paramDescriptors.add(new ParamDescriptorImpl(String.class, "something", NoopConverter.class));
+        paramDescriptors.add(new ParamDescriptorImpl(int.class, "aNumber", IntegerConverter.class));
+
+        for (int i = 0; i < count; i++) {
+            boolean withParams = i % 2 == 0;
+            handlerDescriptors.add(new HandlerDescriptorImpl(SampleHandler.class,
+                    withParams
+                        ? SampleHandler.class.getMethod("hasNamedParams", RoutingContext.class, String.class, int.class)
+                        : SampleHandler.class.getMethod("lacksForm", RoutingContext.class),
+                    new URIPatternImpl("/resources" + (i % 50) + "/item" + i + (withParams ? "/${something}/${aNumber}" : "")),
+                    HttpMethod.values()[i % 4],
+                    false,
+                    false,
+                    null,
+                    null,
+                    withParams ? paramDescriptors : Collections.<ParamDescriptor>emptyList(),
+                    false));
+        }
+
+        return handlerDescriptors;
+    }
+
+}
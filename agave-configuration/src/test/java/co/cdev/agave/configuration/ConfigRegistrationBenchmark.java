@@ -0,0 +1,113 @@
+package co.cdev.agave.configuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import co.cdev.agave.HttpMethod;
+import co.cdev.agave.URIPattern;
+import co.cdev.agave.URIPatternImpl;
+import co.cdev.agave.sample.SampleHandler;
+
+/**
+ * Measures how long it takes to add a number of descriptors to a config and then to look each of
+ * them up by its URI pattern, compared with checking for duplicates and finding candidates by
+ * scanning every descriptor, as the config did before it was indexed. This is not run as part of
+ * the test suite; run its main method with the module's test classpath instead, optionally
+ * passing the number of descriptors, which defaults to 10000.
+ */
+public class ConfigRegistrationBenchmark {
+
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int descriptorCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        List<HandlerDescriptor> handlerDescriptors = createHandlerDescriptors(descriptorCount);
+
+        double indexed = Double.MAX_VALUE;
+        double scanned = Double.MAX_VALUE;
+        double indexedLookups = Double.MAX_VALUE;
+        double scannedLookups = Double.MAX_VALUE;
+
+        for (int i = 0; i < RUNS; i++) {
+            long started = System.nanoTime();
+            Config config = new ConfigImpl();
+            for (HandlerDescriptor handlerDescriptor : handlerDescriptors) {
+                config.addHandlerDescriptor(handlerDescriptor);
+            }
+            indexed = Math.min(indexed, (System.nanoTime() - started) / 1e9);
+
+            started = System.nanoTime();
+            SortedSet<HandlerDescriptor> scannedDescriptors = new TreeSet<HandlerDescriptor>();
+            for (HandlerDescriptor handlerDescriptor : handlerDescriptors) {
+                addByScanning(scannedDescriptors, handlerDescriptor);
+            }
+            scanned = Math.min(scanned, (System.nanoTime() - started) / 1e9);
+
+            started = System.nanoTime();
+            for (HandlerDescriptor handlerDescriptor : handlerDescriptors) {
+                config.getCandidatesFor(handlerDescriptor.getURIPattern());
+            }
+            indexedLookups = Math.min(indexedLookups, (System.nanoTime() - started) / 1e9);
+
+            started = System.nanoTime();
+            for (HandlerDescriptor handlerDescriptor : handlerDescriptors) {
+                findByScanning(scannedDescriptors, handlerDescriptor.getURIPattern());
+            }
+            scannedLookups = Math.min(scannedLookups, (System.nanoTime() - started) / 1e9);
+        }
+
+        System.out.printf("%d descriptors%n", descriptorCount);
+        System.out.printf("%-20s %10.2f ms%n", "indexed adds", indexed * 1000);
+        System.out.printf("%-20s %10.2f ms%n", "scanned adds", scanned * 1000);
+        System.out.printf("%-20s %10.2f ms%n", "indexed lookups", indexedLookups * 1000);
+        System.out.printf("%-20s %10.2f ms%n", "scanned lookups", scannedLookups * 1000);
+    }
+
+    private static void addByScanning(SortedSet<HandlerDescriptor> handlerDescriptors,
+                                      HandlerDescriptor handlerDescriptor) throws DuplicateDescriptorException {
+        for (HandlerDescriptor existingHandlerDescriptor : handlerDescriptors) {
+            if (existingHandlerDescriptor.equals(handlerDescriptor)) {
+                throw new DuplicateDescriptorException(existingHandlerDescriptor, handlerDescriptor);
+            }
+        }
+        handlerDescriptors.add(handlerDescriptor);
+    }
+
+    private static SortedSet<HandlerDescriptor> findByScanning(SortedSet<HandlerDescriptor> handlerDescriptors,
+                                                               URIPattern uriPattern) {
+        SortedSet<HandlerDescriptor> candidates = new TreeSet<HandlerDescriptor>();
+
+        for (HandlerDescriptor handlerDescriptor : handlerDescriptors) {
+            if (handlerDescriptor.getURIPattern().equals(uriPattern)) {
+                candidates.add(handlerDescriptor);
+            }
+        }
+
+        return candidates;
+    }
+
+    private static List<HandlerDescriptor> createHandlerDescriptors(int count) throws Exception {
+        List<HandlerDescriptor> handlerDescriptors = new ArrayList<HandlerDescriptor>(count);
+
+        for (int i = 0; i < count; i++) {
+            handlerDescriptors.add(new HandlerDescriptorImpl(SampleHandler.class,
+                    SampleHandler.class.getMethod("lacksForm", RoutingContext.class),
+                    new URIPatternImpl("/resources" + (i % 50) + "/item" + (i / 4)),
+                    HttpMethod.values()[i % 4],
+                    false,
+                    false,
+                    null,
+                    null,
+                    Collections.<ParamDescriptor>emptyList(),
+                    false));
+        }
+
+        Collections.shuffle(handlerDescriptors, new Random(7));
+        return handlerDescriptors;
+    }
+
+}
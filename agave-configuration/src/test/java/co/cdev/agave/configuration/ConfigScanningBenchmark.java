@@ -0,0 +1,151 @@
+package co.cdev.agave.configuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import co.cdev.agave.sample.LoginForm;
+import co.cdev.agave.sample.SampleEndpoint;
+
+/**
+ * Measures how long it takes to scan a large classes directory for handlers with an increasing
+ * number of threads, and then how long a scan takes when an index shows that nothing changed. The
+ * directory is filled with copies of a class file that has no handlers, with one handler class
+ * among them. This is not run as part of the test suite; run its main method with the module's
+ * test classpath instead, optionally passing the number of class files, which defaults to 20000.
+ */
+public class ConfigScanningBenchmark {
+
+    private static final int CLASSES_PER_PACKAGE = 100;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int classCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        File rootDir = File.createTempFile("classes", "");
+        rootDir.delete();
+
+        try {
+            createClassFiles(rootDir, classCount);
+
+            int processors = Runtime.getRuntime().availableProcessors();
+
+            for (int threads = 1; threads <= processors; threads = nextThreadCount(threads, processors)) {
+                run(rootDir, threads);
+
+                double best = Double.MAX_VALUE;
+
+                for (int i = 0; i < RUNS; i++) {
+                    best = Math.min(best, run(rootDir, threads));
+                }
+
+                System.out.printf("%3d threads %8.1f ms %10.0f classes/s%n", threads, best * 1000, classCount / best);
+            }
+
+            File indexFile = new File(rootDir, "scan.idx");
+            run(rootDir, processors, indexFile);
+
+            double best = Double.MAX_VALUE;
+
+            for (int i = 0; i < RUNS; i++) {
+                best = Math.min(best, run(rootDir, processors, indexFile));
+            }
+
+            System.out.printf("%-11s %8.1f ms%n", "unchanged", best * 1000);
+        } finally {
+            delete(rootDir);
+        }
+    }
+
+    /**
+     * @return twice the number of threads, up to the number of processors, or a number past the
+     *         processors once they have all been used
+     */
+    private static int nextThreadCount(int threads, int processors) {
+        return threads == processors ? processors + 1 : Math.min(threads * 2, processors);
+    }
+
+    /**
+     * @return the number of seconds that scanning took
+     */
+    private static double run(File rootDir, int threads) throws Exception {
+        return run(rootDir, threads, null);
+    }
+
+    /**
+     * @param indexFile the scan index, or null to read every class file
+     * @return the number of seconds that scanning took
+     */
+    private static double run(File rootDir, int threads, File indexFile) throws Exception {
+        ConfigGenerator configGenerator = new ConfigGeneratorImpl(ConfigScanningBenchmark.class.getClassLoader(),
+                Arrays.asList(rootDir), Collections.<String>emptyList(), Collections.<String>emptyList(), threads,
+                indexFile);
+
+        long started = System.nanoTime();
+        Config config = configGenerator.generateConfig();
+        long elapsed = System.nanoTime() - started;
+
+        if (config.isEmpty()) {
+            throw new IllegalStateException("The handler class was not found");
+        }
+
+        return elapsed / 1e9;
+    }
+
+    private static void createClassFiles(File rootDir, int classCount) throws Exception {
+        byte[] classFile = readClassFile(LoginForm.class);
+
+        for (int i = 0; i < classCount - 1; i++) {
+            File packageDir = new File(rootDir, "bench/p" + (i / CLASSES_PER_PACKAGE));
+            packageDir.mkdirs();
+            write(new File(packageDir, "C" + i + ".class"), classFile);
+        }
+
+        File handlerDir = new File(rootDir, SampleEndpoint.class.getPackage().getName().replace('.', '/'));
+        handlerDir.mkdirs();
+        write(new File(handlerDir, SampleEndpoint.class.getSimpleName() + ".class"), readClassFile(SampleEndpoint.class));
+    }
+
+    private static byte[] readClassFile(Class<?> type) throws Exception {
+        InputStream in = type.getClassLoader().getResourceAsStream(type.getName().replace('.', '/') + ".class");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+
+        try {
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void write(File file, byte[] contents) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+
+}
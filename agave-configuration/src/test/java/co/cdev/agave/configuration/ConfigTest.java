@@ -1,14 +1,26 @@
 package co.cdev.agave.configuration;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -159,6 +171,7 @@ public class ConfigTest {
         config.writeToFile(configFile);
         
         assertTrue(initialLength < configFile.length());
+        assertFalse(new File(rootDir, "testWriteToFile.conf.tmp").exists());
         
         configFile.delete();
     }
@@ -241,4 +254,186 @@ public class ConfigTest {
         configFile.delete();
     }
     
+    @Test
+    public void testReadFromFile_withGeneratedConfig() throws Exception {
+        File rootDir = new File(getClass().getClassLoader().getResource(".").toURI());
+        Config generatedConfig = new ConfigGeneratorImpl(rootDir).generateConfig();
+        
+        File configFile = new File(rootDir, "testReadFromFile_withGeneratedConfig.conf");
+        generatedConfig.writeToFile(configFile);
+        
+        Config anotherConfig = new ConfigImpl();
+        anotherConfig.readFromFile(configFile);
+        configFile.delete();
+        
+        assertEquals(generatedConfig.size(), anotherConfig.size());
+        
+        Iterator<HandlerDescriptor> anotherItr = anotherConfig.iterator();
+        
+        for (HandlerDescriptor expected : generatedConfig) {
+            HandlerDescriptor actual = anotherItr.next();
+            
+            assertEquals(expected.getURIPattern(), actual.getURIPattern());
+            assertEquals(expected.getHttpMethod(), actual.getHttpMethod());
+            assertEquals(expected.getHandlerMethod(), actual.getHandlerMethod());
+            assertEquals(expected.getFormClass(), actual.getFormClass());
+            assertEquals(expected.getParamDescriptors(), actual.getParamDescriptors());
+            assertEquals(expected.getWorkflowName(), actual.getWorkflowName());
+            assertEquals(expected.initiatesWorkflow(), actual.initiatesWorkflow());
+            assertEquals(expected.completesWorkflow(), actual.completesWorkflow());
+            assertEquals(expected.streamsParts(), actual.streamsParts());
+            assertTrue(expected.equals(actual));
+            assertTrue(actual.equals(expected));
+            assertEquals(expected.hashCode(), actual.hashCode());
+            assertEquals(0, actual.compareTo(expected));
+        }
+    }
+    
+    @Test
+    public void testStoredDescriptorOfMissingClass() throws Exception {
+        Object source = new Object();
+        HandlerDescriptor missing = new StoredHandlerDescriptor(getClass().getClassLoader(), source, 0,
+                "com.example.MissingHandler", "handle", new String[] {RoutingContext.class.getName()}, "/missing",
+                "GET", false, false, null, null, new String[0], false);
+        HandlerDescriptor sameMissing = new StoredHandlerDescriptor(getClass().getClassLoader(), new Object(), 3,
+                "com.example.MissingHandler", "handle", new String[] {RoutingContext.class.getName()}, "/missing",
+                "GET", false, false, null, null, new String[0], false);
+        HandlerDescriptor otherMissing = new StoredHandlerDescriptor(getClass().getClassLoader(), source, 1,
+                "com.example.MissingHandler", "handleOther", new String[] {RoutingContext.class.getName()}, "/missing",
+                "GET", false, false, null, null, new String[0], false);
+        
+        assertEquals(missing, sameMissing);
+        assertEquals(missing.hashCode(), sameMissing.hashCode());
+        assertFalse(missing.equals(otherMissing));
+        assertFalse(missing.equals(new HandlerDescriptorImpl(handlerClass, handlerMethod, new URIPatternImpl("/missing"),
+                HttpMethod.GET, false, false, (String) null, (Class<?>) null, new ArrayList<ParamDescriptor>())));
+        assertTrue(missing.toString().contains("com.example.MissingHandler"));
+    }
+    
+    @Test(expected = IOException.class)
+    public void testReadFromFile_rejectsSerializedConfig() throws Exception {
+        SortedSet<HandlerDescriptor> handlerDescriptors = new TreeSet<HandlerDescriptor>();
+        handlerDescriptors.add(new HandlerDescriptorImpl(handlerClass, handlerMethod, new URIPatternImpl("/login"),
+                HttpMethod.GET, false, false, (String) null, (Class<?>) null, new ArrayList<ParamDescriptor>()));
+        handlerDescriptors.add(new HandlerDescriptorImpl(handlerClass, handlerMethod, new URIPatternImpl("/login"),
+                HttpMethod.POST, false, false, (String) null, (Class<?>) null, new ArrayList<ParamDescriptor>()));
+        
+        File rootDir = new File(getClass().getResource(".").toURI());
+        File configFile = new File(rootDir, "testReadFromFile_withSerializedConfig.conf");
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(configFile));
+        out.writeObject(handlerDescriptors);
+        out.close();
+        
+        try {
+            config.readFromFile(configFile);
+        } finally {
+            configFile.delete();
+        }
+    }
+    
+    @Test
+    public void testGetCandidatesFor_withIndexes() throws Exception {
+        HandlerDescriptor get = new HandlerDescriptorImpl(handlerClass, handlerMethod, new URIPatternImpl("/login"),
+                HttpMethod.GET, true, false, "signup", (Class<?>) null, new ArrayList<ParamDescriptor>());
+        HandlerDescriptor post = new HandlerDescriptorImpl(handlerClass, handlerMethod, new URIPatternImpl("/LOGIN"),
+                HttpMethod.POST, false, true, "signup", (Class<?>) null, new ArrayList<ParamDescriptor>());
+        HandlerDescriptor other = new HandlerDescriptorImpl(handlerClass, handlerMethod, new URIPatternImpl("/other"),
+                HttpMethod.GET, false, false, (String) null, (Class<?>) null, new ArrayList<ParamDescriptor>());
+        
+        config.addHandlerDescriptor(get);
+        config.addHandlerDescriptor(post);
+        config.addHandlerDescriptor(other);
+        
+        assertEquals(Arrays.asList(get, post), new ArrayList<HandlerDescriptor>(config.getCandidatesFor("/Login")));
+        assertEquals(Arrays.asList(post), new ArrayList<HandlerDescriptor>(
+                config.getCandidatesFor(new URIPatternImpl("/login"), HttpMethod.POST)));
+        assertTrue(config.getCandidatesFor(new URIPatternImpl("/other"), HttpMethod.POST).isEmpty());
+        assertEquals(3, config.getHandlerDescriptorsFor(handlerClass).size());
+        assertTrue(config.getHandlerDescriptorsFor(LoginForm.class).isEmpty());
+        assertEquals(Arrays.asList(get, post), new ArrayList<HandlerDescriptor>(
+                config.getWorkflowHandlerDescriptors("signup")));
+        
+        config.removeHandlerDescriptor(post);
+        
+        assertEquals(Arrays.asList(get), new ArrayList<HandlerDescriptor>(config.getCandidatesFor("/login")));
+        assertTrue(config.getCandidatesFor(new URIPatternImpl("/login"), HttpMethod.POST).isEmpty());
+        assertEquals(2, config.getHandlerDescriptorsFor(handlerClass).size());
+        assertEquals(Arrays.asList(get), new ArrayList<HandlerDescriptor>(config.getWorkflowHandlerDescriptors("signup")));
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        config.writeToOutputStream(out);
+        Config anotherConfig = new ConfigImpl();
+        anotherConfig.readFromInputStream(new ByteArrayInputStream(out.toByteArray()));
+        
+        assertEquals(2, anotherConfig.getHandlerDescriptorsFor(handlerClass).size());
+        assertEquals(1, anotherConfig.getWorkflowHandlerDescriptors("signup").size());
+        assertEquals(1, anotherConfig.getCandidatesFor(new URIPatternImpl("/other"), HttpMethod.GET).size());
+    }
+    
+    @Test
+    public void testGetCandidatesFor_returnsCopies() throws Exception {
+        HandlerDescriptor get = new HandlerDescriptorImpl(handlerClass, handlerMethod, new URIPatternImpl("/login"),
+                HttpMethod.GET, false, false, (String) null, (Class<?>) null, new ArrayList<ParamDescriptor>());
+        HandlerDescriptor post = new HandlerDescriptorImpl(handlerClass, handlerMethod, new URIPatternImpl("/login"),
+                HttpMethod.POST, false, false, (String) null, (Class<?>) null, new ArrayList<ParamDescriptor>());
+        
+        config.addHandlerDescriptor(get);
+        
+        Set<HandlerDescriptor> candidates = config.getCandidatesFor("/login");
+        candidates.clear();
+        
+        assertEquals(1, config.getCandidatesFor("/login").size());
+        
+        candidates = config.getCandidatesFor("/login");
+        config.addHandlerDescriptor(post);
+        
+        assertEquals(1, candidates.size());
+        assertEquals(2, config.getCandidatesFor("/login").size());
+        
+        Set<HandlerDescriptor> missing = config.getCandidatesFor("/missing");
+        missing.add(get);
+        
+        assertTrue(config.getCandidatesFor("/missing").isEmpty());
+    }
+    
+    @Test
+    public void testViewCandidatesFor_returnsUnmodifiableViews() throws Exception {
+        HandlerDescriptor get = new HandlerDescriptorImpl(handlerClass, handlerMethod, new URIPatternImpl("/login"),
+                HttpMethod.GET, false, false, "wizard", (Class<?>) null, new ArrayList<ParamDescriptor>());
+        
+        config.addHandlerDescriptor(get);
+        
+        Set<HandlerDescriptor> candidates = config.viewCandidatesFor(new URIPatternImpl("/login"));
+        
+        assertEquals(config.getCandidatesFor("/login"), candidates);
+        assertSame(candidates, config.viewCandidatesFor(new URIPatternImpl("/LOGIN")));
+        assertEquals(candidates, config.viewCandidatesFor(new URIPatternImpl("/login"), HttpMethod.GET));
+        assertEquals(candidates, config.viewHandlerDescriptorsFor(handlerClass));
+        assertEquals(candidates, config.viewWorkflowHandlerDescriptors("wizard"));
+        assertTrue(config.viewCandidatesFor(new URIPatternImpl("/login"), HttpMethod.POST).isEmpty());
+        assertTrue(config.viewCandidatesFor(null).isEmpty());
+        assertTrue(config.viewWorkflowHandlerDescriptors("checkout").isEmpty());
+        
+        try {
+            candidates.clear();
+            fail("Changed a view of the config");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+        
+        assertEquals(1, config.getCandidatesFor("/login").size());
+    }
+    
+    @Test(expected = IOException.class)
+    public void testReadFromInputStream_withTruncatedConfig() throws Exception {
+        config.addHandlerDescriptor(new HandlerDescriptorImpl(handlerClass, handlerMethod, new URIPatternImpl("/login"),
+                HttpMethod.GET, false, false, (String) null, (Class<?>) null, new ArrayList<ParamDescriptor>()));
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        config.writeToOutputStream(out);
+        byte[] bytes = out.toByteArray();
+        
+        new ConfigImpl().readFromInputStream(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 3)));
+    }
+    
 }
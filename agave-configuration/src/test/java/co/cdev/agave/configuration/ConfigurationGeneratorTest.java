@@ -3,25 +3,40 @@ package co.cdev.agave.configuration;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import co.cdev.agave.HttpMethod;
+import co.cdev.agave.Route;
 import co.cdev.agave.URIPatternImpl;
 import co.cdev.agave.conversion.DateConverter;
 import co.cdev.agave.conversion.IntegerConverter;
 import co.cdev.agave.conversion.LongConverter;
 import co.cdev.agave.conversion.NoopConverter;
+import co.cdev.agave.sample.AliasedForm;
+import co.cdev.agave.sample.LoginForm;
 import co.cdev.agave.sample.SampleEndpoint;
+import co.cdev.agave.sample.SampleHandler;
 
 public class ConfigurationGeneratorTest {
 
@@ -55,8 +70,9 @@ public class ConfigurationGeneratorTest {
         assertFalse(config.getCandidatesFor("/overloaded").isEmpty());
         assertFalse(config.getCandidatesFor("/overloaded/${param}").isEmpty());
         assertFalse(config.getCandidatesFor("/birds").isEmpty());
+        assertFalse(config.getCandidatesFor("/birds/banded").isEmpty());
         
-        assertEquals(15, config.size());
+        assertEquals(17, config.size());
     }
     
     @Test
@@ -169,4 +185,281 @@ public class ConfigurationGeneratorTest {
         assertEquals(expectedHandlerDescriptor, candidates.get(3));
     }
     
+    @Test
+    public void testGenerateConfig_withMultiValuedParams() throws Exception {
+        Config config = configGenerator.generateConfig();
+        List<HandlerDescriptor> candidates = new ArrayList<HandlerDescriptor>(config.getCandidatesFor("/birds/banded"));
+        
+        assertEquals(1, candidates.size());
+        
+        List<ParamDescriptor> paramDescriptors = candidates.get(0).getParamDescriptors();
+        
+        assertEquals(new ParamDescriptorImpl(long[].class, long.class, "ids", LongConverter.class), paramDescriptors.get(0));
+        assertEquals(new ParamDescriptorImpl(Set.class, String.class, "names", NoopConverter.class), paramDescriptors.get(1));
+        assertEquals(new ParamDescriptorImpl(LinkedList.class, Integer.class, "sizes", IntegerConverter.class), paramDescriptors.get(2));
+    }
+    
+    @Test
+    public void testGenerateConfig_withStreamedParts() throws Exception {
+        Config config = configGenerator.generateConfig();
+        List<HandlerDescriptor> candidates = new ArrayList<HandlerDescriptor>(config.getCandidatesFor("/birds/photos"));
+        
+        assertEquals(1, candidates.size());
+        assertTrue(candidates.get(0).streamsParts());
+        assertNull(candidates.get(0).getFormClass());
+        assertTrue(candidates.get(0).getParamDescriptors().isEmpty());
+        assertFalse(config.getCandidatesFor("/birds/banded").iterator().next().streamsParts());
+    }
+    
+    @Test
+    public void testGenerateConfig_withIncludedPackages() throws Exception {
+        configGenerator = new ConfigGeneratorImpl(getClass().getClassLoader(), rootDir,
+                Arrays.asList("co.cdev.agave.sample"), Collections.<String>emptyList());
+        
+        assertEquals(17, configGenerator.generateConfig().size());
+        
+        configGenerator = new ConfigGeneratorImpl(getClass().getClassLoader(), rootDir,
+                Arrays.asList("co.cdev.agave.samples", "co.cdev.agave.configuration"), Collections.<String>emptyList());
+        
+        assertEquals(0, configGenerator.generateConfig().size());
+    }
+    
+    @Test
+    public void testGenerateConfig_withExcludedPackages() throws Exception {
+        configGenerator = new ConfigGeneratorImpl(getClass().getClassLoader(), rootDir,
+                Collections.<String>emptyList(), Arrays.asList("co.cdev.agave.sample"));
+        
+        assertEquals(0, configGenerator.generateConfig().size());
+        
+        configGenerator = new ConfigGeneratorImpl(getClass().getClassLoader(), rootDir,
+                Arrays.asList("co.cdev"), Arrays.asList("co.cdev.agave.configuration"));
+        
+        assertEquals(17, configGenerator.generateConfig().size());
+    }
+    
+    @Test
+    public void testReadClassFile() throws Exception {
+        String routeDescriptor = "L" + Route.class.getName().replace('.', '/') + ";";
+        
+        ClassFileReader classFile = ClassFileReader.read(readClassFile(SampleEndpoint.class), routeDescriptor);
+        assertEquals(SampleEndpoint.class.getName(), classFile.getClassName());
+        assertEquals(Object.class.getName(), classFile.getSuperclassName());
+        assertTrue(classFile.isAnnotated());
+        
+        classFile = ClassFileReader.read(readClassFile(LoginForm.class), routeDescriptor);
+        assertEquals(LoginForm.class.getName(), classFile.getClassName());
+        assertFalse(classFile.isAnnotated());
+        
+        classFile = ClassFileReader.read(readClassFile(ConfigurationGeneratorTest.class), routeDescriptor);
+        assertFalse(classFile.isAnnotated());
+    }
+    
+    private byte[] readClassFile(Class<?> type) throws Exception {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(type.getName().replace('.', '/') + ".class");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        
+        try {
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        
+        return out.toByteArray();
+    }
+    
+    @Test
+    public void testGenerateConfig_withThreads() throws Exception {
+        List<Method> expectedMethods = new ArrayList<Method>();
+        
+        for (HandlerDescriptor handlerDescriptor : new ConfigGeneratorImpl(getClass().getClassLoader(),
+                Arrays.asList(rootDir), Collections.<String>emptyList(), Collections.<String>emptyList(), 1).generateConfig()) {
+            expectedMethods.add(handlerDescriptor.getHandlerMethod());
+        }
+        
+        List<Method> methods = new ArrayList<Method>();
+        
+        for (HandlerDescriptor handlerDescriptor : new ConfigGeneratorImpl(getClass().getClassLoader(),
+                Arrays.asList(rootDir), Collections.<String>emptyList(), Collections.<String>emptyList(), 4).generateConfig()) {
+            methods.add(handlerDescriptor.getHandlerMethod());
+        }
+        
+        assertEquals(17, methods.size());
+        assertEquals(expectedMethods, methods);
+    }
+    
+    @Test
+    public void testGenerateConfig_withJarFile() throws Exception {
+        File jarFile = File.createTempFile("handlers", ".jar");
+        jarFile.deleteOnExit();
+        
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile));
+        
+        try {
+            for (Class<?> type : new Class<?>[] {SampleEndpoint.class, LoginForm.class}) {
+                out.putNextEntry(new JarEntry(type.getName().replace('.', '/') + ".class"));
+                out.write(readClassFile(type));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        
+        Config config = new ConfigGeneratorImpl(getClass().getClassLoader(), Arrays.asList(jarFile),
+                Collections.<String>emptyList(), Collections.<String>emptyList(), 2).generateConfig();
+        
+        assertFalse(config.getCandidatesFor("/birds").isEmpty());
+        assertTrue(config.getCandidatesFor("/login").isEmpty());
+        
+        config = new ConfigGeneratorImpl(getClass().getClassLoader(), Arrays.asList(rootDir, jarFile),
+                Collections.<String>emptyList(), Collections.<String>emptyList(), 2).generateConfig();
+        
+        assertEquals(17, config.size());
+    }
+    
+    @Test
+    public void testGenerateConfig_withIndex() throws Exception {
+        File classesDir = File.createTempFile("classes", "");
+        classesDir.delete();
+        File packageDir = new File(classesDir, "co/cdev/agave/sample");
+        packageDir.mkdirs();
+        File endpointFile = new File(packageDir, "SampleEndpoint.class");
+        File handlerFile = new File(packageDir, "SampleHandler.class");
+        File indexFile = new File(classesDir, "scan.idx");
+        
+        try {
+            writeFile(endpointFile, readClassFile(SampleEndpoint.class));
+            writeFile(handlerFile, readClassFile(SampleHandler.class));
+            
+            Config config = generateIndexedConfig(classesDir, indexFile);
+            
+            assertEquals(17, config.size());
+            assertTrue(indexFile.isFile());
+            
+            List<Method> expectedMethods = new ArrayList<Method>();
+            for (HandlerDescriptor handlerDescriptor : config) {
+                expectedMethods.add(handlerDescriptor.getHandlerMethod());
+            }
+            
+            // unchanged contents with a new modification time are taken from the index
+            endpointFile.setLastModified(endpointFile.lastModified() - 10000);
+            config = generateIndexedConfig(classesDir, indexFile);
+            
+            List<Method> methods = new ArrayList<Method>();
+            for (HandlerDescriptor handlerDescriptor : config) {
+                assertTrue(handlerDescriptor instanceof StoredHandlerDescriptor);
+                methods.add(handlerDescriptor.getHandlerMethod());
+            }
+            assertEquals(expectedMethods, methods);
+            
+            // changed contents are read again
+            writeFile(endpointFile, readClassFile(LoginForm.class));
+            endpointFile.setLastModified(endpointFile.lastModified() - 20000);
+            config = generateIndexedConfig(classesDir, indexFile);
+            
+            assertTrue(config.getCandidatesFor("/birds").isEmpty());
+            assertFalse(config.getCandidatesFor("/login").isEmpty());
+            
+            // removed class files no longer contribute handlers
+            handlerFile.delete();
+            config = generateIndexedConfig(classesDir, indexFile);
+            
+            assertTrue(config.isEmpty());
+        } finally {
+            endpointFile.delete();
+            handlerFile.delete();
+            indexFile.delete();
+            packageDir.delete();
+            new File(classesDir, "co/cdev/agave").delete();
+            new File(classesDir, "co/cdev").delete();
+            new File(classesDir, "co").delete();
+            classesDir.delete();
+        }
+    }
+    
+    @Test
+    public void testGenerateConfig_withIndexAndChangedFormClass() throws Exception {
+        File classesDir = File.createTempFile("classes", "");
+        classesDir.delete();
+        File packageDir = new File(classesDir, "co/cdev/agave/sample");
+        packageDir.mkdirs();
+        File handlerFile = new File(packageDir, "SampleHandler.class");
+        File formFile = new File(packageDir, "LoginForm.class");
+        File indexFile = new File(classesDir, "scan.idx");
+        
+        final List<String> loadedClassNames = new ArrayList<String>();
+        ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                loadedClassNames.add(name);
+                return super.loadClass(name, resolve);
+            }
+        };
+        
+        try {
+            writeFile(handlerFile, readClassFile(SampleHandler.class));
+            writeFile(formFile, readClassFile(LoginForm.class));
+            
+            Config config = generateIndexedConfig(classLoader, classesDir, indexFile);
+            int size = config.size();
+            
+            assertFalse(loadedClassNames.isEmpty());
+            
+            // files that were modified well before the index was written are trusted
+            handlerFile.setLastModified(handlerFile.lastModified() - 10000);
+            formFile.setLastModified(formFile.lastModified() - 10000);
+            generateIndexedConfig(classLoader, classesDir, indexFile);
+            loadedClassNames.clear();
+            config = generateIndexedConfig(classLoader, classesDir, indexFile);
+            
+            assertEquals(size, config.size());
+            assertTrue(loadedClassNames.isEmpty());
+            
+            // replacing the form class file invalidates the descriptors of its handler
+            writeFile(formFile, readClassFile(AliasedForm.class));
+            formFile.setLastModified(formFile.lastModified() - 20000);
+            config = generateIndexedConfig(classLoader, classesDir, indexFile);
+            
+            assertEquals(size, config.size());
+            assertTrue(loadedClassNames.contains(RoutingContext.class.getName()));
+            
+            // the descriptors that were read again load their classes through the given class loader
+            for (HandlerDescriptor handlerDescriptor : config) {
+                assertTrue(handlerDescriptor instanceof StoredHandlerDescriptor);
+                assertEquals(SampleHandler.class, handlerDescriptor.getHandlerClass());
+            }
+        } finally {
+            handlerFile.delete();
+            formFile.delete();
+            indexFile.delete();
+            packageDir.delete();
+            new File(classesDir, "co/cdev/agave").delete();
+            new File(classesDir, "co/cdev").delete();
+            new File(classesDir, "co").delete();
+            classesDir.delete();
+        }
+    }
+    
+    private Config generateIndexedConfig(File classesDir, File indexFile) throws Exception {
+        return generateIndexedConfig(getClass().getClassLoader(), classesDir, indexFile);
+    }
+    
+    private Config generateIndexedConfig(ClassLoader classLoader, File classesDir, File indexFile) throws Exception {
+        return new ConfigGeneratorImpl(classLoader, Arrays.asList(classesDir),
+                Collections.<String>emptyList(), Collections.<String>emptyList(), 1, indexFile).generateConfig();
+    }
+    
+    private void writeFile(File file, byte[] contents) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+    }
+    
 }
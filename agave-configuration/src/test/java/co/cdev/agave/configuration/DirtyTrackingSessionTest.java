@@ -0,0 +1,138 @@
+package co.cdev.agave.configuration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import javax.servlet.http.HttpSession;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.cdev.agave.Dirtyable;
+
+public class DirtyTrackingSessionTest {
+
+    private static class Model implements Dirtyable {
+        boolean dirty;
+
+        @Override
+        public boolean isDirty() {
+            return dirty;
+        }
+
+        @Override
+        public void markClean() {
+            dirty = false;
+        }
+    }
+
+    private Mockery context = new Mockery();
+    private HttpSession session;
+
+    @Before
+    public void setup() {
+        session = context.mock(HttpSession.class);
+    }
+
+    @Test
+    public void testSkipSettingUnchangedAttribute() throws Exception {
+        final Object value = new Object();
+
+        context.checking(new Expectations() {{
+            one(session).getAttribute("a"); will(returnValue(value));
+            never(session).setAttribute("a", value);
+        }});
+
+        DirtyTrackingSession trackingSession = new DirtyTrackingSession(session);
+        trackingSession.setAttribute("a", trackingSession.getAttribute("a"));
+
+        assertSame(value, trackingSession.getAttribute("a"));
+        assertEquals(1, trackingSession.flush());
+        assertEquals(1, trackingSession.getAvoidedWriteCount());
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testWriteThroughChangedAttribute() throws Exception {
+        final Object value = new Object();
+
+        context.checking(new Expectations() {{
+            one(session).setAttribute("a", value);
+        }});
+
+        DirtyTrackingSession trackingSession = new DirtyTrackingSession(session);
+        trackingSession.setAttribute("a", value);
+        context.assertIsSatisfied();
+
+        trackingSession.setAttribute("a", value);
+
+        assertEquals(1, trackingSession.flush());
+        assertEquals(0, trackingSession.flush());
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testDeferSettingDirtyAttributeAgain() throws Exception {
+        final Model model = new Model();
+
+        context.checking(new Expectations() {{
+            one(session).getAttribute("model"); will(returnValue(model));
+        }});
+
+        DirtyTrackingSession trackingSession = new DirtyTrackingSession(session);
+        Model readModel = (Model) trackingSession.getAttribute("model");
+        readModel.dirty = true;
+        trackingSession.setAttribute("model", readModel);
+        context.assertIsSatisfied();
+
+        context.checking(new Expectations() {{
+            one(session).setAttribute("model", model);
+        }});
+
+        assertEquals(0, trackingSession.flush());
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testWriteDirtyAttributeThatWasOnlyRead() throws Exception {
+        final Model model = new Model();
+
+        context.checking(new Expectations() {{
+            one(session).getAttribute("model"); will(returnValue(model));
+            one(session).setAttribute("model", model);
+        }});
+
+        DirtyTrackingSession trackingSession = new DirtyTrackingSession(session);
+        ((Model) trackingSession.getAttribute("model")).dirty = true;
+
+        trackingSession.flush();
+        trackingSession.flush();
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testWriteThroughRemovingAttribute() throws Exception {
+        final Object value = new Object();
+
+        context.checking(new Expectations() {{
+            one(session).getAttribute("a"); will(returnValue(value));
+            one(session).getAttribute("b"); will(returnValue(null));
+            one(session).removeAttribute("a");
+        }});
+
+        DirtyTrackingSession trackingSession = new DirtyTrackingSession(session);
+        trackingSession.getAttribute("a");
+        trackingSession.getAttribute("b");
+        trackingSession.removeAttribute("a");
+        trackingSession.removeAttribute("b");
+        context.assertIsSatisfied();
+
+        assertNull(trackingSession.getAttribute("a"));
+        assertEquals(1, trackingSession.flush());
+        context.assertIsSatisfied();
+    }
+
+}
@@ -1,10 +1,14 @@
 package co.cdev.agave.sample;
 
 import java.util.Date;
+import java.util.LinkedList;
+import java.util.Set;
 
 import co.cdev.agave.HttpMethod;
+import co.cdev.agave.MultipartStream;
 import co.cdev.agave.Param;
 import co.cdev.agave.Route;
+import co.cdev.agave.StreamsParts;
 import co.cdev.agave.configuration.RoutingContext;
 
 public class SampleEndpoint {
@@ -34,4 +38,18 @@ public class SampleEndpoint {
 
     }
     
+    @Route(uri = "/birds/banded", method = HttpMethod.POST)
+    public void bandBirds(RoutingContext routingContext, 
+                          @Param("ids") long[] ids, 
+                          @Param("names") Set<String> names,
+                          @Param("sizes") LinkedList<Integer> sizes) {
+
+    }
+    
+    @Route(uri = "/birds/photos", method = HttpMethod.POST)
+    @StreamsParts
+    public void uploadPhotos(RoutingContext routingContext, MultipartStream photos) {
+
+    }
+    
 }
@@ -0,0 +1,31 @@
+package co.cdev.agave;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that a form is populated by writing its fields directly rather than by calling its
+ * mutators. This suits forms that only hold data, since any logic in their mutators is bypassed.
+ * Only fields that are annotated with {@link Bindable} are written this way.
+ * Parameter names are interpreted as they are for mutators, so {@code address.city} writes the
+ * {@code city} field of the object held in the {@code address} field, {@code scores!1} sets the
+ * second element of the list held in {@code scores}, {@code attributes$color} puts a value in the
+ * map held in {@code attributes}, and a parameter with several values is added to the collection
+ * held in the field of the same name. A field may be annotated with {@link Converter} to choose
+ * how its values are converted.
+ *
+ * <p>
+ * Parameters that do not name a bindable field are populated through the form's mutators instead.
+ * Setting an element of a list past its end is rejected rather than growing the list.
+ * </p>
+ */
+@Documented
+@Inherited
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface BindFields {
+}
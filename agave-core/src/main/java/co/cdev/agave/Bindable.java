@@ -0,0 +1,20 @@
+package co.cdev.agave;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field that request parameters may write when a form annotated with {@link BindFields}
+ * is populated. Fields that are not marked are never written directly, however they are named,
+ * so a form can hold state that the client must not control. A parameter that passes through a
+ * field to reach a nested object, as in {@code address.city}, needs both {@code address} and the
+ * {@code city} field of the nested object to be marked.
+ */
+@Documented
+@Target({ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bindable {
+}
@@ -48,13 +48,14 @@ import co.cdev.agave.conversion.ParamConverter;
  * }</pre>
  * 
  * The value supplied to the named converter is a String value coming from a form input, a request parameter, or a 
- * URI's positional parameter.
+ * URI's positional parameter. Fields of forms that are annotated with {@link BindFields} may be annotated in the
+ * same way.
  * 
  * @author <a href="mailto:damiancarrillo@gmail.com">Damian Carrillo</a>
  */
 @Documented
 @Inherited
-@Target({ElementType.PARAMETER})
+@Target({ElementType.PARAMETER, ElementType.FIELD})
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Converter {
     Class<? extends ParamConverter<?,?>> value();
@@ -0,0 +1,22 @@
+package co.cdev.agave;
+
+/**
+ * Implemented by session attributes that are mutated in place, so that the framework can tell
+ * when they need to be written back to the {@code HttpSession}. Containers that replicate
+ * sessions only ship an attribute when it is set, so an attribute that changes without being
+ * set again would otherwise be lost, and one that is set again without changing would be
+ * shipped needlessly.
+ */
+public interface Dirtyable {
+
+    /**
+     * @return true if this object has changed since it was last written to the session
+     */
+    public boolean isDirty();
+
+    /**
+     * Called after this object has been written to the session.
+     */
+    public void markClean();
+
+}
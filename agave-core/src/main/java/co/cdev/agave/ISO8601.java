@@ -0,0 +1,358 @@
+package co.cdev.agave;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+/**
+ * Parses and formats the profile of ISO 8601 that is described by {@link ISO8601DateFormat}. Text
+ * is parsed in a single pass straight into milliseconds since the epoch, without splitting it or
+ * creating any formats, calendars or symbols along the way. Nothing is shared between calls, so the
+ * methods may be used from any number of threads.
+ *
+ * <p>
+ * Fractional seconds may follow the seconds after a period or a comma, and are kept to the
+ * millisecond; the converters and formats that parse dates for requests and JSON drop them again
+ * with {@link #truncateToSeconds(long)}. A time that is followed by a {@code Z} is in UTC, and a time that has no offset at
+ * all is read as a local time in the time zone supplied by the caller. Dates use the proleptic
+ * Gregorian calendar, as ISO 8601 does, so dates before 1582 differ from those of a
+ * {@code GregorianCalendar}.
+ * </p>
+ */
+public final class ISO8601 {
+
+    /**
+     * The format that {@link #format(long)} produces, as a {@code SimpleDateFormat} pattern in UTC.
+     */
+    public static final String FORMAT = "yyyy-MM-dd'T'HH:mm:ssZ";
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private ISO8601() {
+    }
+
+    /**
+     * @param input the text to parse, which must hold a date and nothing else
+     * @param localZone the time zone of times that have no offset
+     * @return the milliseconds since the epoch
+     * @throws ParseException if the text is not a date, or names a day or time that does not exist
+     */
+    public static long parse(CharSequence input, TimeZone localZone) throws ParseException {
+        return parse(input, localZone, null);
+    }
+
+    /**
+     * Parses a date into a calendar that keeps the offset it was written with, so that the local
+     * date and time fields match the text.
+     *
+     * @param input the text to parse, which must hold a date and nothing else
+     * @param localZone the time zone of times that have no offset, which is also the time zone of
+     *        the calendar that is returned for them
+     * @throws ParseException if the text is not a date, or names a day or time that does not exist
+     */
+    public static Calendar parseCalendar(CharSequence input, TimeZone localZone) throws ParseException {
+        int[] offset = new int[1];
+        long millis = parse(input, localZone, offset);
+        TimeZone zone = localZone;
+
+        if (offset[0] != Integer.MIN_VALUE) {
+            zone = new SimpleTimeZone(offset[0], offsetId(offset[0]));
+        }
+
+        Calendar calendar = new GregorianCalendar(zone);
+        calendar.setTimeInMillis(millis);
+        return calendar;
+    }
+
+    /**
+     * Drops the fraction of a second from an instant, rounding towards the earlier second. Dates
+     * that are parsed for requests and JSON have always been kept to the second, so that a date
+     * compares equal to the same date written without its fraction.
+     */
+    public static long truncateToSeconds(long millis) {
+        return floorDiv(millis, MILLIS_PER_SECOND) * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * Formats an instant in UTC according to {@link #FORMAT}, e.g. {@code 2001-07-04T19:08:56+0000}.
+     */
+    public static String format(long millis) {
+        StringBuilder builder = new StringBuilder(24);
+        format(millis, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends an instant in UTC according to {@link #FORMAT}.
+     */
+    public static void format(long millis, StringBuilder builder) {
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        int millisOfDay = (int) (millis - days * MILLIS_PER_DAY);
+
+        // civil_from_days, after Howard Hinnant's date algorithms
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year < 0 || year > 9999) {
+            builder.append(year < 0 ? '-' : '+');
+            year = Math.abs(year);
+        }
+
+        appendDigits(builder, year, 4);
+        builder.append('-');
+        appendDigits(builder, month, 2);
+        builder.append('-');
+        appendDigits(builder, day, 2);
+        builder.append('T');
+        appendDigits(builder, millisOfDay / MILLIS_PER_HOUR, 2);
+        builder.append(':');
+        appendDigits(builder, millisOfDay / MILLIS_PER_MINUTE % 60, 2);
+        builder.append(':');
+        appendDigits(builder, millisOfDay / MILLIS_PER_SECOND % 60, 2);
+        builder.append("+0000");
+    }
+
+    /**
+     * @param offsetOut receives the offset that was written in milliseconds, or
+     *        {@code Integer.MIN_VALUE} when there was none; may be null
+     */
+    private static long parse(CharSequence input, TimeZone localZone, int[] offsetOut) throws ParseException {
+        int length = input.length();
+        int i = 0;
+
+        int year = digits(input, i, 4);
+        i += 4;
+        i = skip(input, i, '-');
+
+        long days;
+
+        if (i < length && input.charAt(i) == 'W') {
+            int week = digits(input, ++i, 2);
+            if (week < 1 || week > weeksInYear(year)) {
+                throw new ParseException("Week " + week + " is not in " + year + ": " + input, i);
+            }
+            i = skip(input, i + 2, '-');
+            int dayOfWeek = digits(input, i, 1);
+            if (dayOfWeek < 1 || dayOfWeek > 7) {
+                throw new ParseException("Day of week " + dayOfWeek + " does not exist: " + input, i);
+            }
+            i++;
+
+            long january4 = daysFromCivil(year, 1, 4);
+            long week1Monday = january4 - (isoDayOfWeek(january4) - 1);
+            days = week1Monday + (week - 1) * 7 + (dayOfWeek - 1);
+        } else if (runOfDigits(input, i) == 3) {
+            int dayOfYear = digits(input, i, 3);
+            if (dayOfYear < 1 || dayOfYear > (isLeapYear(year) ? 366 : 365)) {
+                throw new ParseException("Day " + dayOfYear + " is not in " + year + ": " + input, i);
+            }
+            i += 3;
+            days = daysFromCivil(year, 1, 1) + dayOfYear - 1;
+        } else {
+            int month = digits(input, i, 2);
+            if (month < 1 || month > 12) {
+                throw new ParseException("Month " + month + " does not exist: " + input, i);
+            }
+            i = skip(input, i + 2, '-');
+            int day = digits(input, i, 2);
+            if (day < 1 || day > daysInMonth(year, month)) {
+                throw new ParseException("Day " + day + " is not in month " + month + ": " + input, i);
+            }
+            i += 2;
+            days = daysFromCivil(year, month, day);
+        }
+
+        long millis = days * MILLIS_PER_DAY;
+        int offset = Integer.MIN_VALUE;
+
+        if (i < length && (input.charAt(i) == 'T' || input.charAt(i) == 't')) {
+            int hour = digits(input, ++i, 2);
+            int minute = 0;
+            int second = 0;
+            int fraction = 0;
+            i += 2;
+
+            if (startsNumber(input, i)) {
+                i = skip(input, i, ':');
+                minute = digits(input, i, 2);
+                i += 2;
+
+                if (startsNumber(input, i)) {
+                    i = skip(input, i, ':');
+                    second = digits(input, i, 2);
+                    i += 2;
+
+                    if (i < length && (input.charAt(i) == '.' || input.charAt(i) == ',')) {
+                        int run = runOfDigits(input, ++i);
+                        if (run == 0) {
+                            throw new ParseException("Expected a fraction of a second: " + input, i);
+                        }
+                        for (int place = 0; place < 3; place++) {
+                            fraction = fraction * 10 + (place < run ? input.charAt(i + place) - '0' : 0);
+                        }
+                        i += run;
+                    }
+                }
+            }
+
+            if (hour > 23 || minute > 59 || second > 59) {
+                throw new ParseException("Time does not exist: " + input, i);
+            }
+
+            millis += hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * MILLIS_PER_SECOND + fraction;
+
+            if (i < length) {
+                char designator = input.charAt(i);
+                if (designator == 'Z' || designator == 'z') {
+                    offset = 0;
+                    i++;
+                } else if (designator == '+' || designator == '-') {
+                    int offsetHours = digits(input, ++i, 2);
+                    int offsetMinutes = 0;
+                    i += 2;
+                    if (i < length) {
+                        i = skip(input, i, ':');
+                        offsetMinutes = digits(input, i, 2);
+                        i += 2;
+                    }
+                    if (offsetHours > 18 || offsetMinutes > 59) {
+                        throw new ParseException("Offset does not exist: " + input, i);
+                    }
+                    offset = (int) (offsetHours * MILLIS_PER_HOUR + offsetMinutes * MILLIS_PER_MINUTE);
+                    if (designator == '-') {
+                        offset = -offset;
+                    }
+                }
+            }
+        }
+
+        if (i != length) {
+            throw new ParseException("Unexpected text after the date: " + input, i);
+        }
+
+        if (offsetOut != null) {
+            offsetOut[0] = offset;
+        }
+
+        if (offset != Integer.MIN_VALUE) {
+            return millis - offset;
+        }
+
+        long guess = millis - localZone.getOffset(millis);
+        return millis - localZone.getOffset(guess);
+    }
+
+    /**
+     * daysFromCivil, after Howard Hinnant's date algorithms.
+     *
+     * @return the number of days between the epoch and the date
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * @return 1 for Monday through 7 for Sunday
+     */
+    private static int isoDayOfWeek(long days) {
+        return (int) floorMod(days + 3, 7) + 1;
+    }
+
+    private static int weeksInYear(int year) {
+        long january1 = daysFromCivil(year, 1, 1);
+        int dayOfWeek = isoDayOfWeek(january1);
+        return dayOfWeek == 4 || (dayOfWeek == 3 && isLeapYear(year)) ? 53 : 52;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        return month == 2 && isLeapYear(year) ? 29 : DAYS_IN_MONTH[month - 1];
+    }
+
+    private static int digits(CharSequence input, int start, int count) throws ParseException {
+        if (start + count > input.length()) {
+            throw new ParseException("Expected " + count + " digits: " + input, start);
+        }
+
+        int value = 0;
+
+        for (int i = start; i < start + count; i++) {
+            char c = input.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new ParseException("Expected a digit: " + input, i);
+            }
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    private static int runOfDigits(CharSequence input, int start) {
+        int i = start;
+        while (i < input.length() && input.charAt(i) >= '0' && input.charAt(i) <= '9') {
+            i++;
+        }
+        return i - start;
+    }
+
+    private static boolean startsNumber(CharSequence input, int i) {
+        if (i < input.length() && input.charAt(i) == ':') {
+            i++;
+        }
+        return i < input.length() && input.charAt(i) >= '0' && input.charAt(i) <= '9';
+    }
+
+    private static int skip(CharSequence input, int i, char separator) {
+        return i < input.length() && input.charAt(i) == separator ? i + 1 : i;
+    }
+
+    private static void appendDigits(StringBuilder builder, long value, int width) {
+        for (long limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) {
+                builder.append('0');
+            }
+        }
+        builder.append(value);
+    }
+
+    private static String offsetId(int offset) {
+        int minutes = Math.abs(offset) / (int) MILLIS_PER_MINUTE;
+        StringBuilder id = new StringBuilder(9).append("GMT").append(offset < 0 ? '-' : '+');
+        appendDigits(id, minutes / 60, 2);
+        id.append(':');
+        appendDigits(id, minutes % 60, 2);
+        return id.toString();
+    }
+
+    private static long floorDiv(long x, long y) {
+        long quotient = x / y;
+        return (x % y != 0 && (x ^ y) < 0) ? quotient - 1 : quotient;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+}
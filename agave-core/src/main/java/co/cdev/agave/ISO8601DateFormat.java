@@ -1,10 +1,8 @@
 package co.cdev.agave;
 
-import java.text.DateFormatSymbols;
 import java.text.ParseException;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
@@ -67,12 +65,9 @@ import java.util.TimeZone;
 public class ISO8601DateFormat extends SimpleDateFormat {
 
     private static final long serialVersionUID = 1L;
-    
-    private final Locale locale;
 
     public ISO8601DateFormat(Locale locale) {
         super("yyyy-MM-dd'T'HH':'mm':'ssZ", locale);
-        this.locale = locale;
         
         super.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
@@ -87,133 +82,30 @@ public class ISO8601DateFormat extends SimpleDateFormat {
         return parseObject(input, null);
     }
 
+    /**
+     * Parses the whole input with {@link ISO8601}, reading times without an offset in the default
+     * time zone and dropping fractions of a second.
+     *
+     * @return the date, or null if the input is not a date
+     */
     @Override
     public Object parseObject(String input, ParsePosition parsePosition) {
         Date parsedDate = null;
         
         if (input != null && !"".equals(input)) {
-            String formatString = null;
-            String actualInput = null;
-            
-            String[] components = input.split("T");
-            
-            if (components.length > 0) {
-                components[0] = components[0].replace("-", "");
-
-                if (components[0].contains("W")) {
-                    
-                    // Date as year, week in year, day of week (starting with Monday as 1
-                    // and ending with Sunday as 7
-                    
-                    formatString = "yyyy'W'wwEEE";
-                    actualInput = components[0].substring(0, 7);
-                    
-                    DateFormatSymbols symbols = new DateFormatSymbols(locale);
-                    int dayOfWeek = Integer.valueOf(components[0].substring(7, 8));
-                    
-                    if (dayOfWeek == 1) {
-                        actualInput += symbols.getWeekdays()[Calendar.MONDAY];
-                    } else if (dayOfWeek == 2) {
-                        actualInput += symbols.getWeekdays()[Calendar.TUESDAY];
-                    } else if (dayOfWeek == 3) {
-                        actualInput += symbols.getWeekdays()[Calendar.WEDNESDAY];
-                    } else if (dayOfWeek == 4) {
-                        actualInput += symbols.getWeekdays()[Calendar.THURSDAY];
-                    } else if (dayOfWeek == 5) {
-                        actualInput += symbols.getWeekdays()[Calendar.FRIDAY];
-                    } else if (dayOfWeek == 6) {
-                        actualInput += symbols.getWeekdays()[Calendar.SATURDAY];
-                    } else if (dayOfWeek == 7) {
-                        actualInput += symbols.getWeekdays()[Calendar.SUNDAY];
-                    }
-                } else if (components[0].length() == 8) { 
-                    
-                    // Date as year, month, day
-                    
-                    formatString = "yyyyMMdd";
-                    actualInput = components[0];
-                } else if (components[0].length() == 7) {
-                    
-                    // Date as year and day of year
-                    
-                    formatString = "yyyyDDD";
-                    actualInput = components[0];
-                }
-                
-                if (formatString != null && actualInput != null) {
-                    
-                    // Optional Time and Time Zone
-                    
-                    if (components.length > 1) {
-                        components[1] = components[1].replace(":", "");
-                        components[1] = components[1].replace("Z", "");
-                        
-                        String timePart = null;
-                        String timeZonePart = null;
-                        
-                        if (components[1].contains("+")) {
-                            String[] timeComponents = components[1].split("\\+");
-                            timePart = timeComponents[0];
-                            timeZonePart = "+" + timeComponents[1];
-                        } else if (components[1].contains("-")) {
-                            String[] timeComponents = components[1].split("\\-");
-                            timePart = timeComponents[0];
-                            timeZonePart = "-" + timeComponents[1];
-                        } else {
-                            timePart = components[1];
-                        }
-                        
-                        // Time
-                        
-                        if (timePart != null) {
-                            while (timePart.length() < 4) {
-                                timePart += "0";
-                            }
-                            
-                            if (timePart.length() > 6) {
-                                timePart = timePart.substring(0, 6);
-                            }
-                            
-                            actualInput += timePart;
-                            
-                            if (timePart.length() == 4) {
-                                formatString += "HHmm";
-                            } else if (timePart.length() == 6) {
-                                formatString += "HHmmss"; 
-                            }
-                            
-                            // Time Zone
-                        
-                            if (timeZonePart != null) {
-                                if (timeZonePart.length() == 1) {
-                                    timeZonePart = null;
-                                } else {
-                                    while (timeZonePart.length() < 5) {
-                                        timeZonePart += "0";
-                                    }
-                                    
-                                    actualInput += timeZonePart;
-                                    formatString += "Z";
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            
-            SimpleDateFormat format = new SimpleDateFormat(formatString);
-            
             try {
-                parsedDate = format.parse(actualInput);
-                parsedDate.setTime(parsedDate.getTime() / 1000 * 1000); // shave off milliseconds
+                parsedDate = new Date(ISO8601.truncateToSeconds(ISO8601.parse(input, TimeZone.getDefault())));
+                if (parsePosition != null) {
+                    parsePosition.setIndex(input.length());
+                }
             } catch (ParseException e) {
-                // do nothing on invalid input
+                if (parsePosition != null) {
+                    parsePosition.setErrorIndex(e.getErrorOffset());
+                }
             }
         }
         
         return parsedDate;
     }
 
-
-
 }
@@ -0,0 +1,24 @@
+package co.cdev.agave;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The parts of a multipart request body in the order that they arrive. The contents of each part
+ * are read straight from the request, so a part's stream can only be read until the next part is
+ * requested, and nothing is stored unless the handler stores it.
+ *
+ * @see StreamsParts
+ */
+public interface MultipartStream {
+
+    /**
+     * Moves to the next part, skipping whatever has not been read of the current one.
+     *
+     * @return the next part, whose contents are a stream over its body, or null if there are no
+     *         more parts
+     * @throws IOException if the request body cannot be read or is not a valid multipart body
+     */
+    public Part<InputStream> nextPart() throws IOException;
+
+}
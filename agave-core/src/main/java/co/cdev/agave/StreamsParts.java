@@ -0,0 +1,26 @@
+package co.cdev.agave;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the annotated handler method reads the parts of multipart requests as they
+ * arrive, instead of after the whole request body has been parsed and stored. The method must
+ * take a {@link MultipartStream} after the routing context, e.g.
+ *
+ * <pre>
+ * &#064;Route("/upload") &#064;StreamsParts
+ * public void upload(RoutingContext context, MultipartStream parts) throws IOException {
+ *     ...
+ * }</pre>
+ */
+@Documented
+@Inherited
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StreamsParts {
+}
@@ -0,0 +1,31 @@
+package co.cdev.agave.conversion;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import co.cdev.agave.ISO8601;
+
+/**
+ * Converts ISO 8601 dates into calendars that keep the offset the date was written with, so that
+ * {@code 2008-10-31T20:35:13+01:00} has an hour of 20 in a time zone one hour ahead of UTC. Times
+ * without an offset are local to the default time zone, and fractions of a second are dropped.
+ */
+public class CalendarConverter implements StringConverter<Calendar> {
+
+    @Override
+    public Calendar convert(String input, Locale locale) throws AgaveConversionException {
+        Calendar value = null;
+        if (input != null && !"".equals(input)) {
+            try {
+                value = ISO8601.parseCalendar(input, TimeZone.getDefault());
+                value.setTimeInMillis(ISO8601.truncateToSeconds(value.getTimeInMillis()));
+            } catch (ParseException e) {
+                throw new AgaveConversionException(e);
+            }
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,18 @@
+package co.cdev.agave.conversion;
+
+/**
+ * Lets an application contribute converters to the {@link ConverterRegistry}. Providers are found
+ * with {@link java.util.ServiceLoader}, so an application registers one by naming its class in a
+ * {@code META-INF/services/co.cdev.agave.conversion.ConverterProvider} resource.
+ */
+public interface ConverterProvider {
+
+    /**
+     * Registers this provider's converters. Converters that are registered for a class replace any
+     * built in converter for the same class.
+     *
+     * @param registry the registry to add converters to
+     */
+    public void registerConverters(ConverterRegistry registry);
+
+}
@@ -0,0 +1,186 @@
+package co.cdev.agave.conversion;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the converters that parameters are converted with. Converters are shared between requests
+ * and threads, so they must be stateless. Each converter class is instantiated once, and the
+ * converter for a parameter class is resolved once and then looked up directly.
+ *
+ * <p>
+ * A parameter class is converted by a converter registered for exactly that class, either
+ * programmatically or by a {@link ConverterProvider}. Otherwise the first built in converter whose
+ * target can be assigned to the parameter class is used, which matches how converters were chosen
+ * before the registry existed.
+ * </p>
+ *
+ * <p>
+ * There is a registry for each context class loader, so web applications that share the Agave
+ * jars do not see each other's converters. An application releases its registry with
+ * {@link #release(ClassLoader)} when it stops.
+ * </p>
+ */
+public final class ConverterRegistry {
+
+    private static final Object NONE = new Object();
+
+    private static final Map<ClassLoader, ConverterRegistry> INSTANCES =
+            new WeakHashMap<ClassLoader, ConverterRegistry>();
+
+    private static class BuiltInConverter {
+        final Class<?>[] targetClasses;
+        final ParamConverter<?, ?> converter;
+
+        BuiltInConverter(ParamConverter<?, ?> converter, Class<?>... targetClasses) {
+            this.converter = converter;
+            this.targetClasses = targetClasses;
+        }
+    }
+
+    private final List<BuiltInConverter> builtInConverters = new ArrayList<BuiltInConverter>();
+    private final ConcurrentMap<Class<?>, ParamConverter<?, ?>> registeredConverters =
+            new ConcurrentHashMap<Class<?>, ParamConverter<?, ?>>();
+    private final ConcurrentMap<Class<?>, Object> resolvedConverters = new ConcurrentHashMap<Class<?>, Object>();
+    private final ConcurrentMap<Class<?>, ParamConverter<?, ?>> converterInstances =
+            new ConcurrentHashMap<Class<?>, ParamConverter<?, ?>>();
+
+    ConverterRegistry(ClassLoader classLoader) {
+        addBuiltIn(new BooleanConverter(), Boolean.class, boolean.class);
+        addBuiltIn(new ByteConverter(), Byte.class, byte.class);
+        addBuiltIn(new CharacterConverter(), Character.class, char.class);
+        addBuiltIn(new DoubleConverter(), Double.class, double.class);
+        addBuiltIn(new FloatConverter(), Float.class, float.class);
+        addBuiltIn(new IntegerConverter(), Integer.class, int.class);
+        addBuiltIn(new LongConverter(), Long.class, long.class);
+        addBuiltIn(new DateConverter(), Date.class);
+        addBuiltIn(new CalendarConverter(), Calendar.class, GregorianCalendar.class);
+
+        for (ConverterProvider provider : ServiceLoader.load(ConverterProvider.class, classLoader)) {
+            provider.registerConverters(this);
+        }
+    }
+
+    /**
+     * @return the registry that is shared by the application whose context class loader is in use,
+     *         which includes the converters of any {@link ConverterProvider}s visible to that
+     *         class loader
+     */
+    public static ConverterRegistry getInstance() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        if (classLoader == null) {
+            classLoader = ConverterRegistry.class.getClassLoader();
+        }
+
+        synchronized (INSTANCES) {
+            ConverterRegistry registry = INSTANCES.get(classLoader);
+
+            if (registry == null) {
+                registry = new ConverterRegistry(classLoader);
+                INSTANCES.put(classLoader, registry);
+            }
+
+            return registry;
+        }
+    }
+
+    /**
+     * Forgets the registry of a class loader. The registry holds converters that were loaded by
+     * the class loader, which would otherwise keep it from being collected.
+     *
+     * @param classLoader the context class loader of an application that has stopped
+     */
+    public static void release(ClassLoader classLoader) {
+        synchronized (INSTANCES) {
+            INSTANCES.remove(classLoader);
+        }
+    }
+
+    /**
+     * Registers a converter for values of exactly the supplied class.
+     *
+     * @param targetClass the class of the parameters that the converter produces
+     * @param converter a stateless converter
+     */
+    public void register(Class<?> targetClass, ParamConverter<?, ?> converter) {
+        registeredConverters.put(targetClass, converter);
+        converterInstances.putIfAbsent(converter.getClass(), converter);
+        resolvedConverters.clear();
+    }
+
+    /**
+     * @param paramClass the class of a parameter
+     * @return the converter for the parameter class, or null if values are not converted
+     */
+    public ParamConverter<?, ?> getConverterFor(Class<?> paramClass) {
+        Object converter = resolvedConverters.get(paramClass);
+
+        if (converter == null) {
+            converter = resolve(paramClass);
+            resolvedConverters.putIfAbsent(paramClass, converter);
+        }
+
+        return converter == NONE ? null : (ParamConverter<?, ?>) converter;
+    }
+
+    /**
+     * Gets the shared instance of a converter class, creating it the first time it is requested.
+     *
+     * @param converterClass a converter class with a public no argument constructor
+     * @return the shared converter
+     * @throws IllegalArgumentException if the converter cannot be instantiated
+     */
+    public <C extends ParamConverter<?, ?>> C getConverter(Class<C> converterClass) {
+        ParamConverter<?, ?> converter = converterInstances.get(converterClass);
+
+        if (converter == null) {
+            try {
+                converter = converterClass.newInstance();
+            } catch (InstantiationException ex) {
+                throw new IllegalArgumentException("Unable to create converter " + converterClass.getName(), ex);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalArgumentException("Unable to create converter " + converterClass.getName(), ex);
+            }
+
+            ParamConverter<?, ?> existingConverter = converterInstances.putIfAbsent(converterClass, converter);
+            if (existingConverter != null) {
+                converter = existingConverter;
+            }
+        }
+
+        return converterClass.cast(converter);
+    }
+
+    private void addBuiltIn(ParamConverter<?, ?> converter, Class<?>... targetClasses) {
+        builtInConverters.add(new BuiltInConverter(converter, targetClasses));
+        converterInstances.put(converter.getClass(), converter);
+    }
+
+    private Object resolve(Class<?> paramClass) {
+        ParamConverter<?, ?> converter = registeredConverters.get(paramClass);
+
+        if (converter != null) {
+            return converter;
+        }
+
+        for (BuiltInConverter builtInConverter : builtInConverters) {
+            for (Class<?> targetClass : builtInConverter.targetClasses) {
+                if (paramClass.isAssignableFrom(targetClass)) {
+                    return builtInConverter.converter;
+                }
+            }
+        }
+
+        return NONE;
+    }
+
+}
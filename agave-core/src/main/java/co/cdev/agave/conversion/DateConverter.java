@@ -3,18 +3,27 @@ package co.cdev.agave.conversion;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
 
-import co.cdev.agave.ISO8601DateFormat;
+import co.cdev.agave.ISO8601;
 
+/**
+ * Converts ISO 8601 dates, which are described by {@link co.cdev.agave.ISO8601DateFormat}. Times
+ * without an offset are local to the default time zone, and fractions of a second are dropped.
+ */
 public class DateConverter implements StringConverter<Date> {
     
     @Override
     public Date convert(String input, Locale locale) throws AgaveConversionException {
-        try {
-            return new ISO8601DateFormat(locale).parse(input);
-        } catch (ParseException e) {
-            throw new AgaveConversionException(e);
+        Date value = null;
+        if (input != null && !"".equals(input)) {
+            try {
+                value = new Date(ISO8601.truncateToSeconds(ISO8601.parse(input, TimeZone.getDefault())));
+            } catch (ParseException e) {
+                throw new AgaveConversionException(e);
+            }
         }
+        return value;
     }
 
 }
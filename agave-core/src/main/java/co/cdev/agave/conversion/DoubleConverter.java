@@ -2,19 +2,24 @@ package co.cdev.agave.conversion;
 
 import java.util.Locale;
 
-public class DoubleConverter implements StringConverter<Double> {
+public class DoubleConverter implements StringConverter<Double>, ToDoubleConverter {
 
     @Override
     public Double convert(String input, Locale locale) throws AgaveConversionException {
         Double value = null;
         if (input != null && !"".equals(input)) {
-            try {
-                value = Double.parseDouble(input);
-            } catch (NumberFormatException ex) {
-                throw new AgaveConversionException("Could not convert " + input + " to a Double object", ex.getCause());
-            }
+            value = parseDouble(input, locale);
         }
         return value;
     }
 
+    @Override
+    public double parseDouble(CharSequence input, Locale locale) throws AgaveConversionException {
+        try {
+            return Double.parseDouble(input.toString());
+        } catch (NumberFormatException ex) {
+            throw new AgaveConversionException("Could not convert " + input + " to a Double object", ex.getCause());
+        }
+    }
+
 }
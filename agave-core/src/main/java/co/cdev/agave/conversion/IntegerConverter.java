@@ -2,19 +2,24 @@ package co.cdev.agave.conversion;
 
 import java.util.Locale;
 
-public class IntegerConverter implements StringConverter<Integer> {
+public class IntegerConverter implements StringConverter<Integer>, ToIntConverter {
 
     @Override
     public Integer convert(String input, Locale locale) throws AgaveConversionException {
         Integer value = null;
         if (input != null && !"".equals(input)) {
-            try {
-                value = Integer.parseInt(input);
-            } catch (NumberFormatException ex) {
-                throw new AgaveConversionException("Could not convert " + input + " to a Integer object", ex.getCause());
-            }
+            value = parseInt(input, locale);
         }
         return value;
     }
 
+    @Override
+    public int parseInt(CharSequence input, Locale locale) throws AgaveConversionException {
+        try {
+            return NumberParsing.parseInt(input);
+        } catch (NumberFormatException ex) {
+            throw new AgaveConversionException("Could not convert " + input + " to a Integer object", ex.getCause());
+        }
+    }
+
 }
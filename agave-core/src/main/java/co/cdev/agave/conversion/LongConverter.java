@@ -2,19 +2,24 @@ package co.cdev.agave.conversion;
 
 import java.util.Locale;
 
-public class LongConverter implements StringConverter<Long> {
+public class LongConverter implements StringConverter<Long>, ToLongConverter {
 
     @Override
     public Long convert(String input, Locale locale) throws AgaveConversionException {
         Long value = null;
         if (input != null && !"".equals(input)) {
-            try {
-                value = Long.parseLong(input);
-            } catch (NumberFormatException ex) {
-                throw new AgaveConversionException("Could not convert " + input + " to a Long object", ex.getCause());
-            }
+            value = parseLong(input, locale);
         }
         return value;
     }
 
-}
\ No newline at end of file
+    @Override
+    public long parseLong(CharSequence input, Locale locale) throws AgaveConversionException {
+        try {
+            return NumberParsing.parseLong(input);
+        } catch (NumberFormatException ex) {
+            throw new AgaveConversionException("Could not convert " + input + " to a Long object", ex.getCause());
+        }
+    }
+
+}
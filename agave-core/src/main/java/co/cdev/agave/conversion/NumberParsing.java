@@ -0,0 +1,64 @@
+package co.cdev.agave.conversion;
+
+/**
+ * Parses decimal integers directly from character sequences, which avoids the substrings and
+ * copies that would otherwise be made to hand the text to {@link Long#parseLong(String)}.
+ */
+final class NumberParsing {
+
+    private NumberParsing() {
+    }
+
+    static int parseInt(CharSequence input) {
+        return (int) parseLong(input, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    static long parseLong(CharSequence input) {
+        return parseLong(input, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Accumulates the value negatively, as {@link Long#parseLong(String)} does, so that the
+     * minimum value can be parsed without overflowing.
+     */
+    private static long parseLong(CharSequence input, long min, long max) {
+        int length = input.length();
+        int i = 0;
+        boolean negative = false;
+
+        if (length > 0) {
+            char first = input.charAt(0);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                i++;
+            }
+        }
+
+        if (i == length) {
+            throw new NumberFormatException("For input string: \"" + input + "\"");
+        }
+
+        long limit = negative ? min : -max;
+        long multiplicationLimit = limit / 10;
+        long result = 0;
+
+        for (; i < length; i++) {
+            int digit = Character.digit(input.charAt(i), 10);
+
+            if (digit < 0 || result < multiplicationLimit) {
+                throw new NumberFormatException("For input string: \"" + input + "\"");
+            }
+
+            result *= 10;
+
+            if (result < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + input + "\"");
+            }
+
+            result -= digit;
+        }
+
+        return negative ? result : -result;
+    }
+
+}
@@ -0,0 +1,19 @@
+package co.cdev.agave.conversion;
+
+import java.util.Locale;
+
+/**
+ * Implemented by converters that can produce a primitive {@code long} directly, so that values bound
+ * to {@code long} properties do not have to be boxed first.
+ */
+public interface ToLongConverter {
+
+    /**
+     * @param input the text to convert, which must not be empty
+     * @param locale the locale of the request
+     * @return the converted value
+     * @throws AgaveConversionException if the input is empty or is not a long
+     */
+    public long parseLong(CharSequence input, Locale locale) throws AgaveConversionException;
+
+}
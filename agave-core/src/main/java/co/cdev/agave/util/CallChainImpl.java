@@ -25,21 +25,24 @@
  */
 package co.cdev.agave.util;
 
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * @author <a href="mailto:damianarrillo@gmail.com">Damian Carrillo</a>
+ * An immutable, parsed request parameter name. Parameter names are scanned once from left to
+ * right: {@code '.'}, {@code '-'} and {@code ':'} separate accessors from the mutator, and the
+ * mutator may be followed by {@code $key} to put into a map or {@code !index} to insert into a
+ * list. Use {@link CallChains#parse(String, boolean)} to reuse chains across requests.
  */
 public class CallChainImpl implements CallChain {
 
-    private String parameterName;
-    private List<String> accessorNames = new LinkedList<String>();
-    private MutatorType mutatorType;
-    private String mutatorName;
-    private String key;
-    private Integer index;
+    private final String parameterName;
+    private final List<String> accessorNames;
+    private final MutatorType mutatorType;
+    private final String mutatorName;
+    private final String key;
+    private final Integer index;
 
     /**
      * 
@@ -51,33 +54,55 @@ public class CallChainImpl implements CallChain {
      */
     public CallChainImpl(String parameterName, boolean unique) {
         this.parameterName = parameterName;
-        LinkedList<String> callChain = new LinkedList<String>(Arrays.asList(parameterName.split("[-.:]")));
-        String mutator = null;
 
-        if (callChain != null && !callChain.isEmpty()) {
-            mutator = callChain.removeLast();
-            for (String call : callChain) {
-                accessorNames.add(createAccessorFrom(call));
+        // Trailing separators are ignored, and a name made only of separators is a mutator name
+
+        int end = parameterName.length();
+        while (end > 0 && isSeparator(parameterName.charAt(end - 1))) {
+            end--;
+        }
+
+        List<String> accessors = null;
+        int start = 0;
+
+        for (int i = 0; i < end; i++) {
+            if (isSeparator(parameterName.charAt(i))) {
+                if (accessors == null) {
+                    accessors = new ArrayList<String>(4);
+                }
+                accessors.add(createMethodName("get", start, i));
+                start = i + 1;
             }
-        } else {
-            mutator = parameterName;
         }
 
-        if (mutator.contains("$")) {
-            String[] values = mutator.split("\\$");
-            mutatorName = createPuttingMutatorFrom(values[0]);
-            key = values[1];
+        if (end == 0) {
+            end = parameterName.length();
+        }
+
+        accessorNames = accessors == null ? Collections.<String>emptyList() : Collections.unmodifiableList(accessors);
+
+        int keyOffset = parameterName.indexOf('$', start);
+        int indexOffset = parameterName.indexOf('!', start);
+
+        if (keyOffset >= 0 && keyOffset < end) {
+            mutatorName = createMethodName("putIn", start, keyOffset);
+            key = parameterName.substring(keyOffset + 1, suffixEnd(keyOffset, end, '$'));
+            index = null;
             mutatorType = MutatorType.PUTTING;
-        } else if (mutator.contains("!")) {
-            String[] values = mutator.split("!");
-            mutatorName = createInsertingMutatorFrom(values[0]);
-            index = Integer.parseInt(values[1]);
+        } else if (indexOffset >= 0 && indexOffset < end) {
+            mutatorName = createMethodName("insertIn", start, indexOffset);
+            key = null;
+            index = Integer.parseInt(parameterName.substring(indexOffset + 1, suffixEnd(indexOffset, end, '!')));
             mutatorType = MutatorType.INSERTING;
         } else if (unique) {
-            mutatorName = createSettingMutatorFrom(mutator);
+            mutatorName = createMethodName("set", start, end);
+            key = null;
+            index = null;
             mutatorType = MutatorType.SETTING;
         } else {
-            mutatorName = createAppendingMutatorFrom(mutator);
+            mutatorName = createMethodName("addTo", start, end);
+            key = null;
+            index = null;
             mutatorType = MutatorType.APPENDING;
         }
     }
@@ -112,27 +137,40 @@ public class CallChainImpl implements CallChain {
         return index;
     }
 
-    private String createAccessorFrom(String value) {
-        return "get" + capitalize(value);
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == '-' || c == ':';
     }
 
-    private String createPuttingMutatorFrom(String value) {
-        return "putIn" + capitalize(value);
-    }
+    /**
+     * Finds the end of the key or index that follows a delimiter, which runs up to the next
+     * occurrence of the delimiter.
+     */
+    private int suffixEnd(int delimiterOffset, int end, char delimiter) {
+        int suffixEnd = parameterName.indexOf(delimiter, delimiterOffset + 1);
+        if (suffixEnd < 0 || suffixEnd > end) {
+            suffixEnd = end;
+        }
 
-    private String createInsertingMutatorFrom(String value) {
-        return "insertIn" + capitalize(value);
-    }
+        // A delimiter that is followed by nothing but more delimiters has no key or index
 
-    private String createAppendingMutatorFrom(String value) {
-        return "addTo" + capitalize(value);
-    }
+        for (int i = delimiterOffset + 1; i < end; i++) {
+            if (parameterName.charAt(i) != delimiter) {
+                return suffixEnd;
+            }
+        }
 
-    private String createSettingMutatorFrom(String value) {
-        return "set" + capitalize(value);
+        throw new IllegalArgumentException("Expected a value after '" + delimiter + "' in \"" + parameterName + "\"");
     }
 
-    private String capitalize(String value) {
-        return value.substring(0, 1).toUpperCase() + value.substring(1);
+    private String createMethodName(String prefix, int start, int end) {
+        if (start >= end) {
+            throw new IllegalArgumentException("Expected a property name at position " + start + " of \"" + parameterName + "\"");
+        }
+
+        return new StringBuilder(prefix.length() + end - start)
+                .append(prefix)
+                .append(parameterName.substring(start, start + 1).toUpperCase())
+                .append(parameterName, start + 1, end)
+                .toString();
     }
 }
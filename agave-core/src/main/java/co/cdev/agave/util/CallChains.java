@@ -0,0 +1,43 @@
+package co.cdev.agave.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parses request parameter names into {@link CallChain}s, reusing the chains of names that have
+ * been seen before. Since parameter names are chosen by the client, only a limited number of
+ * chains are kept; names beyond that are parsed every time they are seen.
+ */
+public final class CallChains {
+
+    public static final int MAX_CACHED_CALL_CHAINS = 4096;
+
+    private static final ConcurrentMap<String, CallChain> UNIQUE_CALL_CHAINS =
+            new ConcurrentHashMap<String, CallChain>();
+    private static final ConcurrentMap<String, CallChain> MULTIPLE_CALL_CHAINS =
+            new ConcurrentHashMap<String, CallChain>();
+
+    private CallChains() {
+    }
+
+    /**
+     * @param parameterName the name of the request parameter
+     * @param unique whether the parameter has a single value, which determines whether it is set
+     *        or appended
+     * @return the parsed parameter name
+     */
+    public static CallChain parse(String parameterName, boolean unique) {
+        ConcurrentMap<String, CallChain> callChains = unique ? UNIQUE_CALL_CHAINS : MULTIPLE_CALL_CHAINS;
+        CallChain callChain = callChains.get(parameterName);
+
+        if (callChain == null) {
+            callChain = new CallChainImpl(parameterName, unique);
+            if (callChains.size() < MAX_CACHED_CALL_CHAINS) {
+                callChains.putIfAbsent(parameterName, callChain);
+            }
+        }
+
+        return callChain;
+    }
+
+}
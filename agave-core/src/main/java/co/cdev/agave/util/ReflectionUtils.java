@@ -6,7 +6,11 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -20,9 +24,14 @@ public class ReflectionUtils {
     private static final Pattern ACCESSOR_PATTERN = Pattern.compile("^(get|is|has|can)([A-Z])(.*)");
     private static final Pattern MUTATOR_PATTERN  = Pattern.compile("^(set)([A-Z])(.*)");
     
+    private static final ConcurrentMap<Class<?>, Map<String, Field>> FIELDS = 
+            new ConcurrentHashMap<Class<?>, Map<String, Field>>();
+    
     /**
      * Walks up the object hierarchy to get a declared field.  This will
      * work for public, protected, package, and privately scoped fields.
+     * The fields of each class are indexed by name the first time that
+     * one of them is requested.
      * 
      * @param type most specific type in the object hierarchy
      * @param fieldName the name of the field to get
@@ -30,23 +39,37 @@ public class ReflectionUtils {
      */
     public static Field getField(Class<?> type, String fieldName) {
         if (type != null && fieldName != null) {
-            Class<?> currentType = type;
+            Map<String, Field> fields = FIELDS.get(type);
             
-            while (!Object.class.equals(currentType)) {
-                for (Field currentField : currentType.getDeclaredFields()) {
-                    if (fieldName.equals(currentField.getName())) {
-                        currentField.setAccessible(true);
-                        return currentField;
-                    }
-                }
-                
-                currentType = currentType.getSuperclass();
+            if (fields == null) {
+                fields = indexFields(type);
+                FIELDS.putIfAbsent(type, fields);
             }
+            
+            return fields.get(fieldName);
         }
         
         return null;
     }
     
+    private static Map<String, Field> indexFields(Class<?> type) {
+        Map<String, Field> fields = new HashMap<String, Field>();
+        Class<?> currentType = type;
+        
+        while (currentType != null && !Object.class.equals(currentType)) {
+            for (Field currentField : currentType.getDeclaredFields()) {
+                if (!fields.containsKey(currentField.getName())) {
+                    currentField.setAccessible(true);
+                    fields.put(currentField.getName(), currentField);
+                }
+            }
+            
+            currentType = currentType.getSuperclass();
+        }
+        
+        return fields;
+    }
+    
     /**
      * Gets a method and manually performs autoboxing/unboxing (there is no way to do it reflectively).
      * 
@@ -0,0 +1,102 @@
+package co.cdev.agave;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class ISO8601Test {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    
+    private static long utc(int year, int month, int day, int hour, int minute, int second) {
+        Calendar cal = new GregorianCalendar(UTC);
+        cal.clear();
+        cal.set(year, month, day, hour, minute, second);
+        return cal.getTimeInMillis();
+    }
+    
+    @Test
+    public void testParse_withCalendarDate() throws Exception {
+        assertEquals(utc(2008, Calendar.OCTOBER, 31, 0, 0, 0), ISO8601.parse("2008-10-31", UTC));
+        assertEquals(utc(2008, Calendar.OCTOBER, 31, 0, 0, 0), ISO8601.parse("20081031", UTC));
+        assertEquals(utc(1600, Calendar.FEBRUARY, 29, 0, 0, 0), ISO8601.parse("1600-02-29", UTC));
+        assertEquals(utc(1969, Calendar.DECEMBER, 31, 23, 59, 59), ISO8601.parse("1969-12-31T23:59:59Z", UTC));
+    }
+    
+    @Test
+    public void testParse_withOrdinalDate() throws Exception {
+        assertEquals(utc(2008, Calendar.DECEMBER, 31, 0, 0, 0), ISO8601.parse("2008-366", UTC));
+        assertEquals(utc(2009, Calendar.JANUARY, 1, 0, 0, 0), ISO8601.parse("2009001", UTC));
+    }
+    
+    @Test
+    public void testParse_withWeekDate() throws Exception {
+        assertEquals(utc(2007, Calendar.DECEMBER, 31, 0, 0, 0), ISO8601.parse("2008-W01-1", UTC));
+        assertEquals(utc(2010, Calendar.JANUARY, 3, 0, 0, 0), ISO8601.parse("2009-W53-7", UTC));
+        assertEquals(utc(2008, Calendar.OCTOBER, 31, 0, 0, 0), ISO8601.parse("2008W445", UTC));
+    }
+    
+    @Test
+    public void testParse_withFractionalSeconds() throws Exception {
+        long expected = utc(2001, Calendar.JULY, 4, 19, 8, 56) + 235;
+        
+        assertEquals(expected, ISO8601.parse("2001-07-04T12:08:56.235-0700", UTC));
+        assertEquals(expected, ISO8601.parse("2001-07-04T19:08:56,2359Z", UTC));
+        assertEquals(expected - 35, ISO8601.parse("2001-07-04T19:08:56.2Z", UTC));
+    }
+    
+    @Test
+    public void testParse_withLocalTime() throws Exception {
+        TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+        
+        assertEquals(utc(2008, Calendar.OCTOBER, 31, 0, 35, 0), ISO8601.parse("2008-10-30T20:35", newYork));
+        assertEquals(utc(2008, Calendar.DECEMBER, 31, 1, 35, 0), ISO8601.parse("2008-12-30T20:35", newYork));
+    }
+    
+    @Test
+    public void testParse_withInvalidDates() throws Exception {
+        String[] invalidDates = {"", "2008", "2008-13-01", "2008-02-30", "2009-02-29", "2009-366", "2008-W53-1",
+                "2008-W01-8", "2008-10-31T24", "2008-10-31T20:60", "2008-10-31T2", "2008-10-31T20:35:13.",
+                "2008-10-31T20+19", "2008-10-31T20:35:13Zjunk", "2008-10-31 20:35"};
+        
+        for (String invalidDate : invalidDates) {
+            try {
+                ISO8601.parse(invalidDate, UTC);
+                fail("Parsed " + invalidDate);
+            } catch (ParseException ex) {
+                // expected
+            }
+        }
+    }
+    
+    @Test
+    public void testParseCalendar_keepsOffset() throws Exception {
+        Calendar cal = ISO8601.parseCalendar("2008-10-31T20:35:13+05:30", UTC);
+        
+        assertEquals(utc(2008, Calendar.OCTOBER, 31, 15, 5, 13), cal.getTimeInMillis());
+        assertEquals(20, cal.get(Calendar.HOUR_OF_DAY));
+        assertEquals(35, cal.get(Calendar.MINUTE));
+        assertEquals("GMT+05:30", cal.getTimeZone().getID());
+    }
+    
+    @Test
+    public void testFormat() throws Exception {
+        assertEquals("2001-07-04T19:08:56+0000", ISO8601.format(utc(2001, Calendar.JULY, 4, 19, 8, 56) + 235));
+        assertEquals("1969-12-31T23:59:59+0000", ISO8601.format(-1));
+        assertEquals("0001-01-01T00:00:00+0000", ISO8601.format(-62135596800000L));
+    }
+    
+    @Test
+    public void testFormat_roundTrip() throws Exception {
+        for (long millis = -400L * 366 * 86400000; millis < 400L * 366 * 86400000; millis += 86400000L * 37 + 3723000) {
+            assertEquals(millis, ISO8601.parse(ISO8601.format(millis), UTC));
+        }
+    }
+    
+}
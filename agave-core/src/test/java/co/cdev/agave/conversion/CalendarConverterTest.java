@@ -0,0 +1,62 @@
+package co.cdev.agave.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CalendarConverterTest {
+
+    private CalendarConverter converter;
+    
+    @Before
+    public void setUp() {
+        converter = new CalendarConverter();
+    }
+    
+    @Test
+    public void testConvert() throws Exception {
+        Calendar cal = converter.convert("2008-W44-5T21:35:13+01:00", Locale.US);
+        
+        GregorianCalendar expected = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        expected.clear();
+        expected.set(2008, Calendar.OCTOBER, 31, 20, 35, 13);
+        
+        assertEquals(expected.getTimeInMillis(), cal.getTimeInMillis());
+        assertEquals(21, cal.get(Calendar.HOUR_OF_DAY));
+        assertEquals(60 * 60 * 1000, cal.getTimeZone().getRawOffset());
+    }
+    
+    @Test
+    public void testConvert_withFractionalSecondsTruncated() throws Exception {
+        Calendar cal = converter.convert("2008-10-31T20:35:13.750Z", Locale.US);
+        
+        assertEquals(0, cal.get(Calendar.MILLISECOND));
+        assertEquals(13, cal.get(Calendar.SECOND));
+    }
+    
+    @Test
+    public void testConvert_withoutOffset() throws Exception {
+        Calendar cal = converter.convert("2008-10-31T20:35", Locale.US);
+        
+        assertEquals(TimeZone.getDefault(), cal.getTimeZone());
+        assertEquals(20, cal.get(Calendar.HOUR_OF_DAY));
+    }
+    
+    @Test
+    public void testConvert_withEmptyInput() throws Exception {
+        assertNull(converter.convert("", Locale.US));
+    }
+    
+    @Test(expected = AgaveConversionException.class)
+    public void testConvert_withInvalidInput() throws Exception {
+        converter.convert("2008-10-32", Locale.US);
+    }
+    
+}
@@ -0,0 +1,107 @@
+package co.cdev.agave.conversion;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Date;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConverterRegistryTest {
+
+    public static class ShortConverterProvider implements ConverterProvider {
+
+        @Override
+        public void registerConverters(ConverterRegistry registry) {
+            registry.register(Short.class, new ShortConverter());
+            registry.register(short.class, registry.getConverter(ShortConverter.class));
+        }
+
+    }
+
+    private ConverterRegistry registry;
+
+    @Before
+    public void setup() throws Exception {
+        registry = new ConverterRegistry(getClass().getClassLoader());
+    }
+
+    @Test
+    public void testGetConverterForBuiltInClasses() throws Exception {
+        Assert.assertTrue(registry.getConverterFor(Integer.class) instanceof IntegerConverter);
+        Assert.assertTrue(registry.getConverterFor(int.class) instanceof IntegerConverter);
+        Assert.assertTrue(registry.getConverterFor(Date.class) instanceof DateConverter);
+        Assert.assertSame(registry.getConverterFor(Integer.class), registry.getConverterFor(int.class));
+        Assert.assertNull(registry.getConverterFor(String.class));
+    }
+
+    @Test
+    public void testGetConverterForSupertypeUsesFirstBuiltIn() throws Exception {
+        Assert.assertTrue(registry.getConverterFor(Number.class) instanceof ByteConverter);
+    }
+
+    @Test
+    public void testGetConverterReturnsSharedInstance() throws Exception {
+        IntegerConverter converter = registry.getConverter(IntegerConverter.class);
+
+        Assert.assertSame(converter, registry.getConverter(IntegerConverter.class));
+        Assert.assertSame(converter, registry.getConverterFor(Integer.class));
+        Assert.assertSame(registry.getConverter(NoopConverter.class), registry.getConverter(NoopConverter.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetConverterThatCannotBeInstantiated() throws Exception {
+        registry.getConverter(StringConverter.class);
+    }
+
+    @Test
+    public void testRegisterReplacesBuiltIn() throws Exception {
+        Assert.assertTrue(registry.getConverterFor(Long.class) instanceof LongConverter);
+
+        StringConverter<Long> converter = new StringConverter<Long>() {
+            @Override
+            public Long convert(String input, Locale locale) throws AgaveConversionException {
+                return 42L;
+            }
+        };
+        registry.register(Long.class, converter);
+
+        Assert.assertSame(converter, registry.getConverterFor(Long.class));
+        Assert.assertTrue(registry.getConverterFor(long.class) instanceof LongConverter);
+    }
+
+    @Test
+    public void testProvidersAreLoaded() throws Exception {
+        Assert.assertTrue(registry.getConverterFor(Short.class) instanceof ShortConverter);
+        Assert.assertSame(registry.getConverterFor(Short.class), registry.getConverterFor(short.class));
+        Assert.assertEquals(Short.valueOf((short) 7),
+                ((ShortConverter) registry.getConverterFor(short.class)).convert("7", Locale.getDefault()));
+    }
+
+    @Test
+    public void testGetInstanceIsKeptForEachContextClassLoader() throws Exception {
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        ClassLoader applicationClassLoader = new URLClassLoader(new URL[0], contextClassLoader);
+
+        try {
+            ConverterRegistry sharedRegistry = ConverterRegistry.getInstance();
+
+            thread.setContextClassLoader(applicationClassLoader);
+            ConverterRegistry applicationRegistry = ConverterRegistry.getInstance();
+
+            Assert.assertNotSame(sharedRegistry, applicationRegistry);
+            Assert.assertSame(applicationRegistry, ConverterRegistry.getInstance());
+
+            ConverterRegistry.release(applicationClassLoader);
+
+            Assert.assertNotSame(applicationRegistry, ConverterRegistry.getInstance());
+        } finally {
+            ConverterRegistry.release(applicationClassLoader);
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+}
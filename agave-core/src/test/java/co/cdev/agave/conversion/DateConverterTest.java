@@ -276,4 +276,20 @@ public class DateConverterTest {
         assertEquals(halloween, converter.convert("2008-W44-5T19:35:13-01:00", locale));
         assertEquals(halloween, converter.convert("2008-W44-5T21:35:13+01:00", locale));
     }
+    
+    @Test
+    public void testDate_withFractionalSecondsTruncated() throws Exception {
+        GregorianCalendar cal = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        cal.clear();
+        cal.set(2008, Calendar.OCTOBER, 31, 20, 35, 13);
+        
+        assertEquals(cal.getTime(), converter.convert("2008-10-31T20:35:13.25Z", locale));
+        assertEquals(cal.getTime(), converter.convert("2008-10-31T21:35:13,999+01:00", locale));
+        assertEquals(-1000L, converter.convert("1969-12-31T23:59:59.5Z", locale).getTime());
+    }
+    
+    @Test(expected = AgaveConversionException.class)
+    public void testDate_withInvalidDate() throws Exception {
+        converter.convert("2008-02-30", locale);
+    }
 }
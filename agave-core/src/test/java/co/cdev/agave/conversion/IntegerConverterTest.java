@@ -56,5 +56,28 @@ public class IntegerConverterTest {
         converter.convert("some bad input", Locale.getDefault());
     }
     
+    @Test
+    public void testParseInt() throws Exception {
+        Assert.assertEquals(10, converter.parseInt(new StringBuilder("10"), Locale.getDefault()));
+        Assert.assertEquals(-4, converter.parseInt("-4", Locale.getDefault()));
+        Assert.assertEquals(7, converter.parseInt("+7", Locale.getDefault()));
+        Assert.assertEquals(Integer.MIN_VALUE, converter.parseInt("-2147483648", Locale.getDefault()));
+        Assert.assertEquals(Integer.MAX_VALUE, converter.parseInt("2147483647", Locale.getDefault()));
+    }
+    
+    @Test(expected = AgaveConversionException.class)
+    public void testParseIntOverflow() throws Exception {
+        converter.parseInt("2147483648", Locale.getDefault());
+    }
+    
+    @Test(expected = AgaveConversionException.class)
+    public void testParseIntSignOnly() throws Exception {
+        converter.parseInt("-", Locale.getDefault());
+    }
+    
+    @Test(expected = AgaveConversionException.class)
+    public void testParseIntEmpty() throws Exception {
+        converter.parseInt("", Locale.getDefault());
+    }
+    
 }
-
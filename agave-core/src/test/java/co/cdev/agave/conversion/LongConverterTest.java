@@ -56,5 +56,28 @@ public class LongConverterTest {
         converter.convert("some bad input", Locale.getDefault());
     }
     
+    @Test
+    public void testParseLong() throws Exception {
+        Assert.assertEquals(10, converter.parseLong(new StringBuilder("10"), Locale.getDefault()));
+        Assert.assertEquals(-4, converter.parseLong("-4", Locale.getDefault()));
+        Assert.assertEquals(7, converter.parseLong("+7", Locale.getDefault()));
+        Assert.assertEquals(Long.MIN_VALUE, converter.parseLong("-9223372036854775808", Locale.getDefault()));
+        Assert.assertEquals(Long.MAX_VALUE, converter.parseLong("9223372036854775807", Locale.getDefault()));
+    }
+    
+    @Test(expected = AgaveConversionException.class)
+    public void testParseLongOverflow() throws Exception {
+        converter.parseLong("9223372036854775808", Locale.getDefault());
+    }
+    
+    @Test(expected = AgaveConversionException.class)
+    public void testParseLongSignOnly() throws Exception {
+        converter.parseLong("-", Locale.getDefault());
+    }
+    
+    @Test(expected = AgaveConversionException.class)
+    public void testParseLongEmpty() throws Exception {
+        converter.parseLong("", Locale.getDefault());
+    }
+    
 }
-
@@ -0,0 +1,122 @@
+package co.cdev.agave.util;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Compares the previous regular expression based parameter name parsing with the scanning parser
+ * and with cached chains. This is not run as part of the test suite; run its main method with the
+ * module's test classpath instead.
+ */
+public class CallChainBenchmark {
+
+    private static final String[] PARAMETER_NAMES = {
+        "name", "email", "address.street", "address.city", "address.postalCode",
+        "nested.pets!0", "nested.pets!1", "preferences$color", "account-owner:name", "a.b.c.d.e"
+    };
+
+    private static final int WARMUP_ITERATIONS = 200000;
+    private static final int MEASURED_ITERATIONS = 2000000;
+
+    private interface Parser {
+        Object parse(String parameterName);
+    }
+
+    public static void main(String[] args) {
+        Parser[] parsers = {
+            new Parser() {
+                @Override
+                public Object parse(String parameterName) {
+                    return new SplittingCallChain(parameterName, true);
+                }
+
+                @Override
+                public String toString() {
+                    return "split";
+                }
+            },
+            new Parser() {
+                @Override
+                public Object parse(String parameterName) {
+                    return new CallChainImpl(parameterName, true);
+                }
+
+                @Override
+                public String toString() {
+                    return "scan";
+                }
+            },
+            new Parser() {
+                @Override
+                public Object parse(String parameterName) {
+                    return CallChains.parse(parameterName, true);
+                }
+
+                @Override
+                public String toString() {
+                    return "cached";
+                }
+            }
+        };
+
+        for (Parser parser : parsers) {
+            run(parser, WARMUP_ITERATIONS);
+        }
+
+        for (Parser parser : parsers) {
+            long started = System.nanoTime();
+            int checksum = run(parser, MEASURED_ITERATIONS);
+            long elapsed = System.nanoTime() - started;
+
+            System.out.printf("%-8s %8.1f ns/op (%d)%n", parser, (double) elapsed / MEASURED_ITERATIONS, checksum);
+        }
+    }
+
+    private static int run(Parser parser, int iterations) {
+        int checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            checksum += parser.parse(PARAMETER_NAMES[i % PARAMETER_NAMES.length]).hashCode() & 1;
+        }
+        return checksum;
+    }
+
+    /**
+     * The parser that {@link CallChainImpl} used before it scanned parameter names itself.
+     */
+    private static class SplittingCallChain {
+
+        List<String> accessorNames = new LinkedList<String>();
+        String mutatorName;
+        String key;
+        Integer index;
+
+        SplittingCallChain(String parameterName, boolean unique) {
+            LinkedList<String> callChain = new LinkedList<String>(Arrays.asList(parameterName.split("[-.:]")));
+            String mutator = callChain.removeLast();
+
+            for (String call : callChain) {
+                accessorNames.add("get" + capitalize(call));
+            }
+
+            if (mutator.contains("$")) {
+                String[] values = mutator.split("\\$");
+                mutatorName = "putIn" + capitalize(values[0]);
+                key = values[1];
+            } else if (mutator.contains("!")) {
+                String[] values = mutator.split("!");
+                mutatorName = "insertIn" + capitalize(values[0]);
+                index = Integer.parseInt(values[1]);
+            } else if (unique) {
+                mutatorName = "set" + capitalize(mutator);
+            } else {
+                mutatorName = "addTo" + capitalize(mutator);
+            }
+        }
+
+        private String capitalize(String value) {
+            return value.substring(0, 1).toUpperCase() + value.substring(1);
+        }
+    }
+
+}
@@ -125,4 +125,42 @@ public class CallChainTest {
         Assert.assertEquals("kate", callChain.getKey());
         Assert.assertEquals(MutatorType.PUTTING, callChain.getMutatorType());
     }
+
+    @Test
+    public void testMultipleAccessorsAndTrailingSeparators() throws Exception {
+        CallChain callChain = new CallChainImpl("zoo-animal:koalas$kate.", true);
+        Assert.assertEquals("putInKoalas", callChain.getMutatorName());
+        Assert.assertEquals(2, callChain.getAccessorNames().size());
+        Assert.assertEquals("getZoo", callChain.getAccessorNames().get(0));
+        Assert.assertEquals("getAnimal", callChain.getAccessorNames().get(1));
+        Assert.assertEquals("kate", callChain.getKey());
+    }
+
+    @Test
+    public void testKeyEndsAtNextDelimiter() throws Exception {
+        Assert.assertEquals("kate", new CallChainImpl("koalas$kate$kim", true).getKey());
+        Assert.assertEquals("", new CallChainImpl("koalas$$kim", true).getKey());
+        Assert.assertEquals(3, (int) new CallChainImpl("wombats!3!4", true).getIndex());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectMissingKey() throws Exception {
+        new CallChainImpl("koalas$$", true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectEmptyAccessor() throws Exception {
+        new CallChainImpl("animal..wombats", true);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAccessorNamesAreImmutable() throws Exception {
+        new CallChainImpl("animal.wombats", true).getAccessorNames().add("getZoo");
+    }
+
+    @Test
+    public void testReuseParsedCallChains() throws Exception {
+        Assert.assertSame(CallChains.parse("animal.wombats", true), CallChains.parse("animal.wombats", true));
+        Assert.assertEquals(MutatorType.APPENDING, CallChains.parse("animal.wombats", false).getMutatorType());
+    }
 }
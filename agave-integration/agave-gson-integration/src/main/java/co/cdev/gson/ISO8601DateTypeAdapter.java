@@ -1,14 +1,14 @@
 package co.cdev.gson;
 
 import java.lang.reflect.Type;
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import co.cdev.agave.ISO8601;
+
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
@@ -23,11 +23,17 @@ import com.google.gson.JsonSerializer;
  * 
  *   2001-07-04T12:08:56.235-0700
  * 
+ * Dates are parsed and formatted by {@link ISO8601}, so the adapter can be shared between threads
+ * and any of the forms described by {@link co.cdev.agave.ISO8601DateFormat} are accepted. Dates
+ * are always written in UTC, and times without an offset are read as UTC.
+ * 
  * @author ddc
  */
 public class ISO8601DateTypeAdapter implements JsonSerializer<Date>, JsonDeserializer<Date> {
 
-    public static final String ISO_8601_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ssZ";
+    public static final String ISO_8601_DATE_FORMAT = ISO8601.FORMAT;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
     
     private static final Logger LOGGER = Logger.getLogger(ISO8601DateTypeAdapter.class.getName());
     
@@ -36,9 +42,7 @@ public class ISO8601DateTypeAdapter implements JsonSerializer<Date>, JsonDeseria
         JsonElement serializedDate = JsonNull.INSTANCE;
         
         if (date != null && targetType.equals(Date.class)) {
-            DateFormat dateFormat = new SimpleDateFormat(ISO_8601_DATE_FORMAT);
-            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-            serializedDate = new JsonPrimitive(dateFormat.format(date));
+            serializedDate = new JsonPrimitive(ISO8601.format(date.getTime()));
         }
         
         return serializedDate;
@@ -49,11 +53,10 @@ public class ISO8601DateTypeAdapter implements JsonSerializer<Date>, JsonDeseria
         Date date = null;
         
         if (targetType.equals(Date.class) && !JsonNull.INSTANCE.equals(json)) {
-            DateFormat dateFormat = new SimpleDateFormat(ISO_8601_DATE_FORMAT);
             String dateString = json.getAsString();
             
             try {
-                date = dateFormat.parse(dateString);
+                date = new Date(ISO8601.truncateToSeconds(ISO8601.parse(dateString, UTC)));
             } catch (ParseException e) {
                 LOGGER.log(Level.WARNING, String.format("Unable to deserialize date from: %s", dateString));
             }
@@ -0,0 +1,253 @@
+package co.cdev.gson;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import co.cdev.agave.web.AgaveWebException;
+import co.cdev.agave.web.ArrayValues;
+import co.cdev.agave.web.FormException;
+import co.cdev.agave.web.RequestBodyReader;
+import co.cdev.agave.web.RequestEntityTooLargeException;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Reads {@code application/json} request bodies into request parameters by streaming them through a
+ * {@link JsonReader}, so no tree of the document is ever built. The body must be a JSON object.
+ * The names of nested objects are joined with periods, so
+ * {@code {"address": {"city": "London"}}} populates {@code address.city}, and the elements of an
+ * array of values become the {@link ArrayValues} of a multi-valued parameter, which are bound as
+ * several values even when there is only one of them. Strings, numbers and booleans are
+ * passed on as text and converted like any other parameter, and nulls are left out. The body is
+ * never bound to a form directly; the flattened parameters are handed to the filter, which exposes
+ * them as request parameters so that forms and params are populated the same way as for any
+ * other request.
+ *
+ * <p>
+ * The body is decoded with the charset of the request, or as UTF-8 when the request names none, as
+ * is usual for JSON. Bodies longer than the maximum size in bytes are rejected with a {@code 413} status, and objects that are
+ * nested more deeply than the maximum depth are rejected as malformed, so a deeply nested body
+ * cannot exhaust the stack of the request thread. Register this reader
+ * by naming it in the {@code requestBodyReaders} init parameter of the {@code AgaveFilter}.
+ * </p>
+ */
+public class JSONRequestBodyReader implements RequestBodyReader {
+
+    public static final int DEFAULT_MAX_BODY_SIZE = 1024 * 1024;
+    public static final int DEFAULT_MAX_DEPTH = 32;
+
+    private static final String APPLICATION_JSON = "application/json";
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    private final int maxBodySize;
+    private final int maxDepth;
+
+    public JSONRequestBodyReader() {
+        this(DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * @param maxBodySize the maximum number of bytes that a body may contain
+     */
+    public JSONRequestBodyReader(int maxBodySize) {
+        this(maxBodySize, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * @param maxBodySize the maximum number of bytes that a body may contain
+     * @param maxDepth the maximum number of objects that may be nested inside one another,
+     *        counting the body itself
+     */
+    public JSONRequestBodyReader(int maxBodySize, int maxDepth) {
+        this.maxBodySize = maxBodySize;
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public boolean canRead(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.regionMatches(true, 0, APPLICATION_JSON, 0, APPLICATION_JSON.length())
+                && (contentType.length() == APPLICATION_JSON.length()
+                    || contentType.charAt(APPLICATION_JSON.length()) == ';'
+                    || contentType.charAt(APPLICATION_JSON.length()) == ' ');
+    }
+
+    @Override
+    public Map<String, List<String>> read(HttpServletRequest request) throws IOException, AgaveWebException {
+        if (request.getContentLength() > maxBodySize) {
+            throw tooLarge();
+        }
+
+        String charset = request.getCharacterEncoding();
+        InputStream in = new LimitedInputStream(request.getInputStream(), maxBodySize);
+        JsonReader reader;
+
+        try {
+            reader = new JsonReader(new InputStreamReader(in, charset == null ? DEFAULT_CHARSET : charset));
+        } catch (UnsupportedEncodingException ex) {
+            in.close();
+            throw new FormException("Unsupported charset " + charset + " for the request body", ex);
+        }
+
+        Map<String, List<String>> parameters = new LinkedHashMap<String, List<String>>();
+
+        try {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                throw new FormException("Expected a JSON object in the request body");
+            }
+
+            readValue(reader, null, 0, parameters);
+
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new FormException("Expected a single JSON object in the request body");
+            }
+        } catch (BodyTooLargeException ex) {
+            throw tooLarge();
+        } catch (MalformedJsonException ex) {
+            throw new FormException("Malformed JSON in the request body", ex);
+        } catch (EOFException ex) {
+            throw new FormException("Incomplete JSON in the request body", ex);
+        } catch (IllegalStateException ex) {
+            throw new FormException("Malformed JSON in the request body", ex);
+        } finally {
+            reader.close();
+        }
+
+        return parameters;
+    }
+
+    private void readValue(JsonReader reader, String name, int depth, Map<String, List<String>> parameters)
+            throws IOException, AgaveWebException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                if (depth >= maxDepth) {
+                    throw new FormException("JSON objects in the request body may only be nested " + maxDepth + " deep");
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String propertyName = reader.nextName();
+                    readValue(reader, name == null ? propertyName : name + "." + propertyName, depth + 1, parameters);
+                }
+                reader.endObject();
+                break;
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    JsonToken token = reader.peek();
+                    if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+                        throw new FormException("Only arrays of values can be bound, but \"" + name + "\" contains "
+                                + (token == JsonToken.BEGIN_OBJECT ? "an object" : "an array"));
+                    }
+                    markAsArray(parameters, name);
+                    readValue(reader, name, depth, parameters);
+                }
+                reader.endArray();
+                break;
+            case BOOLEAN:
+                addValue(parameters, name, String.valueOf(reader.nextBoolean()));
+                break;
+            case NULL:
+                reader.nextNull();
+                break;
+            default:
+                addValue(parameters, name, reader.nextString());
+                break;
+        }
+    }
+
+    private void addValue(Map<String, List<String>> parameters, String name, String value) {
+        List<String> values = parameters.get(name);
+
+        if (values == null) {
+            values = new ArrayList<String>(1);
+            parameters.put(name, values);
+        }
+
+        values.add(value);
+    }
+
+    /**
+     * Makes the values of a parameter array values, keeping any that were read before it.
+     */
+    private void markAsArray(Map<String, List<String>> parameters, String name) {
+        List<String> values = parameters.get(name);
+
+        if (!(values instanceof ArrayValues)) {
+            ArrayValues arrayValues = new ArrayValues();
+
+            if (values != null) {
+                arrayValues.addAll(values);
+            }
+
+            parameters.put(name, arrayValues);
+        }
+    }
+
+    private RequestEntityTooLargeException tooLarge() {
+        return new RequestEntityTooLargeException("JSON request bodies are limited to " + maxBodySize + " bytes");
+    }
+
+    private static class BodyTooLargeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+    }
+
+    /**
+     * Fails once more than a given number of bytes have been read.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private int remaining;
+
+        LimitedInputStream(InputStream in, int limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) {
+                consume(1);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                consume(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long count = super.skip(n);
+            consume((int) Math.min(count, Integer.MAX_VALUE));
+            return count;
+        }
+
+        private void consume(int count) throws BodyTooLargeException {
+            remaining -= count;
+            if (remaining < 0) {
+                throw new BodyTooLargeException();
+            }
+        }
+    }
+
+}
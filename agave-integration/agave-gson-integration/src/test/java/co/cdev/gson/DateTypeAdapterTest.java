@@ -49,6 +49,12 @@ public class DateTypeAdapterTest extends AbstractHandlerTest {
         assertEquals(dateFormat.parse("2001-07-04T12:08:56-0700"), date);
     }
     
+    @Test
+    public void testDeserializeDate_withFractionalSecondsTruncated() throws Exception {
+        Date date = dateTypeAdapter.deserialize(new JsonPrimitive("2001-07-04T19:08:56.235+0000"), Date.class, deserializationContext);
+        assertEquals(dateFormat.parse("2001-07-04T12:08:56-0700"), date);
+    }
+    
     @Test
     public void testDeserializeDate_withNull() throws Exception {
         assertNull(dateTypeAdapter.deserialize(JsonNull.INSTANCE, Date.class, deserializationContext));
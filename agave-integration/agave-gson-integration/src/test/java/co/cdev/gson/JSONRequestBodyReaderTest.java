@@ -0,0 +1,203 @@
+package co.cdev.gson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.cdev.agave.web.ArrayValues;
+import co.cdev.agave.web.FormException;
+import co.cdev.agave.web.RequestEntityTooLargeException;
+
+public class JSONRequestBodyReaderTest {
+
+    private Mockery context = new Mockery();
+    private HttpServletRequest request;
+
+    @Before
+    public void setup() throws Exception {
+        request = context.mock(HttpServletRequest.class);
+    }
+
+    @Test
+    public void testCanRead() throws Exception {
+        JSONRequestBodyReader reader = new JSONRequestBodyReader();
+        
+        assertTrue(reader.canRead(requestWithContentType("application/json")));
+        assertTrue(reader.canRead(requestWithContentType("Application/JSON; charset=UTF-8")));
+        assertFalse(reader.canRead(requestWithContentType("application/jsonp")));
+        assertFalse(reader.canRead(requestWithContentType("application/x-www-form-urlencoded")));
+        assertFalse(reader.canRead(requestWithContentType(null)));
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        expectBody("{\"name\": \"ada\", \"age\": 36, \"admin\": true, \"nickname\": null,"
+                + " \"address\": {\"city\": \"London\", \"geo\": {\"lat\": 51.5}},"
+                + " \"tags\": [\"countess\", \"enchantress\"], \"attributes$field\": \"mathematics\"}");
+
+        Map<String, List<String>> parameters = new JSONRequestBodyReader().read(request);
+
+        assertEquals(Arrays.asList("name", "age", "admin", "address.city", "address.geo.lat", "tags", "attributes$field"),
+                Arrays.asList(parameters.keySet().toArray()));
+        assertEquals(Arrays.asList("ada"), parameters.get("name"));
+        assertEquals(Arrays.asList("36"), parameters.get("age"));
+        assertEquals(Arrays.asList("true"), parameters.get("admin"));
+        assertEquals(Arrays.asList("London"), parameters.get("address.city"));
+        assertEquals(Arrays.asList("51.5"), parameters.get("address.geo.lat"));
+        assertEquals(Arrays.asList("countess", "enchantress"), parameters.get("tags"));
+        assertEquals(Arrays.asList("mathematics"), parameters.get("attributes$field"));
+        assertTrue(parameters.get("tags") instanceof ArrayValues);
+        assertFalse(parameters.get("name") instanceof ArrayValues);
+    }
+
+    @Test
+    public void testRead_withSingleElementArray() throws Exception {
+        expectBody("{\"names\": [\"Smith, John\"], \"empty\": []}");
+
+        Map<String, List<String>> parameters = new JSONRequestBodyReader().read(request);
+
+        assertEquals(Arrays.asList("Smith, John"), parameters.get("names"));
+        assertTrue(parameters.get("names") instanceof ArrayValues);
+        assertFalse(parameters.containsKey("empty"));
+    }
+
+    @Test
+    public void testRead_withNonAsciiValueAndNoCharset() throws Exception {
+        expectBody("{\"name\": \"Zo\u00eb \u65e5\u672c\"}");
+
+        assertEquals(Arrays.asList("Zo\u00eb \u65e5\u672c"), new JSONRequestBodyReader().read(request).get("name"));
+    }
+
+    @Test
+    public void testRead_withCharset() throws Exception {
+        expectBody("{\"name\": \"Zo\u00eb\"}".getBytes("ISO-8859-1"), "ISO-8859-1");
+
+        assertEquals(Arrays.asList("Zo\u00eb"), new JSONRequestBodyReader().read(request).get("name"));
+    }
+
+    @Test(expected = RequestEntityTooLargeException.class)
+    public void testRead_withBodyOverLimitInBytes() throws Exception {
+        // 15 characters, but 21 bytes in UTF-8
+        expectBody("{\"n\": \"\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\"}");
+
+        new JSONRequestBodyReader(20).read(request);
+    }
+
+    @Test
+    public void testRead_withMultiByteBodyAtLimit() throws Exception {
+        expectBody("{\"n\": \"\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\"}");
+
+        assertEquals(Arrays.asList("\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9"), new JSONRequestBodyReader(21).read(request).get("n"));
+    }
+
+    @Test(expected = RequestEntityTooLargeException.class)
+    public void testRead_withDeclaredLengthOverLimit() throws Exception {
+        context.checking(new Expectations() {{
+            allowing(request).getContentLength(); will(returnValue(17));
+        }});
+
+        new JSONRequestBodyReader(16).read(request);
+    }
+
+    @Test(expected = RequestEntityTooLargeException.class)
+    public void testRead_withBodyOverLimit() throws Exception {
+        expectBody("{\"name\": \"a name that is too long\"}");
+
+        new JSONRequestBodyReader(16).read(request);
+    }
+
+    @Test(expected = FormException.class)
+    public void testRead_withMalformedBody() throws Exception {
+        expectBody("{\"name\": ");
+
+        new JSONRequestBodyReader().read(request);
+    }
+
+    @Test(expected = FormException.class)
+    public void testRead_withArrayBody() throws Exception {
+        expectBody("[1, 2]");
+
+        new JSONRequestBodyReader().read(request);
+    }
+
+    @Test(expected = FormException.class)
+    public void testRead_withArrayOfObjects() throws Exception {
+        expectBody("{\"pets\": [{\"name\": \"tabby\"}]}");
+
+        new JSONRequestBodyReader().read(request);
+    }
+
+    @Test
+    public void testRead_withNestingAtLimit() throws Exception {
+        expectBody("{\"a\": {\"b\": {\"c\": 1}}}");
+
+        assertEquals(Arrays.asList("1"), new JSONRequestBodyReader(1024, 3).read(request).get("a.b.c"));
+    }
+
+    @Test(expected = FormException.class)
+    public void testRead_withNestingOverLimit() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            body.append("{\"a\": ");
+        }
+
+        expectBody(body.toString());
+
+        new JSONRequestBodyReader(Integer.MAX_VALUE).read(request);
+    }
+
+    private HttpServletRequest requestWithContentType(final String contentType) {
+        final HttpServletRequest request = context.mock(HttpServletRequest.class, "request-" + contentType);
+        context.checking(new Expectations() {{
+            allowing(request).getContentType(); will(returnValue(contentType));
+        }});
+        return request;
+    }
+
+    private void expectBody(String body) throws Exception {
+        expectBody(body.getBytes("UTF-8"), null);
+    }
+
+    private void expectBody(final byte[] body, final String charset) throws Exception {
+        context.checking(new Expectations() {{
+            allowing(request).getContentLength(); will(returnValue(-1));
+            allowing(request).getCharacterEncoding(); will(returnValue(charset));
+            allowing(request).getInputStream(); will(returnValue(new ByteArrayServletInputStream(body)));
+        }});
+    }
+
+    private static class ByteArrayServletInputStream extends ServletInputStream {
+
+        private final InputStream in;
+
+        ByteArrayServletInputStream(byte[] body) {
+            in = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return in.read(buffer, offset, length);
+        }
+    }
+
+}
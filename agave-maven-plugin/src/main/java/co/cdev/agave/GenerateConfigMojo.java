@@ -1,13 +1,13 @@
 package co.cdev.agave;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -20,8 +20,6 @@ import co.cdev.agave.configuration.Config;
 import co.cdev.agave.configuration.ConfigGenerator;
 import co.cdev.agave.configuration.ConfigGeneratorImpl;
 import co.cdev.agave.configuration.HandlerDescriptor;
-import co.cdev.agave.util.ClassUtils;
-import co.cdev.agave.util.FileSystemUtils;
 
 /**
  * @goal generate-config
@@ -45,6 +43,29 @@ public class GenerateConfigMojo extends AbstractMojo {
      */
     private String outputFilename;
     
+    /**
+     * The packages whose classes, and those of their subpackages, are scanned for handlers. Every
+     * package is scanned if none are given.
+     *
+     * @parameter
+     */
+    private String[] includedPackages;
+    
+    /**
+     * The packages whose classes, and those of their subpackages, are not scanned for handlers.
+     *
+     * @parameter
+     */
+    private String[] excludedPackages;
+    
+    /**
+     * The file that keeps what each scan found, so that later builds only read the class files
+     * that changed.
+     *
+     * @parameter expression="${agave.config.indexFile}" default-value="${project.build.directory}/agave-scan.idx"
+     */
+    private File indexFile;
+    
     /**
      * @parameter expression="${project}"
      * @required
@@ -88,33 +109,14 @@ public class GenerateConfigMojo extends AbstractMojo {
             throw new MojoExecutionException(e.getMessage(), e);
         }
         
-        FileFilter javaFileFilter = new FileFilter() {
-            @Override
-            public boolean accept(File file) {
-                return file.getName().endsWith(".java");
-            }
-        };
-        
-        ClassLoader compiledClassLoader = new URLClassLoader(urls.toArray(new URL[] {}), getClass().getClassLoader());
-        
-        try {
-            for (Object compileSourceRootPath : project.getCompileSourceRoots()) {
-                File compileSourceRoot = new File((String) compileSourceRootPath);
-                
-                for (File javaFile : FileSystemUtils.filterFiles(compileSourceRoot, javaFileFilter)) {
-                    String className = ClassUtils.getClassNameForJavaFile(javaFile, compileSourceRoot);
-                    compiledClassLoader.loadClass(className);
-                }
-            }
-        } catch (ClassNotFoundException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
-        }
-        
-        return compiledClassLoader;
+        return new URLClassLoader(urls.toArray(new URL[] {}), getClass().getClassLoader());
     }
 
     private Config createConfigFromCompiledClasses(ClassLoader classLoader) throws MojoExecutionException {
-        ConfigGenerator configGenerator = new ConfigGeneratorImpl(classLoader, rootDirectory);
+        ConfigGenerator configGenerator = new ConfigGeneratorImpl(classLoader, Collections.singletonList(rootDirectory),
+                includedPackages == null ? Collections.<String>emptyList() : Arrays.asList(includedPackages),
+                excludedPackages == null ? Collections.<String>emptyList() : Arrays.asList(excludedPackages),
+                Runtime.getRuntime().availableProcessors(), indexFile);
         Config config = null;
         
         try {
@@ -155,6 +157,7 @@ public class GenerateConfigMojo extends AbstractMojo {
             getLog().info("    Initiates workflow: " + (handlerDescriptor.initiatesWorkflow() ? "yes" : "no"));
             getLog().info("    Completes workflow: " + (handlerDescriptor.completesWorkflow() ? "yes" : "no"));
             getLog().info("    Workflow name:      " + (handlerDescriptor.getWorkflowName() == null ? "none" : handlerDescriptor.getWorkflowName()));
+            getLog().info("    Streams parts:      " + (handlerDescriptor.streamsParts() ? "yes" : "no"));
         }
     }
     
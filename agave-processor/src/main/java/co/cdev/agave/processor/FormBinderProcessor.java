@@ -0,0 +1,143 @@
+package co.cdev.agave.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import co.cdev.agave.BindFields;
+import co.cdev.agave.Param;
+
+/**
+ * Generates a {@code FormBinder} for every form class that a {@code @Route} method accepts, which
+ * lets the form be populated without reflection. A form is the second parameter of a route method
+ * that takes exactly two parameters, neither of which is annotated with {@code @Param}, which is
+ * the same rule that the configuration generator uses. Forms annotated with {@code @BindFields}
+ * are populated through their fields instead, so no binder is generated for them.
+ *
+ * <p>
+ * The processor is registered as a service, so it runs whenever this module is on the compile
+ * classpath of a project that declares handlers.
+ * </p>
+ */
+@SupportedAnnotationTypes("co.cdev.agave.Route")
+public class FormBinderProcessor extends AbstractProcessor {
+
+    static final String BINDER_SUFFIX = "$$FormBinder";
+
+    private final Set<String> generatedForms = new HashSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<String, TypeElement> formElements = new LinkedHashMap<String, TypeElement>();
+
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                TypeElement formElement = findFormElement(element);
+
+                if (formElement != null) {
+                    formElements.put(formElement.getQualifiedName().toString(), formElement);
+                }
+            }
+        }
+
+        for (Map.Entry<String, TypeElement> entry : formElements.entrySet()) {
+            if (generatedForms.add(entry.getKey())) {
+                writeBinder(entry.getValue());
+            }
+        }
+
+        return false;
+    }
+
+    private TypeElement findFormElement(Element element) {
+        if (element.getKind() != ElementKind.METHOD) {
+            return null;
+        }
+
+        List<? extends VariableElement> parameters = ((ExecutableElement) element).getParameters();
+
+        if (parameters.size() != 2 || isAnnotatedWithParam(parameters.get(1))) {
+            return null;
+        }
+
+        TypeMirror formType = parameters.get(1).asType();
+
+        if (formType.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+
+        TypeElement formElement = (TypeElement) ((DeclaredType) formType).asElement();
+
+        if (formElement.getKind() != ElementKind.CLASS) {
+            return null;
+        }
+
+        for (Element enclosing = formElement; enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+                return null;
+            }
+        }
+
+        if (formElement.getAnnotation(BindFields.class) != null) {
+            return null;
+        }
+
+        return formElement;
+    }
+
+    private boolean isAnnotatedWithParam(VariableElement parameter) {
+        for (AnnotationMirror annotation : parameter.getAnnotationMirrors()) {
+            Element annotationElement = annotation.getAnnotationType().asElement();
+            if (((TypeElement) annotationElement).getQualifiedName().contentEquals(Param.class.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeBinder(TypeElement formElement) {
+        FormBinderWriter binderWriter = new FormBinderWriter(processingEnv, formElement);
+
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(
+                    binderWriter.getBinderName(), formElement);
+            Writer writer = sourceFile.openWriter();
+
+            try {
+                writer.write(binderWriter.write());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write form binder: " + ex.getMessage(), formElement);
+        }
+    }
+
+}
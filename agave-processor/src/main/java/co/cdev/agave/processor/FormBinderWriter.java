@@ -0,0 +1,443 @@
+package co.cdev.agave.processor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import co.cdev.agave.Converter;
+
+/**
+ * Writes the source of the binder for a single form class. Every class that is reachable from the
+ * form through its accessors gets a method that binds the rest of a call chain to an instance of
+ * that class, so binding walks the parsed parameter name one accessor at a time and finishes by
+ * calling a mutator directly.
+ *
+ * <p>
+ * Mutator names that are overloaded, and accessors that lead to classes in the {@code java} or
+ * {@code javax} packages, are left out. Parameters that refer to them are reported as unbound and
+ * are then populated reflectively, which keeps the behavior of both paths the same.
+ * </p>
+ *
+ * <p>
+ * Anything that an accessor or mutator throws, whether it is declared or not, is rethrown as an
+ * {@code InvocationTargetException}, just as it would be if the method had been invoked
+ * reflectively. A {@code @Converter} without an accessible no-arg constructor is reported as an
+ * error, since it could not be instantiated by either path.
+ * </p>
+ */
+class FormBinderWriter {
+
+    private static final String SETTING_PREFIX = "set";
+    private static final String APPENDING_PREFIX = "addTo";
+    private static final String INSERTING_PREFIX = "insertIn";
+    private static final String PUTTING_PREFIX = "putIn";
+    private static final String ACCESSOR_PREFIX = "get";
+
+    private final Elements elements;
+    private final Types types;
+    private final Messager messager;
+    private final TypeElement formElement;
+    private final String packageName;
+    private final String binderSimpleName;
+    private final Map<String, Integer> methodIndexes = new HashMap<String, Integer>();
+    private final List<TypeElement> boundElements = new ArrayList<TypeElement>();
+    private final Map<String, String> converterFields = new LinkedHashMap<String, String>();
+
+    FormBinderWriter(ProcessingEnvironment processingEnv, TypeElement formElement) {
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.messager = processingEnv.getMessager();
+        this.formElement = formElement;
+
+        PackageElement packageElement = elements.getPackageOf(formElement);
+        String binaryName = elements.getBinaryName(formElement).toString();
+
+        this.packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        this.binderSimpleName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1)
+                + FormBinderProcessor.BINDER_SUFFIX;
+    }
+
+    String getBinderName() {
+        return packageName.isEmpty() ? binderSimpleName : packageName + "." + binderSimpleName;
+    }
+
+    String write() {
+        methodIndexFor(formElement);
+
+        StringBuilder methods = new StringBuilder();
+
+        for (int i = 0; i < boundElements.size(); i++) {
+            writeBindMethod(methods, i, boundElements.get(i));
+        }
+
+        String formName = typeName(formElement.asType());
+        StringBuilder source = new StringBuilder();
+
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+
+        source.append("import java.lang.reflect.InvocationTargetException;\n");
+        source.append("import java.util.List;\n");
+        source.append("import java.util.Locale;\n\n");
+        source.append("import co.cdev.agave.conversion.AgaveConversionException;\n");
+        source.append("import co.cdev.agave.conversion.ParamConverter;\n");
+        source.append("import co.cdev.agave.util.CallChain;\n");
+        source.append("import co.cdev.agave.web.AbstractFormBinder;\n\n");
+        source.append("/**\n * Generated by ").append(FormBinderProcessor.class.getName()).append(".\n */\n");
+        source.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        source.append("public final class ").append(binderSimpleName)
+              .append(" extends AbstractFormBinder<").append(formName).append("> {\n\n");
+
+        for (Map.Entry<String, String> converterField : converterFields.entrySet()) {
+            source.append("    private static final ParamConverter ").append(converterField.getValue())
+                  .append(" = ").append(converterField.getKey()).append(";\n");
+        }
+
+        if (!converterFields.isEmpty()) {
+            source.append("\n");
+        }
+
+        source.append("    @Override\n");
+        source.append("    public boolean bind(").append(formName).append(" formInstance, CallChain callChain,\n");
+        source.append("            List<Object> paramValues, Locale locale)\n");
+        source.append("            throws AgaveConversionException, InvocationTargetException {\n");
+        source.append("        return bind0(formInstance, callChain, 0, paramValues, locale);\n");
+        source.append("    }\n");
+        source.append(methods);
+        source.append("\n}\n");
+
+        return source.toString();
+    }
+
+    private int methodIndexFor(TypeElement element) {
+        String name = element.getQualifiedName().toString();
+        Integer index = methodIndexes.get(name);
+
+        if (index == null) {
+            index = boundElements.size();
+            methodIndexes.put(name, index);
+            boundElements.add(element);
+        }
+
+        return index;
+    }
+
+    private void writeBindMethod(StringBuilder out, int index, TypeElement element) {
+        List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+        Map<String, Integer> nameCounts = new HashMap<String, Integer>();
+
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(element))) {
+            if (method.getModifiers().contains(Modifier.PUBLIC)) {
+                String name = method.getSimpleName().toString();
+                Integer count = nameCounts.get(name);
+                nameCounts.put(name, count == null ? 1 : count + 1);
+                methods.add(method);
+            }
+        }
+
+        StringBuilder accessors = new StringBuilder();
+        Map<String, StringBuilder> mutators = new LinkedHashMap<String, StringBuilder>();
+        mutators.put("SETTING", new StringBuilder());
+        mutators.put("APPENDING", new StringBuilder());
+        mutators.put("INSERTING", new StringBuilder());
+        mutators.put("PUTTING", new StringBuilder());
+
+        for (ExecutableElement method : methods) {
+            if (method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+
+            String name = method.getSimpleName().toString();
+            List<? extends VariableElement> parameters = method.getParameters();
+
+            if (name.startsWith(ACCESSOR_PREFIX) && name.length() > ACCESSOR_PREFIX.length() && parameters.isEmpty()) {
+                TypeElement targetElement = bindableElement(method.getReturnType());
+
+                if (targetElement != null) {
+                    accessors.append("            if (\"").append(name).append("\".equals(accessorName)) {\n");
+                    accessors.append("                ").append(typeName(targetElement.asType())).append(" next;\n");
+                    appendInvocation(accessors, "                ", "next = target." + name + "();", false);
+                    accessors.append("                return bind").append(methodIndexFor(targetElement))
+                             .append("(next, callChain, depth + 1, paramValues, locale);\n");
+                    accessors.append("            }\n");
+                }
+                continue;
+            }
+
+            if (nameCounts.get(name) != 1) {
+                continue;
+            }
+
+            if (name.startsWith(SETTING_PREFIX) && parameters.size() == 1) {
+                String value = conversion(parameters.get(0), "first(paramValues)");
+                if (value != null) {
+                    StringBuilder out1 = mutators.get("SETTING");
+                    out1.append("                if (\"").append(name).append("\".equals(mutatorName)) {\n");
+                    appendInvocation(out1, "                    ", "target." + name + "(" + value + ");", true);
+                    out1.append("                    return true;\n");
+                    out1.append("                }\n");
+                }
+            } else if (name.startsWith(APPENDING_PREFIX) && parameters.size() == 1) {
+                String value = conversion(parameters.get(0), "paramValue");
+                if (value != null) {
+                    StringBuilder out1 = mutators.get("APPENDING");
+                    out1.append("                if (\"").append(name).append("\".equals(mutatorName)) {\n");
+                    out1.append("                    for (Object paramValue : paramValues) {\n");
+                    appendInvocation(out1, "                        ", "target." + name + "(" + value + ");", true);
+                    out1.append("                    }\n");
+                    out1.append("                    return true;\n");
+                    out1.append("                }\n");
+                }
+            } else if (name.startsWith(INSERTING_PREFIX) && parameters.size() == 2
+                    && isIndexType(parameters.get(0).asType())) {
+                String value = conversion(parameters.get(1), "first(paramValues)");
+                if (value != null) {
+                    StringBuilder out1 = mutators.get("INSERTING");
+                    out1.append("                if (\"").append(name).append("\".equals(mutatorName)) {\n");
+                    appendInvocation(out1, "                    ",
+                            "target." + name + "(callChain.getIndex(), " + value + ");", true);
+                    out1.append("                    return true;\n");
+                    out1.append("                }\n");
+                }
+            } else if (name.startsWith(PUTTING_PREFIX) && parameters.size() == 2
+                    && types.isAssignable(elements.getTypeElement(String.class.getName()).asType(),
+                                          parameters.get(0).asType())) {
+                String value = conversion(parameters.get(1), "first(paramValues)");
+                if (value != null) {
+                    StringBuilder out1 = mutators.get("PUTTING");
+                    out1.append("                if (\"").append(name).append("\".equals(mutatorName)) {\n");
+                    appendInvocation(out1, "                    ",
+                            "target." + name + "(callChain.getKey(), " + value + ");", true);
+                    out1.append("                    return true;\n");
+                    out1.append("                }\n");
+                }
+            }
+        }
+
+        out.append("\n");
+        out.append("    private boolean bind").append(index).append("(").append(typeName(element.asType()))
+           .append(" target, CallChain callChain, int depth,\n");
+        out.append("            List<Object> paramValues, Locale locale)\n");
+        out.append("            throws AgaveConversionException, InvocationTargetException {\n");
+        out.append("        if (depth < callChain.getAccessorNames().size()) {\n");
+
+        if (accessors.length() > 0) {
+            out.append("            String accessorName = callChain.getAccessorNames().get(depth);\n");
+            out.append(accessors);
+        }
+
+        out.append("            return false;\n");
+        out.append("        }\n");
+
+        boolean hasMutators = false;
+        for (StringBuilder mutator : mutators.values()) {
+            hasMutators |= mutator.length() > 0;
+        }
+
+        if (hasMutators) {
+            out.append("\n");
+            out.append("        String mutatorName = callChain.getMutatorName();\n\n");
+            out.append("        switch (callChain.getMutatorType()) {\n");
+
+            for (Map.Entry<String, StringBuilder> mutator : mutators.entrySet()) {
+                if (mutator.getValue().length() > 0) {
+                    out.append("            case ").append(mutator.getKey()).append(":\n");
+                    out.append(mutator.getValue());
+                    out.append("                break;\n");
+                }
+            }
+
+            out.append("        }\n");
+        }
+
+        out.append("\n");
+        out.append("        return false;\n");
+        out.append("    }\n");
+    }
+
+    /**
+     * Appends a statement that calls a method of the form, rethrowing whatever it throws the way
+     * that {@code Method.invoke} would. Conversion failures that occur while its arguments are
+     * evaluated are passed through unchanged.
+     */
+    private void appendInvocation(StringBuilder out, String indent, String statement, boolean convertsArguments) {
+        out.append(indent).append("try {\n");
+        out.append(indent).append("    ").append(statement).append("\n");
+
+        if (convertsArguments) {
+            out.append(indent).append("} catch (AgaveConversionException ex) {\n");
+            out.append(indent).append("    throw ex;\n");
+        }
+
+        out.append(indent).append("} catch (Throwable ex) {\n");
+        out.append(indent).append("    throw new InvocationTargetException(ex);\n");
+        out.append(indent).append("}\n");
+    }
+
+    /**
+     * @return the element of a class that accessors may lead to, or null if parameters that pass
+     *         through the accessor are left to reflective population
+     */
+    private TypeElement bindableElement(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        String name = element.getQualifiedName().toString();
+
+        if (element.getKind() != ElementKind.CLASS || name.startsWith("java.") || name.startsWith("javax.")
+                || !isAccessible(element)) {
+            return null;
+        }
+
+        return element;
+    }
+
+    private boolean isIndexType(TypeMirror type) {
+        return type.getKind() == TypeKind.INT
+                || types.isSameType(type, elements.getTypeElement(Integer.class.getName()).asType());
+    }
+
+    /**
+     * @return an expression that converts the value to the type of the parameter, or null if the
+     *         converter for the parameter cannot be referenced from the binder. Values of
+     *         {@code int}, {@code long} and {@code double} parameters are parsed without boxing.
+     */
+    private String conversion(VariableElement parameter, String value) {
+        TypeMirror type = parameter.asType();
+        String converter = null;
+
+        if (type.getKind() == TypeKind.DECLARED && !isAccessible((TypeElement) types.asElement(type))) {
+            return null;
+        }
+
+        for (AnnotationMirror annotation : parameter.getAnnotationMirrors()) {
+            Element annotationElement = annotation.getAnnotationType().asElement();
+
+            if (((TypeElement) annotationElement).getQualifiedName().contentEquals(Converter.class.getName())) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                        : annotation.getElementValues().entrySet()) {
+                    if (entry.getKey().getSimpleName().contentEquals("value")) {
+                        TypeMirror converterType = (TypeMirror) entry.getValue().getValue();
+                        TypeElement converterElement = (TypeElement) types.asElement(converterType);
+
+                        if (converterElement == null || !isAccessible(converterElement)) {
+                            return null;
+                        }
+
+                        if (!isInstantiable(converterElement)) {
+                            messager.printMessage(Diagnostic.Kind.ERROR, "Converter "
+                                    + converterElement.getQualifiedName() + " must be a concrete class with an "
+                                    + "accessible no-arg constructor", parameter);
+                            return null;
+                        }
+
+                        converter = "converter(" + typeName(types.erasure(converterType)) + ".class)";
+                    }
+                }
+            }
+        }
+
+        if (converter == null) {
+            converter = "converterFor(" + typeName(types.erasure(type)) + ".class)";
+        }
+
+        String field = converterFields.get(converter);
+
+        if (field == null) {
+            field = "CONVERTER_" + converterFields.size();
+            converterFields.put(converter, field);
+        }
+
+        switch (type.getKind()) {
+            case INT:
+                return "toInt(" + field + ", " + value + ", locale)";
+            case LONG:
+                return "toLong(" + field + ", " + value + ", locale)";
+            case DOUBLE:
+                return "toDouble(" + field + ", " + value + ", locale)";
+            default:
+                break;
+        }
+
+        String castType = type.getKind().isPrimitive()
+                ? types.boxedClass((PrimitiveType) type).getQualifiedName().toString()
+                : typeName(types.erasure(type));
+
+        return "(" + castType + ") convert(" + field + ", " + value + ", locale)";
+    }
+
+    private boolean isInstantiable(TypeElement element) {
+        if (element.getModifiers().contains(Modifier.ABSTRACT) || element.getKind() != ElementKind.CLASS) {
+            return false;
+        }
+
+        if (element.getEnclosingElement().getKind() != ElementKind.PACKAGE
+                && !element.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                Set<Modifier> modifiers = constructor.getModifiers();
+
+                return modifiers.contains(Modifier.PUBLIC)
+                        || (!modifiers.contains(Modifier.PRIVATE)
+                            && elements.getPackageOf(element).equals(elements.getPackageOf(formElement)));
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isAccessible(TypeElement element) {
+        Element current = element;
+
+        while (current != null && (current.getKind().isClass() || current.getKind().isInterface())) {
+            Set<Modifier> modifiers = current.getModifiers();
+
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            }
+
+            if (!modifiers.contains(Modifier.PUBLIC)
+                    && !elements.getPackageOf(current).equals(elements.getPackageOf(formElement))) {
+                return false;
+            }
+
+            current = current.getEnclosingElement();
+        }
+
+        return true;
+    }
+
+    private String typeName(TypeMirror type) {
+        return types.erasure(type).toString();
+    }
+
+}
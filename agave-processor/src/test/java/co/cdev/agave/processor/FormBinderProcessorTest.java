@@ -0,0 +1,321 @@
+package co.cdev.agave.processor;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.cdev.agave.Route;
+import co.cdev.agave.configuration.RoutingContext;
+import co.cdev.agave.conversion.ConverterRegistry;
+import co.cdev.agave.conversion.ParamConverter;
+import co.cdev.agave.util.CallChainImpl;
+import co.cdev.agave.web.FormBinder;
+
+public class FormBinderProcessorTest {
+
+    private File sourceDir;
+    private File classDir;
+    private ClassLoader classLoader;
+
+    @Before
+    public void setup() throws Exception {
+        sourceDir = createTempDir("sources");
+        classDir = createTempDir("classes");
+
+        write("sample/Address.java",
+                "package sample;\n"
+              + "public class Address {\n"
+              + "    private String city;\n"
+              + "    public String getCity() { return city; }\n"
+              + "    public void setCity(String city) { this.city = city; }\n"
+              + "}\n");
+        write("sample/UpperCaseConverter.java",
+                "package sample;\n"
+              + "import java.util.Locale;\n"
+              + "import co.cdev.agave.conversion.StringConverter;\n"
+              + "public class UpperCaseConverter implements StringConverter<String> {\n"
+              + "    private final String suffix;\n"
+              + "    public UpperCaseConverter() { this(\"\"); }\n"
+              + "    public UpperCaseConverter(String suffix) { this.suffix = suffix; }\n"
+              + "    public String convert(String input, Locale locale) { return input.toUpperCase(locale) + suffix; }\n"
+              + "}\n");
+        write("sample/PersonForm.java",
+                "package sample;\n"
+              + "import java.util.*;\n"
+              + "import co.cdev.agave.Converter;\n"
+              + "public class PersonForm {\n"
+              + "    private String name;\n"
+              + "    private int age;\n"
+              + "    private long visits;\n"
+              + "    private double height;\n"
+              + "    private List<String> nickNames = new ArrayList<String>();\n"
+              + "    private List<Integer> scores = new ArrayList<Integer>(Arrays.asList(0, 0));\n"
+              + "    private Map<String, String> attributes = new HashMap<String, String>();\n"
+              + "    private Address address = new Address();\n"
+              + "    private String overloaded;\n"
+              + "    public String getName() { return name; }\n"
+              + "    public void setName(@Converter(UpperCaseConverter.class) String name) { this.name = name; }\n"
+              + "    public int getAge() { return age; }\n"
+              + "    public void setAge(int age) { this.age = age; }\n"
+              + "    public long getVisits() { return visits; }\n"
+              + "    public void setVisits(long visits) { this.visits = visits; }\n"
+              + "    public double getHeight() { return height; }\n"
+              + "    public void setHeight(double height) { this.height = height; }\n"
+              + "    public List<String> getNickNames() { return nickNames; }\n"
+              + "    public void addToNickNames(String nickName) { nickNames.add(nickName); }\n"
+              + "    public List<Integer> getScores() { return scores; }\n"
+              + "    public void insertInScores(int index, Integer score) { scores.set(index, score); }\n"
+              + "    public Map<String, String> getAttributes() { return attributes; }\n"
+              + "    public void putInAttributes(String key, String value) { attributes.put(key, value); }\n"
+              + "    public Address getAddress() { return address; }\n"
+              + "    public String getOverloaded() { return overloaded; }\n"
+              + "    public void setOverloaded(String overloaded) { this.overloaded = overloaded; }\n"
+              + "    public void setOverloaded(Integer overloaded) { this.overloaded = String.valueOf(overloaded); }\n"
+              + "}\n");
+        write("sample/ThrowingForm.java",
+                "package sample;\n"
+              + "public class ThrowingForm {\n"
+              + "    public void setChecked(String value) throws java.io.IOException { throw new java.io.IOException(value); }\n"
+              + "    public void setUnchecked(String value) { throw new IllegalStateException(value); }\n"
+              + "    public Address getAddress() throws Exception { throw new Exception(\"address\"); }\n"
+              + "}\n");
+        write("sample/FieldForm.java",
+                "package sample;\n"
+              + "import co.cdev.agave.BindFields;\n"
+              + "@BindFields\n"
+              + "public class FieldForm {\n"
+              + "    public String name;\n"
+              + "}\n");
+        write("sample/PersonHandler.java",
+                "package sample;\n"
+              + "import co.cdev.agave.Route;\n"
+              + "import co.cdev.agave.configuration.RoutingContext;\n"
+              + "public class PersonHandler {\n"
+              + "    @Route(\"/person\")\n"
+              + "    public void person(RoutingContext routingContext, PersonForm form) { }\n"
+              + "    @Route(\"/throwing\")\n"
+              + "    public void throwing(RoutingContext routingContext, ThrowingForm form) { }\n"
+              + "    @Route(\"/fields\")\n"
+              + "    public void fields(RoutingContext routingContext, FieldForm form) { }\n"
+              + "}\n");
+
+        Assert.assertTrue("Compilation failed", compile(null));
+
+        classLoader = new URLClassLoader(new URL[] {classDir.toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        delete(sourceDir);
+        delete(classDir);
+    }
+
+    @Test
+    public void testGenerateBinderForRouteForm() throws Exception {
+        Assert.assertNotNull(classLoader.loadClass("sample.PersonForm$$FormBinder"));
+        Assert.assertEquals(0, new File(classDir, "sample").list(new java.io.FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("Address$$") || name.startsWith("FieldForm$$")
+                        || name.startsWith("PersonHandler$$");
+            }
+        }).length);
+    }
+
+    @Test
+    public void testBindParameters() throws Exception {
+        Object form = classLoader.loadClass("sample.PersonForm").newInstance();
+
+        Assert.assertTrue(bind(form, "name", "ada"));
+        Assert.assertTrue(bind(form, "age", "36"));
+        Assert.assertTrue(bind(form, "visits", "-9223372036854775808"));
+        Assert.assertTrue(bind(form, "height", "1.65"));
+        Assert.assertTrue(bind(form, "nickNames", "countess", "enchantress"));
+        Assert.assertTrue(bind(form, "scores!1", "42"));
+        Assert.assertTrue(bind(form, "attributes$field", "mathematics"));
+        Assert.assertTrue(bind(form, "address.city", "London"));
+        Assert.assertTrue(bind(form, "address-city", "London"));
+
+        Assert.assertEquals("ADA", get(form, "getName"));
+        Assert.assertEquals(36, get(form, "getAge"));
+        Assert.assertEquals(Long.MIN_VALUE, get(form, "getVisits"));
+        Assert.assertEquals(1.65, get(form, "getHeight"));
+        Assert.assertEquals(Arrays.asList("countess", "enchantress"), get(form, "getNickNames"));
+        Assert.assertEquals(Arrays.asList(0, 42), get(form, "getScores"));
+        Assert.assertEquals(Collections.singletonMap("field", "mathematics"), get(form, "getAttributes"));
+        Assert.assertEquals("London", get(get(form, "getAddress"), "getCity"));
+    }
+
+    @Test
+    public void testBindWithRegisteredConverter() throws Exception {
+        Class<?> converterClass = classLoader.loadClass("sample.UpperCaseConverter");
+        ParamConverter<?, ?> converter = (ParamConverter<?, ?>) converterClass.getConstructor(String.class).newInstance("!");
+        ConverterRegistry.getInstance().register(converterClass, converter);
+
+        Object form = classLoader.loadClass("sample.PersonForm").newInstance();
+
+        Assert.assertTrue(bind(form, "name", "ada"));
+        Assert.assertEquals("ADA!", get(form, "getName"));
+    }
+
+    @Test
+    public void testLeaveUnknownParametersUnbound() throws Exception {
+        Object form = classLoader.loadClass("sample.PersonForm").newInstance();
+
+        Assert.assertFalse(bind(form, "missing", "value"));
+        Assert.assertFalse(bind(form, "overloaded", "value"));
+        Assert.assertFalse(bind(form, "nickNames.size", "value"));
+        Assert.assertFalse(bind(form, "address.missing", "value"));
+    }
+
+    @Test
+    public void testWrapExceptionsThrownByForm() throws Exception {
+        Object form = classLoader.loadClass("sample.ThrowingForm").newInstance();
+
+        assertThrows(java.io.IOException.class, form, "checked");
+        assertThrows(IllegalStateException.class, form, "unchecked");
+        assertThrows(Exception.class, form, "address.city");
+    }
+
+    @Test
+    public void testReportConverterWithoutNoArgConstructor() throws Exception {
+        write("sample/ArgumentConverter.java",
+                "package sample;\n"
+              + "import java.util.Locale;\n"
+              + "import co.cdev.agave.conversion.StringConverter;\n"
+              + "public class ArgumentConverter implements StringConverter<String> {\n"
+              + "    public ArgumentConverter(String argument) { }\n"
+              + "    public String convert(String input, Locale locale) { return input; }\n"
+              + "}\n");
+        write("sample/ConvertedForm.java",
+                "package sample;\n"
+              + "import co.cdev.agave.Converter;\n"
+              + "public class ConvertedForm {\n"
+              + "    public void setName(@Converter(ArgumentConverter.class) String name) { }\n"
+              + "}\n");
+        write("sample/ConvertedHandler.java",
+                "package sample;\n"
+              + "import co.cdev.agave.Route;\n"
+              + "import co.cdev.agave.configuration.RoutingContext;\n"
+              + "public class ConvertedHandler {\n"
+              + "    @Route(\"/converted\")\n"
+              + "    public void converted(RoutingContext routingContext, ConvertedForm form) { }\n"
+              + "}\n");
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+        Assert.assertFalse(compile(diagnostics));
+        Assert.assertTrue(diagnostics.getDiagnostics().get(0).getMessage(Locale.ENGLISH)
+                .contains("sample.ArgumentConverter must be a concrete class with an accessible no-arg constructor"));
+    }
+
+    private void assertThrows(Class<?> causeType, Object form, String parameterName) throws Exception {
+        try {
+            bind(form, parameterName, "value");
+            Assert.fail("Expected " + parameterName + " to throw");
+        } catch (InvocationTargetException ex) {
+            Assert.assertEquals(causeType, ex.getCause().getClass());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean bind(Object form, String parameterName, String... values) throws Exception {
+        FormBinder<Object> binder = (FormBinder<Object>) classLoader.loadClass(
+                form.getClass().getName() + FormBinderProcessor.BINDER_SUFFIX).newInstance();
+        List<Object> paramValues = new ArrayList<Object>(Arrays.asList((Object[]) values));
+        return binder.bind(form, new CallChainImpl(parameterName, values.length == 1), paramValues, Locale.ENGLISH);
+    }
+
+    private Object get(Object target, String accessorName) throws Exception {
+        Method accessor = target.getClass().getMethod(accessorName);
+        return accessor.invoke(target);
+    }
+
+    private boolean compile(DiagnosticCollector<JavaFileObject> diagnostics) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+
+        List<File> sources = new ArrayList<File>();
+        collectSources(sourceDir, sources);
+
+        String classPath = classPathOf(Route.class) + File.pathSeparator
+                + classPathOf(RoutingContext.class) + File.pathSeparator
+                + classPathOf(FormBinder.class) + File.pathSeparator
+                + classPathOf(HttpServletRequest.class);
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                Arrays.asList("-d", classDir.getPath(), "-s", sourceDir.getPath(), "-classpath", classPath),
+                null, fileManager.getJavaFileObjectsFromFiles(sources));
+        task.setProcessors(Arrays.asList(new FormBinderProcessor()));
+
+        try {
+            return task.call();
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private String classPathOf(Class<?> type) throws Exception {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+    private void write(String path, String source) throws IOException {
+        File file = new File(sourceDir, path);
+        file.getParentFile().mkdirs();
+
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(source);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static void collectSources(File dir, List<File> sources) {
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory()) {
+                collectSources(file, sources);
+            } else if (file.getName().endsWith(".java")) {
+                sources.add(file);
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
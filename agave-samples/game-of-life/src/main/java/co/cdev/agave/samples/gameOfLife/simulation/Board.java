@@ -29,10 +29,12 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import co.cdev.agave.Dirtyable;
+
 /**
  * @author <a href="mailto:damiancarrillo@gmail.com">Damian Carrillo</a>
  */
-public class Board implements Serializable {
+public class Board implements Serializable, Dirtyable {
     
     private static final long serialVersionUID = 1L;
     
@@ -40,6 +42,7 @@ public class Board implements Serializable {
     private int rows;
     private int columns;
     private List<List<Cell>> grid;
+    private transient boolean dirty;
     
     public Board(int rows, int columns) {
         this(rows, columns, null);
@@ -98,6 +101,7 @@ public class Board implements Serializable {
                 }
             }
         }
+        dirty = true;
     }
     
     public Tick advance() {
@@ -149,8 +153,18 @@ public class Board implements Serializable {
     public void makeAlive(int x, int y) {
         if (grid != null) {
             grid.get(x).get(y).setState(State.ALIVE);
+            dirty = true;
         }
     }
 
+    @Override
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    @Override
+    public void markClean() {
+        dirty = false;
+    }
     
 }
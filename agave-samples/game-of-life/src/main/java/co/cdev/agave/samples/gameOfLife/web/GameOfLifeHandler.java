@@ -79,7 +79,6 @@ public class GameOfLifeHandler extends FreemarkerHandler {
         if (board != null) {
             board.advance();
             Map<String, Object> templateModel = buildTemplateModel(handlerContext, board);
-            handlerContext.getSession().setAttribute(BOARD_KEY, board);
             displayTemplate(handlerContext, templateModel);
         } else {
             destination = Destinations.redirect("/");
@@ -94,7 +93,6 @@ public class GameOfLifeHandler extends FreemarkerHandler {
         Board board = (Board)handlerContext.getSession().getAttribute(BOARD_KEY);
         if (board != null) {
             Tick tick = board.advance();
-            handlerContext.getSession().setAttribute(BOARD_KEY, board);
             handlerContext.getResponse().setContentType("application/json");
             Gson serializer = new Gson();
             Type typeOfSrc = new TypeToken<Tick>(){}.getType();
@@ -117,7 +115,6 @@ public class GameOfLifeHandler extends FreemarkerHandler {
             clickedCell.setState(State.ALIVE);
         }
         board.associateNeighbors();
-        handlerContext.getSession().setAttribute(BOARD_KEY, board);
     }
     
     private Map<String, Object> buildTemplateModel(RoutingContext handlerContext, Board board) {
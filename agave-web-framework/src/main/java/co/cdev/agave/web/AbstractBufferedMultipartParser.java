@@ -0,0 +1,146 @@
+package co.cdev.agave.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import co.cdev.agave.Part;
+import co.cdev.agave.PartImpl;
+
+/**
+ * A multipart parser that reads the request body through one reusable buffer instead of line by
+ * line. Part boundaries are located with a Boyer-Moore-Horspool search and headers are parsed
+ * without regular expressions, so the cost of a part no longer depends on how many line feeds
+ * happen to be in it. Subclasses decide where the contents of file parts are stored.
+ *
+ * <p>
+ * Parameter values and headers are decoded with the character encoding of the request, or
+ * ISO-8859-1 when the request does not name one. A file input that was left empty is ignored.
+ * </p>
+ *
+ * @param <T> the type of the contents of the parts
+ */
+public abstract class AbstractBufferedMultipartParser<T> implements MultipartParser<T> {
+
+    private final int bufferSize;
+    
+    private Map<String, Collection<String>> parameters;
+    private Map<String, Part<T>> parts;
+
+    protected AbstractBufferedMultipartParser() {
+        this(MultipartScanner.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the number of bytes of the request body that are buffered at a time
+     */
+    protected AbstractBufferedMultipartParser(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public Map<String, Collection<String>> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public Map<String, Part<T>> getParts() {
+        return parts;
+    }
+
+    @Override
+    public void parseInput(HttpServletRequest request) throws Exception {
+        parameters = new HashMap<String, Collection<String>>();
+        parts = new HashMap<String, Part<T>>();
+
+        String boundary = MultipartScanner.getBoundary(request.getContentType());
+        if (boundary == null) {
+            throw new IOException("The multipart request does not specify a boundary");
+        }
+
+        Charset charset = MultipartScanner.getCharset(request);
+        MultipartScanner scanner = new MultipartScanner(openBody(request), boundary, bufferSize);
+        ByteArrayOutputStream parameterValue = new ByteArrayOutputStream();
+
+        while (scanner.nextPart()) {
+            Part<T> part = new PartImpl<T>();
+            scanner.readHeaders(part, charset);
+
+            if (part.getName() == null) {
+                continue;
+            }
+
+            if (part.getFilename() == null) {
+                parameterValue.reset();
+                readParameter(part, scanner.getPartInputStream(), parameterValue);
+
+                Collection<String> values = parameters.get(part.getName());
+                if (values == null) {
+                    values = new ArrayList<String>(1);
+                    parameters.put(part.getName(), values);
+                }
+                values.add(parameterValue.toString(charset.name()));
+            } else if (part.getFilename().length() > 0) {
+                readPart(part, scanner.getPartInputStream());
+                parts.put(part.getName(), part);
+            }
+        }
+    }
+
+    /**
+     * Opens the body of the request. Subclasses may wrap the stream, for example to limit how much
+     * of it is read.
+     */
+    protected InputStream openBody(HttpServletRequest request) throws IOException {
+        return request.getInputStream();
+    }
+
+    /**
+     * Reads the value of a plain parameter into a stream, from which it is decoded. Subclasses may
+     * override this, for example to limit how large a value may be.
+     */
+    protected void readParameter(Part<T> part, InputStream contents, OutputStream out) throws Exception {
+        copy(contents, out);
+    }
+
+    /**
+     * Stores the contents of a file part and sets them on the part.
+     *
+     * @param part the part, whose name, filename, content type and headers have been read
+     * @param contents the body of the part, which ends at the next boundary; anything that is not
+     *        read is skipped
+     */
+    protected abstract void readPart(Part<T> part, InputStream contents) throws Exception;
+
+    /**
+     * Copies the contents of a part to a stream. The bytes are written straight from the parser's
+     * buffer, without being copied into an intermediate array.
+     *
+     * @return the number of bytes that were copied
+     */
+    protected static long copy(InputStream contents, OutputStream out) throws IOException {
+        if (contents instanceof MultipartScanner.PartInputStream) {
+            return ((MultipartScanner.PartInputStream) contents).copyTo(out);
+        }
+
+        byte[] buffer = new byte[MultipartScanner.DEFAULT_BUFFER_SIZE];
+        long total = 0;
+        int count;
+
+        while ((count = contents.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+            total += count;
+        }
+
+        return total;
+    }
+
+}
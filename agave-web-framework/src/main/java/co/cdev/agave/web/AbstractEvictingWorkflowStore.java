@@ -0,0 +1,341 @@
+package co.cdev.agave.web;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+
+import co.cdev.agave.configuration.RoutingContext;
+
+/**
+ * A {@link WorkflowStore} that keeps its entries outside of the {@code HttpSession} and bounds
+ * them by both age and number. Each workflow expires once it has gone unused for longer than
+ * its time to live, and the least recently used workflow is evicted whenever the maximum number
+ * of workflows would be exceeded. These can be configured with the {@code workflowTimeToLive}
+ * (in seconds) and {@code maxWorkflows} initialization params of the {@link AgaveFilter}.
+ *
+ * <p>
+ * The first time a workflow of a session is kept, a listener is bound to the session, so that all
+ * of its workflows are released as soon as the session is invalidated or times out rather than
+ * once they are evicted. A session that is passivated and activated again loses its listener, and
+ * its workflows are then left to expire.
+ * </p>
+ *
+ * <p>
+ * Values that are evicted while a workflow is acquired or retained are not discarded right away,
+ * since the subclass may be holding a lock of its own for that workflow, and discarding the value
+ * of another workflow may need that workflow's lock. They are discarded by
+ * {@link #discardEvicted()}, which subclasses call once they no longer hold any such lock.
+ * </p>
+ *
+ * @param <T> the type of value that is kept for each workflow
+ */
+public abstract class AbstractEvictingWorkflowStore<T> implements WorkflowStore {
+
+    public static final long DEFAULT_TIME_TO_LIVE = 30 * 60 * 1000L;
+    public static final int DEFAULT_MAX_WORKFLOWS = 10000;
+
+    private static final String TIME_TO_LIVE_PARAM = "workflowTimeToLive";
+    private static final String MAX_WORKFLOWS_PARAM = "maxWorkflows";
+    private static final String SESSION_LISTENER_SUFFIX = ".sessionListener";
+
+    private static class Entry<T> {
+        final T value;
+        long lastAccessed;
+
+        Entry(T value, long lastAccessed) {
+            this.value = value;
+            this.lastAccessed = lastAccessed;
+        }
+    }
+
+    private final Map<String, Entry<T>> entries = new LinkedHashMap<String, Entry<T>>(16, 0.75f, true);
+    private final Queue<Map.Entry<String, T>> evictedValues = new ConcurrentLinkedQueue<Map.Entry<String, T>>();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private long timeToLive;
+    private int maxWorkflows;
+
+    protected AbstractEvictingWorkflowStore() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_WORKFLOWS);
+    }
+
+    /**
+     * @param timeToLive the number of milliseconds a workflow may go unused before it expires
+     * @param maxWorkflows the maximum number of workflows that are kept at once
+     */
+    protected AbstractEvictingWorkflowStore(long timeToLive, int maxWorkflows) {
+        checkLimits(timeToLive, maxWorkflows);
+        this.timeToLive = timeToLive;
+        this.maxWorkflows = maxWorkflows;
+    }
+
+    private static void checkLimits(long timeToLive, int maxWorkflows) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("The workflow time to live must be positive: " + timeToLive);
+        }
+
+        if (maxWorkflows <= 0) {
+            throw new IllegalArgumentException("The maximum number of workflows must be positive: " + maxWorkflows);
+        }
+    }
+
+    @Override
+    public void initialize(FilterConfig filterConfig) throws WorkflowException {
+        String timeToLiveParameter = filterConfig.getInitParameter(TIME_TO_LIVE_PARAM);
+        String maxWorkflowsParameter = filterConfig.getInitParameter(MAX_WORKFLOWS_PARAM);
+
+        long configuredTimeToLive = timeToLive;
+        int configuredMaxWorkflows = maxWorkflows;
+
+        try {
+            if (timeToLiveParameter != null) {
+                configuredTimeToLive = Long.parseLong(timeToLiveParameter.trim()) * 1000L;
+            }
+
+            if (maxWorkflowsParameter != null) {
+                configuredMaxWorkflows = Integer.parseInt(maxWorkflowsParameter.trim());
+            }
+
+            checkLimits(configuredTimeToLive, configuredMaxWorkflows);
+        } catch (IllegalArgumentException ex) {
+            throw new WorkflowException("Invalid workflow store initialization param", ex);
+        }
+
+        timeToLive = configuredTimeToLive;
+        maxWorkflows = configuredMaxWorkflows;
+    }
+
+    /**
+     * Gets the value that is kept for a workflow, marking it as recently used. A value that has
+     * expired is evicted instead.
+     */
+    protected T acquire(RoutingContext routingContext, String workflowName) {
+        String key = createKey(routingContext, workflowName);
+        long now = System.currentTimeMillis();
+        T value = null;
+
+        synchronized (entries) {
+            Entry<T> entry = entries.get(key);
+
+            if (entry != null) {
+                if (now - entry.lastAccessed > timeToLive) {
+                    entries.remove(key);
+                    evict(key, entry.value);
+                    evictionCount.incrementAndGet();
+                } else {
+                    entry.lastAccessed = now;
+                    value = entry.value;
+                }
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Keeps a value for a workflow, evicting any workflows that have expired or that no longer
+     * fit within the maximum number of workflows.
+     */
+    protected void retain(RoutingContext routingContext, String workflowName, T value) {
+        String key = createKey(routingContext, workflowName);
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            Entry<T> previousEntry = entries.put(key, new Entry<T>(value, now));
+
+            if (previousEntry != null && previousEntry.value != value) {
+                evict(key, previousEntry.value);
+            }
+
+            // Entries are in access order, so the expired ones are all at the head
+
+            Iterator<Map.Entry<String, Entry<T>>> itr = entries.entrySet().iterator();
+
+            while (itr.hasNext()) {
+                Map.Entry<String, Entry<T>> eldest = itr.next();
+
+                if (now - eldest.getValue().lastAccessed > timeToLive || entries.size() > maxWorkflows) {
+                    itr.remove();
+                    evict(eldest.getKey(), eldest.getValue().value);
+                    evictionCount.incrementAndGet();
+                } else {
+                    break;
+                }
+            }
+        }
+
+        bindSessionListener(routingContext.getSession());
+    }
+
+    private void evict(String key, T value) {
+        evictedValues.add(new AbstractMap.SimpleImmutableEntry<String, T>(key, value));
+    }
+
+    /**
+     * Discards the values that were evicted while workflows were acquired or retained. This must
+     * be called without holding a lock that {@link #discard(String, Object)} may need.
+     */
+    protected void discardEvicted() {
+        Map.Entry<String, T> evicted;
+
+        while ((evicted = evictedValues.poll()) != null) {
+            discard(evicted.getKey(), evicted.getValue());
+        }
+    }
+
+    /**
+     * @return whether the value is the one that is currently kept for a workflow
+     */
+    protected boolean isRetained(String key, T value) {
+        synchronized (entries) {
+            Entry<T> entry = entries.get(key);
+            return entry != null && entry.value.equals(value);
+        }
+    }
+
+    private void bindSessionListener(HttpSession session) {
+        String attributeName = getClass().getName() + SESSION_LISTENER_SUFFIX;
+
+        if (session.getAttribute(attributeName) == null) {
+            session.setAttribute(attributeName, new SessionListener(this, session.getId()));
+        }
+    }
+
+    /**
+     * Stops keeping the values of every workflow of a session, and discards them.
+     */
+    void releaseSession(String sessionId) {
+        String keyPrefix = sessionId + "/";
+        List<Map.Entry<String, T>> releasedValues = new ArrayList<Map.Entry<String, T>>(0);
+
+        synchronized (entries) {
+            Iterator<Map.Entry<String, Entry<T>>> itr = entries.entrySet().iterator();
+
+            while (itr.hasNext()) {
+                Map.Entry<String, Entry<T>> entry = itr.next();
+
+                if (entry.getKey().startsWith(keyPrefix)) {
+                    itr.remove();
+                    releasedValues.add(new AbstractMap.SimpleImmutableEntry<String, T>(
+                            entry.getKey(), entry.getValue().value));
+                }
+            }
+        }
+
+        for (Map.Entry<String, T> releasedValue : releasedValues) {
+            discard(releasedValue.getKey(), releasedValue.getValue());
+        }
+
+        discardEvicted();
+    }
+
+    /**
+     * Releases the workflows of a session once it is unbound from it, which happens when the
+     * session is invalidated or times out. The store is not serialized along with the session.
+     */
+    private static class SessionListener implements HttpSessionBindingListener, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient AbstractEvictingWorkflowStore<?> store;
+        private final String sessionId;
+
+        SessionListener(AbstractEvictingWorkflowStore<?> store, String sessionId) {
+            this.store = store;
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public void valueBound(HttpSessionBindingEvent event) {
+            // nothing to do until the session ends
+        }
+
+        @Override
+        public void valueUnbound(HttpSessionBindingEvent event) {
+            if (store != null) {
+                store.releaseSession(sessionId);
+            }
+        }
+    }
+
+    /**
+     * Stops keeping the value for a workflow.
+     *
+     * @return the value that was kept, or null if there was none
+     */
+    protected T release(RoutingContext routingContext, String workflowName) {
+        Entry<T> entry = null;
+
+        synchronized (entries) {
+            entry = entries.remove(createKey(routingContext, workflowName));
+        }
+
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Releases any resources held by the value of a workflow that has been evicted or released.
+     *
+     * @param key the key of the workflow that the value was kept for
+     */
+    protected abstract void discard(String key, T value);
+
+    @Override
+    public void destroy() {
+        List<Map.Entry<String, T>> values = new ArrayList<Map.Entry<String, T>>();
+
+        synchronized (entries) {
+            for (Map.Entry<String, Entry<T>> entry : entries.entrySet()) {
+                values.add(new AbstractMap.SimpleImmutableEntry<String, T>(entry.getKey(), entry.getValue().value));
+            }
+            entries.clear();
+        }
+
+        for (Map.Entry<String, T> value : values) {
+            discard(value.getKey(), value.getValue());
+        }
+
+        discardEvicted();
+    }
+
+    /**
+     * @return the number of workflows that are currently kept by this store
+     */
+    public int getLiveWorkflowCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the number of workflows that have been evicted, either because they expired or
+     *         because the store was full
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public int getMaxWorkflows() {
+        return maxWorkflows;
+    }
+
+    String createKey(RoutingContext routingContext, String workflowName) {
+        return routingContext.getSession().getId() + "/" + workflowName;
+    }
+
+}
@@ -0,0 +1,108 @@
+package co.cdev.agave.web;
+
+import java.util.List;
+import java.util.Locale;
+
+import co.cdev.agave.conversion.AgaveConversionException;
+import co.cdev.agave.conversion.ConverterRegistry;
+import co.cdev.agave.conversion.ParamConverter;
+import co.cdev.agave.conversion.ToDoubleConverter;
+import co.cdev.agave.conversion.ToIntConverter;
+import co.cdev.agave.conversion.ToLongConverter;
+
+/**
+ * The base class of generated {@link FormBinder}s, which converts values the same way that
+ * reflective population does.
+ *
+ * @param <F> the type of form that is bound
+ */
+public abstract class AbstractFormBinder<F> implements FormBinder<F> {
+
+    protected static ParamConverter<?, ?> converterFor(Class<?> paramType) {
+        return ConverterRegistry.getInstance().getConverterFor(paramType);
+    }
+
+    /**
+     * @return the shared instance of a converter class that a parameter names with
+     *         {@code @Converter}, which is the instance a {@code ConverterProvider} registered, if any
+     */
+    protected static <C extends ParamConverter<?, ?>> C converter(Class<C> converterClass) {
+        return ConverterRegistry.getInstance().getConverter(converterClass);
+    }
+
+    protected static Object first(List<Object> paramValues) {
+        Object paramValue = null;
+        if (paramValues != null && !paramValues.isEmpty()) {
+            paramValue = paramValues.get(0);
+        }
+        return paramValue;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected static Object convert(ParamConverter converter, Object paramValue, Locale locale)
+            throws AgaveConversionException {
+        if (converter != null) {
+            try {
+                return converter.convert(paramValue, locale);
+            } catch (Throwable ex) {
+                throw new AgaveConversionException(ex);
+            }
+        }
+
+        return paramValue;
+    }
+
+    /**
+     * Converts a value that is bound to an {@code int}, without boxing it when the converter can
+     * parse text directly.
+     */
+    @SuppressWarnings("rawtypes")
+    protected static int toInt(ParamConverter converter, Object paramValue, Locale locale)
+            throws AgaveConversionException {
+        if (converter instanceof ToIntConverter && isText(paramValue)) {
+            return ((ToIntConverter) converter).parseInt((CharSequence) paramValue, locale);
+        }
+
+        return ((Number) primitive(convert(converter, paramValue, locale), int.class)).intValue();
+    }
+
+    /**
+     * Converts a value that is bound to a {@code long}, without boxing it when the converter can
+     * parse text directly.
+     */
+    @SuppressWarnings("rawtypes")
+    protected static long toLong(ParamConverter converter, Object paramValue, Locale locale)
+            throws AgaveConversionException {
+        if (converter instanceof ToLongConverter && isText(paramValue)) {
+            return ((ToLongConverter) converter).parseLong((CharSequence) paramValue, locale);
+        }
+
+        return ((Number) primitive(convert(converter, paramValue, locale), long.class)).longValue();
+    }
+
+    /**
+     * Converts a value that is bound to a {@code double}, without boxing it when the converter can
+     * parse text directly.
+     */
+    @SuppressWarnings("rawtypes")
+    protected static double toDouble(ParamConverter converter, Object paramValue, Locale locale)
+            throws AgaveConversionException {
+        if (converter instanceof ToDoubleConverter && isText(paramValue)) {
+            return ((ToDoubleConverter) converter).parseDouble((CharSequence) paramValue, locale);
+        }
+
+        return ((Number) primitive(convert(converter, paramValue, locale), double.class)).doubleValue();
+    }
+
+    private static boolean isText(Object paramValue) {
+        return paramValue instanceof CharSequence && ((CharSequence) paramValue).length() > 0;
+    }
+
+    private static Object primitive(Object value, Class<?> primitiveType) {
+        if (value == null) {
+            throw new IllegalArgumentException("Cannot bind a missing value to a property of type " + primitiveType);
+        }
+        return value;
+    }
+
+}
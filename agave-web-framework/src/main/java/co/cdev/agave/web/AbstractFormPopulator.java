@@ -25,30 +25,22 @@
  */
 package co.cdev.agave.web;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.text.MessageFormat;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
-import co.cdev.agave.Converter;
+import co.cdev.agave.BindFields;
 import co.cdev.agave.conversion.AgaveConversionException;
-import co.cdev.agave.conversion.Converters;
-import co.cdev.agave.conversion.ParamConverter;
-import co.cdev.agave.util.CallChain;
-import co.cdev.agave.util.CallChainImpl;
+import co.cdev.agave.util.CallChains;
 
 /**
  * @author <a href="mailto:damianarrillo@gmail.com">Damian Carrillo</a>
  */
 public abstract class AbstractFormPopulator extends AbstractPopulator implements FormPopulator {
 
-    private static final String ILLEGAL_ARGUMENT_EXCEPTION_MSG =
-            "Mutator {0}#{1}(...) is expecting argument of type {2} and recieved {3}";
-    
     protected final SortedMap<String, List<Object>> params = new TreeMap<String, List<Object>>();
 
     protected AbstractFormPopulator(Locale locale) {
@@ -69,146 +61,33 @@ public abstract class AbstractFormPopulator extends AbstractPopulator implements
             InvocationTargetException,
             InstantiationException,
             AgaveConversionException {
-        CallChain callChain = null;
-        for (String parameterName : params.keySet()) {
-            List<Object> parameterValues = params.get(parameterName);
-            boolean unique = true;
-            if (parameterValues != null && parameterValues.size() > 1) {
-                unique = false;
-            }
-            callChain = new CallChainImpl(parameterName, unique);
-            populateProperty(formInstance, callChain, parameterValues);
-        }
-    }
-
-    private void populateProperty(Object formInstance, CallChain callChain, List<Object> paramValues)
-            throws NoSuchMethodException,
-            SecurityException,
-            IllegalAccessException,
-            IllegalArgumentException,
-            InvocationTargetException,
-            InstantiationException,
-            AgaveConversionException {
-        Object targetInstance = formInstance;
-        Class<?> targetClass = targetInstance.getClass();
-
-        for (String accessorName : callChain.getAccessorNames()) {
-            try {
-                Method accessor = targetClass.getMethod(accessorName);
-                targetInstance = accessor.invoke(targetInstance);
-                targetClass = targetInstance.getClass();
-            } catch (NoSuchMethodException ex) {
-                throw new NoSuchMethodException("Missing accessor \"" + accessorName + "\" on " + targetClass.getName()
-                        + " invoked through request parameter \"" + callChain.getParameterName() + "\"");
-            }
-        }
-
-        for (Method mutator : targetClass.getMethods()) {
-            if (mutator.getName().equals(callChain.getMutatorName())) {
-                Object parameterValue = null;
-                switch (callChain.getMutatorType()) {
-                    case SETTING:
-                        if (paramValues != null && !paramValues.isEmpty()) {
-                            parameterValue = paramValues.get(0);
-                        }
-                        setOrAppendProperty(mutator, targetInstance, parameterValue);
-                        break;
-                    case APPENDING:
-                        for (Object param : paramValues) {
-                            setOrAppendProperty(mutator, targetInstance, param);
-                        }
-                        break;
-                    case INSERTING:
-                        if (paramValues != null && !paramValues.isEmpty()) {
-                            parameterValue = paramValues.get(0);
-                        }
-                        insertProperty(mutator, targetInstance, callChain.getIndex(), parameterValue);
-                        break;
-                    case PUTTING:
-                        if (paramValues != null && !paramValues.isEmpty()) {
-                            parameterValue = paramValues.get(0);
-                        }
-                        putProperty(mutator, targetInstance, callChain.getKey(), parameterValue);
-                        break;
+        Class<?> formClass = formInstance.getClass();
+        boolean bindFields = formClass.isAnnotationPresent(BindFields.class);
+        FormBinder<Object> binder = bindFields ? null : FormBinders.forClass(formClass);
+
+        for (Map.Entry<String, List<Object>> param : params.entrySet()) {
+            List<Object> parameterValues = param.getValue();
+            boolean unique = !isMultiValued(param.getKey(), parameterValues);
+            if (bindFields) {
+                FieldBindingPlan fieldPlan = FieldBindingPlan.forParameter(formClass, param.getKey(), unique);
+                if (fieldPlan != null) {
+                    fieldPlan.bind(formInstance, parameterValues, locale);
+                    continue;
                 }
             }
+            if (binder == null
+                    || !binder.bind(formInstance, CallChains.parse(param.getKey(), unique), parameterValues, locale)) {
+                FormBindingPlan.forParameter(formInstance, param.getKey(), unique).bind(formInstance, parameterValues, locale);
+            }
         }
     }
 
-    private void setOrAppendProperty(Method mutator, Object targetInstance, Object paramValue)
-            throws IllegalAccessException,
-            IllegalArgumentException,
-            InvocationTargetException,
-            InstantiationException,
-            AgaveConversionException {
-        try {
-            mutator.invoke(targetInstance, convertIfNecessary(mutator, paramValue));
-        } catch (IllegalArgumentException ex) {
-            String errorMessage = MessageFormat.format(ILLEGAL_ARGUMENT_EXCEPTION_MSG,
-                    mutator.getDeclaringClass().getName(),
-                    mutator.getName(),
-                    mutator.getParameterTypes()[0].getName(),
-                    paramValue.getClass().getName());
-            throw new IllegalArgumentException(errorMessage);
-        }
+    /**
+     * @return true if a parameter is to be bound as several values, which by default it is when
+     *         it has more than one
+     */
+    protected boolean isMultiValued(String parameterName, List<Object> parameterValues) {
+        return parameterValues != null && parameterValues.size() > 1;
     }
 
-    private void insertProperty(Method mutator, Object targetInstance, int index, Object paramValue)
-            throws IllegalAccessException,
-            IllegalArgumentException,
-            InvocationTargetException,
-            InstantiationException,
-            AgaveConversionException {
-        mutator.invoke(targetInstance, index, convertIfNecessary(mutator, paramValue));
-    }
-
-    private void putProperty(Method mutator, Object targetInstance, String key, Object paramValue)
-            throws IllegalAccessException,
-            IllegalArgumentException,
-            InvocationTargetException,
-            InstantiationException,
-            AgaveConversionException {
-        mutator.invoke(targetInstance, key, convertIfNecessary(mutator, paramValue));
-    }
-
-    @SuppressWarnings("unchecked")
-	private Object convertIfNecessary(Method mutator, Object paramValue)
-            throws AgaveConversionException,
-            InstantiationException,
-            IllegalAccessException {
-        Class<?>[] parameterTypes = mutator.getParameterTypes();
-
-        if (parameterTypes != null) {
-            int parameterOffset = (parameterTypes.length == 1) ? 0 : 1;
-            Class<?> paramType = parameterTypes[parameterOffset];
-            
-            @SuppressWarnings("rawtypes")
-			ParamConverter converter = null; // keep this vague
-            
-            // First look for a Converter annotation
-            
-            for (Annotation annotation : mutator.getParameterAnnotations()[parameterOffset]) {
-                if (annotation instanceof Converter) {
-                    converter = ((Converter) annotation).value().newInstance();
-                    break;
-                }
-            }
-
-            // Try to look up a converter for common types
-            
-            if (converter == null) {
-                converter = Converters.getMostAppropriateFor(paramType);
-            }
-
-            if (converter != null) {
-                try {
-                    return converter.convert(paramValue, locale);
-                } catch (Throwable ex) {
-                    throw new AgaveConversionException(ex);
-                }
-            }
-        }
-
-        return paramValue;
-    }
 }
@@ -93,9 +93,10 @@ public abstract class AbstractMultipartParser<T> implements MultipartParser<T> {
         }
         eos = boundary + "--";
         in = new BufferedInputStream(request.getInputStream());
-        readLine(in);
         
         try {
+            readLine(in);
+            
             while (true) {
                 Part<T> part = new PartImpl<T>();
                 readHeaders(part);
@@ -222,15 +223,4 @@ public abstract class AbstractMultipartParser<T> implements MultipartParser<T> {
     }
     
     protected abstract boolean readPart(Part<T> part) throws Exception;
-    
-    /**
-     * Just making sure that this is closed... (see the finally block of the parseInput method as well)
-     */
-    @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        if (in != null) {
-            in.close();
-        }
-    }
 }
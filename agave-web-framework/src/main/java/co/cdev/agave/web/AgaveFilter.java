@@ -1,14 +1,22 @@
 package co.cdev.agave.web;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,32 +29,44 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 
+import co.cdev.agave.MultipartStream;
 import co.cdev.agave.configuration.Config;
 import co.cdev.agave.configuration.ConfigGenerator;
 import co.cdev.agave.configuration.ConfigGeneratorImpl;
 import co.cdev.agave.configuration.ConfigImpl;
+import co.cdev.agave.configuration.DirtyTrackingSession;
 import co.cdev.agave.configuration.HandlerDescriptor;
 import co.cdev.agave.configuration.ParamDescriptor;
 import co.cdev.agave.configuration.RoutingContext;
 import co.cdev.agave.conversion.AgaveConversionException;
+import co.cdev.agave.conversion.ConverterRegistry;
 
 public class AgaveFilter implements Filter {
 
     private static final Logger LOGGER = Logger.getLogger(AgaveFilter.class.getName());
-    private static final String WORKFLOW_HANDLER_SUFFIX = "-handler";
-    private static final String WORKFLOW_FORM_SUFFIX = "-form";
     private static final String DEFAULT_CONFIG_FILE_NAME = "agave.conf";
+    private static final long REAPER_INTERVAL_MINUTES = 5;
     
     private FilterConfig filterConfig;
-    private Config config;
     private LifecycleHooks lifecycleHooks;
     private File classesDirectory;
     private HandlerFactory handlerFactory;
     private FormFactory formFactory;
-    private RequestMatcher requestMatcher;
+    private WorkflowStore workflowStore;
+    private RequestMatcherImpl requestMatcher;
+    private ConfigReloader configReloader;
     private SortedSet<ResultProcessor> resultProcessors;
+    private final List<RequestBodyReader> requestBodyReaders = new ArrayList<RequestBodyReader>();
+    @SuppressWarnings("rawtypes")
+    private Class<? extends MultipartParser> multipartParserClass;
+    private UploadLimits uploadLimits;
+    private UploadDirectory uploadDirectory;
+    private int uploadMaxPendingWrites;
+    private boolean uploadFsync;
+    private ExecutorService uploadWriters;
+    private ContentStore contentStore;
+    private final AtomicLong avoidedSessionWriteCount = new AtomicLong();
 
     protected File provideClassesDirectory(FilterConfig filterConfig)
             throws ClassNotFoundException, InstantiationException, IllegalAccessException {
@@ -105,6 +125,208 @@ public class AgaveFilter implements Filter {
         return factory;
     }
 
+    protected WorkflowStore provideWorkflowStore(FilterConfig filterConfig)
+            throws ClassNotFoundException, InstantiationException, IllegalAccessException {
+        WorkflowStore store = null;
+
+        String workflowStoreParameter = filterConfig.getInitParameter("workflowStore");
+
+        if (workflowStoreParameter != null) {
+            store = (WorkflowStore) Class.forName(workflowStoreParameter).newInstance();
+        } else {
+            store = new SessionWorkflowStore();
+        }
+
+        return store;
+    }
+
+    protected List<RequestBodyReader> provideRequestBodyReaders(FilterConfig filterConfig)
+            throws ClassNotFoundException, InstantiationException, IllegalAccessException {
+        List<RequestBodyReader> readers = new ArrayList<RequestBodyReader>();
+
+        String requestBodyReadersParameter = filterConfig.getInitParameter("requestBodyReaders");
+
+        if (requestBodyReadersParameter != null) {
+            for (String readerClassName : requestBodyReadersParameter.split(",")) {
+                if (readerClassName.trim().length() > 0) {
+                    readers.add((RequestBodyReader) Class.forName(readerClassName.trim()).newInstance());
+                }
+            }
+        }
+
+        return readers;
+    }
+
+    /**
+     * Provides the class directories and jar files that are scanned for handlers when no
+     * configuration file has been generated. These are the classes directory and, if the
+     * {@code scanLibraries} init parameter is true, the jar files in the {@code lib} directory
+     * next to it, in name order.
+     */
+    protected List<File> provideScanRoots(FilterConfig filterConfig) {
+        List<File> roots = new ArrayList<File>();
+        roots.add(classesDirectory);
+
+        if (Boolean.parseBoolean(filterConfig.getInitParameter("scanLibraries"))) {
+            File[] libraries = new File(classesDirectory.getParentFile(), "lib").listFiles(new FileFilter() {
+                @Override
+                public boolean accept(File file) {
+                    return file.isFile() && file.getName().endsWith(".jar");
+                }
+            });
+
+            if (libraries != null) {
+                Arrays.sort(libraries);
+                roots.addAll(Arrays.asList(libraries));
+            }
+        }
+
+        return roots;
+    }
+
+    /**
+     * Provides the number of threads that read class files while scanning for handlers, which is
+     * given by the {@code scanThreads} init parameter and defaults to the number of processors.
+     */
+    protected int provideScanThreads(FilterConfig filterConfig) {
+        String scanThreadsParameter = filterConfig.getInitParameter("scanThreads");
+
+        if (scanThreadsParameter != null && scanThreadsParameter.trim().length() > 0) {
+            return Integer.parseInt(scanThreadsParameter.trim());
+        }
+
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Provides the file that keeps what each scan for handlers found, so that restarts only read
+     * the class files and jar files that changed. It is named by the {@code scanIndex} init
+     * parameter, and there is none by default.
+     */
+    protected File provideScanIndexFile(FilterConfig filterConfig) {
+        String scanIndexParameter = filterConfig.getInitParameter("scanIndex");
+
+        if (scanIndexParameter != null && scanIndexParameter.trim().length() > 0) {
+            return new File(scanIndexParameter.trim());
+        }
+
+        return null;
+    }
+
+    /**
+     * Provides the number of seconds between checks for a changed configuration file, or for new
+     * handler classes when there is no configuration file, which is given by the
+     * {@code configReloadInterval} init parameter. The config is not reloaded by default.
+     */
+    protected long provideConfigReloadInterval(FilterConfig filterConfig) {
+        String configReloadIntervalParameter = filterConfig.getInitParameter("configReloadInterval");
+
+        if (configReloadIntervalParameter != null && configReloadIntervalParameter.trim().length() > 0) {
+            return Long.parseLong(configReloadIntervalParameter.trim());
+        }
+
+        return 0;
+    }
+
+    /**
+     * Provides the comma separated package names of an init parameter, such as the
+     * {@code includedPackages} and {@code excludedPackages} that narrow the scan for handlers when
+     * no configuration file has been generated.
+     */
+    protected List<String> providePackages(FilterConfig filterConfig, String parameterName) {
+        List<String> packages = new ArrayList<String>();
+
+        String packagesParameter = filterConfig.getInitParameter(parameterName);
+
+        if (packagesParameter != null) {
+            for (String packageName : packagesParameter.split(",")) {
+                if (packageName.trim().length() > 0) {
+                    packages.add(packageName.trim());
+                }
+            }
+        }
+
+        return packages;
+    }
+
+    /**
+     * Provides the class of the parsers that read multipart requests, which is named by the
+     * {@code multipartParser} init parameter. A new parser is created for every request, so the
+     * class must have a public no argument constructor.
+     */
+    @SuppressWarnings("rawtypes")
+    protected Class<? extends MultipartParser> provideMultipartParserClass(FilterConfig filterConfig)
+            throws ClassNotFoundException {
+        Class<? extends MultipartParser> parserClass = FileMultipartParser.class;
+
+        String multipartParserParameter = filterConfig.getInitParameter("multipartParser");
+
+        if (multipartParserParameter != null) {
+            parserClass = Class.forName(multipartParserParameter).asSubclass(MultipartParser.class);
+        }
+
+        return parserClass;
+    }
+
+    /**
+     * Provides the limits that a {@link HybridMultipartParser} enforces, which are read from the
+     * {@code multipartSpillThreshold}, {@code multipartMaxPartSize},
+     * {@code multipartMaxFieldSize}, {@code multipartMaxRequestSize} and
+     * {@code multipartMaxInFlightSize} init parameters, in bytes. Sizes that are not given are not
+     * limited, except for parameter values, which default to
+     * {@link UploadLimits#DEFAULT_MAX_FIELD_SIZE}.
+     */
+    protected UploadLimits provideUploadLimits(FilterConfig filterConfig) {
+        String spillThresholdParameter = filterConfig.getInitParameter("multipartSpillThreshold");
+        String maxFieldSizeParameter = filterConfig.getInitParameter("multipartMaxFieldSize");
+
+        return new UploadLimits(
+                spillThresholdParameter == null ? UploadLimits.DEFAULT_SPILL_THRESHOLD
+                        : Integer.parseInt(spillThresholdParameter.trim()),
+                parseSize(filterConfig.getInitParameter("multipartMaxPartSize")),
+                maxFieldSizeParameter == null ? UploadLimits.DEFAULT_MAX_FIELD_SIZE
+                        : parseSize(maxFieldSizeParameter),
+                parseSize(filterConfig.getInitParameter("multipartMaxRequestSize")),
+                parseSize(filterConfig.getInitParameter("multipartMaxInFlightSize")));
+    }
+
+    private static long parseSize(String sizeParameter) {
+        return sizeParameter == null ? UploadLimits.UNLIMITED : Long.parseLong(sizeParameter.trim());
+    }
+
+    /**
+     * Provides the directory that uploads are written to, which is named by the
+     * {@code uploadDirectory} init parameter and is otherwise {@code agave-uploads} in the system's
+     * temporary directory. Files in it that outlive their requests are reaped once they are older
+     * than the {@code uploadOrphanAge} init parameter, in seconds.
+     */
+    protected UploadDirectory provideUploadDirectory(FilterConfig filterConfig) throws IOException {
+        String uploadDirectoryParameter = filterConfig.getInitParameter("uploadDirectory");
+        String uploadOrphanAgeParameter = filterConfig.getInitParameter("uploadOrphanAge");
+
+        File directory = uploadDirectoryParameter == null
+                ? new File(System.getProperty("java.io.tmpdir"), "agave-uploads")
+                : new File(uploadDirectoryParameter);
+        long orphanAge = uploadOrphanAgeParameter == null
+                ? UploadDirectory.DEFAULT_ORPHAN_AGE
+                : TimeUnit.SECONDS.toMillis(Long.parseLong(uploadOrphanAgeParameter.trim()));
+
+        return new UploadDirectory(directory, orphanAge);
+    }
+
+    /**
+     * Provides the store that a {@link ContentAddressedMultipartParser} keeps uploads in, which is
+     * the directory named by the {@code contentStoreDirectory} init parameter, and is otherwise
+     * {@code agave-content} in the system's temporary directory.
+     */
+    protected ContentStore provideContentStore(FilterConfig filterConfig) throws IOException {
+        String contentStoreDirectoryParameter = filterConfig.getInitParameter("contentStoreDirectory");
+
+        return ContentStore.forDirectory(contentStoreDirectoryParameter == null
+                ? ContentStore.getDefaultDirectory()
+                : new File(contentStoreDirectoryParameter));
+    }
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
         this.filterConfig = filterConfig;
@@ -113,16 +335,50 @@ public class AgaveFilter implements Filter {
             lifecycleHooks = provideLifecycleHooks(filterConfig);
             
             File configFile = new File(classesDirectory, DEFAULT_CONFIG_FILE_NAME);
+            long configReloadInterval = provideConfigReloadInterval(filterConfig);
+            
+            Config config = null;
             
             if (configFile.exists() && configFile.canRead()) {
                 config = new ConfigImpl();
-                config.readFromFile(configFile);
+                
+                try {
+                    config.readFromFile(configFile);
+                } catch (IOException ex) {
+                    // A config file that can not be read, such as one written by Java serialization
+                    // in an earlier version, is passed over and the handlers are found by scanning
+                    
+                    LOGGER.log(Level.WARNING, "Unable to read \"{0}\", so the classes will be scanned "
+                            + "for handlers instead: {1}", new Object[] {configFile, ex.getMessage()});
+                    config = null;
+                }
+            }
+            
+            if (config != null) {
+                requestMatcher = new RequestMatcherImpl(config);
+                
+                if (configReloadInterval > 0) {
+                    configReloader = new ConfigReloader(requestMatcher, configFile);
+                }
             } else {
-                ConfigGenerator configGenerator = new ConfigGeneratorImpl(classesDirectory);
-                config = configGenerator.generateConfig();
+                ConfigGenerator configGenerator = new ConfigGeneratorImpl(ConfigGenerator.class.getClassLoader(),
+                        provideScanRoots(filterConfig), providePackages(filterConfig, "includedPackages"),
+                        providePackages(filterConfig, "excludedPackages"), provideScanThreads(filterConfig),
+                        provideScanIndexFile(filterConfig));
+                requestMatcher = new RequestMatcherImpl(configGenerator.generateConfig());
+                
+                if (configReloadInterval > 0) {
+                    configReloader = new ConfigReloader(requestMatcher, configGenerator);
+                }
             }
             
-            requestMatcher = new RequestMatcherImpl(config);
+            // The route table is built now so that the first request does not pay for it
+            
+            requestMatcher.getRouteTable();
+            
+            if (configReloader != null) {
+                configReloader.start(configReloadInterval, TimeUnit.SECONDS);
+            }
             
             // These need to support dependency injection
             
@@ -130,6 +386,8 @@ public class AgaveFilter implements Filter {
             handlerFactory.initialize();
             formFactory = provideFormFactory(filterConfig);            
             formFactory.initialize();
+            workflowStore = provideWorkflowStore(filterConfig);
+            workflowStore.initialize(filterConfig);
             
             resultProcessors = new TreeSet<ResultProcessor>(new Comparator<ResultProcessor>() {
                 @Override
@@ -152,6 +410,35 @@ public class AgaveFilter implements Filter {
             addResultProcessor(new DestinationProcessor());
             addResultProcessor(new HTTPResponseProcessor());
             addResultProcessor(new URIProcessor());
+            
+            for (RequestBodyReader requestBodyReader : provideRequestBodyReaders(filterConfig)) {
+                addRequestBodyReader(requestBodyReader);
+            }
+            
+            multipartParserClass = provideMultipartParserClass(filterConfig);
+            uploadLimits = provideUploadLimits(filterConfig);
+            uploadDirectory = provideUploadDirectory(filterConfig);
+            uploadDirectory.startReaperOnFirstFile(REAPER_INTERVAL_MINUTES, TimeUnit.MINUTES);
+            
+            // The number of buffers that may wait to be written, and whether uploads are forced
+            // to the disk, when the multipartParser init parameter names a ChannelFileMultipartParser
+            
+            String uploadMaxPendingWritesParameter = filterConfig.getInitParameter("uploadMaxPendingWrites");
+            uploadMaxPendingWrites = uploadMaxPendingWritesParameter == null
+                    ? ChannelFileMultipartParser.DEFAULT_MAX_PENDING_WRITES
+                    : Integer.parseInt(uploadMaxPendingWritesParameter.trim());
+            uploadFsync = Boolean.parseBoolean(filterConfig.getInitParameter("uploadFsync"));
+            
+            if (ChannelFileMultipartParser.class.isAssignableFrom(multipartParserClass)) {
+                String uploadMaxWritersParameter = filterConfig.getInitParameter("uploadMaxWriters");
+                uploadWriters = ChannelFileMultipartParser.newWriterPool(uploadMaxWritersParameter == null
+                        ? ChannelFileMultipartParser.DEFAULT_MAX_WRITERS
+                        : Integer.parseInt(uploadMaxWritersParameter.trim()));
+            }
+            
+            if (ContentAddressedMultipartParser.class.isAssignableFrom(multipartParserClass)) {
+                contentStore = provideContentStore(filterConfig);
+            }
         } catch (Exception ex) {
             throw new ServletException(ex);
         }
@@ -160,6 +447,14 @@ public class AgaveFilter implements Filter {
     protected void addResultProcessor(ResultProcessor resultProcessor) {
         resultProcessors.add(resultProcessor);
     }
+    
+    /**
+     * Adds a reader for request bodies. Readers are consulted in the order that they were added,
+     * and the first one that can read a request reads its body.
+     */
+    protected void addRequestBodyReader(RequestBodyReader requestBodyReader) {
+        requestBodyReaders.add(requestBodyReader);
+    }
 
     /**
      * Destroys this filter.
@@ -167,19 +462,41 @@ public class AgaveFilter implements Filter {
     @Override
     public void destroy() {
         classesDirectory = null;
-        config = null;
         filterConfig = null;
         requestMatcher = null;
         handlerFactory = null;
+        
+        if (configReloader != null) {
+            configReloader.stop();
+            configReloader = null;
+        }
         formFactory = null;
+        requestBodyReaders.clear();
+        
+        if (uploadDirectory != null) {
+            uploadDirectory.stopReaper();
+            uploadDirectory = null;
+        }
+        
+        // Files that are being written are finished before the writer threads end
+        
+        if (uploadWriters != null) {
+            uploadWriters.shutdown();
+            uploadWriters = null;
+        }
+        
+        if (workflowStore != null) {
+            workflowStore.destroy();
+            workflowStore = null;
+        }
+        
+        ConverterRegistry.release(Thread.currentThread().getContextClassLoader());
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public final void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain) 
             throws IOException, ServletException {
         
-        ServletContext servletContext = filterConfig.getServletContext();
         HttpServletRequest request = (HttpServletRequest) req;
         HttpServletResponse response = (HttpServletResponse) resp;
 
@@ -187,20 +504,71 @@ public class AgaveFilter implements Filter {
         
         if (handlerDescriptor != null) {
             
-            // Wrap the request if necessary so that the uploaded content can be accessed like
-            // regular string parameters
+            // Temporary files that are uploaded with the request are deleted once it has been
+            // handled, unless the handler claimed them
             
-            if (RequestUtils.isMultipart(request)) {
+            RequestUploads uploads = RequestUploads.begin(uploadDirectory);
+            
+            try {
+                handleRequest(handlerDescriptor, request, response);
+            } finally {
+                uploads.end();
+            }
+        } else {
+            chain.doFilter(req, resp);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void handleRequest(HandlerDescriptor handlerDescriptor, HttpServletRequest request, 
+            HttpServletResponse response) throws IOException, ServletException {
+        
+        ServletContext servletContext = filterConfig.getServletContext();
+        
+        // Wrap the request if necessary so that the uploaded content can be accessed like
+        // regular string parameters, except for handlers that stream parts, which read them from
+        // the request body themselves
+        
+        MultipartStream multipartStream = null;
+        
+        if (handlerDescriptor.streamsParts()) {
+            if (!RequestUtils.isMultipart(request)) {
+                response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+                return;
+            }
+            multipartStream = new DefaultMultipartStream(request);
+        } else if (RequestUtils.isMultipart(request)) {
+            try {
+                request = wrapMultipartRequest(request);
+            } catch (RequestEntityTooLargeException ex) {
+                LOGGER.log(Level.INFO, ex.getMessage());
+                response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                return;
+            } catch (Exception e) {
+                throw new ServletException(e);
+            }
+        }
+        
+        // Expose the parameters of bodies such as JSON documents like regular string parameters
+        
+        for (RequestBodyReader requestBodyReader : multipartStream == null ? requestBodyReaders
+                : Collections.<RequestBodyReader>emptyList()) {
+            if (requestBodyReader.canRead(request)) {
                 try {
-                    request = wrapMultipartRequest(request);
-                } catch (Exception e) {
-                    throw new ServletException(e);
+                    request = new BodyParameterRequest(request, requestBodyReader.read(request));
+                } catch (RequestEntityTooLargeException ex) {
+                    LOGGER.log(Level.INFO, ex.getMessage());
+                    response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                    return;
                 }
+                break;
             }
-            
-            HttpSession session = request.getSession(true);
-            RoutingContext routingContext = new RoutingContext(servletContext, request, response, session);
+        }
+        
+        DirtyTrackingSession session = new DirtyTrackingSession(request.getSession(true));
+        RoutingContext routingContext = new RoutingContext(servletContext, request, response, session);
 
+        try {
             if (lifecycleHooks.beforeFilteringRequest(handlerDescriptor, routingContext)) {
                 return;
             }
@@ -209,21 +577,32 @@ public class AgaveFilter implements Filter {
                 request.getServletPath(),
                 handlerDescriptor.getHandlerMethod()
             });
-            
+        
             URIParamExtractor uriParamExtractor = new URIParamExtractorImpl(handlerDescriptor.getURIPattern());
             Map<String, String> uriParams = uriParamExtractor.extractParams(request);
 
             Object formInstance = null;
+            WorkflowState workflowState = null;
 
-            // Attempt to pull a form instance out of the session, stored from a
-            // previous workflow phase
-            
+            // Attempt to pull the handler and form instances out of the workflow store, stored
+            // from a previous workflow phase
+        
             if (handlerDescriptor.getWorkflowName() != null && !handlerDescriptor.initiatesWorkflow()) {
-                formInstance = session.getAttribute(handlerDescriptor.getWorkflowName() + WORKFLOW_FORM_SUFFIX);
+                try {
+                    workflowState = workflowStore.load(routingContext, handlerDescriptor.getWorkflowName());
+                } catch (InvalidWorkflowTokenException ex) {
+                    LOGGER.log(Level.INFO, ex.getMessage());
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+                    return;
+                }
+            
+                if (workflowState != null) {
+                    formInstance = workflowState.getFormInstance();
+                }
             }
 
             // Create a form instance
-            
+        
             if (formInstance == null) {
                 formInstance = formFactory.createFormInstance(servletContext, handlerDescriptor);
 
@@ -236,30 +615,26 @@ public class AgaveFilter implements Filter {
 
             // Populate the form if necessary.  If the handler method only has one additional argument
             // beyond the HandlerContext, it is assumed that it will be a form object.
-            
+        
             if (formInstance != null) {
-                if (handlerDescriptor.initiatesWorkflow()) {
-                    session.setAttribute(handlerDescriptor.getWorkflowName() + WORKFLOW_FORM_SUFFIX, formInstance);
-                }
-
                 if (lifecycleHooks.beforeHandlingRequest(handlerDescriptor, formInstance, routingContext)) {
                     return;
                 }
 
                 try {
-                    
+                
                     // Populate a form and converts it into the target types if they can be 
                     // described by the standard suite of converters out of the agave.conversion
                     // package
-                    
+                
                     FormPopulator formPopulator = new RequestParameterFormPopulator(request);
                     formPopulator.populate(formInstance);
-                    
-                    if (RequestUtils.isMultipart(request)) {
+                
+                    if (request instanceof MultipartRequest) {
                         formPopulator = new RequestPartFormPopulator<Object>((MultipartRequest<Object>) request);
                         formPopulator.populate(formInstance);
                     }
-                    
+                
                     formPopulator = new URIParamFormPopulator(request, handlerDescriptor, uriParams);
                     formPopulator.populate(formInstance);
                 } catch (NoSuchMethodException ex) {
@@ -270,6 +645,8 @@ public class AgaveFilter implements Filter {
                     throw new FormException(ex.getCause());
                 } catch (InstantiationException ex) {
                     throw new FormException(ex);
+                } catch (IllegalArgumentException ex) {
+                    throw new FormException(ex);
                 } catch (AgaveConversionException ex) {
                     throw new FormException(ex);
                 }
@@ -278,37 +655,37 @@ public class AgaveFilter implements Filter {
                     return;
                 }
             }
-            
+        
             // If no form was found, attempt to supply arguments by taking the parameterized values 
             // from either the URI path or the request params.  URI params override request params.
-            
+        
             LinkedHashMap<String, Object> arguments = null;
             List<ParamDescriptor> paramDescriptors = handlerDescriptor.getParamDescriptors();
-            
+        
             if (formInstance == null && !paramDescriptors.isEmpty()) {
-                
+            
                 // A LinkedHashMap is used because the iteration order will match the arguments that
                 // the handler method is expecting.  Reinsertion into the map is negligible
-                
+            
                 arguments = new LinkedHashMap<String, Object>();
-                
+            
                 // Establish the order of the parameter so the params can be looked up
-                
+            
                 for (ParamDescriptor paramDescriptor : paramDescriptors) {
                     String value = uriParams.get(paramDescriptor.getName());
-                    
+                
                     if (value == null) {
                 		value = request.getParameter(paramDescriptor.getName());
                     }
-                    
+                
                     arguments.put(paramDescriptor.getName(), null);
                 }
-                
+            
                 // Now that the argument order has been established, populate
                 // the actual values
-                
+            
                 MapPopulator argumentPopulator = new MapPopulatorImpl(request, uriParams, handlerDescriptor);
-                
+            
                 try {
                     argumentPopulator.populate(arguments);
                 } catch (AgaveConversionException ex) {
@@ -318,15 +695,14 @@ public class AgaveFilter implements Filter {
 
             Object handlerInstance = null;
 
-            // Attempt to pull a handler from a previous workflow phase out of
-            // the session
-            
-            if (handlerDescriptor.getWorkflowName() != null && !handlerDescriptor.initiatesWorkflow()) {
-                handlerInstance = session.getAttribute(handlerDescriptor.getWorkflowName() + WORKFLOW_HANDLER_SUFFIX);
+            // Use the handler from a previous workflow phase if there is one
+        
+            if (workflowState != null) {
+                handlerInstance = workflowState.getHandlerInstance();
             }
 
             // Create a handler
-            
+        
             if (handlerInstance == null) {
                 handlerInstance = handlerFactory.createHandlerInstance(servletContext, handlerDescriptor);
 
@@ -337,39 +713,47 @@ public class AgaveFilter implements Filter {
             }
 
             // Initiate a new workflow if necessary
-            
+        
             if (handlerDescriptor.initiatesWorkflow()) {
-                session.setAttribute(handlerDescriptor.getWorkflowName() + WORKFLOW_HANDLER_SUFFIX, handlerInstance);
-            }
-
-            if (lifecycleHooks.beforeHandlingRequest(handlerDescriptor, handlerInstance, routingContext)) {
-                return;
+                workflowState = new WorkflowState(handlerInstance, formInstance, true);
             }
 
             Object result = null;
+            boolean handled = false;
 
             // Invoke the handler method, by either supplying a context and a form
             // instance, a context and a string of named parameters, or a single
-            // HandlerContext
-            
+            // HandlerContext. The workflow state is saved afterwards even if the handler
+            // fails, so that what it changed before failing is kept.
+        
             try {
+                if (lifecycleHooks.beforeHandlingRequest(handlerDescriptor, handlerInstance, routingContext)) {
+                    return;
+                }
+
                 if (formInstance != null) {
                     if (handlerDescriptor.getHandlerMethod().getReturnType() != null) {
                         result = handlerDescriptor.getHandlerMethod().invoke(handlerInstance, routingContext, formInstance);
                     } else {
                         handlerDescriptor.getHandlerMethod().invoke(handlerInstance, routingContext, formInstance);
                     }
+                } else if (multipartStream != null) {
+                    if (handlerDescriptor.getHandlerMethod().getReturnType() != null) {
+                        result = handlerDescriptor.getHandlerMethod().invoke(handlerInstance, routingContext, multipartStream);
+                    } else {
+                        handlerDescriptor.getHandlerMethod().invoke(handlerInstance, routingContext, multipartStream);
+                    }
                 } else if (arguments != null) {
                     Object[] actualArguments = new Object[arguments.size() + 1];
-                    
+                
                     int i = 0;
-                    
+                
                     actualArguments[i++] = routingContext;
-                    
+                
                     for (String name : arguments.keySet()) {
                         actualArguments[i++] = arguments.get(name);
                     }
-                    
+                
                     if (handlerDescriptor.getHandlerMethod().getReturnType() != null) {
                         result = handlerDescriptor.getHandlerMethod().invoke(handlerInstance, actualArguments);
                     } else {
@@ -382,6 +766,8 @@ public class AgaveFilter implements Filter {
                         handlerDescriptor.getHandlerMethod().invoke(handlerInstance, routingContext);
                     }
                 }
+                
+                handled = true;
             } catch (InvocationTargetException ex) {
                 if (ex.getCause() instanceof AgaveWebException) {
                     logRequestInformation(request);
@@ -399,15 +785,22 @@ public class AgaveFilter implements Filter {
             } catch (IllegalAccessException ex) {
                 logRequestInformation(request); 
                 throw new HandlerException(handlerDescriptor, ex);
+            } finally {
+                
+                // Complete a workflow and flush its state from the workflow store, or save the
+                // state that the current phase left behind
+                
+                if (handled && handlerDescriptor.completesWorkflow()) {
+                    workflowStore.remove(routingContext, handlerDescriptor.getWorkflowName());
+                } else if (workflowState != null) {
+                    workflowStore.save(routingContext, handlerDescriptor.getWorkflowName(), workflowState);
+                }
             }
 
-            // Complete a workflow and flushes the referenced attributes from
-            // the session
+            // Write session changes before the result is processed so that views which read
+            // the session directly can see them
             
-            if (handlerDescriptor.completesWorkflow()) {
-                session.removeAttribute(handlerDescriptor.getWorkflowName() + WORKFLOW_HANDLER_SUFFIX);
-                session.removeAttribute(handlerDescriptor.getWorkflowName() + WORKFLOW_FORM_SUFFIX);
-            }
+            flushSession(session);
 
             if (handlerDescriptor.getHandlerMethod().getReturnType() != null && result != null && !response.isCommitted()) {
                 for (ResultProcessor resultProcessor : resultProcessors) {
@@ -417,15 +810,19 @@ public class AgaveFilter implements Filter {
                     }
                 }
             }
-            
+        
             if (lifecycleHooks.afterHandlingRequest(handlerDescriptor, handlerInstance, routingContext)) {
                 return;
             }
-        } else {
-            chain.doFilter(req, resp);
+        } finally {
+            flushSession(session);
         }
     }
     
+    private void flushSession(DirtyTrackingSession session) {
+        avoidedSessionWriteCount.addAndGet(session.flush());
+    }
+    
     private void logRequestInformation(HttpServletRequest request) {
         LOGGER.log(Level.INFO, "Remote details for exception: {0}@{1} ({2}:{3,number,#})", new Object[] {
                 request.getRemoteUser(),
@@ -434,16 +831,65 @@ public class AgaveFilter implements Filter {
                 request.getRemotePort()});
     }
     
+    /**
+     * Parses a multipart request with a new parser. Subclasses of {@link HybridMultipartParser} are
+     * created with the filter's {@link UploadLimits}, subclasses of
+     * {@link ChannelFileMultipartParser} with the number of pending writes, the fsync setting and
+     * the filter's pool of writers, whose size is read from the {@code uploadMaxWriters} init
+     * parameter, and subclasses of {@link ContentAddressedMultipartParser} with the filter's
+     * {@link ContentStore}, so they must have public constructors that take them.
+     */
+    @SuppressWarnings("unchecked")
     protected HttpServletRequest wrapMultipartRequest(HttpServletRequest request) throws Exception {
-        return new DefaultMultipartRequest<File>(request, new FileMultipartParser());
+        MultipartParser<Object> parser;
+
+        if (HybridMultipartParser.class.isAssignableFrom(multipartParserClass)) {
+            parser = multipartParserClass.getConstructor(UploadLimits.class).newInstance(uploadLimits);
+        } else if (ChannelFileMultipartParser.class.isAssignableFrom(multipartParserClass)) {
+            parser = multipartParserClass.getConstructor(int.class, boolean.class, Executor.class)
+                    .newInstance(uploadMaxPendingWrites, uploadFsync, uploadWriters);
+        } else if (ContentAddressedMultipartParser.class.isAssignableFrom(multipartParserClass)) {
+            parser = multipartParserClass.getConstructor(ContentStore.class).newInstance(contentStore);
+        } else {
+            parser = multipartParserClass.newInstance();
+        }
+
+        return new DefaultMultipartRequest<Object>(request, parser);
+    }
+
+    /**
+     * @return the limits that multipart requests are parsed with when the {@code multipartParser}
+     *         init parameter names a {@link HybridMultipartParser}
+     */
+    public UploadLimits getUploadLimits() {
+        return uploadLimits;
+    }
+
+    /**
+     * @return the directory that uploads are written to, which reports how many of them are live
+     */
+    public UploadDirectory getUploadDirectory() {
+        return uploadDirectory;
+    }
+
+    /**
+     * @return the store of uploaded files, or null unless the {@code multipartParser} init
+     *         parameter names a {@link ContentAddressedMultipartParser}
+     */
+    public ContentStore getContentStore() {
+        return contentStore;
     }
 
     public FilterConfig getFilterConfig() {
         return filterConfig;
     }
     
+    /**
+     * @return the config that requests are currently matched against, which changes when the
+     *         config is reloaded
+     */
     public Config getConfig() {
-        return config;
+        return requestMatcher == null ? null : requestMatcher.getConfig();
     }
     
     public RequestMatcher getRequestMatcher() {
@@ -458,6 +904,18 @@ public class AgaveFilter implements Filter {
         return formFactory;
     }
 
+    public WorkflowStore getWorkflowStore() {
+        return workflowStore;
+    }
+
+    /**
+     * @return the number of session attribute writes that were skipped because the attribute
+     *         had not changed since it was read
+     */
+    public long getAvoidedSessionWriteCount() {
+        return avoidedSessionWriteCount.get();
+    }
+
     public File getClassesDirectory() {
         return classesDirectory;
     }
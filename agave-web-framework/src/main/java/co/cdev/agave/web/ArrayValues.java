@@ -0,0 +1,14 @@
+package co.cdev.agave.web;
+
+import java.util.ArrayList;
+
+/**
+ * The values of a parameter that a {@link RequestBodyReader} read from an array in a request body.
+ * Such values are always bound as several values, even when the array holds only one of them, so
+ * they are set through a form's array or list setter and are never split on commas.
+ */
+public final class ArrayValues extends ArrayList<String> {
+
+    private static final long serialVersionUID = 1L;
+
+}
@@ -0,0 +1,93 @@
+package co.cdev.agave.web;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Exposes the parameters that a {@link RequestBodyReader} read from a request body alongside the
+ * parameters of the query string. When a parameter appears in both, the values from the query
+ * string come first. Parameters whose body values are {@link ArrayValues} are remembered as arrays.
+ */
+class BodyParameterRequest extends HttpServletRequestWrapper {
+
+    private final Map<String, String[]> parameterMap;
+    private final Set<String> arrayParameterNames = new HashSet<String>();
+
+    @SuppressWarnings("unchecked")
+    BodyParameterRequest(HttpServletRequest request, Map<String, List<String>> bodyParameters) {
+        super(request);
+
+        Map<String, String[]> parameters = new LinkedHashMap<String, String[]>(request.getParameterMap());
+
+        for (Map.Entry<String, List<String>> bodyParameter : bodyParameters.entrySet()) {
+            String[] queryValues = parameters.get(bodyParameter.getKey());
+            List<String> bodyValues = bodyParameter.getValue();
+            int offset = queryValues == null ? 0 : queryValues.length;
+            String[] values = new String[offset + bodyValues.size()];
+
+            if (queryValues != null) {
+                System.arraycopy(queryValues, 0, values, 0, offset);
+            }
+
+            for (String bodyValue : bodyValues) {
+                values[offset++] = bodyValue;
+            }
+
+            parameters.put(bodyParameter.getKey(), values);
+
+            if (bodyValues instanceof ArrayValues) {
+                arrayParameterNames.add(bodyParameter.getKey());
+            }
+        }
+
+        this.parameterMap = Collections.unmodifiableMap(parameters);
+    }
+
+    /**
+     * @return true if the values of a parameter were read from an array in the body of a request,
+     *         or of the request that it wraps
+     */
+    static boolean isArray(ServletRequest request, String name) {
+        while (request != null) {
+            if (request instanceof BodyParameterRequest) {
+                return ((BodyParameterRequest) request).arrayParameterNames.contains(name);
+            }
+
+            request = request instanceof ServletRequestWrapper ? ((ServletRequestWrapper) request).getRequest() : null;
+        }
+
+        return false;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameterMap.get(name);
+        return values == null || values.length == 0 ? null : values[0];
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return parameterMap;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameterMap.keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameterMap.get(name);
+    }
+
+}
@@ -0,0 +1,53 @@
+package co.cdev.agave.web;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of equally sized byte arrays, which lets the parts of one request reuse the
+ * buffers of another instead of growing a new array for each part.
+ */
+final class BufferPool {
+
+    static final int DEFAULT_BUFFER_SIZE = 4096;
+    static final int DEFAULT_MAX_POOLED_BUFFERS = 256;
+
+    static final BufferPool SHARED = new BufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED_BUFFERS);
+
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+    private final AtomicInteger pooledBufferCount = new AtomicInteger();
+
+    BufferPool(int bufferSize, int maxPooledBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    byte[] acquire() {
+        byte[] buffer = buffers.poll();
+
+        if (buffer == null) {
+            return new byte[bufferSize];
+        }
+
+        pooledBufferCount.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool, or lets it be collected if the pool is full.
+     */
+    void release(byte[] buffer) {
+        if (pooledBufferCount.incrementAndGet() <= maxPooledBuffers) {
+            buffers.offer(buffer);
+        } else {
+            pooledBufferCount.decrementAndGet();
+        }
+    }
+
+}
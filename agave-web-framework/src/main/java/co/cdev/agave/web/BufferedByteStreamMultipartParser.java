@@ -0,0 +1,28 @@
+package co.cdev.agave.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import co.cdev.agave.Part;
+
+/**
+ * A memory backed {@link AbstractBufferedMultipartParser}. The posted part's byte contents are
+ * available via {@code part.getContents().toByteArray()}.
+ */
+public class BufferedByteStreamMultipartParser extends AbstractBufferedMultipartParser<ByteArrayOutputStream> {
+
+    public BufferedByteStreamMultipartParser() {
+    }
+
+    public BufferedByteStreamMultipartParser(int bufferSize) {
+        super(bufferSize);
+    }
+
+    @Override
+    protected void readPart(Part<ByteArrayOutputStream> part, InputStream contents) throws Exception {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        copy(contents, byteStream);
+        part.setContents(byteStream);
+    }
+
+}
@@ -0,0 +1,38 @@
+package co.cdev.agave.web;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import co.cdev.agave.Part;
+
+/**
+ * A file backed {@link AbstractBufferedMultipartParser}. Each file part is written to its own
+ * temporary file, which is deleted when the request ends unless the handler claims it through
+ * {@link RequestUploads}.
+ */
+public class BufferedFileMultipartParser extends AbstractBufferedMultipartParser<File> {
+
+    public BufferedFileMultipartParser() {
+    }
+
+    public BufferedFileMultipartParser(int bufferSize) {
+        super(bufferSize);
+    }
+
+    @Override
+    protected void readPart(Part<File> part, InputStream contents) throws Exception {
+        File temporaryFile = RequestUploads.createTemporaryFile(part);
+
+        OutputStream out = new FileOutputStream(temporaryFile);
+        try {
+            copy(contents, out);
+        } finally {
+            out.close();
+        }
+
+        part.setContents(temporaryFile);
+    }
+
+}
@@ -0,0 +1,131 @@
+package co.cdev.agave.web;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import co.cdev.agave.Part;
+
+/**
+ * A file backed {@link AbstractBufferedMultipartParser} that hands the writing of each file to a
+ * background thread, so that the request thread parses the next chunk of the body while the last
+ * one is written. Chunks are written through a {@link java.nio.channels.FileChannel} from pooled
+ * direct buffers, and only a bounded number of them may wait to be written before the request
+ * thread waits for the disk.
+ *
+ * <p>
+ * The files are temporary files that are managed by {@link RequestUploads}, as with the
+ * {@link BufferedFileMultipartParser}. When fsync is enabled, a part is not handed to the handler
+ * until its contents have been forced to the disk.
+ * </p>
+ *
+ * <p>
+ * The writers run on the executor that the parser is given, which the {@link AgaveFilter} creates
+ * with {@link #newWriterPool(int)} and shuts down when it is destroyed. A parser that is not given
+ * one starts a thread for each file, which ends once the file has been written.
+ * </p>
+ */
+public class ChannelFileMultipartParser extends AbstractBufferedMultipartParser<File> {
+
+    public static final int DEFAULT_MAX_PENDING_WRITES = 4;
+
+    public static final int DEFAULT_MAX_WRITERS = 16;
+
+    private static final long WRITER_KEEP_ALIVE_SECONDS = 60;
+
+    private static final ThreadFactory WRITER_THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "Upload Writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private static final Executor THREAD_PER_WRITER = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            WRITER_THREADS.newThread(task).start();
+        }
+    };
+
+    private final int maxPendingWrites;
+    private final boolean fsync;
+    private final Executor writers;
+
+    public ChannelFileMultipartParser() {
+        this(DEFAULT_MAX_PENDING_WRITES, false);
+    }
+
+    /**
+     * @param maxPendingWrites the number of full buffers of a part that may wait to be written
+     * @param fsync whether the contents of each part are forced to the disk
+     */
+    public ChannelFileMultipartParser(int maxPendingWrites, boolean fsync) {
+        this(maxPendingWrites, fsync, THREAD_PER_WRITER);
+    }
+
+    /**
+     * @param maxPendingWrites the number of full buffers of a part that may wait to be written
+     * @param fsync whether the contents of each part are forced to the disk
+     * @param writers the executor that the files are written on, which is not shut down by the
+     *        parser
+     */
+    public ChannelFileMultipartParser(int maxPendingWrites, boolean fsync, Executor writers) {
+        if (maxPendingWrites < 1) {
+            throw new IllegalArgumentException("At least one write must be allowed to be pending");
+        }
+
+        this.maxPendingWrites = maxPendingWrites;
+        this.fsync = fsync;
+        this.writers = writers;
+    }
+
+    /**
+     * Creates an executor that writes at most a number of files at once. Files beyond that wait for
+     * a writer while their first buffers are queued, and idle writer threads end after a minute.
+     */
+    public static ExecutorService newWriterPool(int maxWriters) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxWriters, maxWriters, WRITER_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), WRITER_THREADS);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public int getMaxPendingWrites() {
+        return maxPendingWrites;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    @Override
+    protected void readPart(Part<File> part, InputStream contents) throws Exception {
+        File temporaryFile = RequestUploads.createTemporaryFile(part);
+        boolean written = false;
+
+        try {
+            WriteBehindOutputStream out = new WriteBehindOutputStream(temporaryFile, writers,
+                    DirectBufferPool.SHARED, maxPendingWrites, fsync);
+            try {
+                copy(contents, out);
+            } finally {
+                out.close();
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                temporaryFile.delete();
+            }
+        }
+
+        part.setContents(temporaryFile);
+    }
+
+}
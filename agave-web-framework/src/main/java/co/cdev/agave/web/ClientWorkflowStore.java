@@ -0,0 +1,160 @@
+package co.cdev.agave.web;
+
+import java.io.UnsupportedEncodingException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import co.cdev.agave.configuration.RoutingContext;
+
+/**
+ * Keeps workflow state on the client as a signed, and optionally encrypted, token so that
+ * workflows can be resumed by any node without sticky sessions or session replication. Handlers
+ * and forms that are used in workflows must be {@code Serializable} to be stored this way, and
+ * should be kept small since the token travels with every request.
+ *
+ * <p>
+ * The token for a workflow is named {@code workflowName + "-workflow"}. It is sent to the client
+ * as a cookie and is also exposed as a request attribute of the same name so that a view can
+ * render it into a hidden field instead. On later requests a request parameter with that name
+ * takes precedence over the cookie. A token is only valid for the workflow that it was issued for.
+ * </p>
+ *
+ * <p>
+ * Browsers silently drop cookies larger than about 4KB, so a token that would not fit in one is
+ * only exposed as a request attribute, and any cookie left over from an earlier request is
+ * cleared so that a stale state is never resumed. Such workflows must render the token into
+ * their views.
+ * </p>
+ *
+ * <p>
+ * The {@code workflowSigningKey} initialization param of the {@link AgaveFilter} is required
+ * and must be shared by every node. Tokens are also encrypted when a
+ * {@code workflowEncryptionKey} is given, and they expire after {@code workflowTimeToLive}
+ * seconds, which defaults to 30 minutes.
+ * </p>
+ */
+public class ClientWorkflowStore implements WorkflowStore {
+
+    public static final long DEFAULT_TIME_TO_LIVE = 30 * 60 * 1000L;
+
+    /**
+     * The largest cookie name and value, in bytes, that is sent to the client. This leaves room
+     * for the cookie's attributes within the 4096 bytes that browsers are required to accept.
+     */
+    public static final int MAX_COOKIE_SIZE = 4000;
+
+    private static final Logger LOGGER = Logger.getLogger(ClientWorkflowStore.class.getName());
+    private static final String TOKEN_SUFFIX = "-workflow";
+    private static final String SIGNING_KEY_PARAM = "workflowSigningKey";
+    private static final String ENCRYPTION_KEY_PARAM = "workflowEncryptionKey";
+    private static final String TIME_TO_LIVE_PARAM = "workflowTimeToLive";
+
+    private WorkflowTokenCodec codec;
+
+    public ClientWorkflowStore() {
+    }
+
+    public ClientWorkflowStore(WorkflowTokenCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public void initialize(FilterConfig filterConfig) throws WorkflowException {
+        String signingKey = filterConfig.getInitParameter(SIGNING_KEY_PARAM);
+        String encryptionKey = filterConfig.getInitParameter(ENCRYPTION_KEY_PARAM);
+        String timeToLiveParameter = filterConfig.getInitParameter(TIME_TO_LIVE_PARAM);
+
+        if (signingKey == null || signingKey.length() == 0) {
+            if (codec == null) {
+                throw new WorkflowException("The " + SIGNING_KEY_PARAM + " init param is required");
+            }
+            return;
+        }
+
+        long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+        try {
+            if (timeToLiveParameter != null) {
+                timeToLive = Long.parseLong(timeToLiveParameter.trim()) * 1000L;
+            }
+
+            codec = new WorkflowTokenCodec(signingKey.getBytes("UTF-8"),
+                    encryptionKey == null ? null : encryptionKey.getBytes("UTF-8"),
+                    timeToLive);
+        } catch (NumberFormatException ex) {
+            throw new WorkflowException("Invalid workflow store initialization param", ex);
+        } catch (UnsupportedEncodingException ex) {
+            throw new WorkflowException(ex);
+        }
+    }
+
+    @Override
+    public WorkflowState load(RoutingContext routingContext, String workflowName) throws WorkflowException {
+        String tokenName = workflowName + TOKEN_SUFFIX;
+        HttpServletRequest request = routingContext.getRequest();
+        String token = request.getParameter(tokenName);
+
+        if (token == null && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (tokenName.equals(cookie.getName())) {
+                    token = cookie.getValue();
+                    break;
+                }
+            }
+        }
+
+        return token == null || token.length() == 0 ? null : codec.decode(workflowName, token);
+    }
+
+    @Override
+    public void save(RoutingContext routingContext, String workflowName, WorkflowState workflowState)
+            throws WorkflowException {
+        String tokenName = workflowName + TOKEN_SUFFIX;
+        String token = codec.encode(workflowName, workflowState);
+
+        routingContext.getRequest().setAttribute(tokenName, token);
+
+        if (tokenName.length() + token.length() > MAX_COOKIE_SIZE) {
+            LOGGER.log(Level.WARNING, "Workflow token \"{0}\" is too large for a cookie, so it must be "
+                    + "rendered into the view", tokenName);
+            addCookie(routingContext, tokenName, "", 0);
+        } else {
+            addCookie(routingContext, tokenName, token, -1);
+        }
+    }
+
+    @Override
+    public void remove(RoutingContext routingContext, String workflowName) {
+        String tokenName = workflowName + TOKEN_SUFFIX;
+
+        routingContext.getRequest().removeAttribute(tokenName);
+        addCookie(routingContext, tokenName, "", 0);
+    }
+
+    @Override
+    public void destroy() {
+        // do nothing
+    }
+
+    private void addCookie(RoutingContext routingContext, String name, String value, int maxAge) {
+        HttpServletResponse response = routingContext.getResponse();
+
+        if (response.isCommitted()) {
+            LOGGER.log(Level.WARNING, "Unable to send workflow token \"{0}\" on a committed response", name);
+            return;
+        }
+
+        String contextPath = routingContext.getRequest().getContextPath();
+
+        Cookie cookie = new Cookie(name, value);
+        cookie.setPath(contextPath == null || contextPath.length() == 0 ? "/" : contextPath);
+        cookie.setMaxAge(maxAge);
+        response.addCookie(cookie);
+    }
+
+}
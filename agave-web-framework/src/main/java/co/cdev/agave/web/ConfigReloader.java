@@ -0,0 +1,189 @@
+package co.cdev.agave.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import co.cdev.agave.configuration.Config;
+import co.cdev.agave.configuration.ConfigGenerator;
+import co.cdev.agave.configuration.ConfigImpl;
+import co.cdev.agave.configuration.HandlerDescriptor;
+
+/**
+ * Reloads the config of a request matcher on a daemon thread while requests are being served.
+ * When the config was read from a configuration file, the file is read again whenever its size or
+ * modification time changes. Otherwise the classes are scanned again, which a scan index keeps
+ * down to the class files that changed. A new config is built entirely off the request path and
+ * then published to the matcher at once, and a config that cannot be read or generated leaves the
+ * current one in place.
+ *
+ * <p>
+ * Handler classes that have already been loaded are not loaded again, so new handler classes and
+ * new configuration files are picked up, but changes to loaded classes need the application to be
+ * redeployed. A config with a handler method that can not be found in the classes that are loaded
+ * is therefore not published, and a warning says that a redeploy is needed.
+ * </p>
+ */
+public class ConfigReloader {
+
+    private static final Logger LOGGER = Logger.getLogger(ConfigReloader.class.getName());
+
+    private final RequestMatcherImpl requestMatcher;
+    private final File configFile;
+    private final ConfigGenerator configGenerator;
+    private long configFileSize;
+    private long configFileLastModified;
+    private byte[] unresolvedConfigContents;
+    private ScheduledExecutorService poller;
+
+    /**
+     * Creates a reloader that reads a configuration file again whenever it changes. The file is
+     * taken to be the one that the matcher's current config was read from.
+     */
+    public ConfigReloader(RequestMatcherImpl requestMatcher, File configFile) {
+        this.requestMatcher = requestMatcher;
+        this.configFile = configFile;
+        this.configGenerator = null;
+        configFileSize = configFile.length();
+        configFileLastModified = configFile.lastModified();
+    }
+
+    /**
+     * Creates a reloader that scans for handlers again and publishes the config if it differs.
+     */
+    public ConfigReloader(RequestMatcherImpl requestMatcher, ConfigGenerator configGenerator) {
+        this.requestMatcher = requestMatcher;
+        this.configFile = null;
+        this.configGenerator = configGenerator;
+    }
+
+    /**
+     * Reloads the config if it has changed.
+     *
+     * @return true if a new config was published
+     */
+    public synchronized boolean reload() throws IOException, ClassNotFoundException {
+        Config config;
+        byte[] configContents = null;
+
+        if (configFile != null) {
+            long size = configFile.length();
+            long lastModified = configFile.lastModified();
+
+            if (size == configFileSize && lastModified == configFileLastModified) {
+                return false;
+            }
+
+            config = new ConfigImpl();
+            config.readFromFile(configFile);
+
+            configFileSize = size;
+            configFileLastModified = lastModified;
+        } else {
+            config = configGenerator.generateConfig();
+            configContents = toByteArray(config);
+
+            // A config that could not be published is only reported once, rather than after
+            // every scan that finds it again
+
+            if (Arrays.equals(configContents, toByteArray(requestMatcher.getConfig()))
+                    || Arrays.equals(configContents, unresolvedConfigContents)) {
+                return false;
+            }
+        }
+
+        HandlerDescriptor unresolvedHandlerDescriptor = findUnresolvedHandlerDescriptor(config);
+
+        if (unresolvedHandlerDescriptor != null) {
+            LOGGER.log(Level.WARNING, "The reloaded config is not used, since the handler {0} can not be "
+                    + "found in the classes that are loaded. The application must be redeployed for changes "
+                    + "to classes that are already loaded to take effect.", unresolvedHandlerDescriptor);
+            unresolvedConfigContents = configContents;
+            return false;
+        }
+
+        unresolvedConfigContents = null;
+        requestMatcher.setConfig(config);
+        LOGGER.info("Reloaded " + config.size() + " handler descriptors");
+        return true;
+    }
+
+    /**
+     * Writes a config as it would be written to a configuration file, which holds every field that
+     * requests are routed and handled by, in the order in which they are matched, so that configs
+     * can be compared by their contents. Descriptors that were read from a file or an index are
+     * written from their class names, so their classes are not loaded to be compared.
+     */
+    private static byte[] toByteArray(Config config) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        config.writeToOutputStream(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Looks up the handler method of every descriptor in the classes that are loaded. A method
+     * that was found by scanning a class file which changed after its class was loaded may not be
+     * in the loaded class, and requests routed to it would fail.
+     *
+     * @return a descriptor whose handler method can not be found, or null if there is none
+     */
+    private static HandlerDescriptor findUnresolvedHandlerDescriptor(Config config) {
+        for (HandlerDescriptor handlerDescriptor : config) {
+            try {
+                if (handlerDescriptor.getHandlerMethod() == null) {
+                    return handlerDescriptor;
+                }
+            } catch (IllegalStateException ex) {
+                return handlerDescriptor;
+            } catch (LinkageError ex) {
+                return handlerDescriptor;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks for changes on a daemon thread after every interval.
+     */
+    public synchronized void start(long interval, TimeUnit unit) {
+        if (poller != null) {
+            return;
+        }
+
+        poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "Config Reloader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        poller.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reload();
+                } catch (Exception ex) {
+                    LOGGER.log(Level.WARNING, "Unable to reload the config, so the current one is kept", ex);
+                }
+            }
+        }, interval, interval, unit);
+    }
+
+    public synchronized void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+}
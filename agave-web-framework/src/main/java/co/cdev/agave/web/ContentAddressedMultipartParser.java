@@ -0,0 +1,48 @@
+package co.cdev.agave.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import co.cdev.agave.Part;
+
+/**
+ * A file backed {@link AbstractBufferedMultipartParser} that keeps uploaded files in a
+ * {@link ContentStore}, so a file that has been uploaded before is not stored again. The contents
+ * of each part are the stored file, which is named after the SHA-256 hash of its contents and must
+ * not be modified.
+ *
+ * <p>
+ * Each upload takes a reference to its stored file. When the {@link AgaveFilter} handles the
+ * request, the reference is released when the request ends unless the handler claims the file
+ * through {@link RequestUploads}, after which the application releases it through the store.
+ * </p>
+ */
+public class ContentAddressedMultipartParser extends AbstractBufferedMultipartParser<File> {
+
+    private final ContentStore store;
+
+    /**
+     * Stores uploads in {@code agave-content} in the system's temporary directory, through the same
+     * store as anything else that uses that directory.
+     */
+    public ContentAddressedMultipartParser() throws IOException {
+        this(ContentStore.forDirectory(ContentStore.getDefaultDirectory()));
+    }
+
+    public ContentAddressedMultipartParser(ContentStore store) {
+        this.store = store;
+    }
+
+    public ContentStore getStore() {
+        return store;
+    }
+
+    @Override
+    protected void readPart(Part<File> part, InputStream contents) throws Exception {
+        File file = store.store(contents);
+        RequestUploads.track(store, file);
+        part.setContents(file);
+    }
+
+}
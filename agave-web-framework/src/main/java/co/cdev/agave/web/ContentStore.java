@@ -0,0 +1,283 @@
+package co.cdev.agave.web;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A directory of files that are named after the SHA-256 hash of their contents, and that are
+ * sharded into subdirectories by the first two pairs of hex digits of the hash, as in
+ * {@code 3f/a2/3fa2...}. Storing contents that are already in the store adds a reference to the
+ * existing file instead of keeping another copy. Each file keeps a count of its references next to
+ * it, and is deleted when the last one is released.
+ *
+ * <p>
+ * Stored files are shared by every upload of the same contents, so they must not be modified.
+ * </p>
+ *
+ * <p>
+ * Reference counts are kept consistent by locks that belong to the store, so there is one store
+ * for each directory, which is obtained with {@link #forDirectory(File)}. Counts are replaced by
+ * renaming a new file over the old one, so a count that is read is never partly written.
+ * </p>
+ */
+public class ContentStore {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final String REFERENCES_SUFFIX = ".refs";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int LOCK_COUNT = 64;
+
+    private static final Map<File, ContentStore> STORES = new HashMap<File, ContentStore>();
+
+    private final File root;
+    private final File incoming;
+    private final Object[] locks = new Object[LOCK_COUNT];
+
+    private ContentStore(File root) throws IOException {
+        this.root = root;
+        this.incoming = new File(root, "incoming");
+
+        incoming.mkdirs();
+
+        if (!incoming.isDirectory()) {
+            throw new IOException(root.getAbsolutePath() + " is not a directory");
+        }
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param root the directory of the store, which is created if it does not exist
+     * @return the store of the directory, which is shared by everything that stores files in it
+     * @throws IOException if the directory cannot be created
+     */
+    public static ContentStore forDirectory(File root) throws IOException {
+        File key = root.getCanonicalFile();
+
+        synchronized (STORES) {
+            ContentStore store = STORES.get(key);
+
+            if (store == null) {
+                store = new ContentStore(key);
+                STORES.put(key, store);
+            }
+
+            return store;
+        }
+    }
+
+    /**
+     * @return {@code agave-content} in the system's temporary directory, where files are stored
+     *         unless another directory is given
+     */
+    public static File getDefaultDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"), "agave-content");
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Stores contents while hashing them, and takes a reference to the stored file. Contents that
+     * were stored before are written to a temporary file only, which is discarded in favor of the
+     * existing copy.
+     *
+     * @return the stored file
+     */
+    public File store(InputStream contents) throws IOException {
+        MessageDigest digest = createDigest();
+        File temporaryFile = File.createTempFile("upload", ".tmp", incoming);
+        boolean moved = false;
+
+        try {
+            OutputStream out = new DigestOutputStream(new FileOutputStream(temporaryFile), digest);
+            try {
+                AbstractBufferedMultipartParser.copy(contents, out);
+            } finally {
+                out.close();
+            }
+
+            String hash = toHex(digest.digest());
+            File file = getFile(hash);
+
+            synchronized (lockFor(hash)) {
+                int referenceCount = readReferenceCount(file);
+
+                if (referenceCount == 0 || !file.exists()) {
+                    file.getParentFile().mkdirs();
+                    file.delete();
+
+                    if (!temporaryFile.renameTo(file)) {
+                        throw new IOException("Unable to move " + temporaryFile + " to " + file);
+                    }
+
+                    moved = true;
+                }
+
+                writeReferenceCount(file, referenceCount + 1);
+            }
+
+            return file;
+        } finally {
+            if (!moved) {
+                temporaryFile.delete();
+            }
+        }
+    }
+
+    /**
+     * @return where the contents with a hash are stored, whether or not they are
+     */
+    public File getFile(String hash) {
+        if (hash.length() < 4) {
+            throw new IllegalArgumentException("\"" + hash + "\" is not a content hash");
+        }
+
+        return new File(new File(new File(root, hash.substring(0, 2)), hash.substring(2, 4)), hash);
+    }
+
+    /**
+     * @return the number of references to a stored file, which is 0 if it is not stored
+     */
+    public int getReferenceCount(File file) throws IOException {
+        String hash = getHash(file);
+
+        synchronized (lockFor(hash)) {
+            return readReferenceCount(file);
+        }
+    }
+
+    /**
+     * Takes another reference to a stored file.
+     */
+    public void retain(File file) throws IOException {
+        String hash = getHash(file);
+
+        synchronized (lockFor(hash)) {
+            int referenceCount = readReferenceCount(file);
+
+            if (referenceCount == 0) {
+                throw new IOException(file + " is not stored");
+            }
+
+            writeReferenceCount(file, referenceCount + 1);
+        }
+    }
+
+    /**
+     * Releases a reference to a stored file, deleting the file if it was the last one.
+     *
+     * @return true if the file was deleted
+     */
+    public boolean release(File file) {
+        String hash = getHash(file);
+
+        synchronized (lockFor(hash)) {
+            try {
+                int referenceCount = readReferenceCount(file);
+
+                if (referenceCount > 1) {
+                    writeReferenceCount(file, referenceCount - 1);
+                    return false;
+                }
+            } catch (IOException ex) {
+                // an unreadable count is treated as the last reference
+            }
+
+            file.delete();
+            referencesFile(file).delete();
+            return true;
+        }
+    }
+
+    private String getHash(File file) {
+        String hash = file.getName();
+
+        if (!getFile(hash).equals(file)) {
+            throw new IllegalArgumentException(file + " is not in the content store at " + root);
+        }
+
+        return hash;
+    }
+
+    private Object lockFor(String hash) {
+        return locks[(hash.hashCode() & Integer.MAX_VALUE) % LOCK_COUNT];
+    }
+
+    private static File referencesFile(File file) {
+        return new File(file.getParentFile(), file.getName() + REFERENCES_SUFFIX);
+    }
+
+    private static int readReferenceCount(File file) throws IOException {
+        File referencesFile = referencesFile(file);
+
+        if (!referencesFile.exists()) {
+            return 0;
+        }
+
+        InputStream in = new FileInputStream(referencesFile);
+        try {
+            StringBuilder count = new StringBuilder();
+            int c;
+            while ((c = in.read()) >= '0' && c <= '9') {
+                count.append((char) c);
+            }
+            return count.length() == 0 ? 0 : Integer.parseInt(count.toString());
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeReferenceCount(File file, int referenceCount) throws IOException {
+        File referencesFile = referencesFile(file);
+        File temporaryFile = new File(referencesFile.getParentFile(), referencesFile.getName() + ".tmp");
+
+        OutputStream out = new FileOutputStream(temporaryFile);
+        try {
+            out.write(Integer.toString(referenceCount).getBytes("US-ASCII"));
+        } finally {
+            out.close();
+        }
+
+        if (!temporaryFile.renameTo(referencesFile)) {
+            referencesFile.delete();
+
+            if (!temporaryFile.renameTo(referencesFile)) {
+                temporaryFile.delete();
+                throw new IOException("Unable to replace the reference count " + referencesFile);
+            }
+        }
+    }
+
+    private static MessageDigest createDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ALGORITHM + " is not available: " + ex.getMessage());
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+
+        return new String(hex);
+    }
+
+}
@@ -0,0 +1,33 @@
+package co.cdev.agave.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * Resolves classes with the context class loader so that handlers and forms that belong to the
+ * web application can be found when workflow state is deserialized.
+ */
+class ContextObjectInputStream extends ObjectInputStream {
+
+    ContextObjectInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass descriptor) throws IOException, ClassNotFoundException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        if (classLoader != null) {
+            try {
+                return Class.forName(descriptor.getName(), false, classLoader);
+            } catch (ClassNotFoundException ex) {
+                // fall back to the default resolution
+            }
+        }
+
+        return super.resolveClass(descriptor);
+    }
+
+}
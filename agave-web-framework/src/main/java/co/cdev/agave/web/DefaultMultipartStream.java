@@ -0,0 +1,53 @@
+package co.cdev.agave.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import javax.servlet.http.HttpServletRequest;
+
+import co.cdev.agave.MultipartStream;
+import co.cdev.agave.Part;
+import co.cdev.agave.PartImpl;
+
+/**
+ * Reads the parts of a multipart request from the request body as the handler asks for them,
+ * through the same buffered scanner as {@link AbstractBufferedMultipartParser}. Headers are
+ * decoded with the character encoding of the request, or ISO-8859-1 when it does not name one.
+ */
+public class DefaultMultipartStream implements MultipartStream {
+
+    private final MultipartScanner scanner;
+    private final Charset charset;
+
+    public DefaultMultipartStream(HttpServletRequest request) throws IOException {
+        this(request, MultipartScanner.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the number of bytes of the request body that are buffered at a time
+     * @throws IOException if the request does not specify a boundary
+     */
+    public DefaultMultipartStream(HttpServletRequest request, int bufferSize) throws IOException {
+        String boundary = MultipartScanner.getBoundary(request.getContentType());
+        if (boundary == null) {
+            throw new IOException("The multipart request does not specify a boundary");
+        }
+
+        scanner = new MultipartScanner(request.getInputStream(), boundary, bufferSize);
+        charset = MultipartScanner.getCharset(request);
+    }
+
+    @Override
+    public Part<InputStream> nextPart() throws IOException {
+        if (!scanner.nextPart()) {
+            return null;
+        }
+
+        Part<InputStream> part = new PartImpl<InputStream>();
+        scanner.readHeaders(part, charset);
+        part.setContents(scanner.getPartInputStream());
+        return part;
+    }
+
+}
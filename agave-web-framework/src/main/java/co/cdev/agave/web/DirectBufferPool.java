@@ -0,0 +1,73 @@
+package co.cdev.agave.web;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of equally sized direct buffers. Direct buffers are expensive to allocate and are
+ * only freed when they are collected, so they are kept for reuse rather than allocated per part.
+ *
+ * <p>
+ * At most a fixed number of direct buffers are ever allocated, whether they are in use or pooled,
+ * which caps the direct memory that uploads take. Once that many are in use, further buffers are
+ * allocated on the heap and are left to be collected when they are released.
+ * </p>
+ */
+final class DirectBufferPool {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    static final int DEFAULT_MAX_DIRECT_BUFFERS = 64;
+
+    static final DirectBufferPool SHARED = new DirectBufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_DIRECT_BUFFERS);
+
+    private final int bufferSize;
+    private final int maxDirectBuffers;
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger directBufferCount = new AtomicInteger();
+
+    /**
+     * @param maxDirectBuffers the number of direct buffers that may be allocated
+     */
+    DirectBufferPool(int bufferSize, int maxDirectBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxDirectBuffers = maxDirectBuffers;
+    }
+
+    /**
+     * @return the number of direct buffers that have been allocated, which are either in use or
+     *         pooled
+     */
+    int getDirectBufferCount() {
+        return directBufferCount.get();
+    }
+
+    /**
+     * @return a cleared buffer, which is a heap buffer if every direct buffer is in use
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+
+        if (buffer != null) {
+            buffer.clear();
+            return buffer;
+        }
+
+        if (directBufferCount.incrementAndGet() <= maxDirectBuffers) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        directBufferCount.decrementAndGet();
+        return ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Returns a direct buffer to the pool. Heap buffers are left to be collected.
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+            buffers.offer(buffer);
+        }
+    }
+
+}
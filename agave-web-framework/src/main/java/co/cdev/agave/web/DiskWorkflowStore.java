@@ -0,0 +1,236 @@
+package co.cdev.agave.web;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.FilterConfig;
+
+import co.cdev.agave.configuration.RoutingContext;
+
+/**
+ * Keeps workflow state in deflated, serialized files so that neither the heap nor the
+ * {@code HttpSession} holds on to it between requests. Handlers and forms that are used in
+ * workflows must be {@code Serializable} to be stored this way. The files are written to the
+ * directory named by the {@code workflowDirectory} initialization param of the
+ * {@link AgaveFilter}, which defaults to {@code agave-workflows} in {@code java.io.tmpdir}.
+ * A workflow's state is written to a temporary file that then replaces its state file, while
+ * holding a lock for that workflow, so that concurrent requests never interleave their writes
+ * and a load never sees a partly written file.
+ */
+public class DiskWorkflowStore extends AbstractEvictingWorkflowStore<File> {
+
+    private static final String DIRECTORY_PARAM = "workflowDirectory";
+    private static final String FILE_PREFIX = "workflow";
+    private static final String FILE_SUFFIX = ".ser";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final int LOCK_STRIPES = 64;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private File directory;
+
+    public DiskWorkflowStore() {
+        this(new File(System.getProperty("java.io.tmpdir"), "agave-workflows"),
+                DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_WORKFLOWS);
+    }
+
+    public DiskWorkflowStore(File directory, long timeToLive, int maxWorkflows) {
+        super(timeToLive, maxWorkflows);
+        this.directory = directory;
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public void initialize(FilterConfig filterConfig) throws WorkflowException {
+        super.initialize(filterConfig);
+
+        String directoryParameter = filterConfig.getInitParameter(DIRECTORY_PARAM);
+
+        if (directoryParameter != null) {
+            directory = new File(directoryParameter);
+        }
+
+        prepareDirectory();
+    }
+
+    /**
+     * Creates the directory if it does not exist, and clears out any state that was left behind
+     * by a previous run, since nothing refers to it anymore.
+     */
+    void prepareDirectory() throws WorkflowException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new WorkflowException("Unable to create workflow directory " + directory);
+        }
+
+        File[] staleFiles = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().startsWith(FILE_PREFIX)
+                        && (file.getName().endsWith(FILE_SUFFIX) || file.getName().endsWith(TEMPORARY_FILE_SUFFIX));
+            }
+        });
+
+        if (staleFiles != null) {
+            for (File staleFile : staleFiles) {
+                staleFile.delete();
+            }
+        }
+    }
+
+    @Override
+    public WorkflowState load(RoutingContext routingContext, String workflowName) throws WorkflowException {
+        try {
+            return read(routingContext, workflowName);
+        } finally {
+            discardEvicted();
+        }
+    }
+
+    private WorkflowState read(RoutingContext routingContext, String workflowName) throws WorkflowException {
+        synchronized (lockFor(createKey(routingContext, workflowName))) {
+            File stateFile = acquire(routingContext, workflowName);
+
+            if (stateFile == null) {
+                return null;
+            }
+
+            ObjectInputStream in = null;
+
+            try {
+                in = new ContextObjectInputStream(
+                        new InflaterInputStream(new BufferedInputStream(new FileInputStream(stateFile))));
+                return (WorkflowState) in.readObject();
+            } catch (IOException ex) {
+                throw new WorkflowException("Unable to read state of workflow " + workflowName, ex);
+            } catch (ClassNotFoundException ex) {
+                throw new WorkflowException("Unable to read state of workflow " + workflowName, ex);
+            } finally {
+                closeQuietly(in);
+            }
+        }
+    }
+
+    @Override
+    public void save(RoutingContext routingContext, String workflowName, WorkflowState workflowState)
+            throws WorkflowException {
+        try {
+            write(routingContext, workflowName, workflowState);
+        } finally {
+            discardEvicted();
+        }
+    }
+
+    private void write(RoutingContext routingContext, String workflowName, WorkflowState workflowState)
+            throws WorkflowException {
+        ObjectOutputStream out = null;
+        File temporaryFile = null;
+
+        synchronized (lockFor(createKey(routingContext, workflowName))) {
+            try {
+                File stateFile = acquire(routingContext, workflowName);
+
+                if (stateFile == null) {
+                    stateFile = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, directory);
+                }
+
+                temporaryFile = File.createTempFile(FILE_PREFIX, TEMPORARY_FILE_SUFFIX, directory);
+                out = new ObjectOutputStream(
+                        new DeflaterOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile))));
+                out.writeObject(workflowState);
+                out.close();
+                out = null;
+
+                replace(temporaryFile, stateFile);
+                temporaryFile = null;
+
+                retain(routingContext, workflowName, stateFile);
+            } catch (IOException ex) {
+                throw new WorkflowException("Unable to write state of workflow " + workflowName, ex);
+            } finally {
+                closeQuietly(out);
+
+                if (temporaryFile != null) {
+                    temporaryFile.delete();
+                }
+            }
+        }
+    }
+
+    private static void replace(File temporaryFile, File stateFile) throws IOException {
+        if (!temporaryFile.renameTo(stateFile)) {
+            stateFile.delete();
+
+            if (!temporaryFile.renameTo(stateFile)) {
+                throw new IOException("Unable to replace the workflow state file " + stateFile);
+            }
+        }
+    }
+
+    private Object lockFor(String key) {
+        return locks[(key.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    @Override
+    public void remove(RoutingContext routingContext, String workflowName) {
+        String key = createKey(routingContext, workflowName);
+
+        synchronized (lockFor(key)) {
+            File stateFile = release(routingContext, workflowName);
+
+            if (stateFile != null) {
+                discard(key, stateFile);
+            }
+        }
+    }
+
+    /**
+     * Deletes a state file while holding the lock for its workflow, unless a save that was under
+     * way when the file was released has kept it for the workflow again.
+     */
+    @Override
+    protected void discard(String key, File stateFile) {
+        synchronized (lockFor(key)) {
+            if (!isRetained(key, stateFile)) {
+                stateFile.delete();
+            }
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException ex) {
+                // nothing can be done
+            }
+        }
+    }
+
+    private static void closeQuietly(ObjectOutputStream out) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                // nothing can be done
+            }
+        }
+    }
+
+}
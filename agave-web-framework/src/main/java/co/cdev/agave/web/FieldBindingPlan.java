@@ -0,0 +1,300 @@
+package co.cdev.agave.web;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import co.cdev.agave.BindFields;
+import co.cdev.agave.Bindable;
+import co.cdev.agave.Converter;
+import co.cdev.agave.conversion.AgaveConversionException;
+import co.cdev.agave.conversion.ConverterRegistry;
+import co.cdev.agave.conversion.ParamConverter;
+import co.cdev.agave.util.CallChain;
+import co.cdev.agave.util.CallChains;
+import co.cdev.agave.util.ReflectionUtils;
+
+/**
+ * The resolved fields and converter that bind one request parameter to a form class annotated
+ * with {@link BindFields}. Fields are resolved through their declared types when a parameter is
+ * first bound to a form class, and the plan is then shared like a {@link FormBindingPlan}. Only
+ * fields that are annotated with {@link Bindable} are resolved, both for the field that is
+ * written and for every field on the path to it.
+ *
+ * <p>
+ * Values are converted by the converter named by a {@link Converter} annotation on the field, or
+ * else by the converter for the field's type. The values that are added to a collection or put in
+ * a map are converted by the converter for the collection's element type or the map's value type
+ * when it is declared.
+ * </p>
+ */
+final class FieldBindingPlan {
+
+    private static final String ILLEGAL_ARGUMENT_EXCEPTION_MSG =
+            "Field {0}#{1} is expecting a value of type {2} and recieved {3}";
+
+    private static final String MISSING_VALUE_MSG =
+            "Field {0}#{1} is of type {2}, so request parameter \"{3}\" cannot be bound without a value";
+
+    private static final String NULL_FIELD_MSG =
+            "Field {0}#{1} is null, so request parameter \"{2}\" cannot be bound";
+
+    private static final String INDEX_OUT_OF_RANGE_MSG =
+            "Field {0}#{1} holds {2} elements, so request parameter \"{3}\" cannot set element {4}";
+
+    private static final Object NONE = new Object();
+
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> UNIQUE_PLANS =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Object>>();
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> MULTIPLE_PLANS =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Object>>();
+
+    private final CallChain callChain;
+    private final Field[] path;
+    private final Field field;
+    @SuppressWarnings("rawtypes")
+    private final ParamConverter converter; // keep this vague
+
+    private FieldBindingPlan(CallChain callChain, Field[] path, Field field, ParamConverter<?, ?> converter) {
+        this.callChain = callChain;
+        this.path = path;
+        this.field = field;
+        this.converter = converter;
+    }
+
+    /**
+     * Gets the plan that binds the named parameter to the fields of a form class, compiling it if
+     * this is the first time the parameter has been seen for that class.
+     *
+     * @param formClass the class of the form that the parameter will be bound to
+     * @param parameterName the name of the request parameter
+     * @param unique whether the parameter has a single value, which determines whether it is set
+     *        or added to a collection
+     * @return the plan, or null if the parameter does not name a field that it can be bound to
+     */
+    static FieldBindingPlan forParameter(Class<?> formClass, String parameterName, boolean unique) {
+        ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> cache = unique ? UNIQUE_PLANS : MULTIPLE_PLANS;
+        ConcurrentMap<String, Object> plans = cache.get(formClass);
+
+        if (plans == null) {
+            ConcurrentMap<String, Object> existingPlans =
+                    cache.putIfAbsent(formClass, plans = new ConcurrentHashMap<String, Object>());
+            if (existingPlans != null) {
+                plans = existingPlans;
+            }
+        }
+
+        Object plan = plans.get(parameterName);
+
+        if (plan == null) {
+            plan = compile(formClass, CallChains.parse(parameterName, unique));
+            if (plan == null) {
+                plan = NONE;
+            }
+            if (plans.size() < FormBindingPlan.MAX_PLANS_PER_CLASS) {
+                plans.putIfAbsent(parameterName, plan);
+            }
+        }
+
+        return plan == NONE ? null : (FieldBindingPlan) plan;
+    }
+
+    static FieldBindingPlan compile(Class<?> formClass, CallChain callChain) {
+        List<String> accessorNames = callChain.getAccessorNames();
+        Field[] path = new Field[accessorNames.size()];
+        Class<?> targetClass = formClass;
+
+        for (int i = 0; i < path.length; i++) {
+            path[i] = findField(targetClass, accessorNames.get(i), "get");
+            if (path[i] == null) {
+                return null;
+            }
+            targetClass = path[i].getType();
+        }
+
+        Field field = null;
+        Class<?> requiredType = null;
+        int typeArgument = 0;
+
+        switch (callChain.getMutatorType()) {
+            case SETTING:
+                field = findField(targetClass, callChain.getMutatorName(), "set");
+                typeArgument = -1;
+                break;
+            case APPENDING:
+                field = findField(targetClass, callChain.getMutatorName(), "addTo");
+                requiredType = Collection.class;
+                break;
+            case INSERTING:
+                field = findField(targetClass, callChain.getMutatorName(), "insertIn");
+                requiredType = List.class;
+                break;
+            case PUTTING:
+                field = findField(targetClass, callChain.getMutatorName(), "putIn");
+                requiredType = Map.class;
+                typeArgument = 1;
+                break;
+        }
+
+        if (field == null
+                || (requiredType == null && Modifier.isFinal(field.getModifiers()))
+                || (requiredType != null && !requiredType.isAssignableFrom(field.getType()))) {
+            return null;
+        }
+
+        return new FieldBindingPlan(callChain, path, field, findConverter(field, typeArgument));
+    }
+
+    @SuppressWarnings("unchecked")
+    void bind(Object formInstance, List<Object> paramValues, Locale locale)
+            throws IllegalAccessException,
+            IllegalArgumentException,
+            AgaveConversionException {
+        Object targetInstance = formInstance;
+
+        for (Field pathField : path) {
+            targetInstance = get(pathField, targetInstance);
+        }
+
+        Object parameterValue = null;
+        if (paramValues != null && !paramValues.isEmpty()) {
+            parameterValue = paramValues.get(0);
+        }
+
+        switch (callChain.getMutatorType()) {
+            case SETTING:
+                set(targetInstance, parameterValue, locale);
+                break;
+            case APPENDING:
+                Collection<Object> collection = (Collection<Object>) get(field, targetInstance);
+                for (Object param : paramValues) {
+                    collection.add(AbstractFormBinder.convert(converter, param, locale));
+                }
+                break;
+            case INSERTING:
+                List<Object> list = (List<Object>) get(field, targetInstance);
+                Object element = AbstractFormBinder.convert(converter, parameterValue, locale);
+                if (callChain.getIndex() > list.size()) {
+                    throw new IllegalArgumentException(MessageFormat.format(INDEX_OUT_OF_RANGE_MSG,
+                            field.getDeclaringClass().getName(),
+                            field.getName(),
+                            list.size(),
+                            callChain.getParameterName(),
+                            callChain.getIndex()));
+                } else if (callChain.getIndex() == list.size()) {
+                    list.add(element);
+                } else {
+                    list.set(callChain.getIndex(), element);
+                }
+                break;
+            case PUTTING:
+                Map<String, Object> map = (Map<String, Object>) get(field, targetInstance);
+                map.put(callChain.getKey(), AbstractFormBinder.convert(converter, parameterValue, locale));
+                break;
+        }
+    }
+
+    private void set(Object targetInstance, Object paramValue, Locale locale)
+            throws IllegalAccessException,
+            AgaveConversionException {
+        Class<?> fieldType = field.getType();
+        Object value = null;
+
+        try {
+            if (fieldType == int.class) {
+                field.setInt(targetInstance, AbstractFormBinder.toInt(converter, paramValue, locale));
+            } else if (fieldType == long.class) {
+                field.setLong(targetInstance, AbstractFormBinder.toLong(converter, paramValue, locale));
+            } else if (fieldType == double.class) {
+                field.setDouble(targetInstance, AbstractFormBinder.toDouble(converter, paramValue, locale));
+            } else {
+                value = AbstractFormBinder.convert(converter, paramValue, locale);
+                field.set(targetInstance, value);
+            }
+        } catch (IllegalArgumentException ex) {
+            String errorMessage = null;
+
+            if (value == null && fieldType.isPrimitive()) {
+                errorMessage = MessageFormat.format(MISSING_VALUE_MSG,
+                        field.getDeclaringClass().getName(),
+                        field.getName(),
+                        fieldType.getName(),
+                        callChain.getParameterName());
+            } else {
+                errorMessage = MessageFormat.format(ILLEGAL_ARGUMENT_EXCEPTION_MSG,
+                        field.getDeclaringClass().getName(),
+                        field.getName(),
+                        fieldType.getName(),
+                        value.getClass().getName());
+            }
+
+            throw new IllegalArgumentException(errorMessage, ex);
+        }
+    }
+
+    private Object get(Field pathField, Object targetInstance) throws IllegalAccessException {
+        Object value = pathField.get(targetInstance);
+
+        if (value == null) {
+            throw new IllegalArgumentException(MessageFormat.format(NULL_FIELD_MSG,
+                    pathField.getDeclaringClass().getName(),
+                    pathField.getName(),
+                    callChain.getParameterName()));
+        }
+
+        return value;
+    }
+
+    /**
+     * Finds the field that a method named by a call chain would access.
+     *
+     * @return the field, or null if there is no bindable instance field of that name
+     */
+    private static Field findField(Class<?> targetClass, String methodName, String prefix) {
+        String fieldName = Character.toLowerCase(methodName.charAt(prefix.length()))
+                + methodName.substring(prefix.length() + 1);
+        Field field = ReflectionUtils.getField(targetClass, fieldName);
+
+        if (field == null || Modifier.isStatic(field.getModifiers()) || !field.isAnnotationPresent(Bindable.class)) {
+            return null;
+        }
+
+        return field;
+    }
+
+    /**
+     * @param typeArgument the index of the type argument that holds the type of the values, or
+     *        -1 if values are assigned to the field itself
+     */
+    private static ParamConverter<?, ?> findConverter(Field field, int typeArgument) {
+        Converter annotation = field.getAnnotation(Converter.class);
+
+        if (annotation != null) {
+            return ConverterRegistry.getInstance().getConverter(annotation.value());
+        }
+
+        if (typeArgument < 0) {
+            return ConverterRegistry.getInstance().getConverterFor(field.getType());
+        }
+
+        Type genericType = field.getGenericType();
+
+        if (genericType instanceof ParameterizedType) {
+            Type[] typeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
+            if (typeArgument < typeArguments.length && typeArguments[typeArgument] instanceof Class) {
+                return ConverterRegistry.getInstance().getConverterFor((Class<?>) typeArguments[typeArgument]);
+            }
+        }
+
+        return null;
+    }
+
+}
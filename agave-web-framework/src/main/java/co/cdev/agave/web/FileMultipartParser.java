@@ -30,39 +30,21 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import co.cdev.agave.Part;
 
 /**
  * A file backed multipart parser. All parts are saved to individual temporary files that are 
- * deleted when the JVM exits. 
+ * deleted when the request ends, unless the handler claims them through {@link RequestUploads}. 
  * 
  * @author <a href="mailto:damiancarrillo@gmail.com">Damian Carrillo</a>
  */
 public class FileMultipartParser extends AbstractMultipartParser<File> {
 
-    private static final String DEFAULT_SUFFIX = ".tmp";
-    private static final Pattern FILENAME_PATTERN = Pattern.compile("(.*)\\.(.*)");
-    
     protected boolean readPart(Part<File> part) throws IOException {
         boolean end = false;
         
-        String prefix = null;
-        String suffix = null;
-        
-        Matcher matcher = FILENAME_PATTERN.matcher(part.getFilename());
-        if (matcher.matches() && matcher.groupCount() >= 2) {
-            prefix = matcher.group(1);
-            suffix = (matcher.group(2).startsWith(".")) ? matcher.group(2) : '.' + matcher.group(2);
-        } else {
-            prefix = part.getName();
-            suffix = DEFAULT_SUFFIX;
-        }
-    
-        File temporaryFile = File.createTempFile(prefix, suffix);
-        temporaryFile.deleteOnExit();
+        File temporaryFile = RequestUploads.createTemporaryFile(part);
         
         OutputStream out = new BufferedOutputStream(new FileOutputStream(temporaryFile));
         
@@ -0,0 +1,36 @@
+package co.cdev.agave.web;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Locale;
+
+import co.cdev.agave.conversion.AgaveConversionException;
+import co.cdev.agave.util.CallChain;
+
+/**
+ * Binds request parameters to a form by calling its accessors and mutators directly rather than
+ * through reflection. Binders are normally generated at compile time by the annotation processor
+ * in the {@code agave-processor} module, which names the binder for a form class
+ * {@code com.domain.SomeForm} {@code com.domain.SomeForm$$FormBinder}. When a binder with that
+ * name is on the classpath, form populators prefer it over reflective population.
+ *
+ * @param <F> the type of form that is bound
+ */
+public interface FormBinder<F> {
+
+    /**
+     * Binds a single request parameter to the form.
+     *
+     * @param formInstance the form to bind to
+     * @param callChain the parsed parameter name
+     * @param paramValues the values of the parameter
+     * @param locale the locale to convert the values with
+     * @return true if the parameter was bound, or false if it names a property that this binder does
+     *         not know about, in which case it is bound reflectively instead
+     * @throws InvocationTargetException if an accessor or mutator of the form throws, as it would be
+     *         thrown if the method had been invoked reflectively
+     */
+    public boolean bind(F formInstance, CallChain callChain, List<Object> paramValues, Locale locale)
+            throws AgaveConversionException, InvocationTargetException;
+
+}
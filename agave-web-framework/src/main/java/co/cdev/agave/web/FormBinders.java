@@ -0,0 +1,72 @@
+package co.cdev.agave.web;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import co.cdev.agave.util.CallChain;
+
+/**
+ * Finds the generated {@link FormBinder} for a form class, remembering which form classes do not
+ * have one.
+ */
+final class FormBinders {
+
+    static final String BINDER_SUFFIX = "$$FormBinder";
+
+    private static final Logger LOGGER = Logger.getLogger(FormBinders.class.getName());
+
+    private static final FormBinder<Object> NONE = new FormBinder<Object>() {
+        @Override
+        public boolean bind(Object formInstance, CallChain callChain, List<Object> paramValues, Locale locale) {
+            return false;
+        }
+    };
+
+    private static final ConcurrentMap<Class<?>, FormBinder<Object>> BINDERS =
+            new ConcurrentHashMap<Class<?>, FormBinder<Object>>();
+
+    private FormBinders() {
+    }
+
+    /**
+     * @return the generated binder for the form class, or null if there isn't one
+     */
+    static FormBinder<Object> forClass(Class<?> formClass) {
+        FormBinder<Object> binder = BINDERS.get(formClass);
+
+        if (binder == null) {
+            binder = load(formClass);
+            BINDERS.putIfAbsent(formClass, binder);
+        }
+
+        return binder == NONE ? null : binder;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FormBinder<Object> load(Class<?> formClass) {
+        try {
+            Class<?> binderClass = Class.forName(formClass.getName() + BINDER_SUFFIX, true, formClass.getClassLoader());
+
+            if (FormBinder.class.isAssignableFrom(binderClass)) {
+                return (FormBinder<Object>) binderClass.newInstance();
+            }
+
+            LOGGER.log(Level.WARNING, "{0} does not implement {1}", new Object[] {
+                binderClass.getName(), FormBinder.class.getName()
+            });
+        } catch (ClassNotFoundException ex) {
+            // forms without generated binders are populated reflectively
+        } catch (InstantiationException ex) {
+            LOGGER.log(Level.WARNING, "Unable to create form binder for " + formClass.getName(), ex);
+        } catch (IllegalAccessException ex) {
+            LOGGER.log(Level.WARNING, "Unable to create form binder for " + formClass.getName(), ex);
+        }
+
+        return NONE;
+    }
+
+}
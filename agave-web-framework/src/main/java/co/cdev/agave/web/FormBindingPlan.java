@@ -0,0 +1,229 @@
+package co.cdev.agave.web;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import co.cdev.agave.Converter;
+import co.cdev.agave.conversion.AgaveConversionException;
+import co.cdev.agave.conversion.ConverterRegistry;
+import co.cdev.agave.conversion.ParamConverter;
+import co.cdev.agave.util.CallChain;
+import co.cdev.agave.util.CallChains;
+
+/**
+ * The resolved accessors, mutators and converters that bind one request parameter to a form
+ * class. Plans are compiled the first time a parameter is bound to a form class and are then
+ * shared, so later requests bind without scanning the form for methods or instantiating
+ * converters. Converters are therefore expected to be stateless.
+ *
+ * <p>
+ * A plan remembers the classes of the objects that its accessors returned when it was compiled.
+ * If a later form holds an instance of another class somewhere along the chain, the rest of that
+ * chain is resolved reflectively for that binding only.
+ * </p>
+ */
+final class FormBindingPlan {
+
+    /**
+     * Limits the plans kept per form class, since parameter names that index or key into a
+     * property are chosen by the client and could otherwise grow the cache without bound.
+     */
+    static final int MAX_PLANS_PER_CLASS = 1024;
+
+    private static final String ILLEGAL_ARGUMENT_EXCEPTION_MSG =
+            "Mutator {0}#{1}(...) is expecting argument of type {2} and recieved {3}";
+
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<String, FormBindingPlan>> UNIQUE_PLANS =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<String, FormBindingPlan>>();
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<String, FormBindingPlan>> MULTIPLE_PLANS =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<String, FormBindingPlan>>();
+
+    private final CallChain callChain;
+    private final Method[] accessors;
+    private final Class<?>[] targetClasses;
+    private final Binding[] bindings;
+
+    private FormBindingPlan(CallChain callChain, Method[] accessors, Class<?>[] targetClasses, Binding[] bindings) {
+        this.callChain = callChain;
+        this.accessors = accessors;
+        this.targetClasses = targetClasses;
+        this.bindings = bindings;
+    }
+
+    /**
+     * Gets the plan that binds the named parameter to the class of the supplied form, compiling
+     * it if this is the first time the parameter has been seen for that class.
+     *
+     * @param formInstance the form that the parameter will be bound to
+     * @param parameterName the name of the request parameter
+     * @param unique whether the parameter has a single value, which determines whether it is set
+     *        or appended
+     */
+    static FormBindingPlan forParameter(Object formInstance, String parameterName, boolean unique)
+            throws NoSuchMethodException,
+            IllegalAccessException,
+            InvocationTargetException {
+        ConcurrentMap<Class<?>, ConcurrentMap<String, FormBindingPlan>> cache = unique ? UNIQUE_PLANS : MULTIPLE_PLANS;
+        Class<?> formClass = formInstance.getClass();
+        ConcurrentMap<String, FormBindingPlan> plans = cache.get(formClass);
+
+        if (plans == null) {
+            ConcurrentMap<String, FormBindingPlan> existingPlans =
+                    cache.putIfAbsent(formClass, plans = new ConcurrentHashMap<String, FormBindingPlan>());
+            if (existingPlans != null) {
+                plans = existingPlans;
+            }
+        }
+
+        FormBindingPlan plan = plans.get(parameterName);
+
+        if (plan == null) {
+            plan = compile(formInstance, CallChains.parse(parameterName, unique));
+            if (plans.size() < MAX_PLANS_PER_CLASS) {
+                plans.putIfAbsent(parameterName, plan);
+            }
+        }
+
+        return plan;
+    }
+
+    static FormBindingPlan compile(Object formInstance, CallChain callChain)
+            throws NoSuchMethodException,
+            IllegalAccessException,
+            InvocationTargetException {
+        int length = callChain.getAccessorNames().size();
+        Method[] accessors = new Method[length];
+        Class<?>[] targetClasses = new Class<?>[length];
+        Object targetInstance = formInstance;
+
+        for (int i = 0; i < length; i++) {
+            accessors[i] = findAccessor(targetInstance.getClass(), callChain, i);
+            targetInstance = accessors[i].invoke(targetInstance);
+            targetClasses[i] = targetInstance.getClass();
+        }
+
+        return new FormBindingPlan(callChain, accessors, targetClasses, findBindings(targetInstance.getClass(), callChain));
+    }
+
+    void bind(Object formInstance, List<Object> paramValues, Locale locale)
+            throws NoSuchMethodException,
+            IllegalAccessException,
+            IllegalArgumentException,
+            InvocationTargetException,
+            InstantiationException,
+            AgaveConversionException {
+        Object targetInstance = formInstance;
+        boolean planned = true;
+
+        for (int i = 0; i < accessors.length; i++) {
+            Method accessor = planned ? accessors[i] : findAccessor(targetInstance.getClass(), callChain, i);
+            targetInstance = accessor.invoke(targetInstance);
+            planned = planned && targetInstance.getClass() == targetClasses[i];
+        }
+
+        Object parameterValue = null;
+        if (paramValues != null && !paramValues.isEmpty()) {
+            parameterValue = paramValues.get(0);
+        }
+
+        for (Binding binding : planned ? bindings : findBindings(targetInstance.getClass(), callChain)) {
+            switch (callChain.getMutatorType()) {
+                case SETTING:
+                    binding.set(targetInstance, parameterValue, locale);
+                    break;
+                case APPENDING:
+                    for (Object param : paramValues) {
+                        binding.set(targetInstance, param, locale);
+                    }
+                    break;
+                case INSERTING:
+                    binding.mutator.invoke(targetInstance, callChain.getIndex(), binding.convert(parameterValue, locale));
+                    break;
+                case PUTTING:
+                    binding.mutator.invoke(targetInstance, callChain.getKey(), binding.convert(parameterValue, locale));
+                    break;
+            }
+        }
+    }
+
+    private static Method findAccessor(Class<?> targetClass, CallChain callChain, int index)
+            throws NoSuchMethodException {
+        String accessorName = callChain.getAccessorNames().get(index);
+
+        try {
+            return targetClass.getMethod(accessorName);
+        } catch (NoSuchMethodException ex) {
+            throw new NoSuchMethodException("Missing accessor \"" + accessorName + "\" on " + targetClass.getName()
+                    + " invoked through request parameter \"" + callChain.getParameterName() + "\"");
+        }
+    }
+
+    private static Binding[] findBindings(Class<?> targetClass, CallChain callChain) {
+        List<Binding> bindings = new ArrayList<Binding>(1);
+
+        for (Method mutator : targetClass.getMethods()) {
+            if (mutator.getName().equals(callChain.getMutatorName())) {
+                bindings.add(new Binding(mutator));
+            }
+        }
+
+        return bindings.toArray(new Binding[bindings.size()]);
+    }
+
+    private static class Binding {
+
+        final Method mutator;
+        final Class<?> paramType;
+        @SuppressWarnings("rawtypes")
+        final ParamConverter converter; // keep this vague
+
+        Binding(Method mutator) {
+            int parameterOffset = (mutator.getParameterTypes().length == 1) ? 0 : 1;
+            ParamConverter<?, ?> annotatedConverter = null;
+
+            // First look for a Converter annotation
+
+            for (Annotation annotation : mutator.getParameterAnnotations()[parameterOffset]) {
+                if (annotation instanceof Converter) {
+                    annotatedConverter = ConverterRegistry.getInstance().getConverter(((Converter) annotation).value());
+                    break;
+                }
+            }
+
+            this.mutator = mutator;
+            this.paramType = mutator.getParameterTypes()[parameterOffset];
+
+            // Try to look up a converter for common types
+
+            this.converter = annotatedConverter != null ? annotatedConverter : ConverterRegistry.getInstance().getConverterFor(paramType);
+        }
+
+        void set(Object targetInstance, Object paramValue, Locale locale)
+                throws IllegalAccessException,
+                InvocationTargetException,
+                AgaveConversionException {
+            try {
+                mutator.invoke(targetInstance, convert(paramValue, locale));
+            } catch (IllegalArgumentException ex) {
+                String errorMessage = MessageFormat.format(ILLEGAL_ARGUMENT_EXCEPTION_MSG,
+                        mutator.getDeclaringClass().getName(),
+                        mutator.getName(),
+                        paramType.getName(),
+                        paramValue == null ? null : paramValue.getClass().getName());
+                throw new IllegalArgumentException(errorMessage);
+            }
+        }
+
+        Object convert(Object paramValue, Locale locale) throws AgaveConversionException {
+            return AbstractFormBinder.convert(converter, paramValue, locale);
+        }
+    }
+
+}
@@ -0,0 +1,326 @@
+package co.cdev.agave.web;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import co.cdev.agave.Part;
+
+/**
+ * A {@link AbstractBufferedMultipartParser} that keeps small files in memory and writes large ones
+ * to temporary files. The contents of a file are collected in pooled buffers until they outgrow the
+ * spill threshold of the {@link UploadLimits}, at which point the buffered bytes and the rest of the
+ * file are written to a temporary file instead.
+ *
+ * <p>
+ * The size limits are enforced as early as possible: a request whose {@code Content-Length} is too
+ * large is rejected before any of its body is read, and a body without one is rejected as soon as
+ * it is read past a limit. Either way a {@link RequestEntityTooLargeException} is thrown and the
+ * temporary files of the request are deleted. The maximum part size applies to uploaded files and
+ * the maximum field size to plain parameter values.
+ * </p>
+ *
+ * <p>
+ * When the request is handled by the {@link AgaveFilter}, the bytes of a parsed request count
+ * against the in flight limit, and the buffers of files kept in memory stay out of the pool, until
+ * the request ends, since the handler holds on to the files until then. Otherwise they are released
+ * once the request is parsed, and the buffers are left to the garbage collector.
+ * </p>
+ */
+public class HybridMultipartParser extends AbstractBufferedMultipartParser<SpooledContents> {
+
+    private static final UploadLimits DEFAULT_LIMITS = new UploadLimits();
+
+    private final UploadLimits limits;
+    private final BufferPool bufferPool = BufferPool.SHARED;
+    private long reservedSize;
+
+    public HybridMultipartParser() {
+        this(DEFAULT_LIMITS);
+    }
+
+    public HybridMultipartParser(UploadLimits limits) {
+        this.limits = limits;
+    }
+
+    public HybridMultipartParser(UploadLimits limits, int bufferSize) {
+        super(bufferSize);
+        this.limits = limits;
+    }
+
+    public UploadLimits getLimits() {
+        return limits;
+    }
+
+    @Override
+    public void parseInput(HttpServletRequest request) throws Exception {
+        long contentLength = request.getContentLength();
+
+        if (contentLength >= 0 && exceeds(contentLength, limits.getMaxRequestSize())) {
+            throw new RequestEntityTooLargeException(requestTooLargeMessage());
+        }
+
+        if (contentLength > 0) {
+            if (!limits.reserve(contentLength)) {
+                throw new RequestEntityTooLargeException(inFlightMessage());
+            }
+            reservedSize = contentLength;
+        }
+
+        boolean parsed = false;
+
+        try {
+            super.parseInput(request);
+            parsed = true;
+        } catch (LimitExceededException ex) {
+            throw new RequestEntityTooLargeException(ex.getMessage());
+        } finally {
+            if (!parsed || !RequestUploads.track(limits, reservedSize)) {
+                limits.release(reservedSize);
+            }
+
+            reservedSize = 0;
+
+            if (!parsed && getParts() != null) {
+                for (Part<SpooledContents> part : getParts().values()) {
+                    part.getContents().delete();
+                }
+            }
+        }
+    }
+
+    @Override
+    protected InputStream openBody(HttpServletRequest request) throws IOException {
+        return new LimitedInputStream(super.openBody(request));
+    }
+
+    @Override
+    protected void readParameter(Part<SpooledContents> part, InputStream contents, OutputStream out) throws Exception {
+        copy(contents, new FieldOutputStream(out));
+    }
+
+    @Override
+    protected void readPart(Part<SpooledContents> part, InputStream contents) throws Exception {
+        SpoolingOutputStream out = new SpoolingOutputStream(part);
+
+        try {
+            copy(contents, out);
+            part.setContents(out.toContents());
+        } finally {
+            out.close();
+        }
+    }
+
+    private static boolean exceeds(long size, long limit) {
+        return limit != UploadLimits.UNLIMITED && size > limit;
+    }
+
+    private String requestTooLargeMessage() {
+        return "Multipart request bodies are limited to " + limits.getMaxRequestSize() + " bytes";
+    }
+
+    private String inFlightMessage() {
+        return "More than " + limits.getMaxInFlightSize() + " bytes of uploads would be in flight";
+    }
+
+    private static class LimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        LimitExceededException(String message) {
+            super(message);
+        }
+
+    }
+
+    /**
+     * Counts the bytes of the body against the request and in flight limits as they are read.
+     */
+    private class LimitedInputStream extends FilterInputStream {
+
+        private long receivedSize;
+
+        LimitedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                receive(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                receive(count);
+            }
+            return count;
+        }
+
+        private void receive(int count) throws LimitExceededException {
+            receivedSize += count;
+
+            if (exceeds(receivedSize, limits.getMaxRequestSize())) {
+                throw new LimitExceededException(requestTooLargeMessage());
+            }
+
+            if (receivedSize > reservedSize) {
+                if (!limits.reserve(receivedSize - reservedSize)) {
+                    throw new LimitExceededException(inFlightMessage());
+                }
+                reservedSize = receivedSize;
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes of a parameter value against the maximum field size as they are written.
+     */
+    private class FieldOutputStream extends FilterOutputStream {
+
+        private long size;
+
+        FieldOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            size += len;
+
+            if (exceeds(size, limits.getMaxFieldSize())) {
+                throw new LimitExceededException("Parameter values are limited to " + limits.getMaxFieldSize() + " bytes");
+            }
+
+            out.write(b, off, len);
+        }
+    }
+
+    /**
+     * Collects the contents of a file in pooled buffers, and moves them to a temporary file once
+     * there are more of them than the spill threshold. Closing the stream returns the buffers to the
+     * pool, and deletes the temporary file unless the contents were taken with {@link #toContents()}.
+     * Contents that are kept in memory take the buffers over rather than copying them.
+     */
+    private class SpoolingOutputStream extends OutputStream {
+
+        private final Part<?> part;
+        private final List<byte[]> buffers = new ArrayList<byte[]>();
+        private int position;
+        private long size;
+        private File file;
+        private OutputStream fileOut;
+        private boolean taken;
+
+        SpoolingOutputStream(Part<?> part) {
+            this.part = part;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (exceeds(size + len, limits.getMaxPartSize())) {
+                throw new LimitExceededException("Uploaded files are limited to " + limits.getMaxPartSize() + " bytes");
+            }
+
+            if (fileOut == null && size + len > limits.getSpillThreshold()) {
+                spill();
+            }
+
+            size += len;
+
+            if (fileOut != null) {
+                fileOut.write(b, off, len);
+                return;
+            }
+
+            int bufferSize = bufferPool.getBufferSize();
+
+            while (len > 0) {
+                if (buffers.isEmpty() || position == bufferSize) {
+                    buffers.add(bufferPool.acquire());
+                    position = 0;
+                }
+
+                int count = Math.min(len, bufferSize - position);
+                System.arraycopy(b, off, buffers.get(buffers.size() - 1), position, count);
+                position += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        private void spill() throws IOException {
+            file = RequestUploads.createTemporaryFile(part);
+            fileOut = new FileOutputStream(file);
+
+            for (int i = 0; i < buffers.size(); i++) {
+                fileOut.write(buffers.get(i), 0, i == buffers.size() - 1 ? position : bufferPool.getBufferSize());
+            }
+
+            releaseBuffers();
+        }
+
+        SpooledContents toContents() throws IOException {
+            taken = true;
+
+            if (fileOut != null) {
+                fileOut.close();
+                fileOut = null;
+                return new SpooledContents(file, size);
+            }
+
+            SpooledContents contents = new SpooledContents(buffers.toArray(new byte[buffers.size()][]), (int) size,
+                    bufferPool);
+            buffers.clear();
+            position = 0;
+            RequestUploads.track(contents);
+            return contents;
+        }
+
+        private void releaseBuffers() {
+            for (byte[] buffer : buffers) {
+                bufferPool.release(buffer);
+            }
+            buffers.clear();
+            position = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            releaseBuffers();
+
+            if (fileOut != null) {
+                fileOut.close();
+                fileOut = null;
+            }
+
+            if (!taken && file != null) {
+                file.delete();
+            }
+        }
+    }
+
+}
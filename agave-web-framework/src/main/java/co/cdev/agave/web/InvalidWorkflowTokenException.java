@@ -0,0 +1,16 @@
+package co.cdev.agave.web;
+
+/**
+ * Thrown when a client presents a workflow token that is malformed, was not signed with the
+ * workflow signing key or was issued for another workflow. The {@link AgaveFilter} answers such
+ * requests with a {@code 400 Bad Request} status.
+ */
+public class InvalidWorkflowTokenException extends WorkflowException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidWorkflowTokenException(String message) {
+        super(message);
+    }
+
+}
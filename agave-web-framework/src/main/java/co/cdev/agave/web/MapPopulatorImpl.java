@@ -32,7 +32,6 @@ import javax.servlet.http.HttpServletRequest;
 import co.cdev.agave.configuration.HandlerDescriptor;
 import co.cdev.agave.configuration.ParamDescriptor;
 import co.cdev.agave.conversion.AgaveConversionException;
-import co.cdev.agave.conversion.Converters;
 import co.cdev.agave.conversion.StringConverter;
 
 /**
@@ -60,38 +59,17 @@ public class MapPopulatorImpl extends AbstractPopulator implements MapPopulator
         Map<String, Object[]> requestParams = request.getParameterMap();
         
         for (ParamDescriptor paramDescriptor : descriptor.getParamDescriptors()) {
-            Object value = uriParams.get(paramDescriptor.getName());
+            String uriValue = uriParams.get(paramDescriptor.getName());
+            String[] values = uriValue == null ? (String[]) requestParams.get(paramDescriptor.getName()) : new String[] {uriValue};
+            Object value = null;
             
-            if (value == null) {
-
-                // TODO TRY AND MAKE THIS SUPPORT ARRAYS AS WELL
-
-                String[] values = (String[]) requestParams.get(paramDescriptor.getName());
-
-                if (values != null && values.length > 0) {
-                    value = requestParams.get(paramDescriptor.getName())[0];
-                }
-            }
-            
-            if (value != null) {
-                StringConverter<?> converter = null;
-                Class<? extends StringConverter<?>> converterClass = paramDescriptor.getConverterClass();
-                
-                if (converterClass != null) {
-                    try {
-                        converter = converterClass.newInstance();
-                    } catch (InstantiationException ex) {
-                        throw new AgaveConversionException(ex);
-                    } catch (IllegalAccessException ex) {
-                        throw new AgaveConversionException(ex);
-                    }
+            if (values != null && values.length > 0) {
+                if (paramDescriptor.getElementClass() != null) {
+                    value = MultiValuedParams.bind(paramDescriptor, values,
+                            uriValue == null && BodyParameterRequest.isArray(request, paramDescriptor.getName()), locale);
                 } else {
-                    converter = (StringConverter<?>) Converters.getMostAppropriateFor(paramDescriptor.getParamClass());
-                }
-                
-                if (converter != null) {
-                    value = converter.convert((String) value, locale);
-                    namedArguments.put(paramDescriptor.getName(), value);
+                    StringConverter<?> converter = paramDescriptor.getConverter();
+                    value = converter == null ? values[0] : converter.convert(values[0], locale);
                 }
             }
             
@@ -0,0 +1,42 @@
+package co.cdev.agave.web;
+
+import co.cdev.agave.configuration.RoutingContext;
+
+/**
+ * Keeps workflow state on the heap, outside of the {@code HttpSession}, so that abandoned
+ * workflows are reclaimed once they expire instead of living as long as the session does.
+ */
+public class MemoryWorkflowStore extends AbstractEvictingWorkflowStore<WorkflowState> {
+
+    public MemoryWorkflowStore() {
+        super();
+    }
+
+    public MemoryWorkflowStore(long timeToLive, int maxWorkflows) {
+        super(timeToLive, maxWorkflows);
+    }
+
+    @Override
+    public WorkflowState load(RoutingContext routingContext, String workflowName) {
+        WorkflowState workflowState = acquire(routingContext, workflowName);
+        discardEvicted();
+        return workflowState;
+    }
+
+    @Override
+    public void save(RoutingContext routingContext, String workflowName, WorkflowState workflowState) {
+        retain(routingContext, workflowName, workflowState);
+        discardEvicted();
+    }
+
+    @Override
+    public void remove(RoutingContext routingContext, String workflowName) {
+        release(routingContext, workflowName);
+    }
+
+    @Override
+    protected void discard(String key, WorkflowState workflowState) {
+        // the state is simply left for garbage collection
+    }
+
+}
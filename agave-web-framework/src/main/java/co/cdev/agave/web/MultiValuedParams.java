@@ -0,0 +1,283 @@
+package co.cdev.agave.web;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import co.cdev.agave.configuration.ParamDescriptor;
+import co.cdev.agave.conversion.AgaveConversionException;
+import co.cdev.agave.conversion.StringConverter;
+import co.cdev.agave.conversion.ToDoubleConverter;
+import co.cdev.agave.conversion.ToIntConverter;
+import co.cdev.agave.conversion.ToLongConverter;
+
+/**
+ * Binds every value of a request parameter to an array or {@code Collection} param. When exactly
+ * one raw value is supplied for a param whose elements are numbers or enums, it is split on
+ * commas, so {@code ids=1,2,3} binds the same as {@code ids=1&ids=2&ids=3}. Values are never
+ * split for other element types, since a comma may well be part of free text such as
+ * {@code q=a,b}, and they are not split when several are supplied, so
+ * {@code ids=1,2&ids=3} fails to convert rather than binding three numbers. Params that are bound
+ * to a single value never get here at all, and values that were read from an array in a request
+ * body are never split either. Whitespace around each value is ignored, as are empty
+ * values.
+ *
+ * <p>
+ * The values are scanned in one pass into a container that is sized up front. Elements of
+ * {@code int[]}, {@code long[]} and {@code double[]} params are parsed in place by the primitive
+ * converters, so neither substrings nor boxed values are created for them.
+ * </p>
+ */
+final class MultiValuedParams {
+
+    private MultiValuedParams() {
+    }
+
+    /**
+     * @param paramDescriptor the descriptor of an array or collection param
+     * @param values the values of the request parameter, which must not be empty
+     * @param array whether the values were read from an array, so that a single value is not split
+     * @return the array or collection that the values were bound to
+     */
+    static Object bind(ParamDescriptor paramDescriptor, String[] values, boolean array, Locale locale)
+            throws AgaveConversionException {
+        if (paramDescriptor.getElementClass() == null) {
+            throw new IllegalArgumentException("Param " + paramDescriptor.getName() + " is not multi-valued");
+        }
+
+        Class<?> paramClass = paramDescriptor.getParamClass();
+        Class<?> elementClass = paramDescriptor.getElementClass();
+        boolean split = values.length == 1 && !array && isSplittable(elementClass);
+        Values tokens = split ? new Values(values[0]) : new Values(values);
+        StringConverter<?> converter = paramDescriptor.getConverter();
+
+        if (elementClass == int.class && converter instanceof ToIntConverter) {
+            return bindInts(tokens, (ToIntConverter) converter, locale);
+        } else if (elementClass == long.class && converter instanceof ToLongConverter) {
+            return bindLongs(tokens, (ToLongConverter) converter, locale);
+        } else if (elementClass == double.class && converter instanceof ToDoubleConverter) {
+            return bindDoubles(tokens, (ToDoubleConverter) converter, locale);
+        } else if (paramClass.isArray()) {
+            return bindArray(tokens, elementClass, converter, locale);
+        } else {
+            return bindCollection(tokens, paramClass, converter, locale);
+        }
+    }
+
+    /**
+     * @return true if the elements are numbers or enums, whose values cannot contain commas
+     */
+    private static boolean isSplittable(Class<?> elementClass) {
+        return elementClass.isEnum() || Number.class.isAssignableFrom(elementClass)
+                || (elementClass.isPrimitive() && elementClass != boolean.class && elementClass != char.class);
+    }
+
+    private static int[] bindInts(Values tokens, ToIntConverter converter, Locale locale)
+            throws AgaveConversionException {
+        int[] array = new int[tokens.getMaximumCount()];
+        int count = 0;
+
+        while (tokens.next()) {
+            array[count++] = converter.parseInt(tokens, locale);
+        }
+
+        return count == array.length ? array : Arrays.copyOf(array, count);
+    }
+
+    private static long[] bindLongs(Values tokens, ToLongConverter converter, Locale locale)
+            throws AgaveConversionException {
+        long[] array = new long[tokens.getMaximumCount()];
+        int count = 0;
+
+        while (tokens.next()) {
+            array[count++] = converter.parseLong(tokens, locale);
+        }
+
+        return count == array.length ? array : Arrays.copyOf(array, count);
+    }
+
+    private static double[] bindDoubles(Values tokens, ToDoubleConverter converter, Locale locale)
+            throws AgaveConversionException {
+        double[] array = new double[tokens.getMaximumCount()];
+        int count = 0;
+
+        while (tokens.next()) {
+            array[count++] = converter.parseDouble(tokens, locale);
+        }
+
+        return count == array.length ? array : Arrays.copyOf(array, count);
+    }
+
+    private static Object bindArray(Values tokens, Class<?> elementClass, StringConverter<?> converter, Locale locale)
+            throws AgaveConversionException {
+        Object array = Array.newInstance(elementClass, tokens.getMaximumCount());
+        int count = 0;
+
+        while (tokens.next()) {
+            Array.set(array, count++, convert(tokens, converter, locale));
+        }
+
+        if (count < Array.getLength(array)) {
+            Object trimmedArray = Array.newInstance(elementClass, count);
+            System.arraycopy(array, 0, trimmedArray, 0, count);
+            array = trimmedArray;
+        }
+
+        return array;
+    }
+
+    private static Collection<Object> bindCollection(Values tokens, Class<?> paramClass, StringConverter<?> converter,
+                                                     Locale locale) throws AgaveConversionException {
+        Collection<Object> collection = newCollection(paramClass, tokens.getMaximumCount());
+
+        while (tokens.next()) {
+            collection.add(convert(tokens, converter, locale));
+        }
+
+        return collection;
+    }
+
+    /**
+     * Creates a collection that can be assigned to a param, preferring the same implementations
+     * as the configuration generator does when it accepts the param's type.
+     */
+    @SuppressWarnings("unchecked")
+    private static Collection<Object> newCollection(Class<?> paramClass, int maximumCount)
+            throws AgaveConversionException {
+        if (paramClass.isAssignableFrom(ArrayList.class)) {
+            return new ArrayList<Object>(maximumCount);
+        } else if (paramClass.isAssignableFrom(LinkedHashSet.class)) {
+            return new LinkedHashSet<Object>(Math.max(maximumCount * 4 / 3 + 1, 16));
+        } else if (paramClass.isAssignableFrom(TreeSet.class)) {
+            return new TreeSet<Object>();
+        }
+
+        try {
+            return (Collection<Object>) paramClass.newInstance();
+        } catch (InstantiationException ex) {
+            throw new AgaveConversionException(ex);
+        } catch (IllegalAccessException ex) {
+            throw new AgaveConversionException(ex);
+        }
+    }
+
+    private static Object convert(Values tokens, StringConverter<?> converter, Locale locale)
+            throws AgaveConversionException {
+        String value = tokens.toString();
+        return converter == null ? value : converter.convert(value, locale);
+    }
+
+    /**
+     * Iterates over the values of a parameter, presenting the current one as a character
+     * sequence over the original text.
+     */
+    private static class Values implements CharSequence {
+
+        private final String[] values;
+        private final boolean split;
+        private int valueIndex = -1;
+        private String value;
+        private int position;
+        private int start;
+        private int end;
+
+        /**
+         * Iterates over the comma separated values of a single value.
+         */
+        Values(String value) {
+            this.values = new String[] {value};
+            this.split = true;
+        }
+
+        /**
+         * Iterates over several values, which are not split.
+         */
+        Values(String[] values) {
+            this.values = values;
+            this.split = false;
+        }
+
+        /**
+         * @return the number of values that there would be if none of them were empty
+         */
+        int getMaximumCount() {
+            if (!split) {
+                return values.length;
+            }
+
+            String text = values[0];
+            int count = 1;
+
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == ',') {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+
+        /**
+         * Advances to the next value that is not empty.
+         *
+         * @return false if there are no more values
+         */
+        boolean next() {
+            while (true) {
+                if (value == null || position > value.length()) {
+                    if (++valueIndex >= values.length) {
+                        return false;
+                    }
+                    value = values[valueIndex] == null ? "" : values[valueIndex];
+                    position = 0;
+                }
+
+                start = position;
+                end = split ? value.indexOf(',', start) : -1;
+
+                if (end < 0) {
+                    end = value.length();
+                }
+
+                position = end + 1;
+
+                while (start < end && Character.isWhitespace(value.charAt(start))) {
+                    start++;
+                }
+
+                while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+                    end--;
+                }
+
+                if (start < end) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return value.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return value.subSequence(this.start + start, this.start + end);
+        }
+
+        @Override
+        public String toString() {
+            return value.substring(start, end);
+        }
+    }
+
+}
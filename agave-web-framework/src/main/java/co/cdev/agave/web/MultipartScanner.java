@@ -0,0 +1,470 @@
+package co.cdev.agave.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import javax.servlet.http.HttpServletRequest;
+
+import co.cdev.agave.Part;
+
+/**
+ * Splits a multipart body into its parts while reading it through a single fixed size buffer. The
+ * delimiter that ends each part is found with a Boyer-Moore-Horspool search, so most bytes of a
+ * body are never compared at all, and the bytes of a part are handed out in runs that are as long
+ * as the buffer allows rather than line by line.
+ *
+ * <p>
+ * The buffer starts with a line break, which lets the first boundary be matched by the same
+ * delimiter, {@code CRLF--boundary}, that ends every other part. The preamble is therefore read
+ * like the body of a part that is thrown away.
+ * </p>
+ */
+final class MultipartScanner {
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte DASH = '-';
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final int[] shifts = new int[256];
+    private final byte[] buffer;
+
+    private int head;
+    private int tail;
+    private int scanFrom;
+    private boolean eof;
+    private boolean inBody = true;
+    private boolean finished;
+    private int partNumber;
+
+    /**
+     * @param in the multipart body
+     * @param boundary the boundary from the content type, without its leading dashes
+     * @param bufferSize the size of the buffer, which is enlarged if it could not hold at least two
+     *        delimiters
+     */
+    MultipartScanner(InputStream in, String boundary, int bufferSize) {
+        this.in = in;
+
+        byte[] boundaryBytes = boundary.getBytes(ISO_8859_1);
+        delimiter = new byte[boundaryBytes.length + 4];
+        delimiter[0] = CR;
+        delimiter[1] = LF;
+        delimiter[2] = DASH;
+        delimiter[3] = DASH;
+        System.arraycopy(boundaryBytes, 0, delimiter, 4, boundaryBytes.length);
+
+        int m = delimiter.length;
+        Arrays.fill(shifts, m);
+        for (int i = 0; i < m - 1; i++) {
+            shifts[delimiter[i] & 0xff] = m - 1 - i;
+        }
+
+        buffer = new byte[Math.max(bufferSize, m * 2)];
+        buffer[0] = CR;
+        buffer[1] = LF;
+        tail = 2;
+    }
+
+    /**
+     * Gets the boundary from a multipart content type such as
+     * {@code multipart/form-data; boundary="AaB03x"}.
+     *
+     * @return the boundary, or null if there is none
+     */
+    static String getBoundary(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+
+        int length = contentType.length();
+        int i = contentType.indexOf(';');
+
+        while (i >= 0 && i < length) {
+            i++;
+            while (i < length && contentType.charAt(i) == ' ') {
+                i++;
+            }
+
+            if (contentType.regionMatches(true, i, "boundary=", 0, 9)) {
+                i += 9;
+                if (i < length && contentType.charAt(i) == '"') {
+                    int end = contentType.indexOf('"', i + 1);
+                    return end < 0 ? null : contentType.substring(i + 1, end);
+                }
+                int end = contentType.indexOf(';', i);
+                String boundary = contentType.substring(i, end < 0 ? length : end).trim();
+                return boundary.length() == 0 ? null : boundary;
+            }
+
+            i = contentType.indexOf(';', i);
+        }
+
+        return null;
+    }
+
+    /**
+     * Skips whatever remains of the current part, or of the preamble, and moves to the next part.
+     *
+     * @return false once the closing boundary has been read
+     * @throws IOException if the body ends before the closing boundary
+     */
+    boolean nextPart() throws IOException {
+        if (finished) {
+            return false;
+        }
+
+        if (inBody) {
+            while (skipBody() > 0) {
+            }
+        }
+
+        require(2);
+
+        if (buffer[head] == DASH && buffer[head + 1] == DASH) {
+            head += 2;
+            finished = true;
+            return false;
+        }
+
+        // transport padding may follow a boundary
+        while (buffer[head] == ' ' || buffer[head] == '\t') {
+            head++;
+            require(1);
+        }
+
+        if (buffer[head] == CR) {
+            head++;
+            require(1);
+        }
+
+        if (buffer[head] != LF) {
+            throw new IOException("Expected a line break after a multipart boundary");
+        }
+
+        head++;
+        partNumber++;
+        return true;
+    }
+
+    /**
+     * Reads the headers of the current part into the part. The name and filename come from the
+     * {@code Content-Disposition} header, the content type from the {@code Content-Type} header,
+     * and every other header is added to the part.
+     */
+    void readHeaders(Part<?> part, Charset charset) throws IOException {
+        while (true) {
+            int lineEnd = findLineEnd();
+            int end = lineEnd > head && buffer[lineEnd - 1] == CR ? lineEnd - 1 : lineEnd;
+
+            if (end == head) {
+                head = lineEnd + 1;
+                break;
+            }
+
+            int colon = head;
+            while (colon < end && buffer[colon] != ':') {
+                colon++;
+            }
+
+            if (colon < end) {
+                String name = new String(buffer, head, colon - head, charset).trim();
+                String value = new String(buffer, colon + 1, end - colon - 1, charset).trim();
+
+                if ("Content-Disposition".equalsIgnoreCase(name)) {
+                    readDisposition(part, value);
+                } else if ("Content-Type".equalsIgnoreCase(name)) {
+                    part.setContentType(value);
+                } else {
+                    part.addHeader(name, value);
+                }
+            }
+
+            head = lineEnd + 1;
+        }
+
+        inBody = true;
+        scanFrom = head;
+    }
+
+    /**
+     * @return a stream over the body of the current part, which ends at the part's delimiter and
+     *         cannot be read once the scanner has moved on to another part
+     */
+    PartInputStream getPartInputStream() {
+        return new PartInputStream(partNumber);
+    }
+
+    /**
+     * @return the character encoding of the request, or ISO-8859-1 if it does not specify one
+     */
+    static Charset getCharset(HttpServletRequest request) {
+        return request.getCharacterEncoding() == null ? ISO_8859_1 : Charset.forName(request.getCharacterEncoding());
+    }
+
+    /**
+     * Reads the parameters of a {@code Content-Disposition} header, which look like
+     * {@code form-data; name="file"; filename="vim.gif"}.
+     */
+    private static void readDisposition(Part<?> part, String value) {
+        int length = value.length();
+        int i = value.indexOf(';');
+
+        while (i >= 0 && i < length) {
+            i++;
+            while (i < length && value.charAt(i) == ' ') {
+                i++;
+            }
+
+            int equals = value.indexOf('=', i);
+            if (equals < 0) {
+                return;
+            }
+
+            String parameterName = value.substring(i, equals).trim();
+            String parameterValue;
+            i = equals + 1;
+
+            if (i < length && value.charAt(i) == '"') {
+                StringBuilder quoted = new StringBuilder();
+                for (i++; i < length && value.charAt(i) != '"'; i++) {
+                    char c = value.charAt(i);
+                    if (c == '\\' && i + 1 < length && (value.charAt(i + 1) == '"' || value.charAt(i + 1) == '\\')) {
+                        c = value.charAt(++i);
+                    }
+                    quoted.append(c);
+                }
+                parameterValue = quoted.toString();
+                i = value.indexOf(';', i);
+            } else {
+                int end = value.indexOf(';', i);
+                parameterValue = value.substring(i, end < 0 ? length : end).trim();
+                i = end;
+            }
+
+            if ("name".equalsIgnoreCase(parameterName)) {
+                part.setName(parameterValue);
+            } else if ("filename".equalsIgnoreCase(parameterName)) {
+                part.setFilename(parameterValue);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes at the head of the buffer that belong to the body of the current part,
+     * reading more of the input when none of the buffered bytes can be handed out yet.
+     *
+     * @return the number of body bytes, or 0 when the head of the buffer is at the delimiter
+     */
+    private int bodyBytes() throws IOException {
+        while (true) {
+            int index = findDelimiter();
+
+            if (index >= 0) {
+                return index - head;
+            }
+
+            if (scanFrom > head) {
+                return scanFrom - head;
+            }
+
+            if (eof) {
+                throw new IOException("The multipart body ended before its closing boundary");
+            }
+
+            fill();
+        }
+    }
+
+    /**
+     * @return the number of bytes that were skipped, or 0 once the delimiter has been consumed
+     */
+    private int skipBody() throws IOException {
+        int count = bodyBytes();
+
+        if (count == 0) {
+            endBody();
+        } else {
+            head += count;
+        }
+
+        return count;
+    }
+
+    private void endBody() {
+        head += delimiter.length;
+        inBody = false;
+    }
+
+    /**
+     * Searches the unsearched part of the buffer for the delimiter. Every position before
+     * {@code scanFrom} is known not to start a delimiter, so no byte is searched twice.
+     *
+     * @return the index of the delimiter, or -1 if it is not in the buffer
+     */
+    private int findDelimiter() {
+        int m = delimiter.length;
+        int last = m - 1;
+        int i = Math.max(head, scanFrom);
+
+        while (i <= tail - m) {
+            int j = last;
+            while (buffer[i + j] == delimiter[j]) {
+                if (j == 0) {
+                    scanFrom = i;
+                    return i;
+                }
+                j--;
+            }
+            i += shifts[buffer[i + last] & 0xff];
+        }
+
+        scanFrom = i;
+        return -1;
+    }
+
+    /**
+     * @return the index of the next line feed, reading more of the input as needed
+     */
+    private int findLineEnd() throws IOException {
+        int i = head;
+
+        while (true) {
+            for (; i < tail; i++) {
+                if (buffer[i] == LF) {
+                    return i;
+                }
+            }
+
+            if (eof) {
+                throw new IOException("The multipart body ended within the headers of a part");
+            }
+
+            if (head == 0 && tail == buffer.length) {
+                throw new IOException("A header of a multipart part is longer than " + buffer.length + " bytes");
+            }
+
+            i -= head;
+            fill();
+        }
+    }
+
+    private void require(int count) throws IOException {
+        while (tail - head < count) {
+            if (eof) {
+                throw new IOException("The multipart body ended before its closing boundary");
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the start of the buffer and reads as much as fits after them.
+     */
+    private void fill() throws IOException {
+        if (head > 0) {
+            System.arraycopy(buffer, head, buffer, 0, tail - head);
+            tail -= head;
+            scanFrom = Math.max(scanFrom - head, 0);
+            head = 0;
+        }
+
+        int count = in.read(buffer, tail, buffer.length - tail);
+
+        if (count < 0) {
+            eof = true;
+        } else {
+            tail += count;
+        }
+    }
+
+    /**
+     * The body of the current part. Closing the stream does not close the request.
+     */
+    final class PartInputStream extends InputStream {
+
+        private final int number;
+
+        PartInputStream(int number) {
+            this.number = number;
+        }
+
+        private boolean isReadable() {
+            return inBody && number == partNumber;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!isReadable()) {
+                return -1;
+            }
+
+            if (bodyBytes() == 0) {
+                endBody();
+                return -1;
+            }
+
+            return buffer[head++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!isReadable()) {
+                return -1;
+            }
+
+            int count = bodyBytes();
+
+            if (count == 0) {
+                endBody();
+                return -1;
+            }
+
+            count = Math.min(count, len);
+            System.arraycopy(buffer, head, b, off, count);
+            head += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return isReadable() ? Math.max(scanFrom - head, 0) : 0;
+        }
+
+        /**
+         * Writes the rest of the body to a stream straight from the scanner's buffer.
+         *
+         * @return the number of bytes that were written
+         */
+        long copyTo(OutputStream out) throws IOException {
+            long total = 0;
+
+            while (isReadable()) {
+                int count = bodyBytes();
+
+                if (count == 0) {
+                    endBody();
+                } else {
+                    out.write(buffer, head, count);
+                    head += count;
+                    total += count;
+                }
+            }
+
+            return total;
+        }
+    }
+
+}
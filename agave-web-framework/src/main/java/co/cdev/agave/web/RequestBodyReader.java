@@ -0,0 +1,33 @@
+package co.cdev.agave.web;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Reads the body of requests that have a particular content type into request parameters, so that
+ * forms and {@code @Param} arguments are populated from the body in the same way that they are
+ * populated from a query string. Readers are registered with the {@link AgaveFilter} through its
+ * {@code requestBodyReaders} init parameter, which is a comma separated list of class names.
+ */
+public interface RequestBodyReader {
+
+    /**
+     * @return true if this reader understands the body of the request, which is usually decided by
+     *         its content type
+     */
+    public boolean canRead(HttpServletRequest request);
+
+    /**
+     * Reads the whole body of a request.
+     *
+     * @return the parameters in the body, in the order that they were read, where the values of a
+     *         parameter that was read from an array are given as {@link ArrayValues}
+     * @throws RequestEntityTooLargeException if the body is larger than the reader accepts
+     * @throws FormException if the body is malformed
+     */
+    public Map<String, List<String>> read(HttpServletRequest request) throws IOException, AgaveWebException;
+
+}
@@ -0,0 +1,15 @@
+package co.cdev.agave.web;
+
+/**
+ * Thrown when a request body is larger than the framework is configured to accept. The
+ * {@link AgaveFilter} answers such requests with a {@code 413 Request Entity Too Large} status.
+ */
+public class RequestEntityTooLargeException extends AgaveWebException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RequestEntityTooLargeException(String message) {
+        super(message);
+    }
+
+}
@@ -1,52 +1,63 @@
 package co.cdev.agave.web;
 
-import java.util.Map;
-
 import javax.servlet.http.HttpServletRequest;
 
-import co.cdev.agave.HttpMethod;
 import co.cdev.agave.configuration.Config;
 import co.cdev.agave.configuration.HandlerDescriptor;
-import co.cdev.agave.configuration.ParamDescriptor;
 
+/**
+ * Matches requests against a {@link RouteTable} that is read through a single volatile reference.
+ * Once the first table has been built, matching takes no locks, and a new config can be published
+ * with {@link #setConfig(Config)} while requests are being matched; requests that have already
+ * read the old table finish matching against it.
+ */
 public final class RequestMatcherImpl implements RequestMatcher {
 
-    private Config config;
-    
+    private final Config initialConfig;
+    private volatile RouteTable routeTable;
+
+    /**
+     * @param config the config whose route table is built when the first request is matched
+     */
     public RequestMatcherImpl(Config config) {
-        this.config = config;
+        initialConfig = config;
     }
 
     @Override
     public HandlerDescriptor findMatch(HttpServletRequest request) {
-        for (HandlerDescriptor handlerDescriptor : config) {
-            URIPatternMatcher patternMatcher = new URIPatternMatcherImpl(handlerDescriptor.getURIPattern());
-            boolean matches = request != null && request.getMethod() != null && patternMatcher.matches(request);
-            
-            if (matches) {
-                HttpMethod method = HttpMethod.valueOf(request.getMethod().toUpperCase());
-                
-                matches &= handlerDescriptor.getHttpMethod().matches(method);
-                
-                if (!handlerDescriptor.getParamDescriptors().isEmpty()) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> requestParams = request.getParameterMap();
-                    
-                    URIParamExtractor extractor = new URIParamExtractorImpl(handlerDescriptor.getURIPattern());
-                    Map<String, String> uriParams = extractor.extractParams(request);
-                    
-                    for (ParamDescriptor paramDescriptor : handlerDescriptor.getParamDescriptors()) {
-                        String paramName = paramDescriptor.getName();
-                        matches &= requestParams.containsKey(paramName) || uriParams.containsKey(paramName);
-                    }
+        return getRouteTable().findMatch(request);
+    }
+
+    /**
+     * Builds a route table from a config on the calling thread and then publishes it, so the cost
+     * of building it is never paid by a request.
+     */
+    public synchronized void setConfig(Config config) {
+        routeTable = new RouteTable(config);
+    }
+
+    /**
+     * @return the config of the route table that requests are currently matched against
+     */
+    public Config getConfig() {
+        RouteTable table = routeTable;
+        return table == null ? initialConfig : table.getConfig();
+    }
+
+    RouteTable getRouteTable() {
+        RouteTable table = routeTable;
+
+        if (table == null) {
+            synchronized (this) {
+                table = routeTable;
+
+                if (table == null) {
+                    table = routeTable = new RouteTable(initialConfig);
                 }
             }
-            
-            if (matches) {
-                return handlerDescriptor;
-            }
         }
-        return null;
+
+        return table;
     }
-    
+
 }
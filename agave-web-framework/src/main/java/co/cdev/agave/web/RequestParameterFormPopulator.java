@@ -28,7 +28,9 @@ package co.cdev.agave.web;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -37,6 +39,8 @@ import javax.servlet.http.HttpServletRequest;
  */
 public class RequestParameterFormPopulator extends AbstractFormPopulator {
 
+    private final Set<String> arrayParameterNames = new HashSet<String>();
+
     public RequestParameterFormPopulator(HttpServletRequest request) {
         super(request.getLocale());
 
@@ -50,6 +54,18 @@ public class RequestParameterFormPopulator extends AbstractFormPopulator {
                 parameterValues.addAll(Arrays.asList(request.getParameterValues(parameterName)));
             }
             params.put(parameterName, parameterValues);
+            if (BodyParameterRequest.isArray(request, parameterName)) {
+                arrayParameterNames.add(parameterName);
+            }
         }
     }
+
+    /**
+     * Parameters that were read from an array in the request body are bound as several values,
+     * even when there is only one.
+     */
+    @Override
+    protected boolean isMultiValued(String parameterName, List<Object> parameterValues) {
+        return arrayParameterNames.contains(parameterName) || super.isMultiValued(parameterName, parameterValues);
+    }
 }
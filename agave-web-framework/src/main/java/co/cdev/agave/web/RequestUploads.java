@@ -0,0 +1,235 @@
+package co.cdev.agave.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import co.cdev.agave.Part;
+
+/**
+ * Tracks the temporary files that the multipart parsers create while the {@link AgaveFilter}
+ * handles a request. When the request ends the files are deleted, unless the handler claimed them
+ * with {@link #claim(File)} to keep them past the request. Files in a {@link ContentStore} are
+ * tracked in the same way, except that the request's reference to them is released rather than
+ * the files being deleted. Uploads that are kept in memory have their pooled buffers returned
+ * to the pool, and the bytes that a request reserved against the in flight limit of its
+ * {@link UploadLimits} are released, when the request ends.
+ *
+ * <p>
+ * Parsers that are used outside of a request that the filter handles create plain temporary files
+ * that are deleted when the JVM exits.
+ * </p>
+ *
+ * <p>
+ * A request that is forwarded to or includes another request that the filter handles tracks the
+ * uploads of each separately. The inner request's uploads are released when it ends, and the outer
+ * request's uploads are tracked again until it ends in turn.
+ * </p>
+ */
+public final class RequestUploads {
+
+    private static final ThreadLocal<RequestUploads> CURRENT = new ThreadLocal<RequestUploads>();
+
+    private static final String DEFAULT_SUFFIX = ".tmp";
+
+    private final UploadDirectory directory;
+    private final RequestUploads outer;
+    private final List<File> files = new ArrayList<File>(2);
+    private List<StoredFile> storedFiles;
+    private List<SpooledContents> inMemoryContents;
+    private List<Reservation> reservations;
+
+    private RequestUploads(UploadDirectory directory, RequestUploads outer) {
+        this.directory = directory;
+        this.outer = outer;
+    }
+
+    /**
+     * Starts tracking the uploads of the request that the current thread is handling, setting
+     * aside those of any request that it is nested in.
+     */
+    static RequestUploads begin(UploadDirectory directory) {
+        RequestUploads uploads = new RequestUploads(directory, CURRENT.get());
+        CURRENT.set(uploads);
+        return uploads;
+    }
+
+    /**
+     * Deletes the files of the request that were not claimed, and goes back to tracking the
+     * uploads of the request that it was nested in, if any.
+     */
+    void end() {
+        if (outer == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(outer);
+        }
+
+        for (File file : files) {
+            directory.release(file, true);
+        }
+
+        files.clear();
+
+        if (storedFiles != null) {
+            for (StoredFile storedFile : storedFiles) {
+                storedFile.store.release(storedFile.file);
+            }
+
+            storedFiles = null;
+        }
+
+        if (inMemoryContents != null) {
+            for (SpooledContents contents : inMemoryContents) {
+                contents.release();
+            }
+
+            inMemoryContents = null;
+        }
+
+        if (reservations != null) {
+            for (Reservation reservation : reservations) {
+                reservation.limits.release(reservation.size);
+            }
+
+            reservations = null;
+        }
+    }
+
+    /**
+     * Releases a reference that was taken to a file in a content store when the current request
+     * ends, unless the file is claimed. Outside of a request the caller keeps the reference.
+     */
+    static void track(ContentStore store, File file) {
+        RequestUploads uploads = CURRENT.get();
+
+        if (uploads != null) {
+            if (uploads.storedFiles == null) {
+                uploads.storedFiles = new ArrayList<StoredFile>(2);
+            }
+            uploads.storedFiles.add(new StoredFile(store, file));
+        }
+    }
+
+    /**
+     * Returns the pooled buffers of contents that are kept in memory to their pool when the
+     * current request ends. Outside of a request the buffers are left to the garbage collector.
+     */
+    static void track(SpooledContents contents) {
+        RequestUploads uploads = CURRENT.get();
+
+        if (uploads != null) {
+            if (uploads.inMemoryContents == null) {
+                uploads.inMemoryContents = new ArrayList<SpooledContents>(2);
+            }
+            uploads.inMemoryContents.add(contents);
+        }
+    }
+
+    /**
+     * Releases bytes that were reserved against the in flight limit when the current request ends.
+     *
+     * @return false outside of a request, where the caller releases them
+     */
+    static boolean track(UploadLimits limits, long size) {
+        RequestUploads uploads = CURRENT.get();
+
+        if (uploads == null) {
+            return false;
+        }
+
+        if (uploads.reservations == null) {
+            uploads.reservations = new ArrayList<Reservation>(1);
+        }
+        uploads.reservations.add(new Reservation(limits, size));
+        return true;
+    }
+
+    /**
+     * Creates a temporary file for the contents of a part, which is named after the uploaded file.
+     */
+    static File createTemporaryFile(Part<?> part) throws IOException {
+        String filename = part.getFilename();
+        int extension = filename.lastIndexOf('.');
+
+        String prefix = part.getName();
+        String suffix = DEFAULT_SUFFIX;
+
+        if (extension > 0) {
+            prefix = filename.substring(0, extension);
+            suffix = filename.substring(extension);
+        }
+
+        if (prefix.length() < 3) {
+            prefix += "___".substring(prefix.length());
+        }
+
+        RequestUploads uploads = CURRENT.get();
+
+        if (uploads == null) {
+            File temporaryFile = File.createTempFile(prefix, suffix);
+            temporaryFile.deleteOnExit();
+            return temporaryFile;
+        }
+
+        File temporaryFile = uploads.directory.createFile(prefix, suffix);
+        uploads.files.add(temporaryFile);
+        return temporaryFile;
+    }
+
+    /**
+     * Keeps an uploaded file from being deleted when the current request ends. A claimed file that
+     * is left in the upload directory is eventually reaped, so it should be moved elsewhere. A
+     * claimed file in a content store keeps the reference that its upload took, which the
+     * application releases through the store.
+     *
+     * @return false if the file is not an upload of the current request
+     */
+    public static boolean claim(File file) {
+        RequestUploads uploads = CURRENT.get();
+
+        if (uploads == null) {
+            return false;
+        }
+
+        if (uploads.files.remove(file)) {
+            uploads.directory.release(file, false);
+            return true;
+        }
+
+        if (uploads.storedFiles != null) {
+            for (int i = 0; i < uploads.storedFiles.size(); i++) {
+                if (uploads.storedFiles.get(i).file.equals(file)) {
+                    uploads.storedFiles.remove(i);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static class StoredFile {
+
+        final ContentStore store;
+        final File file;
+
+        StoredFile(ContentStore store, File file) {
+            this.store = store;
+            this.file = file;
+        }
+    }
+
+    private static class Reservation {
+
+        final UploadLimits limits;
+        final long size;
+
+        Reservation(UploadLimits limits, long size) {
+            this.limits = limits;
+            this.size = size;
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package co.cdev.agave.web;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import co.cdev.agave.HttpMethod;
+import co.cdev.agave.configuration.Config;
+import co.cdev.agave.configuration.HandlerDescriptor;
+import co.cdev.agave.configuration.ParamDescriptor;
+
+/**
+ * An immutable snapshot of the routes of a config, in the order in which requests are matched
+ * against them. The descriptors are copied out of the config along with a matcher for each URI
+ * pattern, so matching a request neither iterates the config nor creates any matchers, and later
+ * changes to the config are not seen until a new table is built from it.
+ */
+final class RouteTable {
+
+    private final Config config;
+    private final HandlerDescriptor[] handlerDescriptors;
+    private final URIPatternMatcher[] patternMatchers;
+
+    RouteTable(Config config) {
+        this.config = config;
+
+        List<HandlerDescriptor> handlerDescriptorList = new ArrayList<HandlerDescriptor>();
+
+        for (HandlerDescriptor handlerDescriptor : config) {
+            handlerDescriptorList.add(handlerDescriptor);
+        }
+
+        handlerDescriptors = handlerDescriptorList.toArray(new HandlerDescriptor[handlerDescriptorList.size()]);
+        patternMatchers = new URIPatternMatcher[handlerDescriptors.length];
+
+        for (int i = 0; i < handlerDescriptors.length; i++) {
+            patternMatchers[i] = new URIPatternMatcherImpl(handlerDescriptors[i].getURIPattern());
+        }
+    }
+
+    Config getConfig() {
+        return config;
+    }
+
+    HandlerDescriptor findMatch(HttpServletRequest request) {
+        if (request == null || request.getMethod() == null) {
+            return null;
+        }
+
+        for (int i = 0; i < handlerDescriptors.length; i++) {
+            HandlerDescriptor handlerDescriptor = handlerDescriptors[i];
+            boolean matches = patternMatchers[i].matches(request);
+
+            if (matches) {
+                HttpMethod method = HttpMethod.valueOf(request.getMethod().toUpperCase());
+
+                matches &= handlerDescriptor.getHttpMethod().matches(method);
+
+                if (!handlerDescriptor.getParamDescriptors().isEmpty()) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> requestParams = request.getParameterMap();
+
+                    URIParamExtractor extractor = new URIParamExtractorImpl(handlerDescriptor.getURIPattern());
+                    Map<String, String> uriParams = extractor.extractParams(request);
+
+                    for (ParamDescriptor paramDescriptor : handlerDescriptor.getParamDescriptors()) {
+                        String paramName = paramDescriptor.getName();
+                        matches &= requestParams.containsKey(paramName) || uriParams.containsKey(paramName);
+                    }
+                }
+            }
+
+            if (matches) {
+                return handlerDescriptor;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,62 @@
+package co.cdev.agave.web;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.http.HttpSession;
+
+import co.cdev.agave.configuration.RoutingContext;
+
+/**
+ * Stores workflow handlers and forms as attributes of the {@code HttpSession} named
+ * {@code workflowName + "-handler"} and {@code workflowName + "-form"}. The attributes are only
+ * set when the workflow is initiated; later phases mutate the same instances in place.
+ */
+public class SessionWorkflowStore implements WorkflowStore {
+
+    private static final String WORKFLOW_HANDLER_SUFFIX = "-handler";
+    private static final String WORKFLOW_FORM_SUFFIX = "-form";
+
+    @Override
+    public void initialize(FilterConfig filterConfig) {
+        // do nothing
+    }
+
+    @Override
+    public WorkflowState load(RoutingContext routingContext, String workflowName) {
+        HttpSession session = routingContext.getSession();
+
+        Object handlerInstance = session.getAttribute(workflowName + WORKFLOW_HANDLER_SUFFIX);
+        Object formInstance = session.getAttribute(workflowName + WORKFLOW_FORM_SUFFIX);
+
+        if (handlerInstance == null && formInstance == null) {
+            return null;
+        }
+
+        return new WorkflowState(handlerInstance, formInstance);
+    }
+
+    @Override
+    public void save(RoutingContext routingContext, String workflowName, WorkflowState workflowState) {
+        if (workflowState.isInitiated()) {
+            HttpSession session = routingContext.getSession();
+
+            if (workflowState.getFormInstance() != null) {
+                session.setAttribute(workflowName + WORKFLOW_FORM_SUFFIX, workflowState.getFormInstance());
+            }
+
+            session.setAttribute(workflowName + WORKFLOW_HANDLER_SUFFIX, workflowState.getHandlerInstance());
+        }
+    }
+
+    @Override
+    public void remove(RoutingContext routingContext, String workflowName) {
+        HttpSession session = routingContext.getSession();
+        session.removeAttribute(workflowName + WORKFLOW_HANDLER_SUFFIX);
+        session.removeAttribute(workflowName + WORKFLOW_FORM_SUFFIX);
+    }
+
+    @Override
+    public void destroy() {
+        // do nothing
+    }
+
+}
@@ -0,0 +1,160 @@
+package co.cdev.agave.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The contents of an uploaded file that were either kept in memory or written to a temporary file
+ * by a {@link HybridMultipartParser}, depending on how large they were. Contents that are kept in
+ * memory hold pooled buffers, which are returned to their pool when the request that uploaded them
+ * ends, so they can not be read after that.
+ */
+public final class SpooledContents {
+
+    private final BufferPool bufferPool;
+    private final File file;
+    private final long size;
+    private byte[][] chunks;
+
+    /**
+     * @param chunks the equally sized arrays that hold the contents in order, which are taken over
+     *        rather than copied; the last of them may be partly filled
+     * @param size the number of bytes in the contents
+     * @param bufferPool the pool that the arrays are returned to when the contents are released
+     */
+    SpooledContents(byte[][] chunks, int size, BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        this.file = null;
+        this.size = size;
+        this.chunks = chunks;
+    }
+
+    SpooledContents(File file, long size) {
+        this.bufferPool = null;
+        this.file = file;
+        this.size = size;
+        this.chunks = null;
+    }
+
+    /**
+     * @return the number of bytes in the contents
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if the contents are held in memory rather than in a file
+     */
+    public boolean isInMemory() {
+        return file == null;
+    }
+
+    /**
+     * @return the temporary file that holds the contents, or null if they are held in memory
+     */
+    public File getFile() {
+        return file;
+    }
+
+    public InputStream getInputStream() throws IOException {
+        if (file != null) {
+            return new FileInputStream(file);
+        }
+
+        checkNotReleased();
+        List<InputStream> streams = new ArrayList<InputStream>(chunks.length);
+        int offset = 0;
+
+        for (byte[] chunk : chunks) {
+            int count = (int) Math.min(chunk.length, size - offset);
+            streams.add(new ByteArrayInputStream(chunk, 0, count));
+            offset += count;
+        }
+
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+
+    /**
+     * @return a copy of the contents, which are read from the temporary file if there is one
+     */
+    public byte[] toByteArray() throws IOException {
+        if (file == null) {
+            checkNotReleased();
+            byte[] array = new byte[(int) size];
+            int offset = 0;
+
+            for (byte[] chunk : chunks) {
+                int count = Math.min(chunk.length, array.length - offset);
+                System.arraycopy(chunk, 0, array, offset, count);
+                offset += count;
+            }
+
+            return array;
+        }
+
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The contents of " + file + " are too large for an array");
+        }
+
+        byte[] array = new byte[(int) size];
+        InputStream in = new FileInputStream(file);
+
+        try {
+            int offset = 0;
+            while (offset < array.length) {
+                int count = in.read(array, offset, array.length - offset);
+                if (count < 0) {
+                    throw new IOException("The contents of " + file + " ended after " + offset + " bytes");
+                }
+                offset += count;
+            }
+        } finally {
+            in.close();
+        }
+
+        return array;
+    }
+
+    private void checkNotReleased() {
+        if (chunks == null) {
+            throw new IllegalStateException("The contents were released when the request that uploaded them ended");
+        }
+    }
+
+    /**
+     * Returns the buffers that hold the contents to their pool, after which the contents can no
+     * longer be read.
+     */
+    void release() {
+        if (chunks != null) {
+            for (byte[] chunk : chunks) {
+                bufferPool.release(chunk);
+            }
+
+            chunks = null;
+        }
+    }
+
+    /**
+     * Deletes the temporary file, if there is one.
+     */
+    public void delete() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file == null ? "SpooledContents[" + size + " bytes in memory]" : "SpooledContents[" + file + "]";
+    }
+
+}
@@ -0,0 +1,207 @@
+package co.cdev.agave.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The directory that the temporary files of uploads are written to. Files are live from the time
+ * they are created until the request that created them ends, when {@link RequestUploads} deletes
+ * them unless a handler claimed them.
+ *
+ * <p>
+ * Files that are not live are orphans, such as files that were claimed but never moved or files
+ * that a previous run of the application left behind. A reaper can be started to delete orphans
+ * once they are older than a maximum age, so claimed files that are meant to be kept should be
+ * moved out of the directory. The reaper may instead be started when the first file is created,
+ * so that applications that never receive uploads do not run it.
+ * </p>
+ */
+public class UploadDirectory {
+
+    private static final Logger LOGGER = Logger.getLogger(UploadDirectory.class.getName());
+
+    public static final long DEFAULT_ORPHAN_AGE = TimeUnit.HOURS.toMillis(1);
+
+    private final File directory;
+    private final long orphanAge;
+    private final ConcurrentHashMap<File, Boolean> liveFiles = new ConcurrentHashMap<File, Boolean>();
+    private ScheduledExecutorService reaper;
+    private volatile long pendingReaperInterval;
+    private TimeUnit pendingReaperUnit;
+
+    public UploadDirectory(File directory) throws IOException {
+        this(directory, DEFAULT_ORPHAN_AGE);
+    }
+
+    /**
+     * @param directory the directory, which is created if it does not exist
+     * @param orphanAge the number of milliseconds after which a file that is not live is reaped
+     * @throws IOException if the directory cannot be created
+     */
+    public UploadDirectory(File directory, long orphanAge) throws IOException {
+        directory.mkdirs();
+
+        if (!directory.isDirectory()) {
+            throw new IOException(directory.getAbsolutePath() + " is not a directory");
+        }
+
+        this.directory = directory;
+        this.orphanAge = orphanAge;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getOrphanAge() {
+        return orphanAge;
+    }
+
+    /**
+     * @return the number of files that belong to requests that are in progress
+     */
+    public int getLiveFileCount() {
+        return liveFiles.size();
+    }
+
+    /**
+     * @return the number of bytes in the files that belong to requests that are in progress
+     */
+    public long getLiveByteCount() {
+        long byteCount = 0;
+
+        for (File file : liveFiles.keySet()) {
+            byteCount += file.length();
+        }
+
+        return byteCount;
+    }
+
+    File createFile(String prefix, String suffix) throws IOException {
+        if (pendingReaperInterval > 0) {
+            startPendingReaper();
+        }
+
+        File file = File.createTempFile(prefix, suffix, directory);
+        liveFiles.put(file, Boolean.TRUE);
+        return file;
+    }
+
+    /**
+     * Stops tracking a live file, deleting it unless it was claimed.
+     */
+    void release(File file, boolean delete) {
+        liveFiles.remove(file);
+
+        if (delete && file.exists() && !file.delete()) {
+            LOGGER.log(Level.WARNING, "Unable to delete {0}", file);
+        }
+    }
+
+    /**
+     * Deletes the files in the directory that are not live and that were last modified longer ago
+     * than the orphan age.
+     *
+     * @return the number of files that were deleted
+     */
+    public int reap() {
+        File[] files = directory.listFiles();
+
+        if (files == null) {
+            return 0;
+        }
+
+        long cutoff = System.currentTimeMillis() - orphanAge;
+        int reapedCount = 0;
+
+        for (File file : files) {
+            if (file.isFile() && !liveFiles.containsKey(file) && file.lastModified() < cutoff && file.delete()) {
+                reapedCount++;
+            }
+        }
+
+        if (reapedCount > 0) {
+            LOGGER.log(Level.INFO, "Reaped {0} orphaned uploads from {1}", new Object[] {reapedCount, directory});
+        }
+
+        return reapedCount;
+    }
+
+    /**
+     * Reaps orphans on a daemon thread right away and then after every interval.
+     */
+    public synchronized void startReaper(long interval, TimeUnit unit) {
+        pendingReaperInterval = 0;
+        pendingReaperUnit = null;
+
+        if (reaper != null) {
+            return;
+        }
+
+        reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "Upload Reaper");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        reaper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reap();
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Unable to reap orphaned uploads", ex);
+                }
+            }
+        }, 0, interval, unit);
+    }
+
+    /**
+     * Starts the reaper as {@link #startReaper(long, TimeUnit)} does once the first file is created
+     * in the directory, rather than right away.
+     */
+    public synchronized void startReaperOnFirstFile(long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The reaper interval must be positive");
+        }
+
+        if (reaper == null) {
+            pendingReaperUnit = unit;
+            pendingReaperInterval = interval;
+        }
+    }
+
+    private synchronized void startPendingReaper() {
+        if (pendingReaperInterval > 0) {
+            startReaper(pendingReaperInterval, pendingReaperUnit);
+        }
+    }
+
+    /**
+     * @return true if orphans are being reaped on a daemon thread
+     */
+    public synchronized boolean isReaperRunning() {
+        return reaper != null;
+    }
+
+    public synchronized void stopReaper() {
+        pendingReaperInterval = 0;
+        pendingReaperUnit = null;
+
+        if (reaper != null) {
+            reaper.shutdownNow();
+            reaper = null;
+        }
+    }
+
+}
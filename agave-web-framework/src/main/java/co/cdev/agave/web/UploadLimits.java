@@ -0,0 +1,136 @@
+package co.cdev.agave.web;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The limits that a {@link HybridMultipartParser} enforces on uploads. Parts that are no larger
+ * than the spill threshold are kept in memory and larger ones are written to temporary files. A
+ * part that is larger than the maximum part size, a plain parameter value that is larger than the
+ * maximum field size, a request body that is larger than the maximum request size, or a body that
+ * would take the number of bytes being received across every request past the maximum in flight
+ * size is rejected with a {@code 413} status. A limit of {@link #UNLIMITED} is not enforced.
+ *
+ * <p>
+ * Parameter values are always held in memory, so the maximum field size defaults to
+ * {@link #DEFAULT_MAX_FIELD_SIZE} rather than being unlimited.
+ * </p>
+ *
+ * <p>
+ * One instance is shared by every request that a filter handles, since it keeps count of the bytes
+ * that are in flight.
+ * </p>
+ */
+public class UploadLimits {
+
+    public static final long UNLIMITED = -1;
+
+    public static final int DEFAULT_SPILL_THRESHOLD = 64 * 1024;
+
+    public static final long DEFAULT_MAX_FIELD_SIZE = 1024 * 1024;
+
+    private final int spillThreshold;
+    private final long maxPartSize;
+    private final long maxFieldSize;
+    private final long maxRequestSize;
+    private final long maxInFlightSize;
+    private final AtomicLong inFlightSize = new AtomicLong();
+
+    public UploadLimits() {
+        this(DEFAULT_SPILL_THRESHOLD, UNLIMITED, UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * @param spillThreshold the number of bytes of a part that are kept in memory before it is
+     *        written to a temporary file
+     * @param maxPartSize the maximum number of bytes in the contents of an uploaded file
+     * @param maxRequestSize the maximum number of bytes in the body of a request
+     * @param maxInFlightSize the maximum number of bytes that may be received at once by every
+     *        request together
+     */
+    public UploadLimits(int spillThreshold, long maxPartSize, long maxRequestSize, long maxInFlightSize) {
+        this(spillThreshold, maxPartSize, DEFAULT_MAX_FIELD_SIZE, maxRequestSize, maxInFlightSize);
+    }
+
+    /**
+     * @param spillThreshold the number of bytes of a part that are kept in memory before it is
+     *        written to a temporary file
+     * @param maxPartSize the maximum number of bytes in the contents of an uploaded file
+     * @param maxFieldSize the maximum number of bytes in the value of a plain parameter
+     * @param maxRequestSize the maximum number of bytes in the body of a request
+     * @param maxInFlightSize the maximum number of bytes that may be received at once by every
+     *        request together
+     */
+    public UploadLimits(int spillThreshold, long maxPartSize, long maxFieldSize, long maxRequestSize,
+                        long maxInFlightSize) {
+        if (spillThreshold < 0) {
+            throw new IllegalArgumentException("The spill threshold must not be negative");
+        }
+
+        this.spillThreshold = spillThreshold;
+        this.maxPartSize = maxPartSize;
+        this.maxFieldSize = maxFieldSize;
+        this.maxRequestSize = maxRequestSize;
+        this.maxInFlightSize = maxInFlightSize;
+    }
+
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    public long getMaxPartSize() {
+        return maxPartSize;
+    }
+
+    public long getMaxFieldSize() {
+        return maxFieldSize;
+    }
+
+    public long getMaxRequestSize() {
+        return maxRequestSize;
+    }
+
+    public long getMaxInFlightSize() {
+        return maxInFlightSize;
+    }
+
+    /**
+     * @return the number of bytes of request bodies that are currently being received
+     */
+    public long getInFlightSize() {
+        return inFlightSize.get();
+    }
+
+    /**
+     * Counts bytes that are about to be received against the in flight limit.
+     *
+     * @return false, without counting the bytes, if they would exceed the limit
+     */
+    boolean reserve(long count) {
+        while (true) {
+            long current = inFlightSize.get();
+            long next = current + count;
+
+            if (maxInFlightSize != UNLIMITED && next > maxInFlightSize) {
+                return false;
+            }
+
+            if (inFlightSize.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Stops counting bytes that were reserved once they have been received.
+     */
+    void release(long count) {
+        inFlightSize.addAndGet(-count);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UploadLimits[spillThreshold=%d, maxPartSize=%d, maxFieldSize=%d, maxRequestSize=%d, "
+                + "maxInFlightSize=%d]", spillThreshold, maxPartSize, maxFieldSize, maxRequestSize, maxInFlightSize);
+    }
+
+}
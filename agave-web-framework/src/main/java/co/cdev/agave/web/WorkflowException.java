@@ -0,0 +1,26 @@
+package co.cdev.agave.web;
+
+/**
+ * Indicates that the state of a workflow could not be loaded or saved by a {@link WorkflowStore}.
+ */
+public class WorkflowException extends AgaveWebException {
+
+    private static final long serialVersionUID = 1L;
+
+    public WorkflowException() {
+        super();
+    }
+
+    public WorkflowException(String message, Throwable rootCause) {
+        super(message, rootCause);
+    }
+
+    public WorkflowException(String message) {
+        super(message);
+    }
+
+    public WorkflowException(Throwable rootCause) {
+        super(rootCause);
+    }
+
+}
@@ -0,0 +1,46 @@
+package co.cdev.agave.web;
+
+import java.io.Serializable;
+
+/**
+ * The handler and form instances that are carried between the phases of a workflow. Both are
+ * kept together so that a {@link WorkflowStore} can persist them as a single unit, which
+ * preserves any references that the handler holds to its form.
+ */
+public class WorkflowState implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object handlerInstance;
+    private final Object formInstance;
+    private transient boolean initiated;
+
+    public WorkflowState(Object handlerInstance, Object formInstance) {
+        this(handlerInstance, formInstance, false);
+    }
+
+    WorkflowState(Object handlerInstance, Object formInstance, boolean initiated) {
+        this.handlerInstance = handlerInstance;
+        this.formInstance = formInstance;
+        this.initiated = initiated;
+    }
+
+    public Object getHandlerInstance() {
+        return handlerInstance;
+    }
+
+    public Object getFormInstance() {
+        return formInstance;
+    }
+
+    /**
+     * Indicates whether this state was created by the phase that initiated the workflow, as
+     * opposed to having been loaded from a {@link WorkflowStore} by a later phase.
+     *
+     * @return true if the workflow was initiated during the current request
+     */
+    public boolean isInitiated() {
+        return initiated;
+    }
+
+}
@@ -0,0 +1,75 @@
+package co.cdev.agave.web;
+
+import javax.servlet.FilterConfig;
+
+import co.cdev.agave.configuration.RoutingContext;
+
+/**
+ * Stores the handler and form instances of workflows between requests. The default
+ * implementation is {@link SessionWorkflowStore}, which keeps them as session attributes, but you
+ * can override it by specifying an initialization param to the {@link AgaveFilter}. An example of
+ * this is:
+ *
+ * <pre>&lt;web-app&gt;
+ * ...
+ * &lt;filter&gt;
+ *   &lt;filter-name>AgaveFilter&lt;/filter-name&gt;
+ *   &lt;filter-class>agave.AgaveFilter&lt;/filter-class&gt;
+ *   &lt;init-param&gt;
+ *     &lt;param-name&gt;workflowStore&lt;/param-name&gt;
+ *     &lt;param-value&gt;co.cdev.agave.web.MemoryWorkflowStore&lt;/param-value&gt;
+ *   &lt;/init-param&gt;
+ * &lt;/filter&gt;
+ * ...
+ * &lt;/web-app&gt;</pre>
+ */
+public interface WorkflowStore {
+
+    /**
+     * Initializes this {@code WorkflowStore}. This method is called in the
+     * {@link AgaveFilter#init(FilterConfig)} method, so implementations can read their own
+     * initialization params from the supplied filter config.
+     *
+     * @param filterConfig the config of the filter that owns this store
+     * @throws WorkflowException if the store could not be initialized
+     */
+    public void initialize(FilterConfig filterConfig) throws WorkflowException;
+
+    /**
+     * Loads the state of a workflow that was initiated by a previous request.
+     *
+     * @param routingContext the context of the current request
+     * @param workflowName the name of the workflow
+     * @return the stored state, or null if there is none or it has expired
+     * @throws WorkflowException if the stored state could not be read
+     */
+    public WorkflowState load(RoutingContext routingContext, String workflowName) throws WorkflowException;
+
+    /**
+     * Saves the state of a workflow after one of its phases has been handled. This is called
+     * for both the initiating and the resuming phases of a workflow.
+     *
+     * @param routingContext the context of the current request
+     * @param workflowName the name of the workflow
+     * @param workflowState the state to save
+     * @throws WorkflowException if the state could not be written
+     */
+    public void save(RoutingContext routingContext, String workflowName, WorkflowState workflowState)
+            throws WorkflowException;
+
+    /**
+     * Removes the state of a workflow once it has been completed.
+     *
+     * @param routingContext the context of the current request
+     * @param workflowName the name of the workflow
+     * @throws WorkflowException if the state could not be removed
+     */
+    public void remove(RoutingContext routingContext, String workflowName) throws WorkflowException;
+
+    /**
+     * Releases any resources held by this store. This is called when the {@link AgaveFilter} is
+     * destroyed.
+     */
+    public void destroy();
+
+}
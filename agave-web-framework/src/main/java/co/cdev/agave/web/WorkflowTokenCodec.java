@@ -0,0 +1,278 @@
+package co.cdev.agave.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encodes {@link WorkflowState} as a compact, URL safe token that can be handed to the client and
+ * returned on a later request. The token is laid out as:
+ *
+ * <pre>
+ * version (1 byte) | flags (1 byte) | expiry millis (8 bytes) | workflow name length (2 bytes) |
+ * workflow name (UTF-8) | payload | HMAC-SHA256 (32 bytes)</pre>
+ *
+ * where the payload is the deflated, serialized state, optionally encrypted with AES in CBC mode
+ * and prefixed with its initialization vector. The signature covers everything that precedes it
+ * and is verified before anything is deserialized, so tokens that were not issued with the same
+ * signing key are rejected outright. Since the workflow name is signed too, a token that was
+ * issued for one workflow is rejected when it is presented for another.
+ */
+public class WorkflowTokenCodec {
+
+    private static final byte VERSION = 2;
+    private static final byte ENCRYPTED = 1;
+    private static final int HEADER_LENGTH = 10;
+    private static final int IV_LENGTH = 16;
+    private static final int MAC_LENGTH = 32;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final String CIPHER_ALGORITHM = "AES/CBC/PKCS5Padding";
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final int[] INDEXES = new int[128];
+
+    static {
+        Arrays.fill(INDEXES, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            INDEXES[ALPHABET[i]] = i;
+        }
+    }
+
+    private final SecretKeySpec signingKey;
+    private final SecretKeySpec encryptionKey;
+    private final long timeToLive;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * @param signingSecret the secret that tokens are signed with
+     * @param encryptionSecret the secret that tokens are encrypted with, or null to only sign them
+     * @param timeToLive the number of milliseconds that a token remains valid after it is issued
+     */
+    public WorkflowTokenCodec(byte[] signingSecret, byte[] encryptionSecret, long timeToLive) {
+        if (signingSecret == null || signingSecret.length == 0) {
+            throw new IllegalArgumentException("A signing secret is required");
+        }
+
+        this.signingKey = new SecretKeySpec(signingSecret, MAC_ALGORITHM);
+        this.encryptionKey = encryptionSecret == null ? null : new SecretKeySpec(deriveKey(encryptionSecret), "AES");
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * @param workflowName the name of the workflow that the token is issued for
+     */
+    public String encode(String workflowName, WorkflowState workflowState) throws WorkflowException {
+        try {
+            byte[] name = workflowName.getBytes("UTF-8");
+
+            if (name.length > 0xffff) {
+                throw new WorkflowException("The workflow name is too long: " + workflowName);
+            }
+
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(new DeflaterOutputStream(payload));
+            out.writeObject(workflowState);
+            out.close();
+
+            byte[] body = payload.toByteArray();
+            byte flags = 0;
+
+            if (encryptionKey != null) {
+                byte[] iv = new byte[IV_LENGTH];
+                random.nextBytes(iv);
+
+                Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+                cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new IvParameterSpec(iv));
+                byte[] encrypted = cipher.doFinal(body);
+
+                body = new byte[IV_LENGTH + encrypted.length];
+                System.arraycopy(iv, 0, body, 0, IV_LENGTH);
+                System.arraycopy(encrypted, 0, body, IV_LENGTH, encrypted.length);
+                flags |= ENCRYPTED;
+            }
+
+            int signedLength = HEADER_LENGTH + 2 + name.length + body.length;
+            ByteBuffer token = ByteBuffer.allocate(signedLength + MAC_LENGTH);
+            token.put(VERSION);
+            token.put(flags);
+            token.putLong(System.currentTimeMillis() + timeToLive);
+            token.putShort((short) name.length);
+            token.put(name);
+            token.put(body);
+            token.put(sign(token.array(), signedLength));
+
+            return encodeBase64(token.array());
+        } catch (IOException ex) {
+            throw new WorkflowException("Unable to encode workflow state", ex);
+        } catch (GeneralSecurityException ex) {
+            throw new WorkflowException("Unable to encode workflow state", ex);
+        }
+    }
+
+    /**
+     * Decodes a token that was issued by {@link #encode(String, WorkflowState)}.
+     *
+     * @param workflowName the name of the workflow that the token is presented for
+     * @param token the token to decode
+     * @return the workflow state, or null if the token has expired
+     * @throws InvalidWorkflowTokenException if the token is malformed, its signature does not match
+     *         or it was issued for another workflow
+     * @throws WorkflowException if the state in a valid token can not be read
+     */
+    public WorkflowState decode(String workflowName, String token) throws WorkflowException {
+        byte[] bytes = decodeBase64(token);
+
+        if (bytes == null || bytes.length < HEADER_LENGTH + 2 + MAC_LENGTH || bytes[0] != VERSION) {
+            throw new InvalidWorkflowTokenException("Malformed workflow token");
+        }
+
+        try {
+            int signedLength = bytes.length - MAC_LENGTH;
+            byte[] expectedSignature = sign(bytes, signedLength);
+            int difference = 0;
+
+            for (int i = 0; i < MAC_LENGTH; i++) {
+                difference |= expectedSignature[i] ^ bytes[signedLength + i];
+            }
+
+            if (difference != 0) {
+                throw new InvalidWorkflowTokenException("Workflow token signature does not match");
+            }
+
+            ByteBuffer header = ByteBuffer.wrap(bytes, 0, signedLength);
+            header.get();
+            byte flags = header.get();
+            long expiry = header.getLong();
+            int nameLength = header.getShort() & 0xffff;
+            int bodyOffset = HEADER_LENGTH + 2 + nameLength;
+
+            if (bodyOffset > signedLength) {
+                throw new InvalidWorkflowTokenException("Malformed workflow token");
+            }
+
+            if (!workflowName.equals(new String(bytes, HEADER_LENGTH + 2, nameLength, "UTF-8"))) {
+                throw new InvalidWorkflowTokenException("Workflow token was not issued for workflow " + workflowName);
+            }
+
+            if (expiry < System.currentTimeMillis()) {
+                return null;
+            }
+
+            byte[] body = null;
+
+            if ((flags & ENCRYPTED) != 0) {
+                if (encryptionKey == null || signedLength - bodyOffset < IV_LENGTH) {
+                    throw new WorkflowException("Unable to decrypt workflow token");
+                }
+
+                Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+                cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new IvParameterSpec(bytes, bodyOffset, IV_LENGTH));
+                body = cipher.doFinal(bytes, bodyOffset + IV_LENGTH, signedLength - bodyOffset - IV_LENGTH);
+            } else {
+                body = Arrays.copyOfRange(bytes, bodyOffset, signedLength);
+            }
+
+            ObjectInputStream in = new ContextObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(body)));
+
+            try {
+                return (WorkflowState) in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            throw new WorkflowException("Unable to decode workflow token", ex);
+        } catch (ClassNotFoundException ex) {
+            throw new WorkflowException("Unable to decode workflow token", ex);
+        } catch (GeneralSecurityException ex) {
+            throw new WorkflowException("Unable to decode workflow token", ex);
+        }
+    }
+
+    private byte[] sign(byte[] bytes, int length) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(signingKey);
+        mac.update(bytes, 0, length);
+        return mac.doFinal();
+    }
+
+    private static byte[] deriveKey(byte[] secret) {
+        try {
+            return Arrays.copyOf(MessageDigest.getInstance("SHA-256").digest(secret), 16);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static String encodeBase64(byte[] bytes) {
+        StringBuilder encoded = new StringBuilder((bytes.length * 4 + 2) / 3);
+
+        for (int i = 0; i < bytes.length; i += 3) {
+            int remaining = bytes.length - i;
+            int chunk = (bytes[i] & 0xff) << 16;
+
+            if (remaining > 1) {
+                chunk |= (bytes[i + 1] & 0xff) << 8;
+            }
+            if (remaining > 2) {
+                chunk |= bytes[i + 2] & 0xff;
+            }
+
+            encoded.append(ALPHABET[(chunk >> 18) & 0x3f]);
+            encoded.append(ALPHABET[(chunk >> 12) & 0x3f]);
+
+            if (remaining > 1) {
+                encoded.append(ALPHABET[(chunk >> 6) & 0x3f]);
+            }
+            if (remaining > 2) {
+                encoded.append(ALPHABET[chunk & 0x3f]);
+            }
+        }
+
+        return encoded.toString();
+    }
+
+    static byte[] decodeBase64(String encoded) {
+        if (encoded == null || encoded.length() % 4 == 1) {
+            return null;
+        }
+
+        byte[] bytes = new byte[encoded.length() * 3 / 4];
+        int chunk = 0;
+        int bits = 0;
+        int j = 0;
+
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            int value = c < INDEXES.length ? INDEXES[c] : -1;
+
+            if (value < 0) {
+                return null;
+            }
+
+            chunk = (chunk << 6) | value;
+            bits += 6;
+
+            if (bits >= 8) {
+                bits -= 8;
+                bytes[j++] = (byte) (chunk >> bits);
+            }
+        }
+
+        return bytes;
+    }
+
+}
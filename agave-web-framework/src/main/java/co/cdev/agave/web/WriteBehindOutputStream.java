@@ -0,0 +1,229 @@
+package co.cdev.agave.web;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes to a file through a {@link FileChannel} on another thread, so that the thread which
+ * produces the bytes can go on while earlier ones are written. Bytes are collected in pooled direct
+ * buffers, and full buffers are queued for the writer. At most a fixed number of buffers are queued,
+ * after which the producer waits for the writer to catch up.
+ *
+ * <p>
+ * A failed write is reported by the next call to {@link #write(byte[], int, int)} or by
+ * {@link #close()}, which waits for every queued buffer to be written. The writer polls the queue
+ * rather than waiting on it indefinitely, so it finishes and closes the file once the stream is
+ * closed even if the producer was interrupted before it could queue the end of the stream.
+ * </p>
+ */
+final class WriteBehindOutputStream extends OutputStream {
+
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private final DirectBufferPool bufferPool;
+    private final BlockingQueue<ByteBuffer> queue;
+    private final CountDownLatch written = new CountDownLatch(1);
+    private final FileChannel channel;
+    private final boolean fsync;
+    private ByteBuffer buffer;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    /**
+     * @param maxPendingBuffers the number of full buffers that may wait to be written
+     * @param fsync whether the contents are forced to the disk before {@link #close()} returns
+     */
+    WriteBehindOutputStream(File file, Executor executor, DirectBufferPool bufferPool, int maxPendingBuffers,
+                            boolean fsync) throws IOException {
+        this.bufferPool = bufferPool;
+        this.queue = new ArrayBlockingQueue<ByteBuffer>(maxPendingBuffers + 1);
+        this.channel = new FileOutputStream(file).getChannel();
+        this.fsync = fsync;
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            channel.close();
+            throw new IOException("No writer is available for an upload: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes queued buffers until the end of the stream is queued, or until the stream is closed and
+     * nothing is left in the queue. Once a write fails the rest of the buffers are only returned to
+     * the pool.
+     */
+    private void drain() {
+        try {
+            while (true) {
+                ByteBuffer next = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (next == null) {
+                    if (closed && queue.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+
+                if (next == END) {
+                    break;
+                }
+
+                try {
+                    if (failure == null) {
+                        while (next.hasRemaining()) {
+                            channel.write(next);
+                        }
+                    }
+                } catch (IOException ex) {
+                    failure = ex;
+                } finally {
+                    bufferPool.release(next);
+                }
+            }
+
+            if (failure == null && fsync) {
+                channel.force(false);
+            }
+        } catch (IOException ex) {
+            failure = ex;
+        } catch (InterruptedException ex) {
+            failure = new InterruptedIOException("Interrupted while writing an upload");
+        } finally {
+            ByteBuffer unwritten;
+
+            while ((unwritten = queue.poll()) != null) {
+                if (unwritten != END) {
+                    bufferPool.release(unwritten);
+                }
+            }
+
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+            written.countDown();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+
+        while (len > 0) {
+            if (buffer == null) {
+                buffer = bufferPool.acquire();
+            }
+
+            int count = Math.min(len, buffer.remaining());
+            buffer.put(b, off, count);
+            off += count;
+            len -= count;
+
+            if (!buffer.hasRemaining()) {
+                enqueue();
+            }
+        }
+    }
+
+    private void enqueue() throws IOException {
+        ByteBuffer full = buffer;
+        buffer = null;
+        full.flip();
+        put(full);
+    }
+
+    /**
+     * Queues a buffer, waiting for room unless the writer has stopped. A buffer that is not queued
+     * is returned to the pool, and the end of the stream need not be queued once the writer has
+     * stopped.
+     */
+    private void put(ByteBuffer next) throws IOException {
+        boolean queued = false;
+
+        try {
+            while (!queued) {
+                if (written.getCount() == 0) {
+                    if (next == END) {
+                        return;
+                    }
+                    throw failure != null ? failure : new IOException("The writer of an upload has stopped");
+                }
+                queued = queue.offer(next, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to write an upload");
+        } finally {
+            if (!queued && next != END) {
+                bufferPool.release(next);
+            }
+        }
+    }
+
+    /**
+     * Queues the last buffer and waits until everything has been written. The writer is told that
+     * the stream is closed even if this fails, so that it always closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            if (buffer != null) {
+                if (buffer.position() > 0) {
+                    enqueue();
+                } else {
+                    bufferPool.release(buffer);
+                    buffer = null;
+                }
+            }
+        } finally {
+            closed = true;
+        }
+
+        put(END);
+
+        try {
+            written.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an upload to be written");
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+}
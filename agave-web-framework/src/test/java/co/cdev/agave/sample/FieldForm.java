@@ -0,0 +1,45 @@
+package co.cdev.agave.sample;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import co.cdev.agave.BindFields;
+import co.cdev.agave.Bindable;
+import co.cdev.agave.Converter;
+
+@BindFields
+public class FieldForm {
+
+    @Bindable
+    public String cat;
+    @Bindable
+    public int age;
+    @Bindable
+    public long visits;
+    @Bindable
+    public double weight;
+    @Bindable
+    @Converter(HelloConverter.class)
+    public String convertMe;
+    @Bindable
+    public List<String> names = new ArrayList<String>();
+    @Bindable
+    public List<Integer> numbers = new ArrayList<Integer>();
+    @Bindable
+    public Map<String, Integer> bites = new HashMap<String, Integer>();
+    @Bindable
+    public NestedObject nested = new NestedObject();
+    public String shout;
+    public boolean admin;
+    
+    public void setShout(String shout) {
+        this.shout = shout.toUpperCase();
+    }
+    
+    public void setSilent(String silent) {
+        this.shout = silent.toLowerCase();
+    }
+    
+}
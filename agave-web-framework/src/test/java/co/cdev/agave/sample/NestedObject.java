@@ -5,15 +5,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import co.cdev.agave.Bindable;
 import co.cdev.agave.Converter;
 
 public class NestedObject {
 
+    @Bindable
     private String cat = "";
     private Integer age;
     private double weight;
     private String convertMe;
     private List<String> names = new ArrayList<String>();
+    @Bindable
     private List<String> nickNames = new ArrayList<String>();
     private Map<String, String> moodIndicators = new HashMap<String, String>();
     private Map<String, Integer> bites = new HashMap<String, Integer>();
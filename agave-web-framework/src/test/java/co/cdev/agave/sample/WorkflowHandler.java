@@ -64,6 +64,14 @@ public class WorkflowHandler {
         step++;
     }
     
+    @InitiatesWorkflow("failingWizard")
+    @Route("/failingWizard/step1")
+    public void failingStep1(RoutingContext context, WorkflowForm form) throws IOException, ServletException {
+        form.setStep1Result("one");
+        step++;
+        throw new IllegalStateException("The first step failed");
+    }
+    
     public int getStep() {
         return step;
     }
@@ -26,6 +26,14 @@
 package co.cdev.agave.web;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.servlet.FilterConfig;
 
 import org.jmock.Expectations;
 import org.junit.Assert;
@@ -104,6 +112,52 @@ public class AgaveFilterTest extends AbstractFunctionalTest {
         Assert.assertEquals(AliasedForm.class, desc.getFormClass());
     }
 
+    @Test
+    public void testInit_withSerializedConfigFile() throws Exception {
+        final File classesDirectory = File.createTempFile("classes", "");
+        classesDirectory.delete();
+        classesDirectory.mkdir();
+        final File testClassesDirectory = new File(getClass().getResource("/").toURI());
+        File configFile = new File(classesDirectory, "agave.conf");
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(configFile));
+        
+        try {
+            out.writeObject(new ArrayList<HandlerDescriptor>());
+        } finally {
+            out.close();
+        }
+        
+        try {
+            AgaveFilter filter = new AgaveFilter() {
+                @Override
+                protected File provideClassesDirectory(FilterConfig filterConfig) {
+                    return classesDirectory;
+                }
+                
+                @Override
+                protected List<File> provideScanRoots(FilterConfig filterConfig) {
+                    return Collections.singletonList(testClassesDirectory);
+                }
+            };
+            
+            emulateServletContainer(new HashMap<String, String[]>());
+            
+            context.checking(new Expectations() {{
+                allowing(request).getServletPath(); will(returnValue("/login"));
+                allowing(request).getMethod(); will(returnValue("GET"));
+            }});
+            
+            filter.init(filterConfig);
+            HandlerDescriptor desc = filter.getRequestMatcher().findMatch(request);
+            
+            Assert.assertNotNull(desc);
+            Assert.assertEquals(SampleHandler.class, desc.getHandlerClass());
+        } finally {
+            configFile.delete();
+            classesDirectory.delete();
+        }
+    }
+
 	@Test
 	public void testOverrideClassesDirectory() throws Exception {
 	    File targetDir = new File(getClass().getResource("/").toURI());
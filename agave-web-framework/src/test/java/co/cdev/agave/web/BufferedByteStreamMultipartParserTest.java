@@ -0,0 +1,189 @@
+package co.cdev.agave.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BufferedByteStreamMultipartParserTest {
+
+    private static final String BOUNDARY = "---------------------------2746393686911676941624173958";
+
+    Mockery context = new Mockery();
+    HttpServletRequest request;
+
+    @Before
+    public void setup() throws Exception {
+        request = context.mock(HttpServletRequest.class);
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] body(Object... nameValueFilenameTriples) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write("preamble\r\n".getBytes("ISO-8859-1"));
+        for (int i = 0; i < nameValueFilenameTriples.length; i += 3) {
+            body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + nameValueFilenameTriples[i] + "\"")
+                    .getBytes("ISO-8859-1"));
+            if (nameValueFilenameTriples[i + 2] != null) {
+                body.write(("; filename=\"" + nameValueFilenameTriples[i + 2] + "\"\r\nContent-Type: application/octet-stream")
+                        .getBytes("ISO-8859-1"));
+            }
+            body.write("\r\nX-Extra:  extra value \r\n\r\n".getBytes("ISO-8859-1"));
+            body.write((byte[]) nameValueFilenameTriples[i + 1]);
+            body.write("\r\n".getBytes("ISO-8859-1"));
+        }
+        body.write(("--" + BOUNDARY + "--\r\nepilogue").getBytes("ISO-8859-1"));
+        return body.toByteArray();
+    }
+
+    private void expectRequest(final String contentType, final String encoding, final InputStream in) throws IOException {
+        context.checking(new Expectations() {{
+            allowing(request).getContentType(); will(returnValue(contentType));
+            allowing(request).getCharacterEncoding(); will(returnValue(encoding));
+            allowing(request).getInputStream(); will(returnValue(new DelegatingServletInputStream(in)));
+        }});
+    }
+
+    /**
+     * Hands out at most a few bytes per read, like a slow network connection.
+     */
+    private static class TricklingInputStream extends FilterInputStream {
+
+        private final Random random = new Random(7);
+
+        TricklingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1 + random.nextInt(7)));
+        }
+    }
+
+    @Test
+    public void testParseSample() throws Exception {
+        expectRequest("multipart/form-data; boundary=" + BOUNDARY, null,
+                getClass().getClassLoader().getResourceAsStream("multipart-sample-jetty"));
+
+        BufferedByteStreamMultipartParser parser = new BufferedByteStreamMultipartParser();
+        parser.parseInput(request);
+
+        assertEquals(2, parser.getParameters().size());
+        assertEquals(Arrays.asList("test 1"), parser.getParameters().get("text1"));
+        assertEquals(Arrays.asList("test 2"), parser.getParameters().get("text2"));
+
+        byte[] image = read(getClass().getClassLoader().getResourceAsStream("vim.gif"));
+
+        assertEquals(2, parser.getParts().size());
+        assertEquals("vim.gif", parser.getParts().get("file1").getFilename());
+        assertEquals("image/gif", parser.getParts().get("file1").getContentType());
+        assertArrayEquals(image, parser.getParts().get("file1").getContents().toByteArray());
+        assertArrayEquals(image, parser.getParts().get("file2").getContents().toByteArray());
+    }
+
+    @Test
+    public void testParse_withBoundaryLikeContents() throws Exception {
+        Random random = new Random(42);
+        byte[] contents = new byte[20000];
+        random.nextBytes(contents);
+
+        byte[] nearDelimiter = ("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "x\r\n\r\n--\r\n").getBytes("ISO-8859-1");
+        for (int i = 0; i + nearDelimiter.length < contents.length; i += 997) {
+            System.arraycopy(nearDelimiter, 0, contents, i, nearDelimiter.length);
+        }
+
+        byte[] empty = new byte[0];
+        byte[] body = body("first", contents, "first.bin", "empty", empty, "empty.bin", "value", "a\r\nb".getBytes("ISO-8859-1"), null);
+
+        for (int bufferSize : new int[] {1, 64, 100, 257, 8192}) {
+            context = new Mockery();
+            request = context.mock(HttpServletRequest.class);
+            expectRequest("multipart/form-data; boundary=\"" + BOUNDARY + "\"", null,
+                    new TricklingInputStream(new ByteArrayInputStream(body)));
+
+            BufferedByteStreamMultipartParser parser = new BufferedByteStreamMultipartParser(bufferSize);
+            parser.parseInput(request);
+
+            assertArrayEquals(contents, parser.getParts().get("first").getContents().toByteArray());
+            assertEquals("extra value", parser.getParts().get("first").getHeader("X-Extra"));
+            assertEquals(0, parser.getParts().get("empty").getContents().size());
+            assertEquals(Arrays.asList("a\r\nb"), parser.getParameters().get("value"));
+        }
+    }
+
+    @Test
+    public void testParse_withCharacterEncoding() throws Exception {
+        expectRequest("multipart/form-data; charset=UTF-8; boundary=" + BOUNDARY, "UTF-8",
+                new ByteArrayInputStream(body("name", "caf\u00e9".getBytes("UTF-8"), null,
+                        "name", "na\u00efve".getBytes("UTF-8"), null)));
+
+        BufferedByteStreamMultipartParser parser = new BufferedByteStreamMultipartParser();
+        parser.parseInput(request);
+
+        assertEquals(Arrays.asList("caf\u00e9", "na\u00efve"), parser.getParameters().get("name"));
+    }
+
+    @Test
+    public void testParse_ignoresEmptyFileInputs() throws Exception {
+        expectRequest("multipart/form-data; boundary=" + BOUNDARY, null,
+                new ByteArrayInputStream(body("file", new byte[0], "")));
+
+        BufferedByteStreamMultipartParser parser = new BufferedByteStreamMultipartParser();
+        parser.parseInput(request);
+
+        assertTrue(parser.getParts().isEmpty());
+        assertTrue(parser.getParameters().isEmpty());
+    }
+
+    @Test
+    public void testParse_withoutClosingBoundary() throws Exception {
+        byte[] body = body("value", "abc".getBytes("ISO-8859-1"), null);
+
+        expectRequest("multipart/form-data; boundary=" + BOUNDARY, null,
+                new ByteArrayInputStream(Arrays.copyOf(body, body.length - BOUNDARY.length() - 15)));
+
+        try {
+            new BufferedByteStreamMultipartParser().parseInput(request);
+            fail("Parsed a truncated body");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGetBoundary() throws Exception {
+        assertEquals("AaB03x", MultipartScanner.getBoundary("multipart/form-data; boundary=AaB03x"));
+        assertEquals("AaB03x", MultipartScanner.getBoundary("multipart/form-data;Boundary=\"AaB03x\"; charset=UTF-8"));
+        assertEquals("AaB03x", MultipartScanner.getBoundary("multipart/form-data; charset=UTF-8; boundary=AaB03x"));
+        assertNull(MultipartScanner.getBoundary("multipart/form-data"));
+        assertNull(MultipartScanner.getBoundary("multipart/form-data; boundary="));
+    }
+
+}
@@ -0,0 +1,74 @@
+package co.cdev.agave.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BufferedFileMultipartParserTest {
+
+    Mockery context = new Mockery();
+    HttpServletRequest request;
+
+    @Before
+    public void setup() throws Exception {
+        request = context.mock(HttpServletRequest.class);
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testParseInput() throws Exception {
+        final String contentType =
+                "multipart/form-data; boundary=---------------------------979094395854168939825384612";
+
+        final InputStream sampleStream = new DelegatingServletInputStream(
+                getClass().getClassLoader().getResourceAsStream("multipart-sample-tomcat"));
+        try {
+            context.checking(new Expectations() {{
+                allowing(request).getContentType(); will(returnValue(contentType));
+                allowing(request).getCharacterEncoding(); will(returnValue(null));
+                allowing(request).getInputStream(); will(returnValue(sampleStream));
+            }});
+
+            MultipartParser<File> parser = new BufferedFileMultipartParser();
+            parser.parseInput(request);
+
+            assertEquals(Arrays.asList("test 1"), parser.getParameters().get("text1"));
+            assertEquals(Arrays.asList("testing test 2"), parser.getParameters().get("text2"));
+            assertEquals(2, parser.getParts().size());
+
+            byte[] image = read(getClass().getClassLoader().getResourceAsStream("vim.gif"));
+            File file1 = parser.getParts().get("file1").getContents();
+            File file2 = parser.getParts().get("file2").getContents();
+
+            assertArrayEquals(image, read(new FileInputStream(file1)));
+            assertArrayEquals(image, read(new FileInputStream(file2)));
+            assertEquals(".gif", file1.getName().substring(file1.getName().lastIndexOf('.')));
+        } finally {
+            sampleStream.close();
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+package co.cdev.agave.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChannelFileMultipartParserTest {
+
+    private static final String BOUNDARY = "AaB03x";
+
+    Mockery context = new Mockery();
+    HttpServletRequest request;
+
+    @Before
+    public void setup() throws Exception {
+        request = context.mock(HttpServletRequest.class);
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private void expectRequest(final String contentType, final InputStream in) throws IOException {
+        context.checking(new Expectations() {{
+            allowing(request).getContentType(); will(returnValue(contentType));
+            allowing(request).getCharacterEncoding(); will(returnValue(null));
+            allowing(request).getInputStream(); will(returnValue(new DelegatingServletInputStream(in)));
+        }});
+    }
+
+    @Test
+    public void testParseInput() throws Exception {
+        expectRequest("multipart/form-data; boundary=---------------------------979094395854168939825384612",
+                getClass().getClassLoader().getResourceAsStream("multipart-sample-tomcat"));
+
+        MultipartParser<File> parser = new ChannelFileMultipartParser(1, true);
+        parser.parseInput(request);
+
+        assertEquals(Arrays.asList("test 1"), parser.getParameters().get("text1"));
+        assertEquals(2, parser.getParts().size());
+
+        byte[] image = read(getClass().getClassLoader().getResourceAsStream("vim.gif"));
+
+        assertArrayEquals(image, read(new FileInputStream(parser.getParts().get("file1").getContents())));
+        assertArrayEquals(image, read(new FileInputStream(parser.getParts().get("file2").getContents())));
+    }
+
+    @Test
+    public void testParseInput_withPartsLargerThanTheWriteBehind() throws Exception {
+        byte[] contents = new byte[DirectBufferPool.DEFAULT_BUFFER_SIZE * 10 + 123];
+        new Random(42).nextBytes(contents);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"large.bin\"\r\n\r\n")
+                .getBytes("ISO-8859-1"));
+        body.write(contents);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes("ISO-8859-1"));
+
+        expectRequest("multipart/form-data; boundary=" + BOUNDARY, new ByteArrayInputStream(body.toByteArray()));
+
+        MultipartParser<File> parser = new ChannelFileMultipartParser(1, false);
+        parser.parseInput(request);
+
+        File file = parser.getParts().get("file").getContents();
+        assertEquals(contents.length, file.length());
+        assertArrayEquals(contents, read(new FileInputStream(file)));
+    }
+
+    @Test
+    public void testParseInput_withWriterPool() throws Exception {
+        expectRequest("multipart/form-data; boundary=---------------------------979094395854168939825384612",
+                getClass().getClassLoader().getResourceAsStream("multipart-sample-tomcat"));
+
+        ExecutorService writers = ChannelFileMultipartParser.newWriterPool(1);
+        MultipartParser<File> parser = new ChannelFileMultipartParser(1, false, writers);
+        parser.parseInput(request);
+
+        byte[] image = read(getClass().getClassLoader().getResourceAsStream("vim.gif"));
+
+        assertArrayEquals(image, read(new FileInputStream(parser.getParts().get("file1").getContents())));
+        assertArrayEquals(image, read(new FileInputStream(parser.getParts().get("file2").getContents())));
+
+        writers.shutdown();
+        assertTrue(writers.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testInterruptedCloseStillStopsTheWriter() throws Exception {
+        File file = File.createTempFile("write-behind", ".bin");
+        ExecutorService writers = ChannelFileMultipartParser.newWriterPool(1);
+
+        try {
+            WriteBehindOutputStream out = new WriteBehindOutputStream(file, writers,
+                    new DirectBufferPool(1024, 4), 1, false);
+            out.write(new byte[100]);
+
+            Thread.currentThread().interrupt();
+
+            try {
+                out.close();
+                fail("Closed the stream while interrupted");
+            } catch (InterruptedIOException ex) {
+                // expected
+            } finally {
+                Thread.interrupted();
+            }
+
+            writers.shutdown();
+            assertTrue(writers.awaitTermination(5, TimeUnit.SECONDS));
+        } finally {
+            writers.shutdownNow();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDirectBufferPoolCapsDirectBuffers() throws Exception {
+        DirectBufferPool pool = new DirectBufferPool(1024, 2);
+
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        ByteBuffer third = pool.acquire();
+
+        assertTrue(first.isDirect());
+        assertTrue(second.isDirect());
+        assertFalse(third.isDirect());
+        assertEquals(1024, third.capacity());
+        assertEquals(2, pool.getDirectBufferCount());
+
+        pool.release(third);
+        pool.release(first);
+
+        assertSame(first, pool.acquire());
+        assertEquals(2, pool.getDirectBufferCount());
+    }
+
+}
@@ -0,0 +1,178 @@
+package co.cdev.agave.web;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.cdev.agave.configuration.RoutingContext;
+import co.cdev.agave.util.LoggerUtils;
+
+public class ClientWorkflowStoreTest {
+
+    private Mockery context = new Mockery();
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private RoutingContext routingContext;
+    private ClientWorkflowStore store;
+    private final Map<String, String> parameters = new HashMap<String, String>();
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+    private final List<Cookie> requestCookies = new ArrayList<Cookie>();
+    private final List<Cookie> responseCookies = new ArrayList<Cookie>();
+    private boolean committed;
+
+    @Before
+    public void setup() throws Exception {
+        LoggerUtils.silenceLoggers();
+
+        request = context.mock(HttpServletRequest.class);
+        response = context.mock(HttpServletResponse.class);
+
+        context.checking(new Expectations() {{
+            allowing(request).getContextPath(); will(returnValue("/app"));
+            allowing(request).getParameter(with(any(String.class))); will(new CustomAction("get parameter") {
+                @Override
+                public Object invoke(Invocation invocation) {
+                    return parameters.get(invocation.getParameter(0));
+                }
+            });
+            allowing(request).getCookies(); will(new CustomAction("get cookies") {
+                @Override
+                public Object invoke(Invocation invocation) {
+                    return requestCookies.isEmpty() ? null : requestCookies.toArray(new Cookie[requestCookies.size()]);
+                }
+            });
+            allowing(request).setAttribute(with(any(String.class)), with(any(Object.class))); will(new CustomAction("set attribute") {
+                @Override
+                public Object invoke(Invocation invocation) {
+                    attributes.put((String) invocation.getParameter(0), invocation.getParameter(1));
+                    return null;
+                }
+            });
+            allowing(request).removeAttribute(with(any(String.class))); will(new CustomAction("remove attribute") {
+                @Override
+                public Object invoke(Invocation invocation) {
+                    attributes.remove(invocation.getParameter(0));
+                    return null;
+                }
+            });
+            allowing(response).isCommitted(); will(new CustomAction("is committed") {
+                @Override
+                public Object invoke(Invocation invocation) {
+                    return committed;
+                }
+            });
+            allowing(response).addCookie(with(any(Cookie.class))); will(new CustomAction("add cookie") {
+                @Override
+                public Object invoke(Invocation invocation) {
+                    responseCookies.add((Cookie) invocation.getParameter(0));
+                    return null;
+                }
+            });
+        }});
+
+        routingContext = new RoutingContext(null, request, response, null);
+        store = new ClientWorkflowStore(new WorkflowTokenCodec("signing secret".getBytes(), null, 60000));
+    }
+
+    @Test
+    public void testSaveSendsCookieAndAttribute() throws Exception {
+        store.save(routingContext, "wizard", new WorkflowState("handler", "form"));
+
+        Assert.assertEquals(1, responseCookies.size());
+        Cookie cookie = responseCookies.get(0);
+        Assert.assertEquals("wizard-workflow", cookie.getName());
+        Assert.assertEquals(attributes.get("wizard-workflow"), cookie.getValue());
+        Assert.assertEquals("/app", cookie.getPath());
+        Assert.assertEquals(-1, cookie.getMaxAge());
+
+        requestCookies.add(cookie);
+
+        Assert.assertEquals("form", store.load(routingContext, "wizard").getFormInstance());
+    }
+
+    @Test
+    public void testParameterTakesPrecedenceOverCookie() throws Exception {
+        store.save(routingContext, "wizard", new WorkflowState("handler", "from cookie"));
+        requestCookies.add(responseCookies.get(0));
+
+        store.save(routingContext, "wizard", new WorkflowState("handler", "from parameter"));
+        parameters.put("wizard-workflow", (String) attributes.get("wizard-workflow"));
+
+        Assert.assertEquals("from parameter", store.load(routingContext, "wizard").getFormInstance());
+    }
+
+    @Test
+    public void testRemoveClearsCookie() throws Exception {
+        store.save(routingContext, "wizard", new WorkflowState("handler", "form"));
+        responseCookies.clear();
+
+        store.remove(routingContext, "wizard");
+
+        Assert.assertNull(attributes.get("wizard-workflow"));
+        Assert.assertEquals(1, responseCookies.size());
+        Assert.assertEquals("wizard-workflow", responseCookies.get(0).getName());
+        Assert.assertEquals("", responseCookies.get(0).getValue());
+        Assert.assertEquals(0, responseCookies.get(0).getMaxAge());
+    }
+
+    @Test(expected = InvalidWorkflowTokenException.class)
+    public void testRejectsTamperedToken() throws Exception {
+        store.save(routingContext, "wizard", new WorkflowState("handler", "form"));
+        char[] token = ((String) attributes.get("wizard-workflow")).toCharArray();
+        token[token.length / 2] = token[token.length / 2] == 'A' ? 'B' : 'A';
+        parameters.put("wizard-workflow", new String(token));
+
+        store.load(routingContext, "wizard");
+    }
+
+    @Test(expected = InvalidWorkflowTokenException.class)
+    public void testRejectsTokenOfAnotherWorkflow() throws Exception {
+        store.save(routingContext, "wizard", new WorkflowState("handler", "form"));
+        parameters.put("checkout-workflow", (String) attributes.get("wizard-workflow"));
+
+        store.load(routingContext, "checkout");
+    }
+
+    @Test
+    public void testSaveAfterResponseIsCommitted() throws Exception {
+        committed = true;
+
+        store.save(routingContext, "wizard", new WorkflowState("handler", "form"));
+
+        Assert.assertTrue(responseCookies.isEmpty());
+        Assert.assertNotNull(attributes.get("wizard-workflow"));
+    }
+
+    @Test
+    public void testOversizedTokenIsNotSentAsCookie() throws Exception {
+        byte[] form = new byte[6000];
+        new Random(7).nextBytes(form);
+
+        store.save(routingContext, "wizard", new WorkflowState("handler", form));
+
+        String token = (String) attributes.get("wizard-workflow");
+        Assert.assertTrue(token.length() > ClientWorkflowStore.MAX_COOKIE_SIZE);
+        Assert.assertEquals(1, responseCookies.size());
+        Assert.assertEquals("", responseCookies.get(0).getValue());
+        Assert.assertEquals(0, responseCookies.get(0).getMaxAge());
+
+        parameters.put("wizard-workflow", token);
+
+        Assert.assertArrayEquals(form, (byte[]) store.load(routingContext, "wizard").getFormInstance());
+    }
+
+}
@@ -0,0 +1,202 @@
+package co.cdev.agave.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.cdev.agave.HttpMethod;
+import co.cdev.agave.URIPatternImpl;
+import co.cdev.agave.configuration.Config;
+import co.cdev.agave.configuration.ConfigGenerator;
+import co.cdev.agave.configuration.ConfigGeneratorImpl;
+import co.cdev.agave.configuration.ConfigImpl;
+import co.cdev.agave.configuration.HandlerDescriptorImpl;
+import co.cdev.agave.configuration.ParamDescriptor;
+import co.cdev.agave.configuration.RoutingContext;
+import co.cdev.agave.sample.LoginForm;
+import co.cdev.agave.sample.SampleHandler;
+import co.cdev.agave.util.LoggerUtils;
+
+public class ConfigReloaderTest {
+
+    Mockery context = new Mockery();
+    HttpServletRequest request;
+    ConfigGenerator configGenerator;
+    File configFile;
+
+    @Before
+    public void setup() throws Exception {
+        LoggerUtils.silenceLoggers();
+
+        request = context.mock(HttpServletRequest.class);
+        configGenerator = new ConfigGeneratorImpl(new File(getClass().getResource("/").toURI()));
+        configFile = File.createTempFile("agave", ".conf");
+
+        context.checking(new Expectations() {{
+            allowing(request).getServletPath(); will(returnValue("/login"));
+            allowing(request).getMethod(); will(returnValue("GET"));
+        }});
+    }
+
+    @After
+    public void teardown() throws Exception {
+        configFile.delete();
+    }
+
+    @Test
+    public void testReload_withConfigFile() throws Exception {
+        Config generatedConfig = configGenerator.generateConfig();
+        new ConfigImpl().writeToFile(configFile);
+
+        RequestMatcherImpl requestMatcher = new RequestMatcherImpl(new ConfigImpl());
+        ConfigReloader configReloader = new ConfigReloader(requestMatcher, configFile);
+
+        assertFalse(configReloader.reload());
+        assertNull(requestMatcher.findMatch(request));
+
+        generatedConfig.writeToFile(configFile);
+        configFile.setLastModified(configFile.lastModified() - 2000);
+        RouteTable routeTable = requestMatcher.getRouteTable();
+
+        assertTrue(configReloader.reload());
+        assertEquals(generatedConfig.size(), requestMatcher.getConfig().size());
+        assertEquals(SampleHandler.class, requestMatcher.findMatch(request).getHandlerClass());
+        assertNull(routeTable.findMatch(request));
+        assertFalse(configReloader.reload());
+
+        routeTable = requestMatcher.getRouteTable();
+        FileOutputStream out = new FileOutputStream(configFile);
+        out.write(new byte[] {'A', 'G', 'C', 'F', 0});
+        out.close();
+
+        try {
+            configReloader.reload();
+        } catch (Exception ex) {
+            // expected
+        }
+
+        assertSame(routeTable, requestMatcher.getRouteTable());
+        assertNotNull(requestMatcher.findMatch(request));
+    }
+
+    @Test
+    public void testReload_withConfigGenerator() throws Exception {
+        RequestMatcherImpl requestMatcher = new RequestMatcherImpl(new ConfigImpl());
+        ConfigReloader configReloader = new ConfigReloader(requestMatcher, configGenerator);
+
+        assertTrue(configReloader.reload());
+        assertEquals(SampleHandler.class, requestMatcher.findMatch(request).getHandlerClass());
+
+        RouteTable routeTable = requestMatcher.getRouteTable();
+
+        assertFalse(configReloader.reload());
+        assertSame(routeTable, requestMatcher.getRouteTable());
+    }
+
+    @Test
+    public void testReload_withChangedWorkflow() throws Exception {
+        final String[] workflowName = {"wizard"};
+
+        ConfigGenerator workflowConfigGenerator = new ConfigGenerator() {
+            @Override
+            public Config generateConfig() throws IOException, ClassNotFoundException {
+                Config config = new ConfigImpl();
+
+                try {
+                    config.addHandlerDescriptor(new HandlerDescriptorImpl(SampleHandler.class,
+                            SampleHandler.class.getMethod("login", RoutingContext.class, LoginForm.class),
+                            new URIPatternImpl("/login"), HttpMethod.GET, true, false, workflowName[0],
+                            LoginForm.class, Collections.<ParamDescriptor>emptyList()));
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+
+                return config;
+            }
+        };
+
+        RequestMatcherImpl requestMatcher = new RequestMatcherImpl(new ConfigImpl());
+        ConfigReloader configReloader = new ConfigReloader(requestMatcher, workflowConfigGenerator);
+
+        assertTrue(configReloader.reload());
+        assertFalse(configReloader.reload());
+
+        workflowName[0] = "checkout";
+
+        assertTrue(configReloader.reload());
+        assertEquals("checkout", requestMatcher.findMatch(request).getWorkflowName());
+    }
+
+    @Test
+    public void testReload_withHandlerMethodMissingFromLoadedClass() throws Exception {
+        final boolean[] renamed = {false};
+
+        ConfigGenerator changedClassConfigGenerator = new ConfigGenerator() {
+            @Override
+            public Config generateConfig() throws IOException, ClassNotFoundException {
+                Config config = new ConfigImpl();
+
+                try {
+                    config.addHandlerDescriptor(new HandlerDescriptorImpl(SampleHandler.class,
+                            SampleHandler.class.getMethod("login", RoutingContext.class, LoginForm.class),
+                            new URIPatternImpl("/login"), HttpMethod.GET, false, false, null,
+                            LoginForm.class, Collections.<ParamDescriptor>emptyList()));
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+
+                if (!renamed[0]) {
+                    return config;
+                }
+
+                // What a scan finds once the handler method has been renamed in the class file,
+                // after the class was loaded
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                config.writeToOutputStream(out);
+                byte[] contents = new String(out.toByteArray(), "ISO-8859-1").replace("login", "logon")
+                        .getBytes("ISO-8859-1");
+
+                Config changedConfig = new ConfigImpl();
+                changedConfig.readFromInputStream(new ByteArrayInputStream(contents));
+                return changedConfig;
+            }
+        };
+
+        RequestMatcherImpl requestMatcher = new RequestMatcherImpl(new ConfigImpl());
+        ConfigReloader configReloader = new ConfigReloader(requestMatcher, changedClassConfigGenerator);
+
+        assertTrue(configReloader.reload());
+
+        Config config = requestMatcher.getConfig();
+        renamed[0] = true;
+
+        assertFalse(configReloader.reload());
+        assertSame(config, requestMatcher.getConfig());
+        assertFalse(configReloader.reload());
+
+        renamed[0] = false;
+
+        assertFalse(configReloader.reload());
+        assertNotNull(requestMatcher.findMatch(request).getHandlerMethod());
+    }
+
+}
@@ -0,0 +1,143 @@
+package co.cdev.agave.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContentAddressedMultipartParserTest {
+
+    Mockery context = new Mockery();
+    HttpServletRequest request;
+    File root;
+    ContentStore store;
+
+    @Before
+    public void setup() throws Exception {
+        request = context.mock(HttpServletRequest.class);
+        root = File.createTempFile("content", "");
+        root.delete();
+        store = ContentStore.forDirectory(root);
+    }
+
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testParseInput_storesDuplicatesOnce() throws Exception {
+        context.checking(new Expectations() {{
+            allowing(request).getContentType();
+            will(returnValue("multipart/form-data; boundary=---------------------------979094395854168939825384612"));
+            allowing(request).getCharacterEncoding(); will(returnValue(null));
+            allowing(request).getInputStream(); will(returnValue(new DelegatingServletInputStream(
+                    getClass().getClassLoader().getResourceAsStream("multipart-sample-tomcat"))));
+        }});
+
+        MultipartParser<File> parser = new ContentAddressedMultipartParser(store);
+        parser.parseInput(request);
+
+        byte[] image = read(getClass().getClassLoader().getResourceAsStream("vim.gif"));
+        File file1 = parser.getParts().get("file1").getContents();
+        File file2 = parser.getParts().get("file2").getContents();
+
+        assertEquals(file1, file2);
+        assertArrayEquals(image, read(new FileInputStream(file1)));
+        assertEquals(2, store.getReferenceCount(file1));
+        assertEquals(64, file1.getName().length());
+        assertEquals(file1.getName().substring(0, 2), file1.getParentFile().getParentFile().getName());
+        assertEquals(file1.getName().substring(2, 4), file1.getParentFile().getName());
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        File file = store.store(new ByteArrayInputStream("contents".getBytes("UTF-8")));
+        assertEquals(file, store.store(new ByteArrayInputStream("contents".getBytes("UTF-8"))));
+        assertEquals(2, store.getReferenceCount(file));
+        assertEquals(0, new File(root, "incoming").list().length);
+
+        assertFalse(store.release(file));
+        assertTrue(file.exists());
+        assertTrue(store.release(file));
+        assertFalse(file.exists());
+        assertEquals(0, store.getReferenceCount(file));
+
+        File stored = store.store(new ByteArrayInputStream("contents".getBytes("UTF-8")));
+        assertEquals(file, stored);
+        assertEquals(1, store.getReferenceCount(stored));
+        assertEquals("contents", new String(read(new FileInputStream(stored)), "UTF-8"));
+    }
+
+    @Test
+    public void testForDirectory_sharesOneStorePerDirectory() throws Exception {
+        assertSame(store, ContentStore.forDirectory(new File(new File(root, "incoming"), "..")));
+
+        File file = store.store(new ByteArrayInputStream("contents".getBytes("UTF-8")));
+        store.retain(file);
+
+        assertEquals(2, store.getReferenceCount(file));
+        assertArrayEquals(new String[] {file.getName(), file.getName() + ".refs"}, sorted(file.getParentFile().list()));
+    }
+
+    private static String[] sorted(String[] names) {
+        Arrays.sort(names);
+        return names;
+    }
+
+    @Test
+    public void testRelease_afterTheRequestUnlessClaimed() throws Exception {
+        UploadDirectory uploadDirectory = new UploadDirectory(new File(root, "uploads"));
+
+        RequestUploads uploads = RequestUploads.begin(uploadDirectory);
+        File claimed = store.store(new ByteArrayInputStream("claimed".getBytes("UTF-8")));
+        RequestUploads.track(store, claimed);
+        File unclaimed = store.store(new ByteArrayInputStream("unclaimed".getBytes("UTF-8")));
+        RequestUploads.track(store, unclaimed);
+
+        assertTrue(RequestUploads.claim(claimed));
+        uploads.end();
+
+        assertEquals(1, store.getReferenceCount(claimed));
+        assertFalse(unclaimed.exists());
+    }
+
+}
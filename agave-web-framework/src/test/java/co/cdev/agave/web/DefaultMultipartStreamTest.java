@@ -0,0 +1,111 @@
+package co.cdev.agave.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.cdev.agave.Part;
+
+public class DefaultMultipartStreamTest {
+
+    private static final String BOUNDARY = "---------------------------2746393686911676941624173958";
+
+    Mockery context = new Mockery();
+    HttpServletRequest request;
+
+    @Before
+    public void setup() throws Exception {
+        request = context.mock(HttpServletRequest.class);
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private void expectRequest(final String contentType, final InputStream in) throws IOException {
+        context.checking(new Expectations() {{
+            allowing(request).getContentType(); will(returnValue(contentType));
+            allowing(request).getCharacterEncoding(); will(returnValue(null));
+            allowing(request).getInputStream(); will(returnValue(new DelegatingServletInputStream(in)));
+        }});
+    }
+
+    @Test
+    public void testNextPart() throws Exception {
+        expectRequest("multipart/form-data; boundary=" + BOUNDARY,
+                getClass().getClassLoader().getResourceAsStream("multipart-sample-jetty"));
+
+        DefaultMultipartStream multipartStream = new DefaultMultipartStream(request);
+        byte[] image = read(getClass().getClassLoader().getResourceAsStream("vim.gif"));
+
+        Part<InputStream> part = multipartStream.nextPart();
+        assertEquals("text1", part.getName());
+        assertNull(part.getFilename());
+        assertEquals("test 1", new String(read(part.getContents()), "ISO-8859-1"));
+
+        part = multipartStream.nextPart();
+        assertEquals("text2", part.getName());
+
+        part = multipartStream.nextPart();
+        assertEquals("file1", part.getName());
+        assertEquals("vim.gif", part.getFilename());
+        assertEquals("image/gif", part.getContentType());
+        assertArrayEquals(image, read(part.getContents()));
+
+        part = multipartStream.nextPart();
+        assertEquals("file2", part.getName());
+        assertArrayEquals(image, read(part.getContents()));
+
+        assertNull(multipartStream.nextPart());
+        assertNull(multipartStream.nextPart());
+    }
+
+    @Test
+    public void testNextPart_skipsUnreadContents() throws Exception {
+        expectRequest("multipart/form-data; boundary=" + BOUNDARY,
+                getClass().getClassLoader().getResourceAsStream("multipart-sample-jetty"));
+
+        DefaultMultipartStream multipartStream = new DefaultMultipartStream(request, 64);
+
+        Part<InputStream> first = multipartStream.nextPart();
+        assertEquals('t', first.getContents().read());
+
+        Part<InputStream> second = multipartStream.nextPart();
+        assertEquals("text2", second.getName());
+        assertEquals(-1, first.getContents().read());
+        assertEquals("test 2", new String(read(second.getContents()), "ISO-8859-1"));
+    }
+
+    @Test
+    public void testConstructor_withoutBoundary() throws Exception {
+        expectRequest("multipart/form-data", new ByteArrayInputStream(new byte[0]));
+
+        try {
+            new DefaultMultipartStream(request);
+            fail("Created a stream without a boundary");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+}
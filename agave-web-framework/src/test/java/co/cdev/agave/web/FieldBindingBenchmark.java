@@ -0,0 +1,156 @@
+package co.cdev.agave.web;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import co.cdev.agave.BindFields;
+import co.cdev.agave.Bindable;
+
+/**
+ * Compares populating a form through its mutators with populating an equivalent form annotated
+ * with {@link BindFields}. This is not run as part of the test suite; run its main method with the
+ * module's test classpath instead.
+ */
+public class FieldBindingBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200000;
+    private static final int MEASURED_ITERATIONS = 1000000;
+
+    public static class Address {
+        @Bindable
+        private String city;
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+    }
+
+    public static class MutatorForm {
+        private String name;
+        private int age;
+        private long visits;
+        private List<String> tags = new ArrayList<String>();
+        private Map<String, String> attributes = new HashMap<String, String>();
+        private Address address = new Address();
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public void setVisits(long visits) {
+            this.visits = visits;
+        }
+
+        public void addToTags(String tag) {
+            tags.add(tag);
+        }
+
+        public void putInAttributes(String key, String value) {
+            attributes.put(key, value);
+        }
+
+        public Address getAddress() {
+            return address;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.length() + age + (int) visits + tags.size() + attributes.size() + address.getCity().length();
+        }
+    }
+
+    @BindFields
+    public static class FieldForm {
+        @Bindable
+        private String name;
+        @Bindable
+        private int age;
+        @Bindable
+        private long visits;
+        @Bindable
+        private List<String> tags = new ArrayList<String>();
+        @Bindable
+        private Map<String, String> attributes = new HashMap<String, String>();
+        @Bindable
+        private Address address = new Address();
+
+        @Override
+        public int hashCode() {
+            return name.length() + age + (int) visits + tags.size() + attributes.size() + address.getCity().length();
+        }
+    }
+
+    private interface FormFactory {
+        Object create();
+    }
+
+    public static void main(String[] args) throws Exception {
+        AbstractFormPopulator populator = new AbstractFormPopulator(Locale.ENGLISH) {};
+        populator.getParams().put("name", Arrays.<Object>asList("ada"));
+        populator.getParams().put("age", Arrays.<Object>asList("36"));
+        populator.getParams().put("visits", Arrays.<Object>asList("12345678901"));
+        populator.getParams().put("tags", Arrays.<Object>asList("countess", "enchantress"));
+        populator.getParams().put("attributes$field", Arrays.<Object>asList("mathematics"));
+        populator.getParams().put("address.city", Arrays.<Object>asList("London"));
+
+        FormFactory[] factories = {
+            new FormFactory() {
+                @Override
+                public Object create() {
+                    return new MutatorForm();
+                }
+
+                @Override
+                public String toString() {
+                    return "mutators";
+                }
+            },
+            new FormFactory() {
+                @Override
+                public Object create() {
+                    return new FieldForm();
+                }
+
+                @Override
+                public String toString() {
+                    return "fields";
+                }
+            }
+        };
+
+        for (FormFactory factory : factories) {
+            run(populator, factory, WARMUP_ITERATIONS);
+        }
+
+        for (FormFactory factory : factories) {
+            long started = System.nanoTime();
+            int checksum = run(populator, factory, MEASURED_ITERATIONS);
+            long elapsed = System.nanoTime() - started;
+
+            System.out.printf("%-8s %8.1f ns/op (%d)%n", factory, (double) elapsed / MEASURED_ITERATIONS, checksum);
+        }
+    }
+
+    private static int run(FormPopulator populator, FormFactory factory, int iterations) throws Exception {
+        int checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            Object form = factory.create();
+            populator.populate(form);
+            checksum += form.hashCode() & 1;
+        }
+        return checksum;
+    }
+
+}
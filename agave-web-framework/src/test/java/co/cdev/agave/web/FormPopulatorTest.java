@@ -1,6 +1,8 @@
 package co.cdev.agave.web;
 
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -14,6 +16,8 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import co.cdev.agave.sample.FieldForm;
+import co.cdev.agave.sample.NestedObject;
 import co.cdev.agave.sample.ObjectGraph;
 import co.cdev.agave.web.FormPopulator;
 import co.cdev.agave.web.RequestParameterFormPopulator;
@@ -183,4 +187,169 @@ public class FormPopulatorTest {
         Assert.assertEquals("Prince", form.getNested().getFavoritePopStars().get("pop").name());
         Assert.assertEquals("Tatu", form.getNested().getFavoritePopStars().get("dance").name());
     }
+
+    @Test
+    public void testPopulateNestedObjectOfAnotherClass() throws Exception {
+        final Vector<String> parameterNames = new Vector<String>();
+        parameterNames.add("nested.cat");
+
+        context.checking(new Expectations() {{
+            allowing(request).getParameterNames(); will(returnEnumeration(parameterNames));
+            allowing(request).getParameterValues("nested.cat"); will(returnValue(new String[]{"tabby"}));
+            allowing(request).getLocale(); will(returnValue(Locale.ENGLISH));
+        }});
+
+        ObjectGraph form = new ObjectGraph();
+        new RequestParameterFormPopulator(request).populate(form);
+
+        ObjectGraph otherForm = new ObjectGraph();
+        otherForm.setNested(new NestedObject() {
+            @Override
+            public void setCat(String cat) {
+                super.setCat(cat.toUpperCase());
+            }
+        });
+        new RequestParameterFormPopulator(request).populate(otherForm);
+
+        Assert.assertEquals("tabby", form.getNested().getCat());
+        Assert.assertEquals("TABBY", otherForm.getNested().getCat());
+    }
+
+    @Test
+    public void testPopulateFields() throws Exception {
+        final Vector<String> parameterNames = new Vector<String>();
+        parameterNames.add("cat");
+        parameterNames.add("age");
+        parameterNames.add("visits");
+        parameterNames.add("weight");
+        parameterNames.add("convertMe");
+        parameterNames.add("names");
+        parameterNames.add("numbers!0");
+        parameterNames.add("numbers!1");
+        parameterNames.add("bites$hard");
+        parameterNames.add("nested.cat");
+        parameterNames.add("nested.nickNames!0");
+        parameterNames.add("silent");
+
+        context.checking(new Expectations() {{
+            allowing(request).getParameterNames(); will(returnEnumeration(parameterNames));
+            allowing(request).getParameterValues("cat"); will(returnValue(new String[]{"tabby"}));
+            allowing(request).getParameterValues("age"); will(returnValue(new String[]{"7"}));
+            allowing(request).getParameterValues("visits"); will(returnValue(new String[]{"12345678901"}));
+            allowing(request).getParameterValues("weight"); will(returnValue(new String[]{"4.5"}));
+            allowing(request).getParameterValues("convertMe"); will(returnValue(new String[]{"hello"}));
+            allowing(request).getParameterValues("names"); will(returnValue(new String[]{"whiskers", "mittens"}));
+            allowing(request).getParameterValues("numbers!0"); will(returnValue(new String[]{"3"}));
+            allowing(request).getParameterValues("numbers!1"); will(returnValue(new String[]{"5"}));
+            allowing(request).getParameterValues("bites$hard"); will(returnValue(new String[]{"2"}));
+            allowing(request).getParameterValues("nested.cat"); will(returnValue(new String[]{"calico"}));
+            allowing(request).getParameterValues("nested.nickNames!0"); will(returnValue(new String[]{"cali"}));
+            allowing(request).getParameterValues("silent"); will(returnValue(new String[]{"QUIET"}));
+            allowing(request).getLocale(); will(returnValue(Locale.ENGLISH));
+        }});
+
+        FieldForm form = new FieldForm();
+        new RequestParameterFormPopulator(request).populate(form);
+
+        Assert.assertEquals("tabby", form.cat);
+        Assert.assertEquals(7, form.age);
+        Assert.assertEquals(12345678901L, form.visits);
+        Assert.assertEquals(4.5, form.weight, 0.0);
+        Assert.assertEquals("Booyaka!", form.convertMe);
+        Assert.assertEquals(Arrays.asList("whiskers", "mittens"), form.names);
+        Assert.assertEquals(Arrays.asList(3, 5), form.numbers);
+        Assert.assertEquals(Integer.valueOf(2), form.bites.get("hard"));
+        Assert.assertEquals("calico", form.nested.getCat());
+        Assert.assertEquals(Arrays.asList("cali"), form.nested.getNickNames());
+        Assert.assertEquals("quiet", form.shout);
+    }
+
+    @Test
+    public void testPopulateOnlyBindableFields() throws Exception {
+        final Vector<String> parameterNames = new Vector<String>();
+        parameterNames.add("admin");
+        parameterNames.add("shout");
+
+        context.checking(new Expectations() {{
+            allowing(request).getParameterNames(); will(returnEnumeration(parameterNames));
+            allowing(request).getParameterValues("admin"); will(returnValue(new String[]{"true"}));
+            allowing(request).getParameterValues("shout"); will(returnValue(new String[]{"hey"}));
+            allowing(request).getLocale(); will(returnValue(Locale.ENGLISH));
+        }});
+
+        FieldForm form = new FieldForm();
+        new RequestParameterFormPopulator(request).populate(form);
+
+        Assert.assertFalse(form.admin);
+        Assert.assertEquals("HEY", form.shout);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPopulateFieldsPastEndOfList() throws Exception {
+        final Vector<String> parameterNames = new Vector<String>();
+        parameterNames.add("numbers!5");
+
+        context.checking(new Expectations() {{
+            allowing(request).getParameterNames(); will(returnEnumeration(parameterNames));
+            allowing(request).getParameterValues("numbers!5"); will(returnValue(new String[]{"3"}));
+            allowing(request).getLocale(); will(returnValue(Locale.ENGLISH));
+        }});
+
+        new RequestParameterFormPopulator(request).populate(new FieldForm());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPopulateFieldsThroughNullField() throws Exception {
+        final Vector<String> parameterNames = new Vector<String>();
+        parameterNames.add("nested.cat");
+
+        context.checking(new Expectations() {{
+            allowing(request).getParameterNames(); will(returnEnumeration(parameterNames));
+            allowing(request).getParameterValues("nested.cat"); will(returnValue(new String[]{"calico"}));
+            allowing(request).getLocale(); will(returnValue(Locale.ENGLISH));
+        }});
+
+        FieldForm form = new FieldForm();
+        form.nested = null;
+        new RequestParameterFormPopulator(request).populate(form);
+    }
+
+    @Test
+    public void testPopulateFieldsWithMissingPrimitiveValue() throws Exception {
+        final Vector<String> parameterNames = new Vector<String>();
+        parameterNames.add("age");
+
+        context.checking(new Expectations() {{
+            allowing(request).getParameterNames(); will(returnEnumeration(parameterNames));
+            allowing(request).getParameterValues("age"); will(returnValue(new String[]{""}));
+            allowing(request).getLocale(); will(returnValue(Locale.ENGLISH));
+        }});
+
+        try {
+            new RequestParameterFormPopulator(request).populate(new FieldForm());
+            Assert.fail("A missing value cannot be bound to an int field");
+        } catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Field co.cdev.agave.sample.FieldForm#age is of type int, so request "
+                    + "parameter \"age\" cannot be bound without a value", ex.getMessage());
+            Assert.assertNotNull(ex.getCause());
+        }
+    }
+
+    @Test
+    public void testPopulate_withSingleElementBodyArray() throws Exception {
+        context.checking(new Expectations() {{
+            allowing(request).getParameterMap(); will(returnValue(new HashMap<String, String[]>()));
+            allowing(request).getLocale(); will(returnValue(Locale.ENGLISH));
+        }});
+
+        ArrayValues names = new ArrayValues();
+        names.add("Smith, John");
+        Map<String, List<String>> bodyParameters = new HashMap<String, List<String>>();
+        bodyParameters.put("names", names);
+
+        ObjectGraph form = new ObjectGraph();
+        new RequestParameterFormPopulator(new BodyParameterRequest(request, bodyParameters)).populate(form);
+
+        Assert.assertEquals(Arrays.asList("Smith, John"), form.getNames());
+    }
 }
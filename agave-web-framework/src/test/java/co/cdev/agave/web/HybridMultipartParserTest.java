@@ -0,0 +1,255 @@
+package co.cdev.agave.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HybridMultipartParserTest {
+
+    private static final String BOUNDARY = "AaB03x";
+
+    Mockery context = new Mockery();
+    HttpServletRequest request;
+
+    @Before
+    public void setup() throws Exception {
+        request = context.mock(HttpServletRequest.class);
+    }
+
+    private static byte[] body(Object... nameValueFilenameTriples) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int i = 0; i < nameValueFilenameTriples.length; i += 3) {
+            body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + nameValueFilenameTriples[i] + "\"")
+                    .getBytes("ISO-8859-1"));
+            if (nameValueFilenameTriples[i + 2] != null) {
+                body.write(("; filename=\"" + nameValueFilenameTriples[i + 2] + "\"").getBytes("ISO-8859-1"));
+            }
+            body.write("\r\n\r\n".getBytes("ISO-8859-1"));
+            body.write((byte[]) nameValueFilenameTriples[i + 1]);
+            body.write("\r\n".getBytes("ISO-8859-1"));
+        }
+        body.write(("--" + BOUNDARY + "--\r\n").getBytes("ISO-8859-1"));
+        return body.toByteArray();
+    }
+
+    private static byte[] randomBytes(int count) {
+        byte[] bytes = new byte[count];
+        new Random(count).nextBytes(bytes);
+        return bytes;
+    }
+
+    private void expectRequest(final int contentLength, final InputStream in) throws IOException {
+        context.checking(new Expectations() {{
+            allowing(request).getContentType(); will(returnValue("multipart/form-data; boundary=" + BOUNDARY));
+            allowing(request).getContentLength(); will(returnValue(contentLength));
+            allowing(request).getCharacterEncoding(); will(returnValue(null));
+            allowing(request).getInputStream(); will(returnValue(new DelegatingServletInputStream(in)));
+        }});
+    }
+
+    @Test
+    public void testParse_spillsLargePartsToFiles() throws Exception {
+        byte[] small = randomBytes(1000);
+        byte[] large = randomBytes(50000);
+        byte[] body = body("small", small, "small.bin", "large", large, "large.bin", "text", "value".getBytes("ISO-8859-1"), null);
+
+        expectRequest(body.length, new ByteArrayInputStream(body));
+
+        HybridMultipartParser parser = new HybridMultipartParser(
+                new UploadLimits(10000, UploadLimits.UNLIMITED, UploadLimits.UNLIMITED, UploadLimits.UNLIMITED), 1024);
+        parser.parseInput(request);
+
+        SpooledContents smallContents = parser.getParts().get("small").getContents();
+        assertTrue(smallContents.isInMemory());
+        assertEquals(small.length, smallContents.size());
+        assertArrayEquals(small, smallContents.toByteArray());
+
+        SpooledContents largeContents = parser.getParts().get("large").getContents();
+        File file = largeContents.getFile();
+        assertFalse(largeContents.isInMemory());
+        assertEquals(large.length, file.length());
+        assertArrayEquals(large, largeContents.toByteArray());
+
+        assertEquals(Arrays.asList("value"), parser.getParameters().get("text"));
+
+        largeContents.delete();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testParse_keepsPartsAtTheThresholdInMemory() throws Exception {
+        byte[] contents = randomBytes(BufferPool.DEFAULT_BUFFER_SIZE * 2);
+        byte[] body = body("file", contents, "file.bin");
+
+        expectRequest(-1, new ByteArrayInputStream(body));
+
+        HybridMultipartParser parser = new HybridMultipartParser(
+                new UploadLimits(contents.length, UploadLimits.UNLIMITED, UploadLimits.UNLIMITED, UploadLimits.UNLIMITED));
+        parser.parseInput(request);
+
+        assertTrue(parser.getParts().get("file").getContents().isInMemory());
+        assertArrayEquals(contents, parser.getParts().get("file").getContents().toByteArray());
+    }
+
+    @Test
+    public void testParse_rejectsLargeParts() throws Exception {
+        byte[] body = body("file", randomBytes(5000), "file.bin");
+
+        expectRequest(body.length, new ByteArrayInputStream(body));
+
+        UploadLimits limits = new UploadLimits(100, 4999, UploadLimits.UNLIMITED, UploadLimits.UNLIMITED);
+
+        try {
+            new HybridMultipartParser(limits).parseInput(request);
+            fail("Accepted a part that is larger than the limit");
+        } catch (RequestEntityTooLargeException ex) {
+            // expected
+        }
+
+        assertEquals(0, limits.getInFlightSize());
+    }
+
+    @Test
+    public void testParse_rejectsLargeParameterValues() throws Exception {
+        byte[] body = body("text", randomBytes(2001), null);
+
+        expectRequest(body.length, new ByteArrayInputStream(body));
+
+        UploadLimits limits = new UploadLimits(100, UploadLimits.UNLIMITED, 2000, UploadLimits.UNLIMITED, UploadLimits.UNLIMITED);
+
+        try {
+            new HybridMultipartParser(limits, 256).parseInput(request);
+            fail("Accepted a parameter value that is larger than the limit");
+        } catch (RequestEntityTooLargeException ex) {
+            // expected
+        }
+
+        assertEquals(0, limits.getInFlightSize());
+    }
+
+    @Test
+    public void testLimitsParameterValuesByDefault() throws Exception {
+        assertEquals(UploadLimits.DEFAULT_MAX_FIELD_SIZE, new UploadLimits().getMaxFieldSize());
+        assertEquals(UploadLimits.DEFAULT_MAX_FIELD_SIZE,
+                new UploadLimits(100, UploadLimits.UNLIMITED, UploadLimits.UNLIMITED, UploadLimits.UNLIMITED).getMaxFieldSize());
+    }
+
+    @Test
+    public void testParse_rejectsLargeRequestsByContentLength() throws Exception {
+        context.checking(new Expectations() {{
+            allowing(request).getContentLength(); will(returnValue(1001));
+            never(request).getInputStream();
+        }});
+
+        try {
+            new HybridMultipartParser(new UploadLimits(100, UploadLimits.UNLIMITED, 1000, UploadLimits.UNLIMITED))
+                    .parseInput(request);
+            fail("Accepted a request that is larger than the limit");
+        } catch (RequestEntityTooLargeException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParse_rejectsLargeRequestsWhileStreaming() throws Exception {
+        byte[] body = body("first", randomBytes(600), "first.bin", "second", randomBytes(600), "second.bin");
+
+        expectRequest(-1, new ByteArrayInputStream(body));
+
+        try {
+            new HybridMultipartParser(new UploadLimits(100, UploadLimits.UNLIMITED, 1000, UploadLimits.UNLIMITED), 256)
+                    .parseInput(request);
+            fail("Accepted a request that is larger than the limit");
+        } catch (RequestEntityTooLargeException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParse_rejectsRequestsPastTheInFlightLimit() throws Exception {
+        byte[] body = body("file", randomBytes(500), "file.bin");
+        UploadLimits limits = new UploadLimits(100, UploadLimits.UNLIMITED, UploadLimits.UNLIMITED, body.length + 100);
+
+        assertTrue(limits.reserve(200));
+
+        expectRequest(body.length, new ByteArrayInputStream(body));
+
+        try {
+            new HybridMultipartParser(limits).parseInput(request);
+            fail("Accepted a request past the in flight limit");
+        } catch (RequestEntityTooLargeException ex) {
+            // expected
+        }
+
+        limits.release(200);
+
+        context = new Mockery();
+        request = context.mock(HttpServletRequest.class);
+        expectRequest(-1, new ByteArrayInputStream(body));
+
+        HybridMultipartParser parser = new HybridMultipartParser(limits);
+        parser.parseInput(request);
+
+        assertEquals(500, parser.getParts().get("file").getContents().size());
+        assertEquals(0, limits.getInFlightSize());
+    }
+
+    @Test
+    public void testParse_holdsInMemoryPartsUntilTheRequestEnds() throws Exception {
+        byte[] contents = randomBytes(1000);
+        byte[] body = body("file", contents, "file.bin");
+        UploadLimits limits = new UploadLimits(10000, UploadLimits.UNLIMITED, UploadLimits.UNLIMITED, body.length);
+
+        File directory = File.createTempFile("uploads", "");
+        directory.delete();
+        RequestUploads uploads = RequestUploads.begin(new UploadDirectory(directory, 60000));
+
+        try {
+            expectRequest(body.length, new ByteArrayInputStream(body));
+
+            HybridMultipartParser parser = new HybridMultipartParser(limits);
+            parser.parseInput(request);
+            SpooledContents spooledContents = parser.getParts().get("file").getContents();
+
+            assertTrue(spooledContents.isInMemory());
+            assertArrayEquals(contents, spooledContents.toByteArray());
+            assertEquals(body.length, limits.getInFlightSize());
+            assertFalse(limits.reserve(1));
+
+            uploads.end();
+            uploads = null;
+
+            assertEquals(0, limits.getInFlightSize());
+
+            try {
+                spooledContents.toByteArray();
+                fail("Read contents whose buffers were returned to the pool");
+            } catch (IllegalStateException ex) {
+                // expected
+            }
+        } finally {
+            if (uploads != null) {
+                uploads.end();
+            }
+            directory.delete();
+        }
+    }
+
+}
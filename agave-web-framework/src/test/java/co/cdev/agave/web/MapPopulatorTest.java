@@ -26,10 +26,16 @@
 package co.cdev.agave.web;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -43,6 +49,7 @@ import co.cdev.agave.URIPattern;
 import co.cdev.agave.configuration.HandlerDescriptor;
 import co.cdev.agave.configuration.ParamDescriptor;
 import co.cdev.agave.configuration.ParamDescriptorImpl;
+import co.cdev.agave.conversion.AgaveConversionException;
 import co.cdev.agave.web.MapPopulator;
 import co.cdev.agave.web.MapPopulatorImpl;
 
@@ -214,4 +221,144 @@ public class MapPopulatorTest {
         Assert.assertEquals(0, namedArguments.get("two"));
     }
 
+    @Test
+    public void testPopulate_withPrimitiveArrays() throws Exception {
+        paramDescriptors.add(new ParamDescriptorImpl(int[].class, "one", null));
+        paramDescriptors.add(new ParamDescriptorImpl(long[].class, "two", null));
+        paramDescriptors.add(new ParamDescriptorImpl(double[].class, "three", null));
+        
+        requestParams.put("one", new String[] {"1", "2", "-3"});
+        requestParams.put("two", new String[] {"9223372036854775807, 4,,5 "});
+        uriParams.put("three", "1.5");
+        
+        Map<String, Object> namedArguments = new HashMap<String, Object>();
+        
+        populator.populate(namedArguments);
+        
+        Assert.assertArrayEquals(new int[] {1, 2, -3}, (int[]) namedArguments.get("one"));
+        Assert.assertArrayEquals(new long[] {Long.MAX_VALUE, 4, 5}, (long[]) namedArguments.get("two"));
+        Assert.assertArrayEquals(new double[] {1.5}, (double[]) namedArguments.get("three"), 0.0);
+    }
+    
+    @Test
+    public void testPopulate_withObjectArrays() throws Exception {
+        paramDescriptors.add(new ParamDescriptorImpl(String[].class, "one", null));
+        paramDescriptors.add(new ParamDescriptorImpl(Integer[].class, "two", null));
+        paramDescriptors.add(new ParamDescriptorImpl(byte[].class, "three", null));
+        
+        requestParams.put("one", new String[] {"cat", "possum"});
+        requestParams.put("two", new String[] {"1,2"});
+        requestParams.put("three", new String[] {"7"});
+        
+        Map<String, Object> namedArguments = new HashMap<String, Object>();
+        
+        populator.populate(namedArguments);
+        
+        Assert.assertArrayEquals(new String[] {"cat", "possum"}, (String[]) namedArguments.get("one"));
+        Assert.assertArrayEquals(new Integer[] {1, 2}, (Integer[]) namedArguments.get("two"));
+        Assert.assertArrayEquals(new byte[] {7}, (byte[]) namedArguments.get("three"));
+    }
+    
+    @Test
+    public void testPopulate_withCollections() throws Exception {
+        paramDescriptors.add(new ParamDescriptorImpl(List.class, Long.class, "one", null));
+        paramDescriptors.add(new ParamDescriptorImpl(Set.class, String.class, "two", null));
+        paramDescriptors.add(new ParamDescriptorImpl(SortedSet.class, Integer.class, "three", null));
+        
+        requestParams.put("one", new String[] {"3", "1", "3"});
+        requestParams.put("two", new String[] {"cat,possum,cat"});
+        requestParams.put("three", new String[] {"3", "1", "2"});
+        
+        Map<String, Object> namedArguments = new HashMap<String, Object>();
+        
+        populator.populate(namedArguments);
+        
+        Assert.assertEquals(Arrays.asList(3L, 1L, 3L), namedArguments.get("one"));
+        Assert.assertEquals(new LinkedHashSet<String>(Arrays.asList("cat,possum,cat")), namedArguments.get("two"));
+        Assert.assertEquals(Arrays.asList(1, 2, 3), new ArrayList<Object>((SortedSet<?>) namedArguments.get("three")));
+    }
+    
+    @Test
+    public void testPopulate_withCollectionSubtypes() throws Exception {
+        paramDescriptors.add(new ParamDescriptorImpl(LinkedList.class, Integer.class, "one", null));
+        paramDescriptors.add(new ParamDescriptorImpl(HashSet.class, String.class, "two", null));
+        
+        requestParams.put("one", new String[] {"3,1"});
+        requestParams.put("two", new String[] {"cat", "possum"});
+        
+        Map<String, Object> namedArguments = new HashMap<String, Object>();
+        
+        populator.populate(namedArguments);
+        
+        Assert.assertEquals(new LinkedList<Integer>(Arrays.asList(3, 1)), namedArguments.get("one"));
+        Assert.assertTrue(namedArguments.get("one") instanceof LinkedList);
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("cat", "possum")), namedArguments.get("two"));
+    }
+    
+    @Test
+    public void testPopulate_withoutSplittingSeveralValues() throws Exception {
+        paramDescriptors.add(new ParamDescriptorImpl(List.class, String.class, "one", null));
+        paramDescriptors.add(new ParamDescriptorImpl(String.class, "two", null));
+        
+        requestParams.put("one", new String[] {"Smith, John", "Doe, Jane"});
+        requestParams.put("two", new String[] {"Smith, John"});
+        
+        Map<String, Object> namedArguments = new HashMap<String, Object>();
+        
+        populator.populate(namedArguments);
+        
+        Assert.assertEquals(Arrays.asList("Smith, John", "Doe, Jane"), namedArguments.get("one"));
+        Assert.assertEquals("Smith, John", namedArguments.get("two"));
+    }
+    
+    @Test
+    public void testPopulate_withoutSplittingFreeText() throws Exception {
+        paramDescriptors.add(new ParamDescriptorImpl(String[].class, "one", null));
+        paramDescriptors.add(new ParamDescriptorImpl(List.class, String.class, "two", null));
+        
+        requestParams.put("one", new String[] {"a,b"});
+        requestParams.put("two", new String[] {"Smith, John"});
+        
+        Map<String, Object> namedArguments = new HashMap<String, Object>();
+        
+        populator.populate(namedArguments);
+        
+        Assert.assertArrayEquals(new String[] {"a,b"}, (String[]) namedArguments.get("one"));
+        Assert.assertEquals(Arrays.asList("Smith, John"), namedArguments.get("two"));
+    }
+    
+    @Test(expected = AgaveConversionException.class)
+    public void testPopulate_withoutSplittingBodyArray() throws Exception {
+        paramDescriptors.add(new ParamDescriptorImpl(Integer[].class, "one", null));
+        
+        ArrayValues values = new ArrayValues();
+        values.add("1,2");
+        Map<String, List<String>> bodyParameters = new HashMap<String, List<String>>();
+        bodyParameters.put("one", values);
+        
+        new MapPopulatorImpl(new BodyParameterRequest(request, bodyParameters), uriParams, descriptor)
+                .populate(new HashMap<String, Object>());
+    }
+    
+    @Test
+    public void testPopulate_withMissingArray() throws Exception {
+        paramDescriptors.add(new ParamDescriptorImpl(int[].class, "one", null));
+        
+        Map<String, Object> namedArguments = new HashMap<String, Object>();
+        
+        populator.populate(namedArguments);
+        
+        Assert.assertTrue(namedArguments.containsKey("one"));
+        Assert.assertNull(namedArguments.get("one"));
+    }
+    
+    @Test(expected = AgaveConversionException.class)
+    public void testPopulate_withBadArrayElement() throws Exception {
+        paramDescriptors.add(new ParamDescriptorImpl(int[].class, "one", null));
+        
+        requestParams.put("one", new String[] {"1,two,3"});
+        
+        populator.populate(new HashMap<String, Object>());
+    }
+
 }
@@ -0,0 +1,109 @@
+package co.cdev.agave.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Measures the throughput of the line based and the buffered multipart parsers on a body with a
+ * large binary upload and a few parameters. This is not run as part of the test suite; run its
+ * main method with the module's test classpath instead, optionally passing the upload size in
+ * megabytes.
+ */
+public class MultipartParserBenchmark {
+
+    private static final String BOUNDARY = "---------------------------2746393686911676941624173958";
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    private interface ParserFactory {
+        MultipartParser<?> create();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        final byte[] body = createBody(megabytes * 1024 * 1024);
+
+        ParserFactory[] factories = {
+            new ParserFactory() {
+                @Override
+                public MultipartParser<?> create() {
+                    return new ByteStreamMultipartParser();
+                }
+
+                @Override
+                public String toString() {
+                    return "line based";
+                }
+            },
+            new ParserFactory() {
+                @Override
+                public MultipartParser<?> create() {
+                    return new BufferedByteStreamMultipartParser();
+                }
+
+                @Override
+                public String toString() {
+                    return "buffered";
+                }
+            }
+        };
+
+        for (ParserFactory factory : factories) {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                factory.create().parseInput(createRequest(body));
+            }
+        }
+
+        for (ParserFactory factory : factories) {
+            long started = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                factory.create().parseInput(createRequest(body));
+            }
+            long elapsed = System.nanoTime() - started;
+
+            double seconds = elapsed / 1e9 / MEASURED_ITERATIONS;
+            System.out.printf("%-10s %8.1f MB/s%n", factory, body.length / 1048576.0 / seconds);
+        }
+    }
+
+    private static byte[] createBody(int uploadSize) throws Exception {
+        byte[] upload = new byte[uploadSize];
+        new Random(42).nextBytes(upload);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(uploadSize + 1024);
+        for (int i = 0; i < 3; i++) {
+            body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"text" + i + "\"\r\n\r\nvalue "
+                    + i + "\r\n").getBytes("ISO-8859-1"));
+        }
+        body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"upload.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes("ISO-8859-1"));
+        body.write(upload);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes("ISO-8859-1"));
+        return body.toByteArray();
+    }
+
+    private static HttpServletRequest createRequest(final byte[] body) {
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+                    private final DelegatingServletInputStream in =
+                            new DelegatingServletInputStream(new ByteArrayInputStream(body));
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getContentType".equals(method.getName())) {
+                            return "multipart/form-data; boundary=" + BOUNDARY;
+                        } else if ("getInputStream".equals(method.getName())) {
+                            return in;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+}
@@ -0,0 +1,145 @@
+package co.cdev.agave.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.cdev.agave.Part;
+import co.cdev.agave.PartImpl;
+
+public class RequestUploadsTest {
+
+    private File directory;
+    private UploadDirectory uploadDirectory;
+
+    @Before
+    public void setup() throws Exception {
+        directory = File.createTempFile("uploads", "");
+        directory.delete();
+        uploadDirectory = new UploadDirectory(directory, 60000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private static Part<File> part(String name, String filename) {
+        Part<File> part = new PartImpl<File>();
+        part.setName(name);
+        part.setFilename(filename);
+        return part;
+    }
+
+    private static void write(File file, int count) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[count]);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void testEnd_deletesUnclaimedFiles() throws Exception {
+        RequestUploads uploads = RequestUploads.begin(uploadDirectory);
+
+        File kept = RequestUploads.createTemporaryFile(part("kept", "kept.gif"));
+        File discarded = RequestUploads.createTemporaryFile(part("f", "x"));
+        write(kept, 10);
+        write(discarded, 20);
+
+        assertEquals(directory, kept.getParentFile());
+        assertTrue(kept.getName().startsWith("kept") && kept.getName().endsWith(".gif"));
+        assertEquals(2, uploadDirectory.getLiveFileCount());
+        assertEquals(30, uploadDirectory.getLiveByteCount());
+
+        assertTrue(RequestUploads.claim(kept));
+        assertFalse(RequestUploads.claim(kept));
+        assertEquals(1, uploadDirectory.getLiveFileCount());
+
+        uploads.end();
+
+        assertTrue(kept.exists());
+        assertFalse(discarded.exists());
+        assertEquals(0, uploadDirectory.getLiveFileCount());
+        assertFalse(RequestUploads.claim(kept));
+    }
+
+    @Test
+    public void testEnd_ofNestedRequestKeepsOuterFiles() throws Exception {
+        RequestUploads outer = RequestUploads.begin(uploadDirectory);
+        File outerFile = RequestUploads.createTemporaryFile(part("outer", "outer.txt"));
+
+        RequestUploads inner = RequestUploads.begin(uploadDirectory);
+        File innerFile = RequestUploads.createTemporaryFile(part("inner", "inner.txt"));
+        assertFalse(RequestUploads.claim(outerFile));
+        inner.end();
+
+        assertTrue(outerFile.exists());
+        assertFalse(innerFile.exists());
+        assertEquals(1, uploadDirectory.getLiveFileCount());
+
+        File laterFile = RequestUploads.createTemporaryFile(part("later", "later.txt"));
+        outer.end();
+
+        assertFalse(outerFile.exists());
+        assertFalse(laterFile.exists());
+        assertEquals(0, uploadDirectory.getLiveFileCount());
+        assertFalse(RequestUploads.claim(outerFile));
+    }
+
+    @Test
+    public void testStartReaperOnFirstFile() throws Exception {
+        uploadDirectory.startReaperOnFirstFile(1, TimeUnit.MINUTES);
+        assertFalse(uploadDirectory.isReaperRunning());
+
+        RequestUploads uploads = RequestUploads.begin(uploadDirectory);
+
+        try {
+            RequestUploads.createTemporaryFile(part("file", "file.txt"));
+            assertTrue(uploadDirectory.isReaperRunning());
+        } finally {
+            uploads.end();
+            uploadDirectory.stopReaper();
+        }
+
+        assertFalse(uploadDirectory.isReaperRunning());
+    }
+
+    @Test
+    public void testReap_deletesOldOrphans() throws Exception {
+        RequestUploads uploads = RequestUploads.begin(uploadDirectory);
+
+        File live = RequestUploads.createTemporaryFile(part("live", "live.txt"));
+        File recentOrphan = new File(directory, "recent.tmp");
+        File oldOrphan = new File(directory, "old.tmp");
+        write(recentOrphan, 1);
+        write(oldOrphan, 1);
+
+        long longAgo = System.currentTimeMillis() - 120000;
+        live.setLastModified(longAgo);
+        oldOrphan.setLastModified(longAgo);
+
+        assertEquals(1, uploadDirectory.reap());
+        assertTrue(live.exists());
+        assertTrue(recentOrphan.exists());
+        assertFalse(oldOrphan.exists());
+
+        uploads.end();
+    }
+
+}
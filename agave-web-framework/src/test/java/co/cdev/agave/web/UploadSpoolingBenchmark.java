@@ -0,0 +1,164 @@
+package co.cdev.agave.web;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+
+import javax.servlet.http.HttpServletRequest;
+
+import co.cdev.agave.Part;
+
+/**
+ * Measures how quickly the file backed parsers spool a single large upload to the local disk. The
+ * body is generated while it is read, so uploads of several gigabytes need no heap. This is not run
+ * as part of the test suite; run its main method with the module's test classpath instead,
+ * optionally passing the upload size in megabytes, which defaults to 2048.
+ */
+public class UploadSpoolingBenchmark {
+
+    private static final String BOUNDARY = "---------------------------2746393686911676941624173958";
+
+    private interface ParserFactory {
+        MultipartParser<File> create();
+    }
+
+    public static void main(String[] args) throws Exception {
+        long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 2048;
+        final long uploadSize = megabytes * 1024 * 1024;
+
+        ParserFactory[] factories = {
+            new ParserFactory() {
+                @Override
+                public MultipartParser<File> create() {
+                    return new BufferedFileMultipartParser();
+                }
+
+                @Override
+                public String toString() {
+                    return "stream";
+                }
+            },
+            new ParserFactory() {
+                @Override
+                public MultipartParser<File> create() {
+                    return new ChannelFileMultipartParser();
+                }
+
+                @Override
+                public String toString() {
+                    return "channel";
+                }
+            },
+            new ParserFactory() {
+                @Override
+                public MultipartParser<File> create() {
+                    return new ChannelFileMultipartParser(ChannelFileMultipartParser.DEFAULT_MAX_PENDING_WRITES, true);
+                }
+
+                @Override
+                public String toString() {
+                    return "channel+fsync";
+                }
+            }
+        };
+
+        for (ParserFactory factory : factories) {
+            run(factory, Math.min(uploadSize, 64L * 1024 * 1024));
+        }
+
+        for (ParserFactory factory : factories) {
+            double seconds = run(factory, uploadSize);
+            System.out.printf("%-14s %8.1f MB/s%n", factory, uploadSize / 1048576.0 / seconds);
+        }
+    }
+
+    /**
+     * @return the number of seconds that parsing took
+     */
+    private static double run(ParserFactory factory, long uploadSize) throws Exception {
+        MultipartParser<File> parser = factory.create();
+
+        long started = System.nanoTime();
+        parser.parseInput(createRequest(uploadSize));
+        long elapsed = System.nanoTime() - started;
+
+        for (Part<File> part : parser.getParts().values()) {
+            part.getContents().delete();
+        }
+
+        return elapsed / 1e9;
+    }
+
+    private static HttpServletRequest createRequest(final long uploadSize) throws Exception {
+        final DelegatingServletInputStream in = new DelegatingServletInputStream(new GeneratedBody(uploadSize));
+
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getContentType".equals(method.getName())) {
+                            return "multipart/form-data; boundary=" + BOUNDARY;
+                        } else if ("getInputStream".equals(method.getName())) {
+                            return in;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * A multipart body with one file, whose contents repeat a block of random bytes.
+     */
+    private static class GeneratedBody extends InputStream {
+
+        private final byte[] head;
+        private final byte[] block = new byte[1024 * 1024];
+        private final byte[] tail;
+        private final long length;
+        private long position;
+
+        GeneratedBody(long uploadSize) throws Exception {
+            head = ("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"upload.bin\"\r\n"
+                    + "Content-Type: application/octet-stream\r\n\r\n").getBytes("ISO-8859-1");
+            tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes("ISO-8859-1");
+            new Random(42).nextBytes(block);
+            length = head.length + uploadSize + tail.length;
+        }
+
+        @Override
+        public int read() {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= length) {
+                return -1;
+            }
+
+            long bodyStart = head.length;
+            long tailStart = length - tail.length;
+            int count;
+
+            if (position < bodyStart) {
+                count = (int) Math.min(len, bodyStart - position);
+                System.arraycopy(head, (int) position, b, off, count);
+            } else if (position < tailStart) {
+                int blockOffset = (int) ((position - bodyStart) % block.length);
+                count = (int) Math.min(Math.min(len, block.length - blockOffset), tailStart - position);
+                System.arraycopy(block, blockOffset, b, off, count);
+            } else {
+                count = (int) Math.min(len, length - position);
+                System.arraycopy(tail, (int) (position - tailStart), b, off, count);
+            }
+
+            position += count;
+            return count;
+        }
+    }
+
+}
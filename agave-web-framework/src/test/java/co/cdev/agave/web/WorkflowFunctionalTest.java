@@ -27,12 +27,18 @@ package co.cdev.agave.web;
 
 import java.util.HashMap;
 
+import javax.servlet.FilterConfig;
+import javax.servlet.http.HttpServletResponse;
+
 import org.jmock.Expectations;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import co.cdev.agave.configuration.RoutingContext;
 import co.cdev.agave.sample.WorkflowForm;
 import co.cdev.agave.sample.WorkflowHandler;
+import co.cdev.agave.util.LoggerUtils;
 import co.cdev.agave.web.AgaveFilter;
 
 /**
@@ -66,6 +72,31 @@ public class WorkflowFunctionalTest extends AbstractFunctionalTest {
         filter.doFilter(request, response, filterChain);
     }
     
+    @Test
+    public void testInitialize_withFailingHandler() throws Exception {
+        AgaveFilter filter = createSilentAgaveFilter();
+
+        emulateServletContainer(new HashMap<String, String[]>());
+        expectDiagnosticInformationOnException();
+
+        context.checking(new Expectations() {{
+            allowing(request).getServletPath(); will(returnValue("/failingWizard/step1/"));
+            allowing(request).getMethod(); will(returnValue("GET"));
+            
+            one(session).setAttribute("failingWizard-handler", new WorkflowHandler());
+            one(session).setAttribute("failingWizard-form", new WorkflowForm());
+        }});
+
+        filter.init(filterConfig);
+        
+        try {
+            filter.doFilter(request, response, filterChain);
+            Assert.fail("The handler should have failed");
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals("The first step failed", ex.getMessage());
+        }
+    }
+    
     @Test
     public void testResume() throws Exception {
         AgaveFilter filter = createSilentAgaveFilter();
@@ -87,6 +118,47 @@ public class WorkflowFunctionalTest extends AbstractFunctionalTest {
         filter.doFilter(request, response, filterChain);
     }
     
+    @Test
+    public void testResume_withInvalidToken() throws Exception {
+        AgaveFilter filter = new AgaveFilter() {
+            @Override
+            protected WorkflowStore provideWorkflowStore(FilterConfig filterConfig) {
+                return new WorkflowStore() {
+                    public void initialize(FilterConfig filterConfig) {
+                    }
+
+                    public WorkflowState load(RoutingContext routingContext, String workflowName)
+                            throws WorkflowException {
+                        throw new InvalidWorkflowTokenException("Workflow token signature does not match");
+                    }
+
+                    public void save(RoutingContext routingContext, String workflowName,
+                            WorkflowState workflowState) {
+                    }
+
+                    public void remove(RoutingContext routingContext, String workflowName) {
+                    }
+
+                    public void destroy() {
+                    }
+                };
+            }
+        };
+        LoggerUtils.silenceLoggers();
+        
+        emulateServletContainer(new HashMap<String, String[]>());
+
+        context.checking(new Expectations() {{
+            allowing(request).getServletPath(); will(returnValue("/wizard/step2/"));
+            allowing(request).getMethod(); will(returnValue("GET"));
+            
+            one(response).sendError(HttpServletResponse.SC_BAD_REQUEST);
+        }});
+
+        filter.init(filterConfig);
+        filter.doFilter(request, response, filterChain);
+    }
+    
     @Test
     public void testCompletion() throws Exception {
         AgaveFilter filter = createSilentAgaveFilter();
@@ -0,0 +1,262 @@
+package co.cdev.agave.web;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.cdev.agave.configuration.RoutingContext;
+
+public class WorkflowStoreTest {
+
+    private Mockery context = new Mockery();
+    private RoutingContext routingContext;
+    private HttpSession session;
+    private final Map<String, Object> sessionAttributes = new HashMap<String, Object>();
+    private File directory;
+
+    @Before
+    public void setup() throws Exception {
+        session = context.mock(HttpSession.class);
+
+        context.checking(new Expectations() {{
+            allowing(session).getId(); will(returnValue("session-1"));
+            allowing(session).getAttribute(with(any(String.class))); will(new CustomAction("get attribute") {
+                @Override
+                public Object invoke(Invocation invocation) {
+                    return sessionAttributes.get(invocation.getParameter(0));
+                }
+            });
+            allowing(session).setAttribute(with(any(String.class)), with(any(Object.class))); will(new CustomAction("set attribute") {
+                @Override
+                public Object invoke(Invocation invocation) {
+                    return sessionAttributes.put((String) invocation.getParameter(0), invocation.getParameter(1));
+                }
+            });
+        }});
+
+        routingContext = new RoutingContext(null, null, null, session);
+
+        directory = File.createTempFile("workflows", "");
+        directory.delete();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        if (directory.listFiles() != null) {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testMemoryStoreKeepsState() throws Exception {
+        MemoryWorkflowStore store = new MemoryWorkflowStore();
+        WorkflowState state = new WorkflowState("handler", "form");
+
+        store.save(routingContext, "wizard", state);
+
+        Assert.assertSame(state, store.load(routingContext, "wizard"));
+        Assert.assertNull(store.load(routingContext, "other"));
+        Assert.assertEquals(1, store.getLiveWorkflowCount());
+
+        store.remove(routingContext, "wizard");
+
+        Assert.assertNull(store.load(routingContext, "wizard"));
+        Assert.assertEquals(0, store.getLiveWorkflowCount());
+        Assert.assertEquals(0, store.getEvictionCount());
+    }
+
+    @Test
+    public void testMemoryStoreEvictsLeastRecentlyUsed() throws Exception {
+        MemoryWorkflowStore store = new MemoryWorkflowStore(60000, 2);
+
+        store.save(routingContext, "a", new WorkflowState("a", null));
+        store.save(routingContext, "b", new WorkflowState("b", null));
+        store.load(routingContext, "a");
+        store.save(routingContext, "c", new WorkflowState("c", null));
+
+        Assert.assertNotNull(store.load(routingContext, "a"));
+        Assert.assertNull(store.load(routingContext, "b"));
+        Assert.assertNotNull(store.load(routingContext, "c"));
+        Assert.assertEquals(2, store.getLiveWorkflowCount());
+        Assert.assertEquals(1, store.getEvictionCount());
+    }
+
+    @Test
+    public void testMemoryStoreExpiresState() throws Exception {
+        MemoryWorkflowStore store = new MemoryWorkflowStore(1, 10);
+
+        store.save(routingContext, "wizard", new WorkflowState("handler", "form"));
+        Thread.sleep(10);
+
+        Assert.assertNull(store.load(routingContext, "wizard"));
+        Assert.assertEquals(0, store.getLiveWorkflowCount());
+        Assert.assertEquals(1, store.getEvictionCount());
+    }
+
+    @Test
+    public void testDiskStoreRoundTripsState() throws Exception {
+        DiskWorkflowStore store = new DiskWorkflowStore(directory, 60000, 10);
+        store.prepareDirectory();
+
+        store.save(routingContext, "wizard", new WorkflowState("handler", "form"));
+        Assert.assertEquals(1, directory.listFiles().length);
+
+        WorkflowState state = store.load(routingContext, "wizard");
+
+        Assert.assertEquals("handler", state.getHandlerInstance());
+        Assert.assertEquals("form", state.getFormInstance());
+        Assert.assertFalse(state.isInitiated());
+
+        store.remove(routingContext, "wizard");
+
+        Assert.assertEquals(0, directory.listFiles().length);
+        Assert.assertNull(store.load(routingContext, "wizard"));
+    }
+
+    @Test
+    public void testDiskStoreDeletesEvictedState() throws Exception {
+        DiskWorkflowStore store = new DiskWorkflowStore(directory, 60000, 1);
+        store.prepareDirectory();
+
+        store.save(routingContext, "a", new WorkflowState("a", null));
+        store.save(routingContext, "b", new WorkflowState("b", null));
+
+        Assert.assertEquals(1, directory.listFiles().length);
+        Assert.assertNull(store.load(routingContext, "a"));
+        Assert.assertEquals("b", store.load(routingContext, "b").getHandlerInstance());
+        Assert.assertEquals(1, store.getEvictionCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNonPositiveMaxWorkflows() throws Exception {
+        new MemoryWorkflowStore(60000, 0);
+    }
+
+    @Test
+    public void testReleasesWorkflowsOfInvalidatedSession() throws Exception {
+        DiskWorkflowStore store = new DiskWorkflowStore(directory, 60000, 10);
+        store.prepareDirectory();
+
+        store.save(routingContext, "a", new WorkflowState("a", null));
+        store.save(routingContext, "b", new WorkflowState("b", null));
+
+        Assert.assertEquals(1, sessionAttributes.size());
+        Assert.assertEquals(2, store.getLiveWorkflowCount());
+
+        // what the container does when the session is invalidated
+
+        for (Object attribute : sessionAttributes.values()) {
+            ((HttpSessionBindingListener) attribute).valueUnbound(new HttpSessionBindingEvent(session, "listener"));
+        }
+
+        Assert.assertEquals(0, store.getLiveWorkflowCount());
+        Assert.assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void testDiskStoreKeepsStateRetainedAgainByASave() throws Exception {
+        DiskWorkflowStore store = new DiskWorkflowStore(directory, 60000, 10);
+        store.prepareDirectory();
+        store.save(routingContext, "wizard", new WorkflowState("handler", null));
+        File stateFile = directory.listFiles()[0];
+
+        // what happens when a session is released while a save of the same workflow is under way
+
+        store.discard(store.createKey(routingContext, "wizard"), stateFile);
+
+        Assert.assertTrue(stateFile.exists());
+        Assert.assertEquals("handler", store.load(routingContext, "wizard").getHandlerInstance());
+    }
+
+    @Test
+    public void testDiskStoreReleasesSessionWhileSaving() throws Exception {
+        final DiskWorkflowStore store = new DiskWorkflowStore(directory, 60000, 10);
+        store.prepareDirectory();
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final Throwable[] failures = new Throwable[1];
+        Thread saver = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+
+                    for (int i = 0; i < 200; i++) {
+                        store.save(routingContext, "wizard", new WorkflowState("handler", null));
+                        store.load(routingContext, "wizard");
+                    }
+                } catch (Throwable ex) {
+                    failures[0] = ex;
+                }
+            }
+        };
+        saver.start();
+        start.countDown();
+
+        while (saver.isAlive()) {
+            store.releaseSession("session-1");
+        }
+
+        Assert.assertNull(failures[0]);
+    }
+
+    @Test
+    public void testDiskStoreSavesConcurrently() throws Exception {
+        final DiskWorkflowStore store = new DiskWorkflowStore(directory, 60000, 10);
+        store.prepareDirectory();
+        store.save(routingContext, "wizard", new WorkflowState("handler", null));
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final Throwable[] failures = new Throwable[1];
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++) {
+            final String handler = "handler" + i;
+
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+
+                        for (int j = 0; j < 50; j++) {
+                            store.save(routingContext, "wizard", new WorkflowState(handler, null));
+                            Assert.assertNotNull(store.load(routingContext, "wizard").getHandlerInstance());
+                        }
+                    } catch (Throwable ex) {
+                        failures[0] = ex;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        start.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertNull(failures[0]);
+        Assert.assertEquals(1, directory.listFiles().length);
+        Assert.assertTrue(directory.listFiles()[0].getName().endsWith(".ser"));
+    }
+
+}
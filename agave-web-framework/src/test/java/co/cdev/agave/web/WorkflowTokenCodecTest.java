@@ -0,0 +1,77 @@
+package co.cdev.agave.web;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WorkflowTokenCodecTest {
+
+    private static final byte[] SIGNING_SECRET = "signing secret".getBytes();
+    private static final byte[] ENCRYPTION_SECRET = "encryption secret".getBytes();
+
+    @Test
+    public void testRoundTripSignedToken() throws Exception {
+        WorkflowTokenCodec codec = new WorkflowTokenCodec(SIGNING_SECRET, null, 60000);
+
+        String token = codec.encode("wizard", new WorkflowState("handler", "form"));
+        WorkflowState state = codec.decode("wizard", token);
+
+        Assert.assertTrue(token.matches("[A-Za-z0-9_-]+"));
+        Assert.assertEquals("handler", state.getHandlerInstance());
+        Assert.assertEquals("form", state.getFormInstance());
+    }
+
+    @Test
+    public void testRoundTripEncryptedToken() throws Exception {
+        WorkflowTokenCodec codec = new WorkflowTokenCodec(SIGNING_SECRET, ENCRYPTION_SECRET, 60000);
+
+        WorkflowState state = codec.decode("wizard", codec.encode("wizard", new WorkflowState("handler", "form")));
+
+        Assert.assertEquals("handler", state.getHandlerInstance());
+        Assert.assertEquals("form", state.getFormInstance());
+    }
+
+    @Test(expected = InvalidWorkflowTokenException.class)
+    public void testRejectTamperedToken() throws Exception {
+        WorkflowTokenCodec codec = new WorkflowTokenCodec(SIGNING_SECRET, null, 60000);
+
+        char[] token = codec.encode("wizard", new WorkflowState("handler", "form")).toCharArray();
+        token[20] = token[20] == 'A' ? 'B' : 'A';
+
+        codec.decode("wizard", new String(token));
+    }
+
+    @Test(expected = InvalidWorkflowTokenException.class)
+    public void testRejectTokenSignedWithAnotherKey() throws Exception {
+        WorkflowTokenCodec codec = new WorkflowTokenCodec(SIGNING_SECRET, null, 60000);
+        WorkflowTokenCodec otherCodec = new WorkflowTokenCodec("other secret".getBytes(), null, 60000);
+
+        codec.decode("wizard", otherCodec.encode("wizard", new WorkflowState("handler", "form")));
+    }
+
+    @Test(expected = InvalidWorkflowTokenException.class)
+    public void testRejectTokenIssuedForAnotherWorkflow() throws Exception {
+        WorkflowTokenCodec codec = new WorkflowTokenCodec(SIGNING_SECRET, null, 60000);
+
+        codec.decode("checkout", codec.encode("wizard", new WorkflowState("handler", "form")));
+    }
+
+    @Test
+    public void testIgnoreExpiredToken() throws Exception {
+        WorkflowTokenCodec codec = new WorkflowTokenCodec(SIGNING_SECRET, null, -1);
+
+        Assert.assertNull(codec.decode("wizard", codec.encode("wizard", new WorkflowState("handler", "form"))));
+    }
+
+    @Test
+    public void testBase64RoundTrip() throws Exception {
+        for (int length = 0; length < 8; length++) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) (i * 37 - 100);
+            }
+
+            Assert.assertArrayEquals(bytes, WorkflowTokenCodec.decodeBase64(WorkflowTokenCodec.encodeBase64(bytes)));
+        }
+    }
+
+}